@@ -0,0 +1,723 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.handler.codec.CharSequenceValueConverter;
+import io.netty.handler.codec.Headers;
+import io.netty.util.AsciiString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Base class for {@link Http3Headers} implementations that are not backed by a
+ * {@link io.netty.handler.codec.DefaultHeaders}.
+ * <p>
+ * Everything is implemented on top of a few primitive operations, the typed getters and setters convert values
+ * the same way as {@link DefaultHttp3Headers} does.
+ */
+abstract class AbstractHttp3Headers implements Http3Headers {
+    private static final CharSequenceValueConverter CONVERTER = CharSequenceValueConverter.INSTANCE;
+    private static final int HASH_CODE_SEED = 0xc2b2ae35;
+
+    @Override
+    public CharSequence get(CharSequence name, CharSequence defaultValue) {
+        CharSequence value = get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public CharSequence getAndRemove(CharSequence name) {
+        CharSequence value = get(name);
+        if (value != null) {
+            remove(name);
+        }
+        return value;
+    }
+
+    @Override
+    public CharSequence getAndRemove(CharSequence name, CharSequence defaultValue) {
+        CharSequence value = getAndRemove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public List<CharSequence> getAll(CharSequence name) {
+        Iterator<CharSequence> values = valueIterator(name);
+        if (!values.hasNext()) {
+            return Collections.emptyList();
+        }
+        List<CharSequence> all = new ArrayList<>(2);
+        do {
+            all.add(values.next());
+        } while (values.hasNext());
+        return all;
+    }
+
+    @Override
+    public List<CharSequence> getAllAndRemove(CharSequence name) {
+        List<CharSequence> all = getAll(name);
+        if (!all.isEmpty()) {
+            remove(name);
+        }
+        return all;
+    }
+
+    @Override
+    public Boolean getBoolean(CharSequence name) {
+        CharSequence value = get(name);
+        try {
+            return value == null ? null : CONVERTER.convertToBoolean(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean getBoolean(CharSequence name, boolean defaultValue) {
+        Boolean value = getBoolean(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Byte getByte(CharSequence name) {
+        CharSequence value = get(name);
+        try {
+            return value == null ? null : CONVERTER.convertToByte(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public byte getByte(CharSequence name, byte defaultValue) {
+        Byte value = getByte(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Character getChar(CharSequence name) {
+        CharSequence value = get(name);
+        try {
+            return value == null ? null : CONVERTER.convertToChar(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public char getChar(CharSequence name, char defaultValue) {
+        Character value = getChar(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Short getShort(CharSequence name) {
+        CharSequence value = get(name);
+        try {
+            return value == null ? null : CONVERTER.convertToShort(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public short getShort(CharSequence name, short defaultValue) {
+        Short value = getShort(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Integer getInt(CharSequence name) {
+        CharSequence value = get(name);
+        try {
+            return value == null ? null : CONVERTER.convertToInt(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public int getInt(CharSequence name, int defaultValue) {
+        Integer value = getInt(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Long getLong(CharSequence name) {
+        CharSequence value = get(name);
+        try {
+            return value == null ? null : CONVERTER.convertToLong(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public long getLong(CharSequence name, long defaultValue) {
+        Long value = getLong(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Float getFloat(CharSequence name) {
+        CharSequence value = get(name);
+        try {
+            return value == null ? null : CONVERTER.convertToFloat(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public float getFloat(CharSequence name, float defaultValue) {
+        Float value = getFloat(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Double getDouble(CharSequence name) {
+        CharSequence value = get(name);
+        try {
+            return value == null ? null : CONVERTER.convertToDouble(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public double getDouble(CharSequence name, double defaultValue) {
+        Double value = getDouble(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Long getTimeMillis(CharSequence name) {
+        CharSequence value = get(name);
+        try {
+            return value == null ? null : CONVERTER.convertToTimeMillis(value);
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public long getTimeMillis(CharSequence name, long defaultValue) {
+        Long value = getTimeMillis(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Boolean getBooleanAndRemove(CharSequence name) {
+        Boolean value = getBoolean(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public boolean getBooleanAndRemove(CharSequence name, boolean defaultValue) {
+        Boolean value = getBooleanAndRemove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Byte getByteAndRemove(CharSequence name) {
+        Byte value = getByte(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public byte getByteAndRemove(CharSequence name, byte defaultValue) {
+        Byte value = getByteAndRemove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Character getCharAndRemove(CharSequence name) {
+        Character value = getChar(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public char getCharAndRemove(CharSequence name, char defaultValue) {
+        Character value = getCharAndRemove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Short getShortAndRemove(CharSequence name) {
+        Short value = getShort(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public short getShortAndRemove(CharSequence name, short defaultValue) {
+        Short value = getShortAndRemove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Integer getIntAndRemove(CharSequence name) {
+        Integer value = getInt(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public int getIntAndRemove(CharSequence name, int defaultValue) {
+        Integer value = getIntAndRemove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Long getLongAndRemove(CharSequence name) {
+        Long value = getLong(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public long getLongAndRemove(CharSequence name, long defaultValue) {
+        Long value = getLongAndRemove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Float getFloatAndRemove(CharSequence name) {
+        Float value = getFloat(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public float getFloatAndRemove(CharSequence name, float defaultValue) {
+        Float value = getFloatAndRemove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Double getDoubleAndRemove(CharSequence name) {
+        Double value = getDouble(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public double getDoubleAndRemove(CharSequence name, double defaultValue) {
+        Double value = getDoubleAndRemove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Long getTimeMillisAndRemove(CharSequence name) {
+        Long value = getTimeMillis(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public long getTimeMillisAndRemove(CharSequence name, long defaultValue) {
+        Long value = getTimeMillisAndRemove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public boolean contains(CharSequence name) {
+        return get(name) != null;
+    }
+
+    @Override
+    public boolean contains(CharSequence name, CharSequence value) {
+        return contains(name, value, false);
+    }
+
+    @Override
+    public boolean contains(CharSequence name, CharSequence value, boolean caseInsensitive) {
+        Iterator<CharSequence> values = valueIterator(name);
+        while (values.hasNext()) {
+            CharSequence next = values.next();
+            if (caseInsensitive ? AsciiString.contentEqualsIgnoreCase(next, value) :
+                    AsciiString.contentEquals(next, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean containsObject(CharSequence name, Object value) {
+        return contains(name, CONVERTER.convertObject(value));
+    }
+
+    @Override
+    public boolean containsBoolean(CharSequence name, boolean value) {
+        return contains(name, CONVERTER.convertBoolean(value));
+    }
+
+    @Override
+    public boolean containsByte(CharSequence name, byte value) {
+        return contains(name, CONVERTER.convertByte(value));
+    }
+
+    @Override
+    public boolean containsChar(CharSequence name, char value) {
+        return contains(name, CONVERTER.convertChar(value));
+    }
+
+    @Override
+    public boolean containsShort(CharSequence name, short value) {
+        return contains(name, CONVERTER.convertShort(value));
+    }
+
+    @Override
+    public boolean containsInt(CharSequence name, int value) {
+        return contains(name, CONVERTER.convertInt(value));
+    }
+
+    @Override
+    public boolean containsLong(CharSequence name, long value) {
+        return contains(name, CONVERTER.convertLong(value));
+    }
+
+    @Override
+    public boolean containsFloat(CharSequence name, float value) {
+        return contains(name, CONVERTER.convertFloat(value));
+    }
+
+    @Override
+    public boolean containsDouble(CharSequence name, double value) {
+        return contains(name, CONVERTER.convertDouble(value));
+    }
+
+    @Override
+    public boolean containsTimeMillis(CharSequence name, long value) {
+        return contains(name, CONVERTER.convertTimeMillis(value));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<CharSequence> names() {
+        if (isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<CharSequence> names = new LinkedHashSet<>(size());
+        for (Map.Entry<CharSequence, CharSequence> entry : this) {
+            names.add(entry.getKey());
+        }
+        return names;
+    }
+
+    @Override
+    public Http3Headers add(CharSequence name, Iterable<? extends CharSequence> values) {
+        for (CharSequence value : values) {
+            add(name, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers add(CharSequence name, CharSequence... values) {
+        for (CharSequence value : values) {
+            add(name, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers addObject(CharSequence name, Object value) {
+        return add(name, CONVERTER.convertObject(value));
+    }
+
+    @Override
+    public Http3Headers addObject(CharSequence name, Iterable<?> values) {
+        for (Object value : values) {
+            addObject(name, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers addObject(CharSequence name, Object... values) {
+        for (Object value : values) {
+            addObject(name, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers addBoolean(CharSequence name, boolean value) {
+        return add(name, CONVERTER.convertBoolean(value));
+    }
+
+    @Override
+    public Http3Headers addByte(CharSequence name, byte value) {
+        return add(name, CONVERTER.convertByte(value));
+    }
+
+    @Override
+    public Http3Headers addChar(CharSequence name, char value) {
+        return add(name, CONVERTER.convertChar(value));
+    }
+
+    @Override
+    public Http3Headers addShort(CharSequence name, short value) {
+        return add(name, CONVERTER.convertShort(value));
+    }
+
+    @Override
+    public Http3Headers addInt(CharSequence name, int value) {
+        return add(name, CONVERTER.convertInt(value));
+    }
+
+    @Override
+    public Http3Headers addLong(CharSequence name, long value) {
+        return add(name, CONVERTER.convertLong(value));
+    }
+
+    @Override
+    public Http3Headers addFloat(CharSequence name, float value) {
+        return add(name, CONVERTER.convertFloat(value));
+    }
+
+    @Override
+    public Http3Headers addDouble(CharSequence name, double value) {
+        return add(name, CONVERTER.convertDouble(value));
+    }
+
+    @Override
+    public Http3Headers addTimeMillis(CharSequence name, long value) {
+        return add(name, CONVERTER.convertTimeMillis(value));
+    }
+
+    @Override
+    public Http3Headers add(Headers<? extends CharSequence, ? extends CharSequence, ?> headers) {
+        if (headers == this) {
+            throw new IllegalArgumentException("can't add to itself.");
+        }
+        for (Map.Entry<? extends CharSequence, ? extends CharSequence> entry : headers) {
+            add(entry.getKey(), entry.getValue());
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers set(CharSequence name, Iterable<? extends CharSequence> values) {
+        remove(name);
+        return add(name, values);
+    }
+
+    @Override
+    public Http3Headers set(CharSequence name, CharSequence... values) {
+        remove(name);
+        return add(name, values);
+    }
+
+    @Override
+    public Http3Headers setObject(CharSequence name, Object value) {
+        return set(name, CONVERTER.convertObject(value));
+    }
+
+    @Override
+    public Http3Headers setObject(CharSequence name, Iterable<?> values) {
+        remove(name);
+        return addObject(name, values);
+    }
+
+    @Override
+    public Http3Headers setObject(CharSequence name, Object... values) {
+        remove(name);
+        return addObject(name, values);
+    }
+
+    @Override
+    public Http3Headers setBoolean(CharSequence name, boolean value) {
+        return set(name, CONVERTER.convertBoolean(value));
+    }
+
+    @Override
+    public Http3Headers setByte(CharSequence name, byte value) {
+        return set(name, CONVERTER.convertByte(value));
+    }
+
+    @Override
+    public Http3Headers setChar(CharSequence name, char value) {
+        return set(name, CONVERTER.convertChar(value));
+    }
+
+    @Override
+    public Http3Headers setShort(CharSequence name, short value) {
+        return set(name, CONVERTER.convertShort(value));
+    }
+
+    @Override
+    public Http3Headers setInt(CharSequence name, int value) {
+        return set(name, CONVERTER.convertInt(value));
+    }
+
+    @Override
+    public Http3Headers setLong(CharSequence name, long value) {
+        return set(name, CONVERTER.convertLong(value));
+    }
+
+    @Override
+    public Http3Headers setFloat(CharSequence name, float value) {
+        return set(name, CONVERTER.convertFloat(value));
+    }
+
+    @Override
+    public Http3Headers setDouble(CharSequence name, double value) {
+        return set(name, CONVERTER.convertDouble(value));
+    }
+
+    @Override
+    public Http3Headers setTimeMillis(CharSequence name, long value) {
+        return set(name, CONVERTER.convertTimeMillis(value));
+    }
+
+    @Override
+    public Http3Headers set(Headers<? extends CharSequence, ? extends CharSequence, ?> headers) {
+        if (headers != this) {
+            clear();
+            add(headers);
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers setAll(Headers<? extends CharSequence, ? extends CharSequence, ?> headers) {
+        if (headers != this) {
+            for (CharSequence name : headers.names()) {
+                remove(name);
+            }
+            add(headers);
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers method(CharSequence value) {
+        return set(PseudoHeaderName.METHOD.value(), value);
+    }
+
+    @Override
+    public Http3Headers scheme(CharSequence value) {
+        return set(PseudoHeaderName.SCHEME.value(), value);
+    }
+
+    @Override
+    public Http3Headers authority(CharSequence value) {
+        return set(PseudoHeaderName.AUTHORITY.value(), value);
+    }
+
+    @Override
+    public Http3Headers path(CharSequence value) {
+        return set(PseudoHeaderName.PATH.value(), value);
+    }
+
+    @Override
+    public Http3Headers status(CharSequence value) {
+        return set(PseudoHeaderName.STATUS.value(), value);
+    }
+
+    @Override
+    public CharSequence method() {
+        return get(PseudoHeaderName.METHOD.value());
+    }
+
+    @Override
+    public CharSequence scheme() {
+        return get(PseudoHeaderName.SCHEME.value());
+    }
+
+    @Override
+    public CharSequence authority() {
+        return get(PseudoHeaderName.AUTHORITY.value());
+    }
+
+    @Override
+    public CharSequence path() {
+        return get(PseudoHeaderName.PATH.value());
+    }
+
+    @Override
+    public CharSequence status() {
+        return get(PseudoHeaderName.STATUS.value());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Http3Headers)) {
+            return false;
+        }
+        Http3Headers other = (Http3Headers) o;
+        if (size() != other.size()) {
+            return false;
+        }
+        for (CharSequence name : names()) {
+            List<CharSequence> values = getAll(name);
+            List<CharSequence> otherValues = other.getAll(name);
+            if (values.size() != otherValues.size()) {
+                return false;
+            }
+            for (int i = 0; i < values.size(); i++) {
+                if (!AsciiString.contentEquals(values.get(i), otherValues.get(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // Computed the same way as DefaultHeaders.hashCode(HashingStrategy) so equal instances of different
+        // implementations have the same hash code.
+        int result = HASH_CODE_SEED;
+        for (CharSequence name : names()) {
+            result = 31 * result + AsciiString.hashCode(name);
+            for (CharSequence value : getAll(name)) {
+                result = 31 * result + AsciiString.hashCode(value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(getClass().getSimpleName()).append('[');
+        String separator = "";
+        for (Map.Entry<CharSequence, CharSequence> entry : this) {
+            sb.append(separator).append(entry.getKey()).append(": ").append(entry.getValue());
+            separator = ", ";
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.AsciiString;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static io.netty.incubator.codec.http3.Http3Headers.PseudoHeaderName.getPseudoHeader;
+import static io.netty.incubator.codec.http3.Http3Headers.PseudoHeaderName.hasPseudoHeaderFormat;
+
+/**
+ * {@link Http3Headers} implementation that stores header names and values in parallel arrays and looks them up by
+ * a linear scan. This is cheaper than {@link DefaultHttp3Headers} for the small number of headers a request or
+ * response usually carries, as no hash table and no entry object per header is needed.
+ * <p>
+ * Pseudo-headers are kept in a fixed slot each and so can only be present once. When header names are validated,
+ * adding a pseudo-header that is already present or that is unknown fails with an
+ * {@link Http3HeadersValidationException}. Otherwise the new value replaces the old one.
+ * <p>
+ * Lookups are case sensitive, the same as for {@link DefaultHttp3Headers}.
+ */
+public final class CompactHttp3Headers extends AbstractHttp3Headers {
+    private static final PseudoHeaderName[] PSEUDO_HEADERS = PseudoHeaderName.values();
+    private static final int DEFAULT_SIZE_HINT = 8;
+
+    private final CharSequence[] pseudoValues = new CharSequence[PSEUDO_HEADERS.length];
+    private final boolean validate;
+    private CharSequence[] names;
+    private CharSequence[] values;
+    private int pseudoSize;
+    private int size;
+
+    /**
+     * Create a new instance which validates header names.
+     */
+    public CompactHttp3Headers() {
+        this(true);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param validate  {@code true} to validate header names, {@code false} otherwise.
+     */
+    public CompactHttp3Headers(boolean validate) {
+        this(validate, DEFAULT_SIZE_HINT);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param validate  {@code true} to validate header names, {@code false} otherwise.
+     * @param sizeHint  the number of non pseudo-headers that can be stored before the arrays need to grow.
+     */
+    public CompactHttp3Headers(boolean validate, int sizeHint) {
+        this.validate = validate;
+        ObjectUtil.checkPositiveOrZero(sizeHint, "sizeHint");
+        names = new CharSequence[sizeHint];
+        values = new CharSequence[sizeHint];
+    }
+
+    private static PseudoHeaderName pseudoHeader(CharSequence name) {
+        return hasPseudoHeaderFormat(name) ? getPseudoHeader(name) : null;
+    }
+
+    @Override
+    public CharSequence get(CharSequence name) {
+        PseudoHeaderName pseudoHeader = pseudoHeader(name);
+        if (pseudoHeader != null) {
+            return pseudoValues[pseudoHeader.ordinal()];
+        }
+        CharSequence[] names = this.names;
+        for (int i = 0; i < size; i++) {
+            if (AsciiString.contentEquals(names[i], name)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Iterator<CharSequence> valueIterator(CharSequence name) {
+        return new ValueIterator(name);
+    }
+
+    @Override
+    public int size() {
+        return pseudoSize + size;
+    }
+
+    @Override
+    public Http3Headers add(CharSequence name, CharSequence value) {
+        ObjectUtil.checkNotNull(value, "value");
+        PseudoHeaderName pseudoHeader = validateName(name);
+        if (pseudoHeader != null) {
+            int index = pseudoHeader.ordinal();
+            if (pseudoValues[index] == null) {
+                pseudoSize++;
+            } else if (validate) {
+                throw new Http3HeadersValidationException(
+                        String.format("Duplicate HTTP/3 pseudo-header '%s' encountered.", name));
+            }
+            pseudoValues[index] = value;
+        } else {
+            add0(name, value);
+        }
+        return this;
+    }
+
+    private void add0(CharSequence name, CharSequence value) {
+        int size = this.size;
+        if (size == names.length) {
+            int newLength = Math.max(DEFAULT_SIZE_HINT, size << 1);
+            names = Arrays.copyOf(names, newLength);
+            values = Arrays.copyOf(values, newLength);
+        }
+        names[size] = name;
+        values[size] = value;
+        this.size = size + 1;
+    }
+
+    @Override
+    public Http3Headers set(CharSequence name, CharSequence value) {
+        ObjectUtil.checkNotNull(value, "value");
+        PseudoHeaderName pseudoHeader = validateName(name);
+        if (pseudoHeader != null) {
+            int index = pseudoHeader.ordinal();
+            if (pseudoValues[index] == null) {
+                pseudoSize++;
+            }
+            pseudoValues[index] = value;
+        } else {
+            remove0(name);
+            add0(name, value);
+        }
+        return this;
+    }
+
+    private PseudoHeaderName validateName(CharSequence name) {
+        if (validate) {
+            DefaultHttp3Headers.HTTP3_NAME_VALIDATOR.validateName(name);
+            if (hasPseudoHeaderFormat(name)) {
+                PseudoHeaderName pseudoHeader = getPseudoHeader(name);
+                if (pseudoHeader == null) {
+                    throw new Http3HeadersValidationException(
+                            String.format("Invalid HTTP/3 pseudo-header '%s' encountered.", name));
+                }
+                return pseudoHeader;
+            }
+            return null;
+        }
+        ObjectUtil.checkNotNull(name, "name");
+        return pseudoHeader(name);
+    }
+
+    @Override
+    public boolean remove(CharSequence name) {
+        PseudoHeaderName pseudoHeader = pseudoHeader(name);
+        if (pseudoHeader != null) {
+            int index = pseudoHeader.ordinal();
+            if (pseudoValues[index] == null) {
+                return false;
+            }
+            pseudoValues[index] = null;
+            pseudoSize--;
+            return true;
+        }
+        return remove0(name);
+    }
+
+    private boolean remove0(CharSequence name) {
+        CharSequence[] names = this.names;
+        CharSequence[] values = this.values;
+        int size = this.size;
+        int newSize = 0;
+        // Compact the arrays in place so the insertion order of the remaining headers is retained.
+        for (int i = 0; i < size; i++) {
+            if (!AsciiString.contentEquals(names[i], name)) {
+                names[newSize] = names[i];
+                values[newSize] = values[i];
+                newSize++;
+            }
+        }
+        if (newSize == size) {
+            return false;
+        }
+        Arrays.fill(names, newSize, size, null);
+        Arrays.fill(values, newSize, size, null);
+        this.size = newSize;
+        return true;
+    }
+
+    private void removeAt(int index) {
+        int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(names, index + 1, names, index, moved);
+            System.arraycopy(values, index + 1, values, index, moved);
+        }
+        size--;
+        names[size] = null;
+        values[size] = null;
+    }
+
+    @Override
+    public Http3Headers clear() {
+        Arrays.fill(pseudoValues, null);
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        pseudoSize = 0;
+        size = 0;
+        return this;
+    }
+
+    @Override
+    public Iterator<Map.Entry<CharSequence, CharSequence>> iterator() {
+        return new EntryIterator();
+    }
+
+    /**
+     * Iterates over all pseudo-headers and then all other headers in insertion order. As for
+     * {@code ReadOnlyHttp2Headers} the iterator itself is the returned entry, so no object is created per header.
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<CharSequence, CharSequence>>,
+            Map.Entry<CharSequence, CharSequence> {
+        // Indexes below PSEUDO_HEADERS.length are pseudo-header slots, the rest are offset indexes into the arrays.
+        private int next = nextPseudoSlot(0);
+        private int current = -1;
+
+        private int nextPseudoSlot(int slot) {
+            for (; slot < PSEUDO_HEADERS.length; slot++) {
+                if (pseudoValues[slot] != null) {
+                    return slot;
+                }
+            }
+            return PSEUDO_HEADERS.length;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < PSEUDO_HEADERS.length || next - PSEUDO_HEADERS.length < size;
+        }
+
+        @Override
+        public Map.Entry<CharSequence, CharSequence> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            next = next < PSEUDO_HEADERS.length ? nextPseudoSlot(next + 1) : next + 1;
+            return this;
+        }
+
+        @Override
+        public void remove() {
+            if (current == -1) {
+                throw new IllegalStateException();
+            }
+            if (current < PSEUDO_HEADERS.length) {
+                pseudoValues[current] = null;
+                pseudoSize--;
+            } else {
+                removeAt(current - PSEUDO_HEADERS.length);
+                next--;
+            }
+            current = -1;
+        }
+
+        @Override
+        public CharSequence getKey() {
+            return current < PSEUDO_HEADERS.length ? PSEUDO_HEADERS[current].value() :
+                    names[current - PSEUDO_HEADERS.length];
+        }
+
+        @Override
+        public CharSequence getValue() {
+            return current < PSEUDO_HEADERS.length ? pseudoValues[current] : values[current - PSEUDO_HEADERS.length];
+        }
+
+        @Override
+        public CharSequence setValue(CharSequence value) {
+            ObjectUtil.checkNotNull(value, "value");
+            CharSequence old = getValue();
+            if (current < PSEUDO_HEADERS.length) {
+                pseudoValues[current] = value;
+            } else {
+                values[current - PSEUDO_HEADERS.length] = value;
+            }
+            return old;
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    private final class ValueIterator implements Iterator<CharSequence> {
+        private final CharSequence name;
+        private final PseudoHeaderName pseudoHeader;
+        private int next;
+        private int current = -1;
+
+        ValueIterator(CharSequence name) {
+            this.name = ObjectUtil.checkNotNull(name, "name");
+            pseudoHeader = pseudoHeader(name);
+            next = pseudoHeader == null ? nextIndex(0) : pseudoValues[pseudoHeader.ordinal()] == null ? -1 : 0;
+        }
+
+        private int nextIndex(int index) {
+            for (; index < size; index++) {
+                if (AsciiString.contentEquals(names[index], name)) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != -1;
+        }
+
+        @Override
+        public CharSequence next() {
+            if (next == -1) {
+                throw new NoSuchElementException();
+            }
+            current = next;
+            if (pseudoHeader != null) {
+                next = -1;
+                return pseudoValues[pseudoHeader.ordinal()];
+            }
+            next = nextIndex(current + 1);
+            return values[current];
+        }
+
+        @Override
+        public void remove() {
+            if (current == -1) {
+                throw new IllegalStateException();
+            }
+            if (pseudoHeader != null) {
+                CompactHttp3Headers.this.remove(name);
+            } else {
+                removeAt(current);
+                if (next != -1) {
+                    next--;
+                }
+            }
+            current = -1;
+        }
+    }
+}
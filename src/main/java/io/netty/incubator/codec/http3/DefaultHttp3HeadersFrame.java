@@ -32,6 +32,17 @@ public final class DefaultHttp3HeadersFrame implements Http3HeadersFrame {
         this.headers = ObjectUtil.checkNotNull(headers, "headers");
     }
 
+    /**
+     * Create a new instance whose headers are the shared {@code template} combined with the per request
+     * {@code overlay}. Neither of them is copied, all changes done via {@link #headers()} are done on the overlay.
+     *
+     * @param template  the headers that are shared.
+     * @param overlay   the headers of this frame only, for example {@code :status} and {@code content-length}.
+     */
+    public DefaultHttp3HeadersFrame(ReadOnlyHttp3Headers template, Http3Headers overlay) {
+        this(new OverlayHttp3Headers(template, overlay));
+    }
+
     @Override
     public Http3Headers headers() {
         return headers;
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+
+import java.util.Objects;
+
+public final class DefaultHttp3PriorityUpdateFrame implements Http3PriorityUpdateFrame {
+    private final boolean push;
+    private final long prioritizedElementId;
+    private final CharSequence priorityFieldValue;
+
+    public DefaultHttp3PriorityUpdateFrame(long streamId, Http3Priority priority) {
+        this(false, streamId, priority.toFieldValue());
+    }
+
+    public DefaultHttp3PriorityUpdateFrame(boolean push, long prioritizedElementId, CharSequence priorityFieldValue) {
+        this.push = push;
+        this.prioritizedElementId = ObjectUtil.checkPositiveOrZero(prioritizedElementId, "prioritizedElementId");
+        this.priorityFieldValue = ObjectUtil.checkNotNull(priorityFieldValue, "priorityFieldValue");
+    }
+
+    @Override
+    public boolean isPush() {
+        return push;
+    }
+
+    @Override
+    public long prioritizedElementId() {
+        return prioritizedElementId;
+    }
+
+    @Override
+    public CharSequence priorityFieldValue() {
+        return priorityFieldValue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        DefaultHttp3PriorityUpdateFrame that = (DefaultHttp3PriorityUpdateFrame) o;
+        return push == that.push && prioritizedElementId == that.prioritizedElementId &&
+                priorityFieldValue.toString().equals(that.priorityFieldValue.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(push, prioritizedElementId, priorityFieldValue.toString());
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(push=" + push + ", prioritizedElementId=" +
+                prioritizedElementId + ", priorityFieldValue=" + priorityFieldValue + ')';
+    }
+}
@@ -15,8 +15,11 @@
  */
 package io.netty.incubator.codec.http3;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.incubator.codec.quic.QuicChannel;
 import io.netty.incubator.codec.quic.QuicClientCodecBuilder;
 import io.netty.incubator.codec.quic.QuicCodecBuilder;
@@ -24,9 +27,21 @@ import io.netty.incubator.codec.quic.QuicServerCodecBuilder;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
 import io.netty.incubator.codec.quic.QuicStreamChannelBootstrap;
 import io.netty.incubator.codec.quic.QuicStreamType;
+import io.netty.util.AsciiString;
 import io.netty.util.AttributeKey;
+import io.netty.util.CharsetUtil;
 import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.PromiseNotifier;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 /**
@@ -45,6 +60,10 @@ public final class Http3 {
 
     private static final AttributeKey<QuicStreamChannel> HTTP3_CONTROL_STREAM_KEY =
             AttributeKey.valueOf(Http3.class, "HTTP3ControlStream");
+    private static final AsciiString EARLY_HINTS_STATUS = AsciiString.cached("103");
+    private static final AsciiString LINK = AsciiString.cached("link");
+    private static final AttributeKey<Boolean> HTTP3_EARLY_DATA_KEY =
+            AttributeKey.valueOf(Http3.class, "HTTP3EarlyData");
 
     /**
      * Returns the local initiated control stream for the HTTP/3 connection.
@@ -59,6 +78,23 @@ public final class Http3 {
         channel.attr(HTTP3_CONTROL_STREAM_KEY).set(controlStreamChannel);
     }
 
+    /**
+     * Returns {@code true} if the request on the given server-side request stream arrived in early data (0-RTT),
+     * before the handshake of the connection was complete. Such a request may have been replayed by an attacker
+     * and so should only be processed if doing so twice does no harm.
+     * See <a href="https://tools.ietf.org/html/rfc8470">Using Early Data in HTTP</a>.
+     *
+     * @param stream    the request stream.
+     * @return          {@code true} if the request arrived in early data, {@code false} otherwise.
+     */
+    public static boolean isEarlyData(QuicStreamChannel stream) {
+        return stream.hasAttr(HTTP3_EARLY_DATA_KEY);
+    }
+
+    static void setEarlyData(QuicStreamChannel stream) {
+        stream.attr(HTTP3_EARLY_DATA_KEY).set(Boolean.TRUE);
+    }
+
     /**
      * Returns a new HTTP/3 request-stream that will use the given {@link ChannelHandler}
      * to dispatch {@link Http3RequestStreamFrame}s too. The needed HTTP/3 is automatically added to the
@@ -71,18 +107,7 @@ public final class Http3 {
      * @return          the {@link Future} that will be notified once the request-stream was opened.
      */
     public static Future<QuicStreamChannel> newRequestStream(QuicChannel channel, ChannelHandler handler) {
-        final Http3RequestStreamInitializer initializer;
-        if (handler instanceof Http3RequestStreamInitializer) {
-            initializer = (Http3RequestStreamInitializer) handler;
-        } else {
-            initializer = new Http3RequestStreamInitializer() {
-                @Override
-                protected void initRequestStream(QuicStreamChannel ch) {
-                    ch.pipeline().addLast(handler);
-                }
-            };
-        }
-        return channel.createStream(QuicStreamType.BIDIRECTIONAL, initializer);
+        return channel.createStream(QuicStreamType.BIDIRECTIONAL, requestStreamHandler(channel, handler));
     }
 
     /**
@@ -97,18 +122,197 @@ public final class Http3 {
      * @return          the {@link QuicStreamChannelBootstrap} that should be used.
      */
     public static QuicStreamChannelBootstrap newRequestStreamBootstrap(QuicChannel channel, ChannelHandler handler) {
-        final Http3RequestStreamInitializer initializer;
+        return channel.newStreamBootstrap().handler(requestStreamHandler(channel, handler))
+                .type(QuicStreamType.BIDIRECTIONAL);
+    }
+
+    private static ChannelHandler requestStreamHandler(QuicChannel channel, ChannelHandler handler) {
         if (handler instanceof Http3RequestStreamInitializer) {
-            initializer = (Http3RequestStreamInitializer) handler;
-        } else {
-            initializer = new Http3RequestStreamInitializer() {
-                @Override
-                protected void initRequestStream(QuicStreamChannel ch) {
-                    ch.pipeline().addLast(handler);
+            return handler;
+        }
+        Http3ConnectionHandler connectionHandler = channel.pipeline().get(Http3ConnectionHandler.class);
+        if (connectionHandler == null) {
+            // Fails once the stream was created, the same as an Http3RequestStreamInitializer would.
+            return new Http3RequestStreamTemplate(handler);
+        }
+        return connectionHandler.requestStreamTemplate(handler);
+    }
+
+    /**
+     * Pushes a response for the request with the given headers to the client. A PUSH_PROMISE frame is written on the
+     * given request stream and a new push stream is opened that will use the given {@link ChannelHandler}. Once the
+     * returned {@link Future} is notified the response must be written to the push stream as
+     * {@link Http3HeadersFrame} and optional {@link Http3DataFrame}s, followed by shutting down the output of the
+     * push stream.
+     *
+     * The returned {@link Future} is failed if the push id limit of the client is reached, or if the client cancelled
+     * the push before the push stream was opened. If the client cancels the push later on the push stream is closed.
+     *
+     * @param requestStream             the request stream on which the push should be promised.
+     * @param promisedRequestHeaders    the headers of the request for which a response is pushed.
+     * @param handler                   the {@link ChannelHandler} to add to the push stream.
+     * @return                          the {@link Future} that will be notified once the push stream was opened.
+     */
+    public static Future<QuicStreamChannel> newPushStream(QuicStreamChannel requestStream,
+                                                          Http3Headers promisedRequestHeaders,
+                                                          ChannelHandler handler) {
+        ObjectUtil.checkNotNull(promisedRequestHeaders, "promisedRequestHeaders");
+        ObjectUtil.checkNotNull(handler, "handler");
+        Http3ConnectionHandler connectionHandler = requestStream.parent().pipeline().get(Http3ConnectionHandler.class);
+        if (connectionHandler == null) {
+            return requestStream.eventLoop().newFailedFuture(new IllegalStateException("Couldn't obtain the " +
+                    StringUtil.simpleClassName(Http3ConnectionHandler.class) + " of the parent Channel"));
+        }
+        if (requestStream.eventLoop().inEventLoop()) {
+            return connectionHandler.newPushStream(requestStream, promisedRequestHeaders, handler);
+        }
+        Promise<QuicStreamChannel> promise = requestStream.eventLoop().newPromise();
+        requestStream.eventLoop().execute(() -> connectionHandler.newPushStream(
+                requestStream, promisedRequestHeaders, handler).addListener(new PromiseNotifier<>(promise)));
+        return promise;
+    }
+
+    /**
+     * Couples reading from the given stream to the writability of the given target, for example the upstream
+     * {@link Channel} to which a request is proxied. Auto-read of the stream is disabled while the target is not
+     * writable, so the peer stops sending once the flow-control window is used up instead of the content being
+     * buffered. The coupling ends once the stream is closed.
+     * <p>
+     * This should not be used together with the demand-driven mode of {@link Http3RequestStreamInboundHandler}, which
+     * controls reading itself.
+     *
+     * @param stream    the {@link QuicStreamChannel} to read from.
+     * @param target    the {@link Channel} to which the content is written, which may also be the stream itself.
+     */
+    public static void readWhileWritable(QuicStreamChannel stream, Channel target) {
+        ObjectUtil.checkNotNull(stream, "stream");
+        ObjectUtil.checkNotNull(target, "target");
+        ChannelHandler handler = new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+                stream.config().setAutoRead(target.isWritable());
+                ctx.fireChannelWritabilityChanged();
+            }
+        };
+        target.pipeline().addLast(handler);
+        stream.config().setAutoRead(target.isWritable());
+        if (target != stream) {
+            stream.closeFuture().addListener(f -> target.eventLoop().execute(() -> {
+                if (target.pipeline().context(handler) != null) {
+                    target.pipeline().remove(handler);
                 }
-            };
+            }));
         }
-        return channel.newStreamBootstrap().handler(initializer).type(QuicStreamType.BIDIRECTIONAL);
+    }
+
+    /**
+     * Shuts down all the given HTTP/3 server connections gracefully, for example all connections that were added to
+     * a {@link io.netty.channel.group.ChannelGroup} once these became active.
+     * See {@link Http3ServerConnectionHandler#shutdownGracefully(long, long, TimeUnit)} for details. Connections
+     * without a {@link Http3ServerConnectionHandler} are closed directly.
+     *
+     * @param channels      the {@link QuicChannel}s of the connections.
+     * @param quietPeriod   the time to wait before the final GOAWAY frame is sent.
+     * @param timeout       the maximum time to wait in total before the connections are closed, even if request
+     *                      streams are still active.
+     * @param unit          the {@link TimeUnit} of {@code quietPeriod} and {@code timeout}.
+     * @return              the {@link Future} that is notified once all connections were closed.
+     */
+    public static Future<Void> shutdownGracefully(Iterable<? extends Channel> channels, long quietPeriod,
+                                                  long timeout, TimeUnit unit) {
+        ObjectUtil.checkNotNull(channels, "channels");
+        List<Future<?>> futures = new ArrayList<>();
+        for (Channel channel : channels) {
+            Http3ServerConnectionHandler handler = channel.pipeline().get(Http3ServerConnectionHandler.class);
+            if (handler == null) {
+                futures.add(channel.close());
+            } else {
+                futures.add(handler.shutdownGracefully(quietPeriod, timeout, unit));
+            }
+        }
+        Promise<Void> promise = GlobalEventExecutor.INSTANCE.newPromise();
+        if (futures.isEmpty()) {
+            return promise.setSuccess(null);
+        }
+        AtomicInteger pending = new AtomicInteger(futures.size());
+        AtomicReference<Throwable> cause = new AtomicReference<>();
+        for (Future<?> future : futures) {
+            future.addListener(f -> {
+                if (!f.isSuccess()) {
+                    cause.compareAndSet(null, f.cause());
+                }
+                if (pending.decrementAndGet() == 0) {
+                    Throwable failure = cause.get();
+                    if (failure == null) {
+                        promise.trySuccess(null);
+                    } else {
+                        promise.tryFailure(failure);
+                    }
+                }
+            });
+        }
+        return promise;
+    }
+
+    /**
+     * Returns a new {@link Http3DataFrame} that is taken from a thread-local pool and returned to it once it was
+     * released. The frame must not be used anymore after it was released.
+     *
+     * Decoding into pooled frames can be enabled by setting the system property
+     * {@code io.netty.incubator.codec.http3.pooledFrames} to {@code true}.
+     *
+     * @param content   the content of the frame.
+     * @return          the pooled frame.
+     */
+    public static Http3DataFrame newPooledDataFrame(ByteBuf content) {
+        return PooledHttp3DataFrame.newInstance(content);
+    }
+
+    /**
+     * Returns a new {@link Http3HeadersFrame} that is taken from a thread-local pool and returned to it once it was
+     * released via {@link io.netty.util.ReferenceCountUtil#release(Object)}. The frame must not be used anymore
+     * after it was released.
+     *
+     * @return  the pooled frame.
+     */
+    public static Http3HeadersFrame newPooledHeadersFrame() {
+        return PooledHttp3HeadersFrame.newInstance();
+    }
+
+    /**
+     * Returns a new {@link Http3HeadersFrame} for a {@code 103 (Early Hints)} informational response that carries a
+     * {@code link} header for each of the given values. It can be written any number of times before the final
+     * response, so the client can start to fetch the linked resources while the final response is still computed.
+     * See <a href="https://tools.ietf.org/html/rfc8297">An HTTP Status Code for Indicating Hints</a>.
+     *
+     * @param links the values of the {@code link} headers, see {@link #preloadLink(CharSequence, CharSequence)}.
+     * @return      the frame.
+     */
+    public static Http3HeadersFrame newEarlyHintsFrame(CharSequence... links) {
+        Http3HeadersFrame frame = new DefaultHttp3HeadersFrame();
+        frame.headers().status(EARLY_HINTS_STATUS);
+        for (CharSequence link : links) {
+            frame.headers().add(LINK, ObjectUtil.checkNotNull(link, "link"));
+        }
+        return frame;
+    }
+
+    /**
+     * Returns the value of a {@code link} header that asks the client to preload the given resource.
+     * See <a href="https://www.w3.org/TR/preload/">Preload</a>.
+     *
+     * @param uri   the URI of the resource.
+     * @param as    the destination of the resource, like {@code style} or {@code script}, or {@code null} if not
+     *              known.
+     * @return      the value of the header.
+     */
+    public static CharSequence preloadLink(CharSequence uri, CharSequence as) {
+        StringBuilder sb = new StringBuilder().append('<').append(ObjectUtil.checkNotNull(uri, "uri"))
+                .append(">; rel=preload");
+        if (as != null) {
+            sb.append("; as=").append(as);
+        }
+        return sb.toString();
     }
 
     /**
@@ -120,6 +324,17 @@ public final class Http3 {
         return H3_PROTOS.clone();
     }
 
+    /**
+     * Returns the supported protocols for H3 as {@link String}s, the most recent draft first.
+     */
+    static List<String> supportedApplicationProtocolIds() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < H3_PROTOS.length; i += H3_PROTOS[i] + 1) {
+            ids.add(0, new String(H3_PROTOS, i + 1, H3_PROTOS[i], CharsetUtil.US_ASCII));
+        }
+        return ids;
+    }
+
     /**
      * <a href="https://tools.ietf.org/html/draft-ietf-quic-http-32#section-6.2">
      *     Minimum number max unidirectional streams</a>.
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.AsciiString;
+import io.netty.util.internal.ObjectUtil;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers which origins can be reached via HTTP/3 and on which endpoints, based on the {@code alt-svc} headers
+ * of their responses, so the next requests to the origin can use HTTP/3 instead of HTTP/1.1 or HTTP/2.
+ * See <a href="https://tools.ietf.org/html/rfc7838">HTTP Alternative Services</a>.
+ * <p>
+ * Only alternatives for the protocols of {@link Http3#supportedApplicationProtocols()} are stored. Each alternative
+ * expires after its {@code ma} parameter, or after 24 hours if it has none. Every {@code alt-svc} header replaces
+ * all alternatives of the origin that were stored before. If the cache is full the least recently used origin is
+ * dropped. The cache can be used from any thread.
+ */
+public final class Http3AltSvcCache {
+    static final long DEFAULT_MAX_AGE_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    private final List<String> protocols = Http3.supportedApplicationProtocolIds();
+    private final int maxOrigins;
+    private final LongSupplier nanoTime;
+    // Guarded by this.
+    private final Map<String, List<Endpoint>> origins;
+
+    /**
+     * Create a new instance.
+     *
+     * @param maxOrigins    the maximum number of origins for which alternatives are stored.
+     */
+    public Http3AltSvcCache(int maxOrigins) {
+        this(maxOrigins, System::nanoTime);
+    }
+
+    Http3AltSvcCache(int maxOrigins, LongSupplier nanoTime) {
+        this.maxOrigins = ObjectUtil.checkPositive(maxOrigins, "maxOrigins");
+        this.nanoTime = nanoTime;
+        origins = new LinkedHashMap<String, List<Endpoint>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Endpoint>> eldest) {
+                return size() > Http3AltSvcCache.this.maxOrigins;
+            }
+        };
+    }
+
+    /**
+     * Updates the alternatives of the given origin with the value of an {@code alt-svc} header that was received
+     * from it.
+     *
+     * @param host      the host of the origin.
+     * @param port      the port of the origin.
+     * @param altSvc    the value of the {@code alt-svc} header.
+     */
+    public void update(String host, int port, CharSequence altSvc) {
+        ObjectUtil.checkNotNull(host, "host");
+        ObjectUtil.checkNotNull(altSvc, "altSvc");
+        String origin = origin(host, port);
+        if (Http3AltSvcHandler.CLEAR.contentEquals(altSvc.toString().trim())) {
+            synchronized (this) {
+                origins.remove(origin);
+            }
+            return;
+        }
+        List<Endpoint> endpoints = parse(host, altSvc.toString(), nanoTime.getAsLong());
+        synchronized (this) {
+            if (endpoints.isEmpty()) {
+                origins.remove(origin);
+            } else {
+                origins.put(origin, endpoints);
+            }
+        }
+    }
+
+    /**
+     * Returns the HTTP/3 endpoints of the given origin that did not expire yet, in the order of preference of the
+     * origin.
+     *
+     * @param host      the host of the origin.
+     * @param port      the port of the origin.
+     * @return          the endpoints, which is empty if the origin is not known to support HTTP/3.
+     */
+    public List<Endpoint> endpoints(String host, int port) {
+        String origin = origin(ObjectUtil.checkNotNull(host, "host"), port);
+        long now = nanoTime.getAsLong();
+        synchronized (this) {
+            List<Endpoint> endpoints = origins.get(origin);
+            if (endpoints == null) {
+                return Collections.emptyList();
+            }
+            for (Iterator<Endpoint> it = endpoints.iterator(); it.hasNext();) {
+                if (it.next().expiresNanos - now <= 0) {
+                    it.remove();
+                }
+            }
+            if (endpoints.isEmpty()) {
+                origins.remove(origin);
+                return Collections.emptyList();
+            }
+            return Collections.unmodifiableList(new ArrayList<>(endpoints));
+        }
+    }
+
+    /**
+     * Returns {@code true} if the given origin is known to support HTTP/3.
+     *
+     * @param host      the host of the origin.
+     * @param port      the port of the origin.
+     * @return          {@code true} if there is at least one endpoint for the origin.
+     */
+    public boolean supportsHttp3(String host, int port) {
+        return !endpoints(host, port).isEmpty();
+    }
+
+    private static String origin(String host, int port) {
+        // Host names are case-insensitive, so the same origin may be written differently.
+        // See https://tools.ietf.org/html/rfc3986#section-3.2.2
+        StringBuilder origin = new StringBuilder(host.length() + 6);
+        for (int i = 0; i < host.length(); i++) {
+            origin.append(AsciiString.toLowerCase(host.charAt(i)));
+        }
+        return origin.append(':').append(port).toString();
+    }
+
+    private List<Endpoint> parse(String originHost, String value, long now) {
+        List<Endpoint> endpoints = new ArrayList<>(2);
+        for (String alternative : split(value, ',')) {
+            List<String> parts = split(alternative, ';');
+            String service = parts.get(0);
+            int idx = service.indexOf('=');
+            if (idx <= 0) {
+                continue;
+            }
+            String protocol = percentDecode(service.substring(0, idx).trim());
+            if (!protocols.contains(protocol)) {
+                continue;
+            }
+            String authority = unquote(service.substring(idx + 1).trim());
+            int portIdx = authority.lastIndexOf(':');
+            if (portIdx < 0 || authority.indexOf(']', portIdx) >= 0) {
+                continue;
+            }
+            int port;
+            try {
+                port = Integer.parseInt(authority.substring(portIdx + 1));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (port <= 0 || port > 65535) {
+                continue;
+            }
+            String host = portIdx == 0 ? originHost : authority.substring(0, portIdx);
+            if (host.startsWith("[") && host.endsWith("]")) {
+                host = host.substring(1, host.length() - 1);
+            }
+            long maxAgeSeconds = DEFAULT_MAX_AGE_SECONDS;
+            for (int i = 1; i < parts.size(); i++) {
+                String parameter = parts.get(i);
+                int eq = parameter.indexOf('=');
+                if (eq > 0 && "ma".equalsIgnoreCase(parameter.substring(0, eq).trim())) {
+                    try {
+                        maxAgeSeconds = Long.parseLong(unquote(parameter.substring(eq + 1).trim()));
+                    } catch (NumberFormatException e) {
+                        // Ignore the invalid parameter and use the default.
+                    }
+                }
+            }
+            if (maxAgeSeconds > 0) {
+                endpoints.add(new Endpoint(protocol, host, port, now + TimeUnit.SECONDS.toNanos(
+                        Math.min(maxAgeSeconds, TimeUnit.NANOSECONDS.toSeconds(Long.MAX_VALUE / 2)))));
+            }
+        }
+        return endpoints;
+    }
+
+    // Splits the value at the given separator, but not within quoted strings.
+    private static List<String> split(String value, char separator) {
+        List<String> parts = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\\' && quoted) {
+                i++;
+            } else if (c == separator && !quoted) {
+                parts.add(value.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        parts.add(value.substring(start).trim());
+        return parts;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() < 2 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length() - 2);
+        for (int i = 1; i < value.length() - 1; i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length() - 1) {
+                c = value.charAt(++i);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    // See https://tools.ietf.org/html/rfc7838#section-3
+    private static String percentDecode(String value) {
+        if (value.indexOf('%') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' && i + 2 < value.length()) {
+                int decoded = Character.digit(value.charAt(i + 1), 16) << 4 |
+                        Character.digit(value.charAt(i + 2), 16);
+                if (decoded >= 0) {
+                    sb.append((char) decoded);
+                    i += 2;
+                    continue;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * An HTTP/3 endpoint of an origin.
+     */
+    public static final class Endpoint {
+        private final String protocol;
+        private final String host;
+        private final int port;
+        private final long expiresNanos;
+
+        Endpoint(String protocol, String host, int port, long expiresNanos) {
+            this.protocol = protocol;
+            this.host = host;
+            this.port = port;
+            this.expiresNanos = expiresNanos;
+        }
+
+        /**
+         * Returns the application protocol that should be negotiated with the endpoint.
+         *
+         * @return the protocol, like {@code h3-29}.
+         */
+        public String protocol() {
+            return protocol;
+        }
+
+        /**
+         * Returns the host of the endpoint.
+         *
+         * @return the host.
+         */
+        public String host() {
+            return host;
+        }
+
+        /**
+         * Returns the UDP port of the endpoint.
+         *
+         * @return the port.
+         */
+        public int port() {
+            return port;
+        }
+
+        /**
+         * Returns the unresolved address of the endpoint, which needs to be resolved before a QUIC connection
+         * is opened to it.
+         *
+         * @return the address.
+         */
+        public InetSocketAddress address() {
+            return InetSocketAddress.createUnresolved(host, port);
+        }
+
+        @Override
+        public String toString() {
+            return protocol + "=\"" + host + ':' + port + '"';
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.util.AsciiString;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Advertises the HTTP/3 endpoint of a server on the responses of its HTTP/1.1 or HTTP/2 endpoint, via the
+ * {@code alt-svc} header, so clients can switch to HTTP/3 for their next requests.
+ * See <a href="https://tools.ietf.org/html/rfc7838">HTTP Alternative Services</a>.
+ * <p>
+ * The header is set on each written {@link HttpResponse}, which also covers HTTP/2 when the HTTP/1.1 objects are
+ * translated, and on each {@link Http3HeadersFrame} that starts a response. All other messages are passed through.
+ * The handler does not keep state, so the same instance can be added to the pipelines of all connections.
+ */
+public final class Http3AltSvcHandler extends ChannelOutboundHandlerAdapter {
+    /**
+     * Tells clients to forget all alternative services of the origin.
+     */
+    public static final String CLEAR = "clear";
+
+    private static final AsciiString ALT_SVC = AsciiString.cached("alt-svc");
+
+    private final String value;
+
+    /**
+     * Create a new instance that advertises the HTTP/3 endpoint on the same host.
+     *
+     * @param port      the UDP port of the HTTP/3 endpoint.
+     * @param maxAge    the time for which clients may use the advertised endpoint.
+     * @param unit      the {@link TimeUnit} of {@code maxAge}.
+     */
+    public Http3AltSvcHandler(int port, long maxAge, TimeUnit unit) {
+        this(null, port, maxAge, unit);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param host      the host of the HTTP/3 endpoint or {@code null} if it is the same host.
+     * @param port      the UDP port of the HTTP/3 endpoint.
+     * @param maxAge    the time for which clients may use the advertised endpoint.
+     * @param unit      the {@link TimeUnit} of {@code maxAge}.
+     */
+    public Http3AltSvcHandler(CharSequence host, int port, long maxAge, TimeUnit unit) {
+        value = altSvcValue(host, port, maxAge, unit);
+    }
+
+    /**
+     * Returns the value of an {@code alt-svc} header that advertises an HTTP/3 endpoint for all protocols that are
+     * returned by {@link Http3#supportedApplicationProtocols()}.
+     *
+     * @param host      the host of the HTTP/3 endpoint or {@code null} if it is the same host.
+     * @param port      the UDP port of the HTTP/3 endpoint.
+     * @param maxAge    the time for which clients may use the advertised endpoint.
+     * @param unit      the {@link TimeUnit} of {@code maxAge}.
+     * @return          the value of the header.
+     */
+    public static String altSvcValue(CharSequence host, int port, long maxAge, TimeUnit unit) {
+        ObjectUtil.checkInRange(port, 1, 65535, "port");
+        long maxAgeSeconds = ObjectUtil.checkNotNull(unit, "unit")
+                .toSeconds(ObjectUtil.checkPositiveOrZero(maxAge, "maxAge"));
+        StringBuilder sb = new StringBuilder();
+        for (String protocol : Http3.supportedApplicationProtocolIds()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(protocol).append("=\"");
+            if (host != null) {
+                sb.append(host);
+            }
+            sb.append(':').append(port).append("\"; ma=").append(maxAgeSeconds);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the value of the {@code alt-svc} header that is added.
+     *
+     * @return the value.
+     */
+    public String altSvcValue() {
+        return value;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (msg instanceof HttpResponse) {
+            ((HttpResponse) msg).headers().set(ALT_SVC, value);
+        } else if (msg instanceof Http3HeadersFrame) {
+            Http3Headers headers = ((Http3HeadersFrame) msg).headers();
+            // Trailers have no status.
+            if (headers.status() != null) {
+                headers.set(ALT_SVC, value);
+            }
+        }
+        ctx.write(msg, promise);
+    }
+
+    /**
+     * Always returns {@code true} as the handler does not keep state.
+     */
+    @Override
+    public boolean isSharable() {
+        return true;
+    }
+}
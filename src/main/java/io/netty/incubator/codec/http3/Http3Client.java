@@ -0,0 +1,587 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.ObjectUtil;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Simple HTTP/3 client that sends a request and notifies a {@link Future} once the response was received, so no
+ * {@link Http3RequestStreamInboundHandler} needs to be written for each request.
+ * <p>
+ * Each request is sent on its own request stream that is either opened on a single {@link QuicChannel} or taken
+ * from a {@link Http3ClientConnectionPool}. If a request does not complete within the configured timeout its
+ * {@link Future} is failed with a {@link TimeoutException} and the request stream is closed.
+ * <p>
+ * If server push is enabled via a {@link Http3PushCache} requests are served from the cache without a round trip
+ * once the server pushed a matching response.
+ * <p>
+ * If requests are sent using a {@link Http3ClientConnectionPool} and the server signals via GOAWAY that a request
+ * was not processed, the request is transparently sent again using another connection of the pool. The same is
+ * done if the server answers with {@code 421 (Misdirected Request)}, for example because the pool reused the
+ * connection for an authority the server is not authoritative for. A request is retried at most
+ * {@value #MAX_RETRIES} times, and never once the response headers were received.
+ * <p>
+ * Requests with an idempotent method that are sent using a {@link Http3ClientConnectionPool} do not wait for the
+ * handshake of a new connection, so they can be sent in early data (0-RTT). If the server answers such a request
+ * with {@code 425 Too Early} it is sent again the same way as a request that was not processed.
+ * <p>
+ * If a {@link Http3HedgePolicy} is used, requests with an idempotent method that did not receive response headers
+ * within the delay of the policy are sent again, preferably using another connection of the pool. The first
+ * response is used and the request stream of the other request is closed.
+ */
+public final class Http3Client {
+    static final int MAX_RETRIES = 2;
+    private static final String MISDIRECTED_REQUEST = "421";
+
+    private final EventExecutor executor;
+    private final StreamOpener streamOpener;
+    private final int maxContentLength;
+    private final long timeoutNanos;
+    private final Http3PushCache pushCache;
+    private final boolean retryUnprocessed;
+    private final Http3HedgePolicy hedgePolicy;
+
+    /**
+     * Create a new instance that sends all requests over the given connection. If the
+     * {@link Http3ClientConnectionHandler} of the connection was created with a {@link Http3PushCache}, pushed
+     * responses are used.
+     *
+     * @param channel           the {@link QuicChannel} of the HTTP/3 connection.
+     * @param maxContentLength  the maximum length of the content of an aggregated response.
+     * @param timeout           the time after which a request is failed if it was not completed yet, or {@code 0} to
+     *                          disable the timeout.
+     * @param unit              the {@link TimeUnit} of {@code timeout}.
+     */
+    public Http3Client(QuicChannel channel, int maxContentLength, long timeout, TimeUnit unit) {
+        this(channel.eventLoop(),
+                (headers, handler, avoid) -> Http3.newRequestStreamBootstrap(channel, handler).create(),
+                pushCache(channel), false, null, maxContentLength, timeout, unit);
+    }
+
+    private static Http3PushCache pushCache(QuicChannel channel) {
+        Http3ConnectionHandler handler = channel.pipeline().get(Http3ConnectionHandler.class);
+        return handler == null ? null : handler.pushCache();
+    }
+
+    /**
+     * Create a new instance that sends all requests to the given peer, using connections of the given pool. The
+     * connection is selected based on the {@link Http3Headers#authority()} of each request.
+     *
+     * @param pool              the {@link Http3ClientConnectionPool} to use.
+     * @param remoteAddress     the address of the peer.
+     * @param maxContentLength  the maximum length of the content of an aggregated response.
+     * @param timeout           the time after which a request is failed if it was not completed yet, or {@code 0} to
+     *                          disable the timeout.
+     * @param unit              the {@link TimeUnit} of {@code timeout}.
+     */
+    public Http3Client(Http3ClientConnectionPool pool, InetSocketAddress remoteAddress,
+                       int maxContentLength, long timeout, TimeUnit unit) {
+        this(pool, remoteAddress, null, maxContentLength, timeout, unit);
+    }
+
+    /**
+     * Create a new instance that sends all requests to the given peer, using connections of the given pool. The
+     * connection is selected based on the {@link Http3Headers#authority()} of each request.
+     *
+     * @param pool              the {@link Http3ClientConnectionPool} to use.
+     * @param remoteAddress     the address of the peer.
+     * @param pushCache         the {@link Http3PushCache} that is used by the {@link Http3ClientConnectionHandler}s of
+     *                          the pool or {@code null} if server push is not enabled.
+     * @param maxContentLength  the maximum length of the content of an aggregated response.
+     * @param timeout           the time after which a request is failed if it was not completed yet, or {@code 0} to
+     *                          disable the timeout.
+     * @param unit              the {@link TimeUnit} of {@code timeout}.
+     */
+    public Http3Client(Http3ClientConnectionPool pool, InetSocketAddress remoteAddress, Http3PushCache pushCache,
+                       int maxContentLength, long timeout, TimeUnit unit) {
+        this(pool, remoteAddress, pushCache, null, maxContentLength, timeout, unit);
+    }
+
+    /**
+     * Create a new instance that sends all requests to the given peer, using connections of the given pool. The
+     * connection is selected based on the {@link Http3Headers#authority()} of each request.
+     *
+     * @param pool              the {@link Http3ClientConnectionPool} to use.
+     * @param remoteAddress     the address of the peer.
+     * @param pushCache         the {@link Http3PushCache} that is used by the {@link Http3ClientConnectionHandler}s of
+     *                          the pool or {@code null} if server push is not enabled.
+     * @param hedgePolicy       the {@link Http3HedgePolicy} that controls when requests with an idempotent method
+     *                          are hedged, or {@code null} if requests should not be hedged.
+     * @param maxContentLength  the maximum length of the content of an aggregated response.
+     * @param timeout           the time after which a request is failed if it was not completed yet, or {@code 0} to
+     *                          disable the timeout.
+     * @param unit              the {@link TimeUnit} of {@code timeout}.
+     */
+    public Http3Client(Http3ClientConnectionPool pool, InetSocketAddress remoteAddress, Http3PushCache pushCache,
+                       Http3HedgePolicy hedgePolicy, int maxContentLength, long timeout, TimeUnit unit) {
+        this(pool.executor(), new StreamOpener() {
+            @Override
+            public Future<QuicStreamChannel> open(Http3Headers headers, ChannelHandler handler, QuicChannel avoid) {
+                CharSequence authority = headers.authority();
+                if (authority == null) {
+                    return pool.executor().newFailedFuture(
+                            new IllegalArgumentException("Request headers without :authority"));
+                }
+                // Idempotent requests can be sent in early data, as it does not matter if they are replayed.
+                return pool.newRequestStream(authority, remoteAddress, handler,
+                        Http3CodecUtils.isIdempotentMethod(headers.method()), avoid);
+            }
+
+            @Override
+            public void misdirected(QuicChannel channel, Http3Headers headers) {
+                pool.misdirected(channel, headers.authority());
+            }
+        }, pushCache, true, hedgePolicy, maxContentLength, timeout, unit);
+        ObjectUtil.checkNotNull(remoteAddress, "remoteAddress");
+    }
+
+    Http3Client(EventExecutor executor, StreamOpener streamOpener, Http3PushCache pushCache,
+                boolean retryUnprocessed, Http3HedgePolicy hedgePolicy, int maxContentLength, long timeout,
+                TimeUnit unit) {
+        this.executor = ObjectUtil.checkNotNull(executor, "executor");
+        this.streamOpener = ObjectUtil.checkNotNull(streamOpener, "streamOpener");
+        this.pushCache = pushCache;
+        this.retryUnprocessed = retryUnprocessed;
+        this.hedgePolicy = hedgePolicy;
+        this.maxContentLength = ObjectUtil.checkPositiveOrZero(maxContentLength, "maxContentLength");
+        this.timeoutNanos = ObjectUtil.checkNotNull(unit, "unit")
+                .toNanos(ObjectUtil.checkPositiveOrZero(timeout, "timeout"));
+    }
+
+    /**
+     * Sends the request and aggregates the response. If the content of the response exceeds the configured maximum
+     * length the returned {@link Future} is failed with a {@link TooLongFrameException}.
+     *
+     * @param headers   the headers of the request.
+     * @param content   the content of the request or {@code null} if there is none. It is released by the client.
+     * @return          the {@link Future} that is notified with the response. The response must be released by
+     *                  the caller.
+     */
+    public Future<Http3FullResponse> request(Http3Headers headers, ByteBuf content) {
+        Http3FullResponse pushed = pushedResponse(headers, content);
+        if (pushed != null) {
+            return executor.newSucceededFuture(pushed);
+        }
+        Promise<Http3FullResponse> responsePromise = executor.newPromise();
+        Http3ResponseAggregator aggregator = new Http3ResponseAggregator(maxContentLength);
+        Promise<Void> promise = executor.newPromise();
+        promise.addListener(f -> {
+            if (f.isSuccess()) {
+                Http3FullResponse response = aggregator.response();
+                if (!responsePromise.trySuccess(response)) {
+                    response.release();
+                }
+            } else {
+                aggregator.release();
+                responsePromise.tryFailure(f.cause());
+            }
+        });
+        responsePromise.addListener(f -> {
+            if (f.isCancelled()) {
+                promise.cancel(false);
+            }
+        });
+        request0(headers, content, aggregator, promise);
+        return responsePromise;
+    }
+
+    /**
+     * Sends the request and notifies the given {@link Http3ResponseListener} about each part of the response as
+     * it is received. The content is not aggregated and so not limited in size.
+     *
+     * @param headers   the headers of the request.
+     * @param content   the content of the request or {@code null} if there is none. It is released by the client.
+     * @param listener  the {@link Http3ResponseListener} to notify.
+     * @return          the {@link Future} that is notified once the response was received completely.
+     */
+    public Future<Void> request(Http3Headers headers, ByteBuf content, Http3ResponseListener listener) {
+        ObjectUtil.checkNotNull(listener, "listener");
+        Promise<Void> promise = executor.newPromise();
+        Http3FullResponse pushed = pushedResponse(headers, content);
+        if (pushed != null) {
+            executor.execute(() -> {
+                try {
+                    listener.onHeaders(pushed.headers());
+                    if (pushed.content().isReadable()) {
+                        listener.onData(pushed.content());
+                    }
+                    if (!pushed.trailers().isEmpty()) {
+                        listener.onTrailers(pushed.trailers());
+                    }
+                    promise.setSuccess(null);
+                } catch (Throwable cause) {
+                    promise.setFailure(cause);
+                } finally {
+                    pushed.release();
+                }
+            });
+            return promise;
+        }
+        request0(headers, content, listener, promise);
+        return promise;
+    }
+
+    private Http3FullResponse pushedResponse(Http3Headers headers, ByteBuf content) {
+        if (pushCache == null) {
+            return null;
+        }
+        Http3FullResponse response = pushCache.poll(ObjectUtil.checkNotNull(headers, "headers"));
+        if (response != null) {
+            ReferenceCountUtil.release(content);
+        }
+        return response;
+    }
+
+    private void request0(Http3Headers headers, ByteBuf content, Http3ResponseListener listener,
+                          Promise<Void> promise) {
+        ObjectUtil.checkNotNull(headers, "headers");
+        if (timeoutNanos > 0) {
+            ScheduledFuture<?> timeoutFuture = executor.schedule(() -> {
+                promise.tryFailure(new TimeoutException("Request not completed within " +
+                        TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms"));
+            }, timeoutNanos, TimeUnit.NANOSECONDS);
+            promise.addListener(f -> timeoutFuture.cancel(false));
+        }
+        // Keep the content until the request completed, as it may need to be sent again.
+        promise.addListener(f -> ReferenceCountUtil.release(content));
+        int retries = retryUnprocessed ? MAX_RETRIES : 0;
+        if (hedgePolicy == null || !Http3CodecUtils.isIdempotentMethod(headers.method())) {
+            attempt(headers, content, listener, promise, retries, null);
+            return;
+        }
+        HedgedRequest hedged = new HedgedRequest(listener, promise);
+        HedgedRequest.Candidate primary = hedged.newCandidate();
+        Future<QuicStreamChannel> primaryStream = attempt(headers, content, primary, primary.promise, retries, null);
+        ScheduledFuture<?> hedgeFuture = executor.schedule(() -> {
+            if (hedged.isUndecided()) {
+                // No response yet, so send a duplicate, preferably using another connection.
+                QuicChannel avoid = primaryStream.isSuccess() ? primaryStream.getNow().parent() : null;
+                HedgedRequest.Candidate hedge = hedged.newCandidate();
+                attempt(headers, content, hedge, hedge.promise, 0, avoid);
+            }
+        }, hedgePolicy.delay(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        promise.addListener(f -> hedgeFuture.cancel(false));
+    }
+
+    private Future<QuicStreamChannel> attempt(Http3Headers headers, ByteBuf content, Http3ResponseListener listener,
+                                              Promise<Void> promise, int retries, QuicChannel avoid) {
+        Promise<Void> attemptPromise = executor.newPromise();
+        ResponseHandler handler = new ResponseHandler(listener, attemptPromise, retries > 0);
+        final Future<QuicStreamChannel> streamFuture;
+        try {
+            streamFuture = streamOpener.open(headers, handler, avoid);
+        } catch (Throwable cause) {
+            promise.tryFailure(cause);
+            return executor.newFailedFuture(cause);
+        }
+        streamFuture.addListener(f -> {
+            if (!f.isSuccess()) {
+                promise.tryFailure(f.cause());
+                return;
+            }
+            QuicStreamChannel stream = (QuicStreamChannel) f.getNow();
+            attemptPromise.addListener(af -> {
+                if (af.isSuccess()) {
+                    promise.trySuccess(null);
+                } else if (retries > 0 && !promise.isDone() && !handler.headersReceived &&
+                        isUnprocessed(stream, af.cause())) {
+                    // The request was not processed by the server, so it is safe to send it again. Either the
+                    // connection received a GOAWAY frame, so a new request stream is opened on another connection,
+                    // or the request was sent in early data and the handshake is complete now, or it was sent on a
+                    // connection that is not authoritative for the request.
+                    if (handler.misdirected) {
+                        streamOpener.misdirected(stream.parent(), headers);
+                    }
+                    stream.close();
+                    attempt(headers, content, listener, promise, retries - 1, null);
+                } else {
+                    promise.tryFailure(af.cause());
+                }
+            });
+            // Close the stream if the request failed, timed out or was cancelled before the response was received.
+            promise.addListener(pf -> {
+                if (!pf.isSuccess()) {
+                    stream.close();
+                }
+            });
+            if (promise.isDone()) {
+                return;
+            }
+            Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame(headers);
+            final ChannelFuture writeFuture;
+            if (content == null || !content.isReadable()) {
+                writeFuture = stream.writeAndFlush(headersFrame);
+            } else {
+                stream.write(headersFrame);
+                writeFuture = stream.writeAndFlush(new DefaultHttp3DataFrame(content.retainedDuplicate()));
+            }
+            writeFuture.addListener(wf -> {
+                if (wf.isSuccess()) {
+                    stream.shutdownOutput();
+                } else {
+                    attemptPromise.tryFailure(wf.cause());
+                }
+            });
+        });
+        return streamFuture;
+    }
+
+    private static boolean isUnprocessed(QuicStreamChannel stream, Throwable cause) {
+        if (cause instanceof Http3Exception &&
+                ((Http3Exception) cause).errorCode() == Http3ErrorCode.H3_REQUEST_REJECTED) {
+            return true;
+        }
+        QuicChannel parent = stream.parent();
+        Http3ConnectionHandler handler = parent == null ? null : parent.pipeline().get(Http3ConnectionHandler.class);
+        return handler != null && handler.isUnprocessedRequestStream(stream.streamId());
+    }
+
+    /**
+     * Opens the request streams.
+     */
+    interface StreamOpener {
+        /**
+         * Opens a new request stream for the request with the given headers.
+         *
+         * @param headers   the headers of the request.
+         * @param handler   the {@link ChannelHandler} to add to the request stream.
+         * @param avoid     the {@link QuicChannel} that should only be used if there is no other connection, or
+         *                  {@code null}.
+         * @return          the {@link Future} that is notified once the stream was opened.
+         */
+        Future<QuicStreamChannel> open(Http3Headers headers, ChannelHandler handler, QuicChannel avoid);
+
+        /**
+         * Called once the request with the given headers was answered with {@code 421 (Misdirected Request)}, so
+         * the connection should not be used for its authority anymore.
+         *
+         * @param channel   the {@link QuicChannel} that is not authoritative.
+         * @param headers   the headers of the request.
+         */
+        default void misdirected(QuicChannel channel, Http3Headers headers) {
+        }
+    }
+
+    /**
+     * A request that is sent more than once. The first candidate that receives response headers wins and is passed
+     * to the {@link Http3ResponseListener}, all other candidates are cancelled, which closes their request streams.
+     */
+    private final class HedgedRequest {
+        private final Http3ResponseListener listener;
+        private final Promise<Void> promise;
+        private final List<Candidate> candidates = new ArrayList<>(2);
+        private Candidate winner;
+        private int running;
+
+        HedgedRequest(Http3ResponseListener listener, Promise<Void> promise) {
+            this.listener = listener;
+            this.promise = promise;
+            promise.addListener(f -> {
+                for (Candidate candidate : candidates) {
+                    candidate.promise.cancel(false);
+                }
+            });
+        }
+
+        boolean isUndecided() {
+            return winner == null && !promise.isDone();
+        }
+
+        Candidate newCandidate() {
+            Candidate candidate = new Candidate();
+            candidates.add(candidate);
+            running++;
+            candidate.promise.addListener(f -> {
+                running--;
+                if (winner == candidate) {
+                    if (f.isSuccess()) {
+                        promise.trySuccess(null);
+                    } else {
+                        promise.tryFailure(f.cause());
+                    }
+                } else if (winner == null && running == 0) {
+                    // All candidates failed before one received a response.
+                    promise.tryFailure(f.cause());
+                }
+            });
+            return candidate;
+        }
+
+        final class Candidate implements Http3ResponseListener {
+            final Promise<Void> promise = executor.newPromise();
+            private final long startNanos = System.nanoTime();
+
+            private boolean claim() {
+                if (winner == null) {
+                    winner = this;
+                    hedgePolicy.record(System.nanoTime() - startNanos);
+                    for (Candidate candidate : candidates) {
+                        if (candidate != this) {
+                            // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.1.2
+                            candidate.promise.tryFailure(new Http3Exception(Http3ErrorCode.H3_REQUEST_CANCELLED,
+                                    "Response received for a hedged request"));
+                        }
+                    }
+                }
+                return winner == this;
+            }
+
+            @Override
+            public void onInformational(Http3Headers headers) throws Exception {
+                if (claim()) {
+                    listener.onInformational(headers);
+                }
+            }
+
+            @Override
+            public void onHeaders(Http3Headers headers) throws Exception {
+                if (claim()) {
+                    listener.onHeaders(headers);
+                }
+            }
+
+            @Override
+            public void onData(ByteBuf content) throws Exception {
+                if (winner == this) {
+                    listener.onData(content);
+                }
+            }
+
+            @Override
+            public void onTrailers(Http3Headers trailers) throws Exception {
+                if (winner == this) {
+                    listener.onTrailers(trailers);
+                }
+            }
+        }
+    }
+
+    private static final class ResponseHandler extends Http3RequestStreamInboundHandler {
+        private final Http3ResponseListener listener;
+        private final Promise<Void> promise;
+        private final boolean retryable;
+        private boolean headersReceived;
+        private boolean misdirected;
+
+        ResponseHandler(Http3ResponseListener listener, Promise<Void> promise, boolean retryable) {
+            this.listener = listener;
+            this.promise = promise;
+            this.retryable = retryable;
+        }
+
+        @Override
+        protected void channelRead(ChannelHandlerContext ctx, Http3HeadersFrame frame, boolean isLast) {
+            try {
+                if (promise.isDone()) {
+                    return;
+                }
+                // The frame is released below, so the headers must outlive it.
+                Http3Headers headers = Http3CodecUtils.headersToKeep(frame);
+                if (headersReceived) {
+                    listener.onTrailers(headers);
+                } else if (retryable &&
+                        AsciiString.contentEquals(Http3EarlyDataHandler.TOO_EARLY, headers.status())) {
+                    // The server did not process the request as it arrived in early data.
+                    // See https://tools.ietf.org/html/rfc8470#section-5.2
+                    promise.tryFailure(new Http3Exception(Http3ErrorCode.H3_REQUEST_REJECTED,
+                            "Request rejected with 425 (Too Early)"));
+                    return;
+                } else if (retryable && AsciiString.contentEquals(MISDIRECTED_REQUEST, headers.status())) {
+                    // The server is not authoritative for the request, so it can be retried on another connection.
+                    // See https://tools.ietf.org/html/rfc7540#section-9.1.2
+                    misdirected = true;
+                    promise.tryFailure(new Http3Exception(Http3ErrorCode.H3_REQUEST_REJECTED,
+                            "Request rejected with 421 (Misdirected Request)"));
+                    return;
+                } else if (Http3CodecUtils.isInformationalResponse(headers)) {
+                    listener.onInformational(headers);
+                } else {
+                    headersReceived = true;
+                    listener.onHeaders(headers);
+                }
+            } catch (Throwable cause) {
+                promise.tryFailure(cause);
+                return;
+            } finally {
+                ReferenceCountUtil.release(frame);
+            }
+            if (isLast) {
+                complete();
+            }
+        }
+
+        @Override
+        protected void channelRead(ChannelHandlerContext ctx, Http3DataFrame frame, boolean isLast) {
+            try {
+                if (promise.isDone()) {
+                    return;
+                }
+                if (frame.content().isReadable()) {
+                    listener.onData(frame.content());
+                }
+            } catch (Throwable cause) {
+                promise.tryFailure(cause);
+                return;
+            } finally {
+                frame.release();
+            }
+            if (isLast) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            if (headersReceived) {
+                promise.trySuccess(null);
+            } else {
+                promise.tryFailure(new Http3Exception(Http3ErrorCode.H3_REQUEST_INCOMPLETE,
+                        "Request stream closed before the final response headers were received"));
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            promise.tryFailure(cause);
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            promise.tryFailure(new ClosedChannelException());
+            ctx.fireChannelInactive();
+        }
+    }
+}
@@ -20,6 +20,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
 
 import java.util.function.LongFunction;
+import java.util.function.Supplier;
 
 public final class Http3ClientConnectionHandler extends Http3ConnectionHandler {
 
@@ -45,7 +46,21 @@ public final class Http3ClientConnectionHandler extends Http3ConnectionHandler {
     public Http3ClientConnectionHandler(ChannelHandler inboundControlStreamHandler,
                                         LongFunction<ChannelHandler> unknownInboundStreamHandlerFactory,
                                         Http3SettingsFrame localSettings) {
-        super(false, inboundControlStreamHandler, unknownInboundStreamHandlerFactory, localSettings);
+        this(builder()
+                .inboundControlStreamHandler(inboundControlStreamHandler)
+                .unknownInboundStreamHandlerFactory(unknownInboundStreamHandlerFactory)
+                .localSettings(localSettings));
+    }
+
+    private Http3ClientConnectionHandler(Builder builder) {
+        super(builder.config);
+    }
+
+    /**
+     * Returns a new {@link Builder} for a {@link Http3ClientConnectionHandler}.
+     */
+    public static Builder builder() {
+        return new Builder();
     }
 
     @Override
@@ -54,4 +69,75 @@ public final class Http3ClientConnectionHandler extends Http3ConnectionHandler {
         Http3CodecUtils.connectionError(ctx, Http3ErrorCode.H3_STREAM_CREATION_ERROR,
                 "Server initiated bidirectional streams are not allowed", true);
     }
+
+    /**
+     * Builder for {@link Http3ClientConnectionHandler}s. All settings are optional.
+     */
+    public static final class Builder {
+        private final Http3ConnectionHandler.Config config = new Http3ConnectionHandler.Config(false);
+
+        Builder() { }
+
+        /**
+         * Sets the {@link ChannelHandler} which will be notified about {@link Http3RequestStreamFrame}s or
+         * {@code null} if the user is not interested in these.
+         */
+        public Builder inboundControlStreamHandler(ChannelHandler inboundControlStreamHandler) {
+            config.inboundControlStreamHandler = inboundControlStreamHandler;
+            return this;
+        }
+
+        /**
+         * Sets the {@link LongFunction} that will provide a custom {@link ChannelHandler} for unknown inbound stream
+         * types or {@code null} if no special handling should be done.
+         */
+        public Builder unknownInboundStreamHandlerFactory(
+                LongFunction<ChannelHandler> unknownInboundStreamHandlerFactory) {
+            config.unknownInboundStreamHandlerFactory = unknownInboundStreamHandlerFactory;
+            return this;
+        }
+
+        /**
+         * Sets the local {@link Http3SettingsFrame} that should be sent to the remote peer or {@code null} if the
+         * default settings should be used.
+         */
+        public Builder localSettings(Http3SettingsFrame localSettings) {
+            config.localSettings = localSettings;
+            return this;
+        }
+
+        /**
+         * Sets the {@link Supplier} of the {@link Http3Headers} into which received field sections are decoded, for
+         * example {@code CompactHttp3Headers::new}, or {@code null} if {@link DefaultHttp3Headers} should be used.
+         */
+        public Builder headersFactory(Supplier<? extends Http3Headers> headersFactory) {
+            config.headersFactory = headersFactory;
+            return this;
+        }
+
+        /**
+         * Sets the {@link Http3PushCache} into which responses pushed by the server are stored or {@code null} if
+         * server push should not be enabled, which is the default. The cache can be shared by multiple connections.
+         */
+        public Builder pushCache(Http3PushCache pushCache) {
+            config.pushCache = pushCache;
+            return this;
+        }
+
+        /**
+         * Sets the {@link Http3MemoryBudget} that limits the number of bytes of partially received frames that are
+         * buffered, usually shared by all connections of the client, or {@code null} if there is no such limit.
+         */
+        public Builder memoryBudget(Http3MemoryBudget memoryBudget) {
+            config.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        /**
+         * Returns a new {@link Http3ClientConnectionHandler}. The {@link Builder} can be used again to create more.
+         */
+        public Http3ClientConnectionHandler build() {
+            return new Http3ClientConnectionHandler(this);
+        }
+    }
 }
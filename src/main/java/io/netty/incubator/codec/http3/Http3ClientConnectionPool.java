@@ -0,0 +1,611 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.internal.ObjectUtil;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+
+/**
+ * Pool of HTTP/3 client connections that multiplexes request streams over as few {@link QuicChannel}s as possible.
+ * <p>
+ * Connections are keyed by the authority and the address of the remote peer. A new connection is only opened when
+ * all connections for a key already carry the maximum number of concurrent request streams. Connections that
+ * received a GOAWAY frame are removed from the pool right away and are closed once their last request stream was
+ * closed. If a connection fails to open another request stream while it still carries others, for example because
+ * the peer allows fewer concurrent streams than configured, it is retired the same way and the request stream is
+ * opened on another connection. Connections without any request stream are closed once they were idle for the
+ * configured time.
+ * <p>
+ * Connections are only reused for another authority if this was explicitly enabled via
+ * {@link Builder#unsafeCoalescingPredicate(BiPredicate)}. This is unsafe, as the pool can not check that the
+ * certificate the peer presented covers the other authority: QUIC does not expose the peer certificate to the pool,
+ * and no server name is sent per connection, so the peer can not select a certificate per authority either. The
+ * predicate alone decides, so it must only be used for peers that are known to serve a single certificate for all
+ * the authorities it allows. If the peer answers a request with {@code 421 (Misdirected Request)} the connection is
+ * not used for that authority anymore.
+ * <p>
+ * All state is only accessed from the {@link EventExecutor} of the {@link Channel} that is used to open the
+ * connections, so the pool can be used from any thread.
+ */
+public final class Http3ClientConnectionPool {
+    private final EventExecutor executor;
+    private final BiFunction<InetSocketAddress, ChannelHandler, Future<QuicChannel>> connector;
+    private final Supplier<? extends Http3ClientConnectionHandler> connectionHandlerFactory;
+    private final int maxStreamsPerConnection;
+    private final long idleTimeoutNanos;
+    private final BiPredicate<String, String> unsafeCoalescingPredicate;
+    private final Map<Key, List<PooledConnection>> connections = new HashMap<>();
+    private boolean closed;
+
+    private Http3ClientConnectionPool(Builder builder) {
+        this.executor = builder.executor;
+        this.connector = builder.connector;
+        this.connectionHandlerFactory = builder.connectionHandlerFactory;
+        this.maxStreamsPerConnection = builder.maxStreamsPerConnection;
+        this.idleTimeoutNanos = builder.idleTimeoutNanos;
+        this.unsafeCoalescingPredicate = builder.unsafeCoalescingPredicate;
+    }
+
+    /**
+     * Returns a new {@link Builder} for a {@link Http3ClientConnectionPool}.
+     *
+     * @param channel   the {@link Channel} which has the QUIC client codec in its pipeline and that is used to open
+     *                  the connections.
+     */
+    public static Builder builder(Channel channel) {
+        ObjectUtil.checkNotNull(channel, "channel");
+        return new Builder(channel.eventLoop(), (address, handler) -> QuicChannel.newBootstrap(channel)
+                .handler(handler).remoteAddress(address).connect());
+    }
+
+    /**
+     * Returns a new HTTP/3 request-stream to the given peer that will use the given {@link ChannelHandler}
+     * to dispatch {@link Http3RequestStreamFrame}s too, the same way as
+     * {@link Http3#newRequestStream(QuicChannel, ChannelHandler)} does. An existing connection is used if possible.
+     *
+     * @param authority         the authority of the requests that will be sent on the stream.
+     * @param remoteAddress     the address of the peer.
+     * @param handler           the {@link ChannelHandler} to add.
+     * @return                  the {@link Future} that will be notified once the request-stream was opened.
+     */
+    public Future<QuicStreamChannel> newRequestStream(CharSequence authority, InetSocketAddress remoteAddress,
+                                                      ChannelHandler handler) {
+        return newRequestStream(authority, remoteAddress, handler, false);
+    }
+
+    /**
+     * Returns a new HTTP/3 request-stream to the given peer that will use the given {@link ChannelHandler}
+     * to dispatch {@link Http3RequestStreamFrame}s too, the same way as
+     * {@link Http3#newRequestStream(QuicChannel, ChannelHandler)} does. An existing connection is used if possible.
+     * <p>
+     * If {@code earlyData} is {@code true} and a new connection is still in the handshake, the stream is opened
+     * right away, so the request is sent in early data (0-RTT) if the QUIC connection resumes a session with early
+     * data enabled. Early data may be replayed, so this should only be used for requests with an idempotent method.
+     *
+     * @param authority         the authority of the requests that will be sent on the stream.
+     * @param remoteAddress     the address of the peer.
+     * @param handler           the {@link ChannelHandler} to add.
+     * @param earlyData         {@code true} if the stream may be used before the handshake is complete.
+     * @return                  the {@link Future} that will be notified once the request-stream was opened.
+     */
+    public Future<QuicStreamChannel> newRequestStream(CharSequence authority, InetSocketAddress remoteAddress,
+                                                      ChannelHandler handler, boolean earlyData) {
+        return newRequestStream(authority, remoteAddress, handler, earlyData, null);
+    }
+
+    /**
+     * Returns a new HTTP/3 request-stream like {@link #newRequestStream(CharSequence, InetSocketAddress,
+     * ChannelHandler, boolean)}, but prefers any other connection over {@code avoid}. It is only used if no other
+     * connection can carry another request stream.
+     */
+    Future<QuicStreamChannel> newRequestStream(CharSequence authority, InetSocketAddress remoteAddress,
+                                               ChannelHandler handler, boolean earlyData, QuicChannel avoid) {
+        Key key = new Key(ObjectUtil.checkNotNull(authority, "authority").toString(),
+                ObjectUtil.checkNotNull(remoteAddress, "remoteAddress"));
+        ObjectUtil.checkNotNull(handler, "handler");
+        Promise<QuicStreamChannel> promise = executor.newPromise();
+        if (executor.inEventLoop()) {
+            newRequestStream0(key, handler, earlyData, avoid, promise);
+        } else {
+            executor.execute(() -> newRequestStream0(key, handler, earlyData, avoid, promise));
+        }
+        return promise;
+    }
+
+    private void newRequestStream0(Key key, ChannelHandler handler, boolean earlyData, QuicChannel avoid,
+                                   Promise<QuicStreamChannel> promise) {
+        if (closed) {
+            promise.setFailure(new IllegalStateException("Http3ClientConnectionPool closed"));
+            return;
+        }
+        List<PooledConnection> list = connections.get(key);
+        PooledConnection connection = null;
+        PooledConnection avoided = null;
+        if (list != null) {
+            for (Iterator<PooledConnection> it = list.iterator(); it.hasNext();) {
+                PooledConnection pooled = it.next();
+                if (pooled.evicted || pooled.isConnectFailed()) {
+                    it.remove();
+                } else if (pooled.isGoAwayReceived()) {
+                    it.remove();
+                    pooled.evict();
+                } else if (pooled.activeStreams < maxStreamsPerConnection && !pooled.isMisdirected(key.authority)) {
+                    if (avoid != null && pooled.isConnection(avoid)) {
+                        avoided = pooled;
+                    } else {
+                        connection = pooled;
+                        break;
+                    }
+                }
+            }
+            if (list.isEmpty()) {
+                connections.remove(key);
+            }
+        }
+        if (connection == null && unsafeCoalescingPredicate != null) {
+            connection = coalescedConnection(key, avoid);
+        }
+        if (connection == null) {
+            connection = avoided;
+        }
+        if (connection == null) {
+            connection = new PooledConnection(key);
+            // The connect attempt may have failed synchronously, in which case the connection is already evicted.
+            if (!connection.evicted) {
+                connections.computeIfAbsent(key, k -> new ArrayList<>(1)).add(connection);
+            }
+        }
+        connection.newRequestStream(handler, earlyData, promise);
+    }
+
+    /**
+     * Returns an established connection that was opened for another authority on the same peer address and that the
+     * predicate considers authoritative for the authority of the given key as well. The certificate of the connection
+     * is not checked, see {@link Builder#unsafeCoalescingPredicate(BiPredicate)}.
+     * See <a href="https://tools.ietf.org/html/draft-ietf-quic-http-32#section-3.4">Connection Reuse</a>.
+     */
+    private PooledConnection coalescedConnection(Key key, QuicChannel avoid) {
+        for (Map.Entry<Key, List<PooledConnection>> entry : connections.entrySet()) {
+            Key other = entry.getKey();
+            if (other.equals(key) || !other.remoteAddress.equals(key.remoteAddress) ||
+                    !unsafeCoalescingPredicate.test(other.authority, key.authority)) {
+                continue;
+            }
+            for (PooledConnection pooled : entry.getValue()) {
+                // Only use connections that completed the handshake, so at least the original authority was verified
+                // if the QUIC codec verifies the peer.
+                if (pooled.connectFuture.isSuccess() && !pooled.isGoAwayReceived() && !pooled.evicted &&
+                        pooled.activeStreams < maxStreamsPerConnection && !pooled.isMisdirected(key.authority) &&
+                        (avoid == null || !pooled.isConnection(avoid))) {
+                    return pooled;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks the given connection as not authoritative for the given authority, as it answered a request with
+     * {@code 421 (Misdirected Request)}. The connection is not used for request streams of the authority anymore.
+     */
+    void misdirected(QuicChannel channel, CharSequence authority) {
+        if (executor.inEventLoop()) {
+            misdirected0(channel, authority.toString());
+        } else {
+            executor.execute(() -> misdirected0(channel, authority.toString()));
+        }
+    }
+
+    private void misdirected0(QuicChannel channel, String authority) {
+        for (List<PooledConnection> list : connections.values()) {
+            for (PooledConnection pooled : list) {
+                if (pooled.isConnection(channel)) {
+                    pooled.addMisdirected(authority);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a {@link BiPredicate} for {@link Builder#unsafeCoalescingPredicate(BiPredicate)} that allows to reuse
+     * the connections of all authorities whose hosts are covered by the given DNS names, like {@code *.netty.io}. A
+     * wildcard only matches a single label.
+     * See <a href="https://tools.ietf.org/html/rfc6125#section-6.4">Matching the DNS Domain Name Portion</a>.
+     * <p>
+     * The names are not checked against the certificate the peer presents, which is not accessible. They must be the
+     * names of the only certificate the peer serves on its addresses, as a request could otherwise be sent to a peer
+     * that is not authoritative for it.
+     *
+     * @param certificateNames  the DNS names of the certificate that is used by the peer.
+     * @return                  the {@link BiPredicate}.
+     */
+    public static BiPredicate<String, String> unsafeCoalesceWithin(String... certificateNames) {
+        List<String> names = new ArrayList<>(certificateNames.length);
+        for (String name : certificateNames) {
+            names.add(ObjectUtil.checkNotNull(name, "certificateName").toLowerCase(Locale.ROOT));
+        }
+        return (authority, otherAuthority) -> isCovered(names, authority) && isCovered(names, otherAuthority);
+    }
+
+    private static boolean isCovered(List<String> names, String authority) {
+        String host = host(authority).toLowerCase(Locale.ROOT);
+        for (String name : names) {
+            if (name.startsWith("*.")) {
+                int dot = host.indexOf('.');
+                if (dot > 0 && host.substring(dot).equals(name.substring(1))) {
+                    return true;
+                }
+            } else if (host.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String host(String authority) {
+        if (authority.startsWith("[")) {
+            int end = authority.indexOf(']');
+            return end < 0 ? authority : authority.substring(1, end);
+        }
+        int idx = authority.lastIndexOf(':');
+        return idx < 0 ? authority : authority.substring(0, idx);
+    }
+
+    /**
+     * Closes all connections of this pool. No new request streams can be opened afterwards.
+     *
+     * @return  the {@link Future} that is notified once the pool was closed.
+     */
+    public Future<Void> close() {
+        Promise<Void> promise = executor.newPromise();
+        if (executor.inEventLoop()) {
+            close0(promise);
+        } else {
+            executor.execute(() -> close0(promise));
+        }
+        return promise;
+    }
+
+    private void close0(Promise<Void> promise) {
+        closed = true;
+        List<PooledConnection> all = new ArrayList<>();
+        for (List<PooledConnection> list : connections.values()) {
+            all.addAll(list);
+        }
+        connections.clear();
+        for (PooledConnection connection : all) {
+            connection.close();
+        }
+        promise.setSuccess(null);
+    }
+
+    /**
+     * Returns the {@link EventExecutor} that is used by this pool.
+     */
+    EventExecutor executor() {
+        return executor;
+    }
+
+    /**
+     * Returns the number of pooled connections for the given authority and peer.
+     */
+    int connections(CharSequence authority, InetSocketAddress remoteAddress) {
+        assert executor.inEventLoop();
+        List<PooledConnection> list = connections.get(new Key(authority.toString(), remoteAddress));
+        return list == null ? 0 : list.size();
+    }
+
+    private void remove(PooledConnection connection) {
+        List<PooledConnection> list = connections.get(connection.key);
+        if (list != null && list.remove(connection) && list.isEmpty()) {
+            connections.remove(connection.key);
+        }
+    }
+
+    private final class PooledConnection {
+        private final Key key;
+        private final Http3ClientConnectionHandler connectionHandler;
+        private final Future<QuicChannel> connectFuture;
+        private int activeStreams;
+        private boolean evicted;
+        private Set<String> misdirectedAuthorities;
+        private ScheduledFuture<?> idleTimeoutFuture;
+
+        PooledConnection(Key key) {
+            this.key = key;
+            connectionHandler = connectionHandlerFactory.get();
+            connectionHandler.goAwayListener(this::goAwayReceived);
+            connectFuture = connector.apply(key.remoteAddress, connectionHandler);
+            connectFuture.addListener(f -> {
+                if (f.isSuccess()) {
+                    QuicChannel channel = (QuicChannel) f.getNow();
+                    channel.closeFuture().addListener(cf -> {
+                        evicted = true;
+                        remove(this);
+                        cancelIdleTimeout();
+                    });
+                    if (evicted && activeStreams == 0) {
+                        // The pool was closed while we were still connecting.
+                        close();
+                    }
+                } else {
+                    evicted = true;
+                    remove(this);
+                }
+            });
+        }
+
+        boolean isMisdirected(String authority) {
+            return misdirectedAuthorities != null && misdirectedAuthorities.contains(authority);
+        }
+
+        void addMisdirected(String authority) {
+            if (misdirectedAuthorities == null) {
+                misdirectedAuthorities = new HashSet<>(2);
+            }
+            misdirectedAuthorities.add(authority);
+        }
+
+        boolean isConnection(QuicChannel channel) {
+            return connectFuture.isSuccess() && connectFuture.getNow() == channel;
+        }
+
+        boolean isConnectFailed() {
+            return connectFuture.isDone() && !connectFuture.isSuccess();
+        }
+
+        boolean isGoAwayReceived() {
+            return connectFuture.isSuccess() && connectionHandler.isGoAwayReceived();
+        }
+
+        void newRequestStream(ChannelHandler handler, boolean earlyData, Promise<QuicStreamChannel> promise) {
+            activeStreams++;
+            cancelIdleTimeout();
+            QuicChannel channel = connectionHandler.channel();
+            if (earlyData && !connectFuture.isDone() && channel != null && channel.isOpen()) {
+                // The handshake is still in progress, open the stream right away so the request can be sent in
+                // early data. If that is not possible we fall back to waiting for the handshake.
+                Http3.newRequestStream(channel, handler).addListener(sf -> {
+                    if (sf.isSuccess()) {
+                        streamOpened((QuicStreamChannel) sf.getNow(), promise);
+                    } else {
+                        connectFuture.addListener(f -> openStream(f, handler, promise));
+                    }
+                });
+                return;
+            }
+            connectFuture.addListener(f -> openStream(f, handler, promise));
+        }
+
+        private void openStream(Future<?> connectFuture, ChannelHandler handler,
+                                Promise<QuicStreamChannel> promise) {
+            if (!connectFuture.isSuccess()) {
+                streamClosed();
+                promise.tryFailure(connectFuture.cause());
+                return;
+            }
+            QuicChannel channel = (QuicChannel) connectFuture.getNow();
+            Http3.newRequestStream(channel, handler).addListener(sf -> {
+                if (sf.isSuccess()) {
+                    streamOpened((QuicStreamChannel) sf.getNow(), promise);
+                } else {
+                    streamClosed();
+                    if (activeStreams > 0) {
+                        // The connection carries other streams, so the peer most likely allows fewer concurrent
+                        // streams than configured. Stop using it and try another connection, which may be a new one.
+                        retire();
+                        newRequestStream0(key, handler, false, channel, promise);
+                    } else {
+                        promise.tryFailure(sf.cause());
+                    }
+                }
+            });
+        }
+
+        private void goAwayReceived() {
+            if (executor.inEventLoop()) {
+                retire();
+            } else {
+                executor.execute(this::retire);
+            }
+        }
+
+        /**
+         * Removes this connection from the pool, so no new request streams are opened on it, and closes it once all
+         * active streams are done.
+         */
+        private void retire() {
+            if (!evicted) {
+                remove(this);
+                evict();
+            }
+        }
+
+        private void streamOpened(QuicStreamChannel streamChannel, Promise<QuicStreamChannel> promise) {
+            streamChannel.closeFuture().addListener(cf -> streamClosed());
+            if (!promise.trySuccess(streamChannel)) {
+                // The promise was cancelled in the meantime.
+                streamChannel.close();
+            }
+        }
+
+        private void streamClosed() {
+            if (--activeStreams == 0) {
+                if (evicted) {
+                    close();
+                } else {
+                    idleTimeoutFuture = executor.schedule(() -> {
+                        idleTimeoutFuture = null;
+                        if (activeStreams == 0) {
+                            remove(this);
+                            close();
+                        }
+                    }, idleTimeoutNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+
+        private void cancelIdleTimeout() {
+            if (idleTimeoutFuture != null) {
+                idleTimeoutFuture.cancel(false);
+                idleTimeoutFuture = null;
+            }
+        }
+
+        /**
+         * Stop using this connection for new request streams and close it once all active streams are done.
+         */
+        void evict() {
+            evicted = true;
+            if (activeStreams == 0) {
+                close();
+            }
+        }
+
+        void close() {
+            evicted = true;
+            cancelIdleTimeout();
+            if (connectFuture.isSuccess()) {
+                QuicChannel channel = (QuicChannel) connectFuture.getNow();
+                if (channel.isOpen()) {
+                    channel.close(true, Http3ErrorCode.H3_NO_ERROR.code, Unpooled.EMPTY_BUFFER);
+                }
+            } else {
+                connectFuture.cancel(false);
+            }
+        }
+    }
+
+    private static final class Key {
+        private final String authority;
+        private final InetSocketAddress remoteAddress;
+
+        Key(String authority, InetSocketAddress remoteAddress) {
+            this.authority = authority;
+            this.remoteAddress = remoteAddress;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return authority.equals(key.authority) && remoteAddress.equals(key.remoteAddress);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * authority.hashCode() + remoteAddress.hashCode();
+        }
+    }
+
+    /**
+     * Builder for {@link Http3ClientConnectionPool}s. All settings are optional.
+     */
+    public static final class Builder {
+        private final EventExecutor executor;
+        private final BiFunction<InetSocketAddress, ChannelHandler, Future<QuicChannel>> connector;
+        private Supplier<? extends Http3ClientConnectionHandler> connectionHandlerFactory =
+                Http3ClientConnectionHandler::new;
+        private int maxStreamsPerConnection = 100;
+        private long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(60);
+        private BiPredicate<String, String> unsafeCoalescingPredicate;
+
+        Builder(EventExecutor executor, BiFunction<InetSocketAddress, ChannelHandler, Future<QuicChannel>> connector) {
+            this.executor = ObjectUtil.checkNotNull(executor, "executor");
+            this.connector = ObjectUtil.checkNotNull(connector, "connector");
+        }
+
+        /**
+         * Sets the {@link Supplier} of the {@link Http3ClientConnectionHandler} for each new connection. By default
+         * a {@link Http3ClientConnectionHandler} with the default settings is used.
+         */
+        public Builder connectionHandlerFactory(
+                Supplier<? extends Http3ClientConnectionHandler> connectionHandlerFactory) {
+            this.connectionHandlerFactory = ObjectUtil.checkNotNull(
+                    connectionHandlerFactory, "connectionHandlerFactory");
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of concurrent request streams per connection, {@code 100} by default. This should
+         * not be greater than the number of bidirectional streams the peers allow.
+         */
+        public Builder maxStreamsPerConnection(int maxStreamsPerConnection) {
+            this.maxStreamsPerConnection = ObjectUtil.checkPositive(
+                    maxStreamsPerConnection, "maxStreamsPerConnection");
+            return this;
+        }
+
+        /**
+         * Sets the time after which a connection without request streams is closed, {@code 60} seconds by default.
+         */
+        public Builder idleTimeout(long idleTimeout, TimeUnit unit) {
+            this.idleTimeoutNanos = ObjectUtil.checkNotNull(unit, "unit")
+                    .toNanos(ObjectUtil.checkPositive(idleTimeout, "idleTimeout"));
+            return this;
+        }
+
+        /**
+         * Sets the {@link BiPredicate} that is called with the authority a connection was opened for and another
+         * authority for the same peer address, and returns {@code true} if the connection may be reused for the
+         * other authority, or {@code null} if connections should never be reused across authorities, which is the
+         * default.
+         * <p>
+         * This is unsafe: the certificate the peer presented can not be checked for the other authority, as the
+         * QUIC API does not expose it, and no server name is sent per connection. The predicate must only allow
+         * authorities that the peer is known to be authoritative for. See {@link #unsafeCoalesceWithin(String...)}.
+         */
+        public Builder unsafeCoalescingPredicate(BiPredicate<String, String> unsafeCoalescingPredicate) {
+            this.unsafeCoalescingPredicate = unsafeCoalescingPredicate;
+            return this;
+        }
+
+        /**
+         * Returns a new {@link Http3ClientConnectionPool}. The {@link Builder} can be used again to create more.
+         */
+        public Http3ClientConnectionPool build() {
+            return new Http3ClientConnectionPool(this);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Keeps track of the <a href="https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.4">server pushes</a>
+ * of a client connection and stores the pushed responses in a {@link Http3PushCache}.
+ * <p>
+ * A push is complete once the {@code PUSH_PROMISE} was received on a request stream and the response was received on
+ * the matching push stream, which may happen in any order. Every time a push is completed or cancelled a new
+ * {@code MAX_PUSH_ID} is sent, so the server can always have {@link Http3PushCache#maxEntries()} pushes in flight.
+ * <p>
+ * All methods must be called from the event loop of the connection.
+ */
+final class Http3ClientPushManager implements Http3PushManager {
+    private final Http3PushCache cache;
+    private final int maxConcurrentPushes;
+    // Promised requests for which the push stream was not received completely yet.
+    private final Map<Long, Http3Headers> promises = new HashMap<>();
+    // Pushed responses for which the PUSH_PROMISE was not received yet.
+    private final Map<Long, Http3FullResponse> responses = new HashMap<>();
+    // Pushes that were cancelled but for which the push stream may still be received.
+    private final TreeSet<Long> cancelled = new TreeSet<>();
+    private QuicStreamChannel controlStream;
+    private long maxPushId = -1;
+
+    Http3ClientPushManager(Http3PushCache cache) {
+        this.cache = cache;
+        maxConcurrentPushes = cache.maxEntries();
+    }
+
+    Http3PushCache cache() {
+        return cache;
+    }
+
+    /**
+     * Called once the local control stream was created, announces the initial {@code MAX_PUSH_ID}.
+     */
+    void controlStreamCreated(QuicStreamChannel controlStream) {
+        this.controlStream = controlStream;
+        grant(maxConcurrentPushes);
+    }
+
+    private void grant(int pushes) {
+        maxPushId += pushes;
+        if (controlStream != null) {
+            controlStream.writeAndFlush(new DefaultHttp3MaxPushIdFrame(maxPushId));
+        }
+    }
+
+    private void cancel(long pushId) {
+        promises.remove(pushId);
+        ReferenceCountUtil.release(responses.remove(pushId));
+        cancelled.add(pushId);
+        if (cancelled.size() > maxConcurrentPushes) {
+            // The server should not open a push stream for a cancelled push anyway, just make sure we don't keep
+            // track of old push ids forever.
+            cancelled.pollFirst();
+        }
+        if (controlStream != null) {
+            controlStream.writeAndFlush(new DefaultHttp3CancelPushFrame(pushId));
+        }
+        grant(1);
+    }
+
+    private void complete(Http3Headers promisedRequestHeaders, Http3FullResponse response) {
+        cache.put(promisedRequestHeaders, response);
+        grant(1);
+    }
+
+    /**
+     * Called once a {@code PUSH_PROMISE} was received on a request stream.
+     *
+     * @return {@code false} if the push id is not valid and the connection was closed.
+     */
+    boolean pushPromiseReceived(ChannelHandlerContext ctx, Http3PushPromiseFrame frame) {
+        long pushId = frame.id();
+        if (pushId > maxPushId) {
+            Http3CodecUtils.connectionError(ctx, Http3ErrorCode.H3_ID_ERROR,
+                    "Received PUSH_PROMISE with id " + pushId + " while the max push id is " + maxPushId + '.', true);
+            return false;
+        }
+        if (cancelled.contains(pushId) || promises.containsKey(pushId)) {
+            // The same push may be promised on multiple request streams.
+            return true;
+        }
+        Http3Headers headers = frame.headers();
+        if (!Http3PushCache.isCacheable(headers) || cache.contains(headers)) {
+            // Nobody will ever use this push.
+            cancel(pushId);
+            return true;
+        }
+        Http3FullResponse response = responses.remove(pushId);
+        if (response == null) {
+            promises.put(pushId, headers);
+        } else {
+            complete(headers, response);
+        }
+        return true;
+    }
+
+    @Override
+    public void maxPushIdReceived(long maxPushId) {
+        // MAX_PUSH_ID frames are only sent by clients, Http3ControlStreamInboundHandler rejects these already.
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public boolean cancelPushReceived(ChannelHandlerContext ctx, long pushId, boolean fireException) {
+        if (pushId > maxPushId) {
+            Http3CodecUtils.connectionError(ctx, Http3ErrorCode.H3_ID_ERROR,
+                    "Received CANCEL_PUSH with id " + pushId + " while the max push id is " + maxPushId + '.',
+                    fireException);
+            return false;
+        }
+        boolean known = promises.remove(pushId) != null;
+        Http3FullResponse response = responses.remove(pushId);
+        if (response != null) {
+            known = true;
+            response.release();
+        }
+        if (cancelled.add(pushId) && known) {
+            grant(1);
+        }
+        return true;
+    }
+
+    private boolean isCancelled(long pushId) {
+        return cancelled.contains(pushId);
+    }
+
+    private void responseReceived(long pushId, Http3FullResponse response) {
+        if (isCancelled(pushId)) {
+            response.release();
+            return;
+        }
+        Http3Headers headers = promises.remove(pushId);
+        if (headers != null) {
+            complete(headers, response);
+        } else if (responses.size() < maxConcurrentPushes) {
+            responses.put(pushId, response);
+        } else {
+            response.release();
+            cancel(pushId);
+        }
+    }
+
+    /**
+     * Returns a new handler for the push stream with the given id, which expects {@link Http3PushStreamFrame}s.
+     */
+    ChannelInboundHandlerAdapter newPushStreamHandler(long pushId) {
+        return new PushStreamHandler(pushId);
+    }
+
+    private final class PushStreamHandler extends ChannelInboundHandlerAdapter {
+        private final long pushId;
+        private final Http3ResponseAggregator aggregator;
+        private boolean done;
+
+        PushStreamHandler(long pushId) {
+            this.pushId = pushId;
+            aggregator = new Http3ResponseAggregator(cache.maxContentLength());
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            if (isCancelled(pushId)) {
+                // We are not interested in this push anymore.
+                done = true;
+                ctx.close();
+            }
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (done) {
+                ReferenceCountUtil.release(msg);
+                return;
+            }
+            if (isCancelled(pushId)) {
+                ReferenceCountUtil.release(msg);
+                fail(ctx);
+                return;
+            }
+            try {
+                if (msg instanceof Http3HeadersFrame) {
+                    // The frame is released below, so the headers must outlive it.
+                    Http3Headers headers = Http3CodecUtils.headersToKeep((Http3HeadersFrame) msg);
+                    if (aggregator.hasHeaders()) {
+                        aggregator.onTrailers(headers);
+                    } else if (!Http3CodecUtils.isInformationalResponse(headers)) {
+                        aggregator.onHeaders(headers);
+                    }
+                } else if (msg instanceof Http3DataFrame) {
+                    if (!aggregator.hasHeaders()) {
+                        Http3CodecUtils.connectionError(ctx, Http3ErrorCode.H3_FRAME_UNEXPECTED,
+                                "DATA frame received before HEADERS frame on push stream.", false);
+                        done = true;
+                        aggregator.release();
+                        return;
+                    }
+                    aggregator.onData(((Http3DataFrame) msg).content());
+                }
+            } catch (TooLongFrameException e) {
+                fail(ctx);
+                cancel(pushId);
+                return;
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+            if (((QuicStreamChannel) ctx.channel()).isInputShutdown()) {
+                pushStreamComplete();
+            }
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            if (evt == ChannelInputShutdownEvent.INSTANCE) {
+                pushStreamComplete();
+            }
+            ctx.fireUserEventTriggered(evt);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (!done) {
+                // The push stream was reset before it was complete.
+                done = true;
+                aggregator.release();
+                if (!isCancelled(pushId)) {
+                    cancel(pushId);
+                }
+            }
+        }
+
+        private void pushStreamComplete() {
+            if (done) {
+                return;
+            }
+            done = true;
+            if (aggregator.hasHeaders()) {
+                responseReceived(pushId, aggregator.response());
+            } else if (!isCancelled(pushId)) {
+                // The push stream did not contain a complete response.
+                cancel(pushId);
+            }
+        }
+
+        private void fail(ChannelHandlerContext ctx) {
+            done = true;
+            aggregator.release();
+            ctx.close();
+        }
+    }
+}
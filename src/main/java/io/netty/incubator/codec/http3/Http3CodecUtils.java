@@ -20,12 +20,26 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.util.AsciiString;
 import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCounted;
 import io.netty.util.internal.ObjectUtil;
 
+import java.util.function.Supplier;
+
 final class Http3CodecUtils {
+    private static final AsciiString GET = AsciiString.cached("GET");
+    private static final AsciiString HEAD = AsciiString.cached("HEAD");
+    private static final AsciiString OPTIONS = AsciiString.cached("OPTIONS");
+    private static final AsciiString TRACE = AsciiString.cached("TRACE");
+    private static final AsciiString PUT = AsciiString.cached("PUT");
+    private static final AsciiString DELETE = AsciiString.cached("DELETE");
+
     static final long DEFAULT_MAX_HEADER_LIST_SIZE = 0xffffffffL;
 
+    // Shared so pooled HEADERS frames can tell if their headers were created by the factory that is in use.
+    static final Supplier<Http3Headers> DEFAULT_HEADERS_FACTORY = DefaultHttp3Headers::new;
+
     // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-7.2.8
     static final long MIN_RESERVED_FRAME_TYPE = 0x1f * 1 + 0x21;
     static final long MAX_RESERVED_FRAME_TYPE = 0x1f * (long) Integer.MAX_VALUE + 0x21;
@@ -39,6 +53,10 @@ final class Http3CodecUtils {
     static final int HTTP3_GO_AWAY_FRAME_TYPE = 0x7;
     static final int HTTP3_MAX_PUSH_ID_FRAME_TYPE = 0xd;
 
+    // See https://www.rfc-editor.org/rfc/rfc9218.html#section-7.2
+    static final int HTTP3_PRIORITY_UPDATE_REQUEST_FRAME_TYPE = 0xf0700;
+    static final int HTTP3_PRIORITY_UPDATE_PUSH_FRAME_TYPE = 0xf0701;
+
     static final int HTTP3_CONTROL_STREAM_TYPE = 0x00;
     static final int HTTP3_PUSH_STREAM_TYPE = 0x01;
     static final int HTTP3_QPACK_ENCODER_STREAM_TYPE = 0x02;
@@ -122,32 +140,26 @@ final class Http3CodecUtils {
      *     Variable-Length Integer Encoding</a>.
      */
     static void writeVariableLengthInteger(ByteBuf out, long value, int numBytes) {
-        int writerIndex = out.writerIndex();
+        // The 2 bit length prefix is merged into the value before writing so we only need a single store and never
+        // have to read back what we just wrote.
         switch (numBytes) {
             case 1:
                 out.writeByte((byte) value);
                 break;
             case 2:
-                out.writeShort((short) value);
-                encodeLengthIntoBuffer(out, writerIndex, (byte) 0x40);
+                out.writeShort((short) (value | 0x4000));
                 break;
             case 4:
-                out.writeInt((int) value);
-                encodeLengthIntoBuffer(out, writerIndex, (byte) 0x80);
+                out.writeInt((int) (value | 0x80000000L));
                 break;
             case 8:
-                out.writeLong(value);
-                encodeLengthIntoBuffer(out, writerIndex, (byte) 0xc0);
+                out.writeLong(value | 0xc000000000000000L);
                 break;
             default:
                 throw new IllegalArgumentException();
         }
     }
 
-    private static void encodeLengthIntoBuffer(ByteBuf out, int index, byte b) {
-        out.setByte(index, out.getByte(index) | b);
-    }
-
     /**
      * Read the variable length integer from the {@link ByteBuf}.
      *
@@ -170,23 +182,60 @@ final class Http3CodecUtils {
     }
 
     /**
-     * Returns the number of bytes that were encoded into the byte for a variable length integer to read.
+     * Read the variable length integer from the {@link ByteBuf} or return {@code -1} if not enough bytes are readable
+     * yet. In this case the reader index is not changed.
      *
      * See <a href="https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-16">
      *     Variable-Length Integer Encoding </a>
      */
-     static int numBytesForVariableLengthInteger(byte b) {
-        byte val = (byte) (b >> 6);
-        if ((val & 1) != 0) {
-            if ((val & 2) != 0) {
-                return 8;
+    static long readVariableLengthInteger(ByteBuf in) {
+        int readerIndex = in.readerIndex();
+        int readable = in.writerIndex() - readerIndex;
+        if (readable >= 8) {
+            // Load 8 bytes at once which is enough for every possible length and extract the value from it.
+            // We still switch on the 2 bit length prefix as this allows the CPU to predict the length and so
+            // continue with the next read without waiting for the load to complete.
+            long word = in.getLong(readerIndex);
+            switch ((int) (word >>> 62)) {
+                case 0:
+                    in.readerIndex(readerIndex + 1);
+                    return word >>> 56;
+                case 1:
+                    in.readerIndex(readerIndex + 2);
+                    return (word >>> 48) & 0x3fff;
+                case 2:
+                    in.readerIndex(readerIndex + 4);
+                    return (word >>> 32) & 0x3fffffff;
+                default:
+                    in.readerIndex(readerIndex + 8);
+                    return word & 0x3fffffffffffffffL;
             }
-            return 2;
         }
-        if ((val & 2) != 0) {
-            return 4;
+        return readVariableLengthIntegerSlow(in, readerIndex, readable);
+    }
+
+    // Kept out of readVariableLengthInteger(ByteBuf) so the fast path stays small enough to be inlined.
+    private static long readVariableLengthIntegerSlow(ByteBuf in, int readerIndex, int readable) {
+        if (readable == 0) {
+            return -1;
         }
-        return 1;
+        // Not enough bytes to do a single 8 byte load, fallback to load exactly what we need.
+        int len = numBytesForVariableLengthInteger(in.getByte(readerIndex));
+        if (readable < len) {
+            return -1;
+        }
+        return readVariableLengthInteger(in, len);
+    }
+
+    /**
+     * Returns the number of bytes that were encoded into the byte for a variable length integer to read.
+     *
+     * See <a href="https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-16">
+     *     Variable-Length Integer Encoding </a>
+     */
+    static int numBytesForVariableLengthInteger(byte b) {
+        // The 2 most significant bits are the base-2 logarithm of the length.
+        return 1 << ((b & 0xff) >>> 6);
     }
 
     static void criticalStreamClosed(ChannelHandlerContext ctx) {
@@ -245,6 +294,39 @@ final class Http3CodecUtils {
         quicChannel.close(true, errorCode.code, buffer);
     }
 
+    /**
+     * Returns {@code true} if a request with the given method can be sent again without changing its result, which
+     * is what makes it safe to send the request in early data.
+     * See <a href="https://tools.ietf.org/html/rfc7231#section-4.2.2">Idempotent Methods</a>.
+     */
+    static boolean isIdempotentMethod(CharSequence method) {
+        return method != null && (GET.contentEquals(method) || HEAD.contentEquals(method) ||
+                OPTIONS.contentEquals(method) || TRACE.contentEquals(method) || PUT.contentEquals(method) ||
+                DELETE.contentEquals(method));
+    }
+
+    /**
+     * Returns {@code true} if the given headers belong to an informational (1xx) response, which may be followed by
+     * more informational responses and must be followed by the final response.
+     */
+    static boolean isInformationalResponse(Http3Headers headers) {
+        CharSequence status = headers.status();
+        return status != null && status.length() == 3 && status.charAt(0) == '1';
+    }
+
+    /**
+     * Returns the headers of the given frame in a form that can be kept after the frame was released. Pooled frames
+     * reuse their headers once released, so these are copied.
+     */
+    static Http3Headers headersToKeep(Http3HeadersFrame frame) {
+        if (frame instanceof ReferenceCounted) {
+            Http3Headers headers = new DefaultHttp3Headers(false);
+            headers.add(frame.headers());
+            return headers;
+        }
+        return frame.headers();
+    }
+
     static void readIfNoAutoRead(ChannelHandlerContext ctx) {
         if (!ctx.channel().config().isAutoRead()) {
             ctx.read();
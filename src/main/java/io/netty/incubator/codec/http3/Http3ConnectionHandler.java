@@ -21,7 +21,12 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.incubator.codec.quic.QuicChannel;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
 import io.netty.incubator.codec.quic.QuicStreamType;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+import io.netty.util.concurrent.Future;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.LongFunction;
 import java.util.function.Supplier;
 
@@ -30,27 +35,35 @@ import java.util.function.Supplier;
  */
 public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapter {
     private final Supplier<Http3FrameCodec> codecSupplier;
+    private final QpackDecoder qpackDecoder;
+    private final long maxFieldSectionSize;
+    private final Http3FrameDecoder.Config decoderConfig;
+    private final Http3FrameEncoder requestStreamEncoder;
     private final LongFunction<ChannelHandler> unknownInboundStreamHandlerFactory;
     private final Http3ControlStreamInboundHandler localControlStreamHandler;
     private final Http3ControlStreamOutboundHandler remoteControlStreamHandler;
+    private final Http3ClientPushManager clientPushManager;
+    private final Http3ServerPushManager serverPushManager;
+    private final Http3PriorityScheduler priorityScheduler;
+    private final LongObjectMap<QuicStreamChannel> localRequestStreams;
+    // Usually all request streams of a connection are created with the same handler, so the template is reused.
+    private Http3RequestStreamTemplate requestStreamTemplate;
     private boolean controlStreamCreationInProgress;
+    private ChannelHandlerContext ctx;
+    private QuicChannel channel;
+    // Set by the Http3ClientConnectionPool that owns the connection.
+    private Runnable goAwayListener;
 
     /**
      * Create a new instance.
-     * @param server                                {@code true} if server-side, {@code false} otherwise.
-     * @param inboundControlStreamHandler           the {@link ChannelHandler} which will be notified about
-     *                                              {@link Http3RequestStreamFrame}s or {@code null} if the user is not
-     *                                              interested in these.
-     * @param unknownInboundStreamHandlerFactory    the {@link LongFunction} that will provide a custom
-     *                                              {@link ChannelHandler} for unknown inbound stream types or
-     *                                              {@code null} if no special handling should be done.
-     * @param localSettings                         the local {@link Http3SettingsFrame} that should be sent to the
-     *                                              remote peer or {@code null} if the default settings should be used.
+     * @param config    the {@link Config} that holds the settings of the handler.
      */
-    Http3ConnectionHandler(boolean server, ChannelHandler inboundControlStreamHandler,
-                           LongFunction<ChannelHandler> unknownInboundStreamHandlerFactory,
-                           Http3SettingsFrame localSettings) {
-        this.unknownInboundStreamHandlerFactory = unknownInboundStreamHandlerFactory;
+    Http3ConnectionHandler(Config config) {
+        boolean server = config.server;
+        Http3SettingsFrame localSettings = config.localSettings;
+        Http3PushCache pushCache = config.pushCache;
+        ChannelHandler inboundControlStreamHandler = config.inboundControlStreamHandler;
+        this.unknownInboundStreamHandlerFactory = config.unknownInboundStreamHandlerFactory;
         if (localSettings == null) {
             localSettings = new DefaultHttp3SettingsFrame();
         } else {
@@ -64,8 +77,34 @@ public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapte
         // As we not support the dynamic table at the moment lets override whatever the user specified and set
         // the capacity to 0.
         localSettings.put(Http3SettingsFrame.HTTP3_SETTINGS_QPACK_MAX_TABLE_CAPACITY, 0L);
-        codecSupplier = Http3FrameCodec.newSupplier(new QpackDecoder(), maxFieldSectionSize, new QpackEncoder());
-        localControlStreamHandler = new Http3ControlStreamInboundHandler(server, inboundControlStreamHandler);
+        qpackDecoder = new QpackDecoder();
+        QpackEncoder qpackEncoder = new QpackEncoder();
+        this.maxFieldSectionSize = maxFieldSectionSize;
+        decoderConfig = new Http3FrameDecoder.Config();
+        if (config.headersFactory != null) {
+            decoderConfig.headersFactory = config.headersFactory;
+        }
+        // One account for all streams of the connection, as the budget limits what a connection buffers.
+        decoderConfig.memoryAccount = config.memoryBudget == null ? null : config.memoryBudget.newAccount();
+        codecSupplier = Http3FrameCodec.newSupplier(qpackDecoder, maxFieldSectionSize, qpackEncoder, decoderConfig);
+        requestStreamEncoder = new Http3FrameEncoder(qpackEncoder);
+        if (server) {
+            clientPushManager = null;
+            serverPushManager = new Http3ServerPushManager(codecSupplier);
+        } else {
+            clientPushManager = pushCache == null ? null : new Http3ClientPushManager(pushCache);
+            serverPushManager = null;
+        }
+        priorityScheduler = server && config.scheduleByPriority ? new Http3PriorityScheduler() : null;
+        if (server) {
+            localRequestStreams = null;
+            localControlStreamHandler = new Http3ControlStreamInboundHandler(server, inboundControlStreamHandler,
+                    serverPushManager, priorityScheduler);
+        } else {
+            localRequestStreams = new LongObjectHashMap<>();
+            localControlStreamHandler = new Http3ControlStreamInboundHandler(server, inboundControlStreamHandler,
+                    clientPushManager, priorityScheduler, this::goAwayReceived);
+        }
         remoteControlStreamHandler =  new Http3ControlStreamOutboundHandler(server, localSettings, codecSupplier.get());
     }
 
@@ -83,7 +122,11 @@ public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapte
                                     "Unable to open control stream"));
                             ctx.close();
                         } else {
-                            Http3.setLocalControlStream(channel, (QuicStreamChannel) f.getNow());
+                            QuicStreamChannel controlStream = (QuicStreamChannel) f.getNow();
+                            Http3.setLocalControlStream(channel, controlStream);
+                            if (clientPushManager != null) {
+                                clientPushManager.controlStreamCreated(controlStream);
+                            }
                         }
                     });
         }
@@ -97,6 +140,100 @@ public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapte
         return localControlStreamHandler.isGoAwayReceived();
     }
 
+    /**
+     * Returns the {@link QuicChannel} this handler was added to, which may still be in the handshake, or
+     * {@code null} if it was not added yet.
+     */
+    final QuicChannel channel() {
+        return channel;
+    }
+
+    /**
+     * Returns {@code true} if the request stream with the given id was not processed by the remote peer as it is
+     * at or above the id of a received GOAWAY frame, so the request can be retried on another connection.
+     */
+    final boolean isUnprocessedRequestStream(long streamId) {
+        Long goAwayId = localControlStreamHandler.receivedGoAwayId();
+        return goAwayId != null && streamId >= goAwayId;
+    }
+
+    /**
+     * Called once a request stream was opened by this client.
+     */
+    final void localRequestStreamCreated(QuicStreamChannel streamChannel) {
+        if (ctx != null) {
+            // Open the control stream before the request stream writes anything, so its type and SETTINGS are handed
+            // to QUIC first and can go out in the same packets as the request. Otherwise a request that is sent
+            // while the handshake is still in progress would leave before the control stream was even opened.
+            createControlStreamIfNeeded(ctx);
+        }
+        if (localRequestStreams == null) {
+            return;
+        }
+        long streamId = streamChannel.streamId();
+        localRequestStreams.put(streamId, streamChannel);
+        streamChannel.closeFuture().addListener(f -> localRequestStreams.remove(streamId));
+    }
+
+    /**
+     * Sets the {@link Runnable} that is run once a GOAWAY frame was received from the server.
+     */
+    final void goAwayListener(Runnable goAwayListener) {
+        this.goAwayListener = goAwayListener;
+    }
+
+    private void goAwayReceived(long goAwayId) {
+        if (goAwayListener != null) {
+            goAwayListener.run();
+        }
+        // The server did not and will not process these streams, so these can be safely retried.
+        // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-5.2
+        List<QuicStreamChannel> rejected = null;
+        for (QuicStreamChannel streamChannel : localRequestStreams.values()) {
+            if (streamChannel.streamId() >= goAwayId) {
+                if (rejected == null) {
+                    rejected = new ArrayList<>();
+                }
+                rejected.add(streamChannel);
+            }
+        }
+        if (rejected != null) {
+            for (QuicStreamChannel streamChannel : rejected) {
+                streamChannel.pipeline().fireExceptionCaught(new Http3Exception(Http3ErrorCode.H3_REQUEST_REJECTED,
+                        "Request stream " + streamChannel.streamId() + " not processed as GOAWAY was received"));
+                streamChannel.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the {@link Http3PushCache} into which pushed responses are stored or {@code null} if server push is not
+     * enabled.
+     */
+    final Http3PushCache pushCache() {
+        return clientPushManager == null ? null : clientPushManager.cache();
+    }
+
+    /**
+     * Returns the {@link Http3PriorityScheduler} of this connection or {@code null} if writes are not scheduled by
+     * priority.
+     */
+    final Http3PriorityScheduler priorityScheduler() {
+        return priorityScheduler;
+    }
+
+    /**
+     * Promises the request with the given headers on the request stream and opens the push stream for it.
+     */
+    final Future<QuicStreamChannel> newPushStream(QuicStreamChannel requestStream,
+                                                  Http3Headers promisedRequestHeaders, ChannelHandler handler) {
+        if (serverPushManager == null) {
+            return requestStream.eventLoop().newFailedFuture(
+                    new IllegalStateException("Only servers can push responses"));
+        }
+        return serverPushManager.newPushStream(requestStream, promisedRequestHeaders, handler);
+    }
+
     /**
      * Returns a new codec that will encode and decode {@link Http3Frame}s for this HTTP/3 connection.
      *
@@ -106,15 +243,41 @@ public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapte
         return codecSupplier.get();
     }
 
-    final Http3RequestStreamValidationHandler newRequestStreamValidationHandler() {
+    /**
+     * Returns a {@link Http3RequestStreamTemplate} that adds the given {@link ChannelHandler} to request streams
+     * that are created locally. The template for the last handler is cached.
+     */
+    final Http3RequestStreamTemplate requestStreamTemplate(ChannelHandler handler) {
+        // Templates are immutable, so a racy update only costs an extra allocation.
+        Http3RequestStreamTemplate template = requestStreamTemplate;
+        if (template == null || template.handler() != handler) {
+            template = new Http3RequestStreamTemplate(handler);
+            requestStreamTemplate = template;
+        }
+        return template;
+    }
+
+    /**
+     * Returns a new codec that will encode, decode and validate {@link Http3RequestStreamFrame}s for a request stream
+     * of this HTTP/3 connection.
+     *
+     * @return a new codec.
+     */
+    final ChannelHandler newRequestStreamCodec() {
+        final Http3RequestStreamValidator validator;
         if (localControlStreamHandler.isServer()) {
-            return Http3RequestStreamValidationHandler.newServerValidator();
+            validator = Http3RequestStreamValidator.newServerValidator();
+        } else {
+            validator = Http3RequestStreamValidator.newClientValidator(localControlStreamHandler::isGoAwayReceived);
         }
-        return Http3RequestStreamValidationHandler.newClientValidator(localControlStreamHandler::isGoAwayReceived);
+        return new Http3RequestStreamCodec(qpackDecoder, maxFieldSectionSize, decoderConfig,
+                requestStreamEncoder, validator, clientPushManager);
     }
 
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+        channel = (QuicChannel) ctx.channel();
         if (ctx.channel().isActive()) {
             createControlStreamIfNeeded(ctx);
         }
@@ -139,7 +302,7 @@ public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapte
                     channel.pipeline().addLast(
                             new Http3UnidirectionalStreamInboundHandler(codecSupplier,
                                     localControlStreamHandler, remoteControlStreamHandler,
-                                    unknownInboundStreamHandlerFactory));
+                                    unknownInboundStreamHandlerFactory, clientPushManager));
                     break;
                 default:
                     throw new Error();
@@ -163,4 +326,29 @@ public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapte
     public boolean isSharable() {
         return false;
     }
+
+    /**
+     * The settings of a {@link Http3ConnectionHandler}, filled by the builders and constructors of the sub-classes.
+     */
+    static final class Config {
+        final boolean server;
+        // the ChannelHandler which will be notified about Http3RequestStreamFrames or null.
+        ChannelHandler inboundControlStreamHandler;
+        // the LongFunction that provides a custom ChannelHandler for unknown inbound stream types or null.
+        LongFunction<ChannelHandler> unknownInboundStreamHandlerFactory;
+        // the local Http3SettingsFrame that is sent to the remote peer or null if the defaults should be used.
+        Http3SettingsFrame localSettings;
+        // the Supplier of the Http3Headers into which field sections are decoded or null for DefaultHttp3Headers.
+        Supplier<? extends Http3Headers> headersFactory;
+        // the Http3PushCache into which pushed responses are stored or null. Only used on the client-side.
+        Http3PushCache pushCache;
+        // true if writes of request streams are scheduled by priority. Only used on the server-side.
+        boolean scheduleByPriority;
+        // the Http3MemoryBudget that limits buffered bytes of partially received frames or null.
+        Http3MemoryBudget memoryBudget;
+
+        Config(boolean server) {
+            this.server = server;
+        }
+    }
 }
@@ -19,17 +19,41 @@ import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.util.ReferenceCountUtil;
 
+import java.util.function.LongConsumer;
+
 final class Http3ControlStreamInboundHandler extends Http3FrameTypeValidationHandler<Http3ControlStreamFrame> {
     final boolean server;
     private final ChannelHandler controlFrameHandler;
+    private final Http3PushManager pushManager;
+    private final Http3PriorityScheduler priorityScheduler;
+    private final LongConsumer goAwayListener;
     private boolean firstFrameRead;
     private Long receivedGoawayId;
     private Long receivedMaxPushId;
 
     Http3ControlStreamInboundHandler(boolean server, ChannelHandler controlFrameHandler) {
+        this(server, controlFrameHandler, null);
+    }
+
+    Http3ControlStreamInboundHandler(boolean server, ChannelHandler controlFrameHandler,
+                                     Http3PushManager pushManager) {
+        this(server, controlFrameHandler, pushManager, null);
+    }
+
+    Http3ControlStreamInboundHandler(boolean server, ChannelHandler controlFrameHandler,
+                                     Http3PushManager pushManager, Http3PriorityScheduler priorityScheduler) {
+        this(server, controlFrameHandler, pushManager, priorityScheduler, null);
+    }
+
+    Http3ControlStreamInboundHandler(boolean server, ChannelHandler controlFrameHandler,
+                                     Http3PushManager pushManager, Http3PriorityScheduler priorityScheduler,
+                                     LongConsumer goAwayListener) {
         super(Http3ControlStreamFrame.class);
         this.server = server;
         this.controlFrameHandler = controlFrameHandler;
+        this.pushManager = pushManager;
+        this.priorityScheduler = priorityScheduler;
+        this.goAwayListener = goAwayListener;
     }
 
     boolean isServer() {
@@ -40,6 +64,13 @@ final class Http3ControlStreamInboundHandler extends Http3FrameTypeValidationHan
         return receivedGoawayId != null;
     }
 
+    /**
+     * Returns the id of the last received GOAWAY frame or {@code null} if none was received yet.
+     */
+    Long receivedGoAwayId() {
+        return receivedGoawayId;
+    }
+
     private boolean forwardControlFrames() {
         return controlFrameHandler != null;
     }
@@ -78,6 +109,8 @@ final class Http3ControlStreamInboundHandler extends Http3FrameTypeValidationHan
             valid = handleHttp3MaxPushIdFrame(ctx, (Http3MaxPushIdFrame) frame);
         } else if (frame instanceof Http3CancelPushFrame) {
             valid = handleHttp3CancelPushFrame(ctx, (Http3CancelPushFrame) frame);
+        } else if (frame instanceof Http3PriorityUpdateFrame) {
+            valid = handleHttp3PriorityUpdateFrame(ctx, (Http3PriorityUpdateFrame) frame);
         } else {
             // We don't need to do any special handling for Http3UnknownFrames as we either pass these to the next#
             // handler or release these directly.
@@ -116,6 +149,9 @@ final class Http3ControlStreamInboundHandler extends Http3FrameTypeValidationHan
             return false;
         }
         receivedGoawayId = id;
+        if (goAwayListener != null) {
+            goAwayListener.accept(id);
+        }
         return true;
     }
 
@@ -132,11 +168,41 @@ final class Http3ControlStreamInboundHandler extends Http3FrameTypeValidationHan
             return false;
         }
         receivedMaxPushId = id;
+        if (pushManager != null) {
+            pushManager.maxPushIdReceived(id);
+        }
         return true;
     }
 
     private boolean handleHttp3CancelPushFrame(ChannelHandlerContext ctx, Http3CancelPushFrame cancelPushFrame) {
-        // TODO: handle this.
+        if (pushManager != null) {
+            // Either the client is not interested in the push anymore or the server will not fulfill it.
+            // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-7.2.3
+            return pushManager.cancelPushReceived(ctx, cancelPushFrame.id(), forwardControlFrames());
+        }
+        return true;
+    }
+
+    private boolean handleHttp3PriorityUpdateFrame(ChannelHandlerContext ctx, Http3PriorityUpdateFrame frame) {
+        // See https://www.rfc-editor.org/rfc/rfc9218.html#section-7.2
+        if (!server) {
+            Http3CodecUtils.connectionError(ctx, Http3ErrorCode.H3_FRAME_UNEXPECTED,
+                    "PRIORITY_UPDATE received by client.", forwardControlFrames());
+            return false;
+        }
+        if (frame.isPush()) {
+            // Push streams are not scheduled.
+            return true;
+        }
+        long id = frame.prioritizedElementId();
+        if (id % 4 != 0) {
+            Http3CodecUtils.connectionError(ctx, Http3ErrorCode.H3_ID_ERROR,
+                    "PRIORITY_UPDATE received with ID of non-request stream.", forwardControlFrames());
+            return false;
+        }
+        if (priorityScheduler != null) {
+            priorityScheduler.priorityUpdateReceived(id, frame.priority());
+        }
         return true;
     }
 
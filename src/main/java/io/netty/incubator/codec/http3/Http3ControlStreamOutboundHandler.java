@@ -86,27 +86,31 @@ final class Http3ControlStreamOutboundHandler
         if (msg instanceof Http3MaxPushIdFrame) {
             sentMaxPushId = ((Http3MaxPushIdFrame) msg).id();
         }
+        if (server && msg instanceof Http3PriorityUpdateFrame) {
+            // See https://www.rfc-editor.org/rfc/rfc9218.html#section-7.2
+            ReferenceCountUtil.release(msg);
+            promise.setFailure(new Http3Exception(Http3ErrorCode.H3_FRAME_UNEXPECTED,
+                    "PRIORITY_UPDATE can only be sent by the client"));
+            return;
+        }
         if (msg instanceof Http3GoAwayFrame) {
             Http3GoAwayFrame goAwayFrame = (Http3GoAwayFrame) msg;
-            if (server) {
-                // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-5.2
-                long id = goAwayFrame.id();
-                if (id % 4 != 0) {
-                    ReferenceCountUtil.release(msg);
-                    promise.setFailure(new Http3Exception(Http3ErrorCode.H3_ID_ERROR,
-                            "GOAWAY id not valid : " + id));
-                    return;
-                }
-                if (sendGoAwayId != null && id > sendGoAwayId) {
-                    ReferenceCountUtil.release(msg);
-                    promise.setFailure(new Http3Exception(Http3ErrorCode.H3_ID_ERROR,
-                            "GOAWAY id is bigger then the last sent: " + id + " > " + sendGoAwayId));
-                    return;
-                }
-                sendGoAwayId = id;
-            } else {
-                // TODO: Add logic for the client side as well.
+            // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-5.2
+            long id = goAwayFrame.id();
+            // The server sends the id of a request stream, the client the id of a push.
+            if (server && id % 4 != 0) {
+                ReferenceCountUtil.release(msg);
+                promise.setFailure(new Http3Exception(Http3ErrorCode.H3_ID_ERROR,
+                        "GOAWAY id not valid : " + id));
+                return;
+            }
+            if (sendGoAwayId != null && id > sendGoAwayId) {
+                ReferenceCountUtil.release(msg);
+                promise.setFailure(new Http3Exception(Http3ErrorCode.H3_ID_ERROR,
+                        "GOAWAY id is bigger then the last sent: " + id + " > " + sendGoAwayId));
+                return;
             }
+            sendGoAwayId = id;
         }
         ctx.write(msg, promise);
     }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.function.Predicate;
+
+/**
+ * Only lets requests that arrived in early data through if they are safe to be replayed, as early data may be replayed
+ * by an attacker. By default these are requests with an idempotent method. All other requests are answered with
+ * {@code 425 Too Early} without being passed to the next handlers, so the client can send them again once the
+ * handshake is complete.
+ * See <a href="https://tools.ietf.org/html/rfc8470#section-5.2">The 425 (Too Early) Status Code</a>.
+ */
+final class Http3EarlyDataHandler extends ChannelInboundHandlerAdapter {
+    static final String TOO_EARLY = "425";
+    static final Predicate<Http3Headers> IDEMPOTENT_METHOD =
+            headers -> Http3CodecUtils.isIdempotentMethod(headers.method());
+
+    private final Predicate<? super Http3Headers> allowed;
+    private boolean rejected;
+
+    Http3EarlyDataHandler() {
+        this(IDEMPOTENT_METHOD);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param allowed   the {@link Predicate} that returns {@code true} for the headers of requests that may be
+     *                  processed even though they arrived in early data.
+     */
+    Http3EarlyDataHandler(Predicate<? super Http3Headers> allowed) {
+        this.allowed = ObjectUtil.checkNotNull(allowed, "allowed");
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (rejected) {
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+        if (msg instanceof Http3HeadersFrame && !allowed.test(((Http3HeadersFrame) msg).headers())) {
+            rejected = true;
+            ReferenceCountUtil.release(msg);
+            Http3HeadersFrame response = new DefaultHttp3HeadersFrame();
+            response.headers().status(TOO_EARLY);
+            ctx.writeAndFlush(response).addListener(QuicStreamChannel.SHUTDOWN_OUTPUT);
+            return;
+        }
+        // The request can be processed, so we are not needed anymore.
+        ctx.pipeline().remove(this);
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        if (rejected) {
+            // Drain the rest of the request.
+            Http3CodecUtils.readIfNoAutoRead(ctx);
+            return;
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+        if (rejected) {
+            // The next handlers never saw the request, so they are not interested in the rest of it either.
+            ReferenceCountUtil.release(evt);
+            return;
+        }
+        ctx.fireUserEventTriggered(evt);
+    }
+}
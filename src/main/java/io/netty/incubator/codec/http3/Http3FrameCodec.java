@@ -25,15 +25,27 @@ import java.util.function.Supplier;
  */
 final class Http3FrameCodec extends CombinedChannelDuplexHandler<Http3FrameDecoder, Http3FrameEncoder> {
     Http3FrameCodec(QpackDecoder qpackDecoder, long maxHeaderListSize, QpackEncoder qpackEncoder) {
-        super(new Http3FrameDecoder(qpackDecoder, maxHeaderListSize), new Http3FrameEncoder(qpackEncoder));
+        this(qpackDecoder, maxHeaderListSize, qpackEncoder, new Http3FrameDecoder.Config());
     }
 
-    static Supplier<Http3FrameCodec> newSupplier(QpackDecoder qpackDecoder,
-                                                 long maxHeaderListSize, QpackEncoder qpackEncoder) {
+    Http3FrameCodec(QpackDecoder qpackDecoder, long maxHeaderListSize, QpackEncoder qpackEncoder,
+                    Http3FrameDecoder.Config decoderConfig) {
+        super(new Http3FrameDecoder(qpackDecoder, maxHeaderListSize, decoderConfig),
+                new Http3FrameEncoder(qpackEncoder));
+    }
+
+    static Supplier<Http3FrameCodec> newSupplier(QpackDecoder qpackDecoder, long maxHeaderListSize,
+                                                 QpackEncoder qpackEncoder) {
+        return newSupplier(qpackDecoder, maxHeaderListSize, qpackEncoder, new Http3FrameDecoder.Config());
+    }
+
+    static Supplier<Http3FrameCodec> newSupplier(QpackDecoder qpackDecoder, long maxHeaderListSize,
+                                                 QpackEncoder qpackEncoder, Http3FrameDecoder.Config decoderConfig) {
         ObjectUtil.checkNotNull(qpackDecoder, "qpackDecoder");
         ObjectUtil.checkNotNull(qpackEncoder, "qpackEncoder");
+        ObjectUtil.checkNotNull(decoderConfig, "decoderConfig");
 
         // QPACK decoder and encoder are shared between streams in a connection.
-        return () ->  new Http3FrameCodec(qpackDecoder, maxHeaderListSize, qpackEncoder);
+        return () ->  new Http3FrameCodec(qpackDecoder, maxHeaderListSize, qpackEncoder, decoderConfig);
     }
 }
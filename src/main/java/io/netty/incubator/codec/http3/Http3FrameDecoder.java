@@ -19,15 +19,23 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.incubator.codec.quic.QuicStreamFrame;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.SystemPropertyUtil;
+import io.netty.util.internal.logging.InternalLogger;
+import io.netty.util.internal.logging.InternalLoggerFactory;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 import static io.netty.incubator.codec.http3.Http3CodecUtils.HTTP3_CANCEL_PUSH_FRAME_TYPE;
 import static io.netty.incubator.codec.http3.Http3CodecUtils.HTTP3_DATA_FRAME_TYPE;
 import static io.netty.incubator.codec.http3.Http3CodecUtils.HTTP3_GO_AWAY_FRAME_TYPE;
 import static io.netty.incubator.codec.http3.Http3CodecUtils.HTTP3_HEADERS_FRAME_TYPE;
 import static io.netty.incubator.codec.http3.Http3CodecUtils.HTTP3_MAX_PUSH_ID_FRAME_TYPE;
+import static io.netty.incubator.codec.http3.Http3CodecUtils.HTTP3_PRIORITY_UPDATE_PUSH_FRAME_TYPE;
+import static io.netty.incubator.codec.http3.Http3CodecUtils.HTTP3_PRIORITY_UPDATE_REQUEST_FRAME_TYPE;
 import static io.netty.incubator.codec.http3.Http3CodecUtils.HTTP3_PUSH_PROMISE_FRAME_TYPE;
 import static io.netty.incubator.codec.http3.Http3CodecUtils.HTTP3_SETTINGS_FRAME_TYPE;
 import static io.netty.incubator.codec.http3.Http3CodecUtils.numBytesForVariableLengthInteger;
@@ -36,17 +44,40 @@ import static io.netty.incubator.codec.http3.Http3CodecUtils.readVariableLengthI
 /**
  * Decodes {@link Http3Frame}s.
  */
-final class Http3FrameDecoder extends ByteToMessageDecoder {
+class Http3FrameDecoder extends ByteToMessageDecoder {
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(Http3FrameDecoder.class);
+
+    // Pooled frames are opt-in as they are not safe to use anymore once released, which is easy to get wrong in
+    // user code that did work with the non-pooled frames before.
+    static final boolean POOLED_FRAMES =
+            SystemPropertyUtil.getBoolean("io.netty.incubator.codec.http3.pooledFrames", false);
+
+    static {
+        logger.debug("-Dio.netty.incubator.codec.http3.pooledFrames: {}", POOLED_FRAMES);
+    }
 
     private final long maxHeaderListSize;
     private final QpackDecoder qpackDecoder;
+    private final Supplier<? extends Http3Headers> headersFactory;
+    private final boolean pooledFrames;
+    private final Http3MemoryBudget.Account memoryAccount;
 
     private long type = -1;
     private long payLoadLength = -1;
+    // the number of payload bytes of the current DATA frame that were not passed on yet or -1 if none.
+    private long dataRemaining = -1;
+    private long accountedBytes;
 
     Http3FrameDecoder(QpackDecoder qpackDecoder, long maxHeaderListSize) {
+        this(qpackDecoder, maxHeaderListSize, new Config());
+    }
+
+    Http3FrameDecoder(QpackDecoder qpackDecoder, long maxHeaderListSize, Config config) {
         this.qpackDecoder = ObjectUtil.checkNotNull(qpackDecoder, "qpackDecoder");
         this.maxHeaderListSize = ObjectUtil.checkPositive(maxHeaderListSize, "maxHeaderListSize");
+        this.headersFactory = ObjectUtil.checkNotNull(config.headersFactory, "headersFactory");
+        this.pooledFrames = config.pooledFrames;
+        this.memoryAccount = config.memoryAccount;
     }
 
     @Override
@@ -60,6 +91,38 @@ final class Http3FrameDecoder extends ByteToMessageDecoder {
             buffer = (ByteBuf) msg;
         }
         super.channelRead(ctx, buffer);
+        if (memoryAccount != null) {
+            updateMemoryAccount(ctx);
+        }
+    }
+
+    private void updateMemoryAccount(ChannelHandlerContext ctx) {
+        // The bytes that are left in the cumulation belong to frames that were not received completely yet.
+        long bufferedBytes = actualReadableBytes();
+        long delta = bufferedBytes - accountedBytes;
+        if (delta != 0) {
+            accountedBytes = bufferedBytes;
+            if (!memoryAccount.update(delta)) {
+                Http3CodecUtils.connectionError(ctx, Http3ErrorCode.H3_EXCESSIVE_LOAD,
+                        "Buffered more received bytes than allowed.", true);
+                return;
+            }
+        }
+        if (bufferedBytes == 0) {
+            // Only pause once no partial frame is buffered, as only this stream can complete it.
+            memoryAccount.pauseIfExceeded(ctx.channel());
+        }
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) {
+        if (memoryAccount != null) {
+            memoryAccount.removed(ctx.channel());
+            if (accountedBytes != 0) {
+                memoryAccount.update(-accountedBytes);
+                accountedBytes = 0;
+            }
+        }
     }
 
     @Override
@@ -68,11 +131,10 @@ final class Http3FrameDecoder extends ByteToMessageDecoder {
             return;
         }
         if (type == -1) {
-            int typeLen = numBytesForVariableLengthInteger(in.getByte(in.readerIndex()));
-            if (in.readableBytes() < typeLen) {
+            long type = readVariableLengthInteger(in);
+            if (type == -1) {
                 return;
             }
-            long type = readVariableLengthInteger(in, typeLen);
             if (Http3CodecUtils.isReservedHttp2FrameType(type)) {
                     // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-7.2.8
                     Http3CodecUtils.connectionError(ctx, Http3ErrorCode.H3_FRAME_UNEXPECTED,
@@ -85,11 +147,17 @@ final class Http3FrameDecoder extends ByteToMessageDecoder {
             }
         }
         if (payLoadLength == -1) {
-            int payloadLen = numBytesForVariableLengthInteger(in.getByte(in.readerIndex()));
-            if (in.readableBytes() < payloadLen) {
+            payLoadLength = readVariableLengthInteger(in);
+            if (payLoadLength == -1) {
                 return;
             }
-            payLoadLength = readVariableLengthInteger(in, payloadLen);
+            if (type == HTTP3_DATA_FRAME_TYPE) {
+                dataRemaining = payLoadLength;
+            }
+        }
+        if (dataRemaining != -1) {
+            decodeData(in, out);
+            return;
         }
         if (in.readableBytes() < payLoadLength) {
             return;
@@ -104,17 +172,16 @@ final class Http3FrameDecoder extends ByteToMessageDecoder {
             if (type <= Integer.MAX_VALUE) {
                 // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-11.2.1
                 switch ((int) type) {
-                    case HTTP3_DATA_FRAME_TYPE:
-                        // DATA
-                        // https://tools.ietf.org/html/draft-ietf-quic-http-32#section-7.2.1
-                        out.add(new DefaultHttp3DataFrame(in.readRetainedSlice(payLoadLength)));
-                        break;
                     case HTTP3_HEADERS_FRAME_TYPE:
                         // HEADERS
                         // https://tools.ietf.org/html/draft-ietf-quic-http-32#section-7.2.2
-                        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+                        Http3HeadersFrame headersFrame = pooledFrames ?
+                                PooledHttp3HeadersFrame.newInstance(headersFactory) :
+                                new DefaultHttp3HeadersFrame(headersFactory.get());
                         if (decodeHeaders(ctx, headersFrame.headers(), in.readSlice(payLoadLength))) {
                             out.add(headersFrame);
+                        } else {
+                            ReferenceCountUtil.release(headersFrame);
                         }
                         break;
                     case HTTP3_CANCEL_PUSH_FRAME_TYPE:
@@ -138,7 +205,7 @@ final class Http3FrameDecoder extends ByteToMessageDecoder {
                         // https://tools.ietf.org/html/draft-ietf-quic-http-32#section-7.2.5
                         int pushPromiseIdLen = numBytesForVariableLengthInteger(in.getByte(in.readerIndex()));
                         Http3PushPromiseFrame pushPromiseFrame = new DefaultHttp3PushPromiseFrame(
-                                readVariableLengthInteger(in, pushPromiseIdLen));
+                                readVariableLengthInteger(in, pushPromiseIdLen), headersFactory.get());
                         if (decodeHeaders(ctx, pushPromiseFrame.headers(),
                                 in.readSlice(payLoadLength - pushPromiseIdLen))) {
                             out.add(pushPromiseFrame);
@@ -156,6 +223,16 @@ final class Http3FrameDecoder extends ByteToMessageDecoder {
                         int pidLen = numBytesForVariableLengthInteger(in.getByte(in.readerIndex()));
                         out.add(new DefaultHttp3MaxPushIdFrame(readVariableLengthInteger(in, pidLen)));
                         break;
+                    case HTTP3_PRIORITY_UPDATE_REQUEST_FRAME_TYPE:
+                    case HTTP3_PRIORITY_UPDATE_PUSH_FRAME_TYPE:
+                        // PRIORITY_UPDATE
+                        // https://www.rfc-editor.org/rfc/rfc9218.html#section-7.2
+                        Http3PriorityUpdateFrame priorityUpdateFrame = decodePriorityUpdate(
+                                ctx, type == HTTP3_PRIORITY_UPDATE_PUSH_FRAME_TYPE, in, payLoadLength);
+                        if (priorityUpdateFrame != null) {
+                            out.add(priorityUpdateFrame);
+                        }
+                        break;
                     default:
                         // Handling reserved frame types
                         // https://tools.ietf.org/html/draft-ietf-quic-http-32#section-7.2.8
@@ -168,6 +245,29 @@ final class Http3FrameDecoder extends ByteToMessageDecoder {
         }
     }
 
+    /**
+     * Decode the payload of a DATA frame.
+     * <p>
+     * The payload is passed on as it arrives, so a DATA frame is never buffered completely and may be passed on as
+     * multiple {@link Http3DataFrame}s.
+     *
+     * See <a href="https://tools.ietf.org/html/draft-ietf-quic-http-32#section-7.2.1">DATA</a>.
+     */
+    private void decodeData(ByteBuf in, List<Object> out) {
+        int length = (int) Math.min(in.readableBytes(), dataRemaining);
+        if (length == 0 && dataRemaining != 0) {
+            return;
+        }
+        dataRemaining -= length;
+        if (dataRemaining == 0) {
+            type = -1;
+            payLoadLength = -1;
+            dataRemaining = -1;
+        }
+        ByteBuf data = in.readRetainedSlice(length);
+        out.add(pooledFrames ? PooledHttp3DataFrame.newInstance(data) : new DefaultHttp3DataFrame(data));
+    }
+
     private static Http3SettingsFrame decodeSettings(ChannelHandlerContext ctx, ByteBuf in, int payLoadLength) {
         Http3SettingsFrame settingsFrame = new DefaultHttp3SettingsFrame();
         while (payLoadLength > 0) {
@@ -196,6 +296,20 @@ final class Http3FrameDecoder extends ByteToMessageDecoder {
         return settingsFrame;
     }
 
+    private static Http3PriorityUpdateFrame decodePriorityUpdate(ChannelHandlerContext ctx, boolean push,
+                                                                 ByteBuf in, int payLoadLength) {
+        int idLen = payLoadLength == 0 ? 0 : numBytesForVariableLengthInteger(in.getByte(in.readerIndex()));
+        if (idLen == 0 || idLen > payLoadLength) {
+            // See https://www.rfc-editor.org/rfc/rfc9218.html#section-7.2
+            Http3CodecUtils.connectionError(ctx, Http3ErrorCode.H3_FRAME_ERROR,
+                    "Received a PRIORITY_UPDATE frame with an invalid length.", true);
+            return null;
+        }
+        long id = readVariableLengthInteger(in, idLen);
+        String priorityFieldValue = in.readCharSequence(payLoadLength - idLen, CharsetUtil.US_ASCII).toString();
+        return new DefaultHttp3PriorityUpdateFrame(push, id, priorityFieldValue);
+    }
+
     /**
      * Decode the header block into header fields.
      * <p>
@@ -224,4 +338,17 @@ final class Http3FrameDecoder extends ByteToMessageDecoder {
         }
         return true;
     }
+
+    /**
+     * The optional settings of a {@link Http3FrameDecoder}. The same instance may be shared by the decoders of all
+     * streams of a connection, so it must not be changed anymore once it was used.
+     */
+    static final class Config {
+        // the Supplier of the Http3Headers into which field sections are decoded.
+        Supplier<? extends Http3Headers> headersFactory = Http3CodecUtils.DEFAULT_HEADERS_FACTORY;
+        // true if frames should be taken from a Recycler.
+        boolean pooledFrames = POOLED_FRAMES;
+        // the account for the buffered bytes of partially received frames or null if there is no limit.
+        Http3MemoryBudget.Account memoryAccount;
+    }
 }
@@ -20,6 +20,7 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
+import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.internal.ObjectUtil;
 
@@ -38,6 +39,13 @@ final class Http3FrameEncoder extends ChannelOutboundHandlerAdapter {
 
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (msg instanceof PooledHttp3DataFrame) {
+            // The frame shares the reference count of its content, so releasing it after the content was retained
+            // would never recycle it. Take over the reference of the content instead and recycle the frame now.
+            writeDataFrame(ctx, Http3CodecUtils.HTTP3_DATA_FRAME_TYPE,
+                    ((PooledHttp3DataFrame) msg).recycleAndGetContent(), promise);
+            return;
+        }
         try {
             if (msg instanceof Http3DataFrame) {
                 writeDataFrame(ctx, (Http3DataFrame) msg, promise);
@@ -53,6 +61,8 @@ final class Http3FrameEncoder extends ChannelOutboundHandlerAdapter {
                 writeGoAwayFrame(ctx, (Http3GoAwayFrame) msg, promise);
             } else if (msg instanceof Http3MaxPushIdFrame) {
                 writeMaxPushIdFrame(ctx, (Http3MaxPushIdFrame) msg, promise);
+            } else if (msg instanceof Http3PriorityUpdateFrame) {
+                writePriorityUpdateFrame(ctx, (Http3PriorityUpdateFrame) msg, promise);
             } else if (msg instanceof Http3UnknownFrame) {
                 writeUnknownFrame(ctx, (Http3UnknownFrame) msg, promise);
             } else {
@@ -65,10 +75,14 @@ final class Http3FrameEncoder extends ChannelOutboundHandlerAdapter {
 
     private static void writeDataFrame(
             ChannelHandlerContext ctx, Http3DataFrame frame, ChannelPromise promise) {
+        writeDataFrame(ctx, frame.type(), frame.content().retain(), promise);
+    }
+
+    private static void writeDataFrame(
+            ChannelHandlerContext ctx, long type, ByteBuf content, ChannelPromise promise) {
         ByteBuf out = ctx.alloc().directBuffer();
-        writeVariableLengthInteger(out, frame.type());
-        writeVariableLengthInteger(out, frame.content().readableBytes());
-        ByteBuf content = frame.content().retain();
+        writeVariableLengthInteger(out, type);
+        writeVariableLengthInteger(out, content.readableBytes());
         ctx.write(Unpooled.wrappedUnmodifiableBuffer(out, content), promise);
     }
 
@@ -157,6 +171,15 @@ final class Http3FrameEncoder extends ChannelOutboundHandlerAdapter {
         writeFrameWithId(ctx, frame.type(), frame.id(), promise);
     }
 
+    private static void writePriorityUpdateFrame(
+            ChannelHandlerContext ctx, Http3PriorityUpdateFrame frame, ChannelPromise promise) {
+        writeDynamicFrame(ctx, frame.type(), frame, (f, out) -> {
+            writeVariableLengthInteger(out, f.prioritizedElementId());
+            out.writeCharSequence(f.priorityFieldValue(), CharsetUtil.US_ASCII);
+            return true;
+        }, promise);
+    }
+
     private static void writeFrameWithId(ChannelHandlerContext ctx, long type, long id, ChannelPromise promise) {
         ByteBuf out = ctx.alloc().directBuffer();
         writeVariableLengthInteger(out, type);
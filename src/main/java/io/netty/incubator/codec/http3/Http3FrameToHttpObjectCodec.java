@@ -0,0 +1,347 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandler;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMessage;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.AsciiString;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.PromiseCombiner;
+
+import java.net.SocketAddress;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Translates the {@link Http3RequestStreamFrame}s of a request stream to {@link HttpObject}s and back, so handlers
+ * that were written for HTTP/1.x can be used on HTTP/3 request streams as well. This is the HTTP/3 counterpart of
+ * {@code Http2StreamFrameToHttpObjectCodec} and needs to be added to the pipeline of the request stream, in front of
+ * the handlers that work with {@link HttpObject}s.
+ * <p>
+ * Inbound, the first {@link Http3HeadersFrame} becomes a {@link HttpRequest} (or {@link HttpResponse} on the client
+ * side), {@link Http3DataFrame}s become {@link HttpContent}s and the end of the stream, including trailers if any,
+ * becomes a {@link LastHttpContent}. If the stream ends with the headers a full message is produced instead.
+ * Outbound, {@link HttpObject}s are translated to frames and the output of the stream is shut down once the
+ * {@link LastHttpContent} was written. Everything else is passed through, so {@link Http3Frame}s can still be
+ * written directly.
+ * <p>
+ * Header values and the content of {@link Http3DataFrame}s are passed on without being copied. The pseudo-headers are
+ * mapped to the method, uri and status of the message, and {@code :authority} to the {@code host} header. Only the
+ * uri needs to be converted to a {@link String}. Outbound requests must use an uri in origin-form, their authority is
+ * taken from the {@code host} header.
+ */
+public final class Http3FrameToHttpObjectCodec extends Http3RequestStreamInboundHandler
+        implements ChannelOutboundHandler {
+    private static final AsciiString HTTPS = AsciiString.cached("https");
+
+    private final boolean server;
+    private final boolean validateHeaders;
+    private boolean messageReceived;
+    private boolean lastReceived;
+
+    /**
+     * Create a new instance which validates the headers it creates.
+     *
+     * @param server    {@code true} if used on the server side, so requests are read and responses written.
+     */
+    public Http3FrameToHttpObjectCodec(boolean server) {
+        this(server, true);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param server            {@code true} if used on the server side, so requests are read and responses written.
+     * @param validateHeaders   {@code true} if the headers that are created should be validated.
+     */
+    public Http3FrameToHttpObjectCodec(boolean server, boolean validateHeaders) {
+        this.server = server;
+        this.validateHeaders = validateHeaders;
+    }
+
+    @Override
+    protected void channelRead(ChannelHandlerContext ctx, Http3HeadersFrame frame, boolean isLast) {
+        final HttpObject msg;
+        try {
+            msg = translate(frame.headers(), isLast);
+        } finally {
+            // The headers values are only referenced, so the frame itself can be released (and reused if pooled).
+            ReferenceCountUtil.release(frame);
+        }
+        if (msg != null) {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    private HttpObject translate(Http3Headers headers, boolean isLast) {
+        if (lastReceived) {
+            return null;
+        }
+        if (messageReceived) {
+            // These are the trailers.
+            LastHttpContent last = new DefaultLastHttpContent(Unpooled.EMPTY_BUFFER, validateHeaders);
+            addHttpHeaders(headers, last.trailingHeaders());
+            lastReceived = true;
+            return last;
+        }
+        if (!server && Http3CodecUtils.isInformationalResponse(headers)) {
+            // Informational responses are complete on their own and followed by the final response.
+            return newMessage(headers, true);
+        }
+        messageReceived = true;
+        if (isLast) {
+            lastReceived = true;
+            return newMessage(headers, true);
+        }
+        HttpMessage message = newMessage(headers, false);
+        if (!HttpUtil.isContentLengthSet(message)) {
+            // Let handlers like HttpObjectAggregator know that content follows.
+            message.headers().add(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+        }
+        return message;
+    }
+
+    @Override
+    protected void channelRead(ChannelHandlerContext ctx, Http3DataFrame frame, boolean isLast) {
+        if (lastReceived) {
+            frame.release();
+            return;
+        }
+        ByteBuf content = frame.content();
+        if (!isLast) {
+            ctx.fireChannelRead(new DefaultHttpContent(content));
+        } else {
+            lastReceived = true;
+            if (content.isReadable()) {
+                ctx.fireChannelRead(new DefaultLastHttpContent(content, validateHeaders));
+            } else {
+                frame.release();
+                ctx.fireChannelRead(LastHttpContent.EMPTY_LAST_CONTENT);
+            }
+        }
+    }
+
+    private HttpMessage newMessage(Http3Headers headers, boolean full) {
+        HttpHeaders httpHeaders = new DefaultHttpHeaders(validateHeaders);
+        addHttpHeaders(headers, httpHeaders);
+        if (server) {
+            HttpMethod method = HttpMethod.valueOf(headers.method().toString());
+            CharSequence authority = headers.authority();
+            if (authority != null && !httpHeaders.contains(HttpHeaderNames.HOST)) {
+                httpHeaders.set(HttpHeaderNames.HOST, authority);
+            }
+            // CONNECT requests have no path but use the authority as target.
+            CharSequence path = headers.path();
+            String uri = path == null ? String.valueOf(authority) : path.toString();
+            return full ? new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri, Unpooled.EMPTY_BUFFER,
+                    httpHeaders, new DefaultHttpHeaders(validateHeaders)) :
+                    new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, uri, httpHeaders);
+        }
+        HttpResponseStatus status = HttpResponseStatus.parseLine(headers.status());
+        return full ? new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, Unpooled.EMPTY_BUFFER,
+                httpHeaders, new DefaultHttpHeaders(validateHeaders)) :
+                new DefaultHttpResponse(HttpVersion.HTTP_1_1, status, httpHeaders);
+    }
+
+    private static void addHttpHeaders(Http3Headers in, HttpHeaders out) {
+        StringBuilder cookies = null;
+        for (Map.Entry<CharSequence, CharSequence> entry : in) {
+            CharSequence name = entry.getKey();
+            if (Http3Headers.PseudoHeaderName.hasPseudoHeaderFormat(name)) {
+                continue;
+            }
+            if (HttpHeaderNames.COOKIE.contentEqualsIgnoreCase(name)) {
+                // Cookies may be split into several fields, while HTTP/1.x expects a single one.
+                // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.1.1.2
+                if (cookies == null) {
+                    cookies = new StringBuilder();
+                } else {
+                    cookies.append("; ");
+                }
+                cookies.append(entry.getValue());
+            } else {
+                out.add(name, entry.getValue());
+            }
+        }
+        if (cookies != null) {
+            out.add(HttpHeaderNames.COOKIE, cookies.toString());
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (!(msg instanceof HttpObject)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        Http3HeadersFrame headersFrame = null;
+        Http3DataFrame dataFrame = null;
+        Http3HeadersFrame trailersFrame = null;
+        boolean last = false;
+        if (msg instanceof HttpMessage) {
+            headersFrame = new DefaultHttp3HeadersFrame(toHttp3Headers((HttpMessage) msg));
+            if (msg instanceof HttpResponse &&
+                    ((HttpResponse) msg).status().codeClass() == HttpStatusClass.INFORMATIONAL) {
+                // Informational responses are followed by the final response, so there is nothing else to write.
+                ReferenceCountUtil.release(msg);
+                ctx.write(headersFrame, promise);
+                return;
+            }
+        }
+        if (msg instanceof HttpContent) {
+            ByteBuf content = ((HttpContent) msg).content();
+            if (content.isReadable()) {
+                dataFrame = new DefaultHttp3DataFrame(content);
+            } else {
+                ReferenceCountUtil.release(msg);
+            }
+            if (msg instanceof LastHttpContent) {
+                last = true;
+                HttpHeaders trailers = ((LastHttpContent) msg).trailingHeaders();
+                if (!trailers.isEmpty()) {
+                    Http3Headers headers = new DefaultHttp3Headers(validateHeaders);
+                    addHttp3Headers(trailers, headers);
+                    trailersFrame = new DefaultHttp3HeadersFrame(headers);
+                }
+            }
+        }
+        if (headersFrame == null && dataFrame == null && trailersFrame == null) {
+            // Nothing to translate, still write an empty DATA frame so the promise is notified in order.
+            dataFrame = new DefaultHttp3DataFrame(Unpooled.EMPTY_BUFFER);
+        }
+
+        PromiseCombiner combiner = new PromiseCombiner(ctx.executor());
+        if (headersFrame != null) {
+            combiner.add(ctx.write(headersFrame));
+        }
+        if (dataFrame != null) {
+            combiner.add(ctx.write(dataFrame));
+        }
+        if (trailersFrame != null) {
+            combiner.add(ctx.write(trailersFrame));
+        }
+        ChannelPromise written = promise.unvoid();
+        if (last) {
+            written.addListener(QuicStreamChannel.SHUTDOWN_OUTPUT);
+        }
+        combiner.finish(written);
+    }
+
+    private Http3Headers toHttp3Headers(HttpMessage message) {
+        HttpHeaders headers = message.headers();
+        Http3Headers http3Headers = new DefaultHttp3Headers(validateHeaders);
+        if (message instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) message;
+            http3Headers.method(request.method().asciiName());
+            String host = headers.get(HttpHeaderNames.HOST);
+            if (HttpMethod.CONNECT.equals(request.method())) {
+                http3Headers.authority(request.uri());
+            } else {
+                http3Headers.scheme(HTTPS);
+                http3Headers.path(request.uri());
+                if (host != null) {
+                    http3Headers.authority(host);
+                }
+            }
+        } else {
+            http3Headers.status(((HttpResponse) message).status().codeAsText());
+        }
+        addHttp3Headers(headers, http3Headers);
+        return http3Headers;
+    }
+
+    private static void addHttp3Headers(HttpHeaders in, Http3Headers out) {
+        Iterator<Map.Entry<CharSequence, CharSequence>> iterator = in.iteratorCharSequence();
+        while (iterator.hasNext()) {
+            Map.Entry<CharSequence, CharSequence> entry = iterator.next();
+            AsciiString name = AsciiString.of(entry.getKey()).toLowerCase();
+            CharSequence value = entry.getValue();
+            if (isConnectionSpecific(name, value)) {
+                // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.1.1
+                continue;
+            }
+            out.add(name, value);
+        }
+    }
+
+    private static boolean isConnectionSpecific(AsciiString name, CharSequence value) {
+        return HttpHeaderNames.HOST.equals(name) || HttpHeaderNames.CONNECTION.equals(name) ||
+                HttpHeaderNames.KEEP_ALIVE.equals(name) || HttpHeaderNames.PROXY_CONNECTION.equals(name) ||
+                HttpHeaderNames.TRANSFER_ENCODING.equals(name) || HttpHeaderNames.UPGRADE.equals(name) ||
+                HttpHeaderNames.TE.equals(name) && !HttpHeaderValues.TRAILERS.contentEqualsIgnoreCase(value);
+    }
+
+    @Override
+    public void bind(ChannelHandlerContext ctx, SocketAddress localAddress, ChannelPromise promise) {
+        ctx.bind(localAddress, promise);
+    }
+
+    @Override
+    public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress,
+                        SocketAddress localAddress, ChannelPromise promise) {
+        ctx.connect(remoteAddress, localAddress, promise);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) {
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        ctx.close(promise);
+    }
+
+    @Override
+    public void deregister(ChannelHandlerContext ctx, ChannelPromise promise) {
+        ctx.deregister(promise);
+    }
+
+    @Override
+    public void read(ChannelHandlerContext ctx) {
+        ctx.read();
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        ctx.flush();
+    }
+}
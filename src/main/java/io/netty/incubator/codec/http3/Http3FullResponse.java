@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+
+/**
+ * An aggregated HTTP/3 response, consisting of the response headers, the complete content and the trailers.
+ */
+public final class Http3FullResponse extends DefaultByteBufHolder {
+    private final Http3Headers headers;
+    private final Http3Headers trailers;
+
+    /**
+     * Create a new instance.
+     *
+     * @param headers   the headers of the response.
+     * @param content   the content of the response.
+     * @param trailers  the trailers of the response.
+     */
+    public Http3FullResponse(Http3Headers headers, ByteBuf content, Http3Headers trailers) {
+        super(content);
+        this.headers = ObjectUtil.checkNotNull(headers, "headers");
+        this.trailers = ObjectUtil.checkNotNull(trailers, "trailers");
+    }
+
+    /**
+     * Returns the headers of the response.
+     *
+     * @return the headers.
+     */
+    public Http3Headers headers() {
+        return headers;
+    }
+
+    /**
+     * Returns the trailers of the response, which are empty if the peer did not send any.
+     *
+     * @return the trailers.
+     */
+    public Http3Headers trailers() {
+        return trailers;
+    }
+
+    @Override
+    public Http3FullResponse copy() {
+        return replace(content().copy());
+    }
+
+    @Override
+    public Http3FullResponse duplicate() {
+        return replace(content().duplicate());
+    }
+
+    @Override
+    public Http3FullResponse retainedDuplicate() {
+        return replace(content().retainedDuplicate());
+    }
+
+    @Override
+    public Http3FullResponse replace(ByteBuf content) {
+        return new Http3FullResponse(headers, content, trailers);
+    }
+
+    @Override
+    public Http3FullResponse retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public Http3FullResponse retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public Http3FullResponse touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public Http3FullResponse touch(Object hint) {
+        super.touch(hint);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(headers=" + headers + ", content=" + content() +
+                ", trailers=" + trailers + ')';
+    }
+}
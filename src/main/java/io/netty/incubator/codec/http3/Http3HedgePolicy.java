@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controls when {@link Http3Client} sends a duplicate of a request (a hedged request) because no response arrived
+ * yet. The delay is the configured percentile of the time it took recent requests to receive their response
+ * headers, so only the slowest requests are hedged and the additional load stays small. The same instance can be
+ * shared by multiple clients.
+ * <p>
+ * Until {@link #MIN_SAMPLES} responses were measured the maximum delay is used. The delay is never shorter than the
+ * minimum delay, which protects the peer from a burst of duplicates if responses are very fast.
+ */
+public final class Http3HedgePolicy {
+    static final int MAX_SAMPLES = 256;
+    static final int MIN_SAMPLES = 16;
+
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    // Guarded by this.
+    private final long[] samples = new long[MAX_SAMPLES];
+    private int numSamples;
+    private int nextSample;
+    private long delayNanos;
+    private boolean delayStale;
+
+    /**
+     * Create a new instance.
+     *
+     * @param percentile    the percentile of the response latency after which a request is hedged, for example
+     *                      {@code 0.95}.
+     * @param minDelay      the minimum time to wait before a request is hedged.
+     * @param maxDelay      the maximum time to wait before a request is hedged.
+     * @param unit          the {@link TimeUnit} of {@code minDelay} and {@code maxDelay}.
+     */
+    public Http3HedgePolicy(double percentile, long minDelay, long maxDelay, TimeUnit unit) {
+        if (!(percentile > 0 && percentile < 1)) {
+            throw new IllegalArgumentException("percentile: " + percentile + " (expected: 0 < percentile < 1)");
+        }
+        this.percentile = percentile;
+        ObjectUtil.checkNotNull(unit, "unit");
+        minDelayNanos = unit.toNanos(ObjectUtil.checkPositiveOrZero(minDelay, "minDelay"));
+        maxDelayNanos = unit.toNanos(ObjectUtil.checkInRange(maxDelay, minDelay, Long.MAX_VALUE, "maxDelay"));
+        delayNanos = maxDelayNanos;
+    }
+
+    /**
+     * Returns the time to wait for the response headers before a request is hedged.
+     *
+     * @param unit  the {@link TimeUnit} of the returned value.
+     * @return      the delay.
+     */
+    public synchronized long delay(TimeUnit unit) {
+        if (delayStale) {
+            delayStale = false;
+            long[] sorted = Arrays.copyOf(samples, numSamples);
+            Arrays.sort(sorted);
+            int index = Math.max(0, (int) Math.ceil(percentile * numSamples) - 1);
+            delayNanos = Math.min(maxDelayNanos, Math.max(minDelayNanos, sorted[index]));
+        }
+        return unit.convert(delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time it took to receive the response headers of a request.
+     */
+    synchronized void record(long latencyNanos) {
+        samples[nextSample] = latencyNanos;
+        nextSample = (nextSample + 1) % MAX_SAMPLES;
+        if (numSamples < MAX_SAMPLES) {
+            numSamples++;
+        }
+        delayStale = numSamples >= MIN_SAMPLES;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of bytes of received HTTP/3 frames that are buffered while waiting for the rest of the frame to
+ * arrive. The payload of DATA frames is passed on as it arrives and so is never buffered. The same instance can be
+ * shared by the {@link Http3ServerConnectionHandler}s or {@link Http3ClientConnectionHandler}s of all connections to
+ * also limit the buffered bytes across the whole process.
+ * <p>
+ * Once a connection, or all connections together, exceed their limit, reading is paused for each stream of the
+ * connection that reaches the end of a frame, until enough buffered frames were completed. Streams that still buffer
+ * a partial frame keep reading, as only they can complete the frame and so release its bytes. Streams that have
+ * auto-read disabled control reading themselves and are not paused. If a connection exceeds the hard limit it is
+ * closed with {@link Http3ErrorCode#H3_EXCESSIVE_LOAD}.
+ */
+public final class Http3MemoryBudget {
+    private final long connectionLimit;
+    private final long connectionHardLimit;
+    private final long globalLimit;
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final Queue<Account> waitingAccounts = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Create a new instance.
+     *
+     * @param connectionLimit       the number of buffered bytes per connection above which streams without a
+     *                              partial frame are paused.
+     * @param connectionHardLimit   the number of buffered bytes per connection above which the connection is closed.
+     * @param globalLimit           the number of buffered bytes of all connections together above which streams
+     *                              without a partial frame are paused.
+     */
+    public Http3MemoryBudget(long connectionLimit, long connectionHardLimit, long globalLimit) {
+        this.connectionLimit = ObjectUtil.checkPositive(connectionLimit, "connectionLimit");
+        this.connectionHardLimit = ObjectUtil.checkInRange(
+                connectionHardLimit, connectionLimit, Long.MAX_VALUE, "connectionHardLimit");
+        this.globalLimit = ObjectUtil.checkPositive(globalLimit, "globalLimit");
+    }
+
+    /**
+     * Returns the number of bytes that are buffered by all connections together.
+     *
+     * @return the number of buffered bytes.
+     */
+    public long bufferedBytes() {
+        return bufferedBytes.get();
+    }
+
+    /**
+     * Returns a new {@link Account} for a connection.
+     */
+    Account newAccount() {
+        return new Account();
+    }
+
+    private void notifyWaitingAccounts() {
+        Account account;
+        while ((account = waitingAccounts.poll()) != null) {
+            account.executor.execute(account::resumeIfPossible);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(connectionLimit=" + connectionLimit + ", connectionHardLimit=" +
+                connectionHardLimit + ", globalLimit=" + globalLimit + ", bufferedBytes=" + bufferedBytes.get() + ')';
+    }
+
+    /**
+     * The buffered bytes of a single connection. All methods must be called from the event loop of the connection.
+     */
+    final class Account {
+        private final List<Channel> pausedStreams = new ArrayList<>();
+        // All streams of a connection use the same event loop.
+        private EventExecutor executor;
+        private long bufferedBytes;
+        private boolean waiting;
+
+        private Account() { }
+
+        /**
+         * Returns the number of bytes that are buffered by this connection.
+         */
+        long bufferedBytes() {
+            return bufferedBytes;
+        }
+
+        /**
+         * Returns {@code true} if reading of the given stream is paused.
+         */
+        boolean isPaused(Channel stream) {
+            return pausedStreams.contains(stream);
+        }
+
+        /**
+         * Called once the number of bytes that are buffered by a stream of the connection changed.
+         *
+         * @return {@code false} if the connection exceeded the hard limit and so should be closed.
+         */
+        boolean update(long delta) {
+            bufferedBytes += delta;
+            long globalBufferedBytes = Http3MemoryBudget.this.bufferedBytes.addAndGet(delta);
+            if (delta > 0) {
+                return bufferedBytes <= connectionHardLimit;
+            }
+            if (delta < 0) {
+                if (globalBufferedBytes <= globalLimit && !waitingAccounts.isEmpty()) {
+                    notifyWaitingAccounts();
+                }
+                resumeIfPossible();
+            }
+            return true;
+        }
+
+        /**
+         * Called once the given stream does not buffer any bytes of a partial frame. If the connection or all
+         * connections together exceed their limit the stream is paused. Streams that buffer a partial frame must
+         * never be paused, as they would otherwise never release their bytes.
+         */
+        void pauseIfExceeded(Channel stream) {
+            if (bufferedBytes > connectionLimit) {
+                pause(stream, Http3MemoryBudget.this.bufferedBytes.get());
+            } else {
+                long globalBufferedBytes = Http3MemoryBudget.this.bufferedBytes.get();
+                if (globalBufferedBytes > globalLimit) {
+                    pause(stream, globalBufferedBytes);
+                }
+            }
+        }
+
+        /**
+         * Called once the given stream was closed.
+         */
+        void removed(Channel stream) {
+            pausedStreams.remove(stream);
+        }
+
+        private void pause(Channel stream, long globalBufferedBytes) {
+            if (!stream.config().isAutoRead()) {
+                return;
+            }
+            stream.config().setAutoRead(false);
+            pausedStreams.add(stream);
+            executor = stream.eventLoop();
+            if (globalBufferedBytes > globalLimit && !waiting) {
+                waitForGlobalLimit();
+            }
+        }
+
+        private void waitForGlobalLimit() {
+            // Other connections need to let us know once the global limit is not exceeded anymore.
+            waiting = true;
+            waitingAccounts.add(this);
+            if (Http3MemoryBudget.this.bufferedBytes.get() <= globalLimit) {
+                // Released in the meantime.
+                notifyWaitingAccounts();
+            }
+        }
+
+        private void resumeIfPossible() {
+            waiting = false;
+            if (pausedStreams.isEmpty()) {
+                return;
+            }
+            if (bufferedBytes > connectionLimit) {
+                return;
+            }
+            if (Http3MemoryBudget.this.bufferedBytes.get() > globalLimit) {
+                waitForGlobalLimit();
+                return;
+            }
+            List<Channel> streams = new ArrayList<>(pausedStreams);
+            pausedStreams.clear();
+            for (Channel stream : streams) {
+                stream.config().setAutoRead(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.AsciiString;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+
+/**
+ * The priority of a response as defined by
+ * <a href="https://www.rfc-editor.org/rfc/rfc9218.html">Extensible Prioritization Scheme for HTTP</a>.
+ * The priority is signaled by the client via the {@code priority} header of the request and via
+ * {@link Http3PriorityUpdateFrame}s.
+ */
+public final class Http3Priority {
+
+    /**
+     * The name of the header that carries the priority of a request.
+     */
+    public static final AsciiString PRIORITY = AsciiString.cached("priority");
+
+    /**
+     * The lowest urgency, which should be used for responses that are only needed in the background.
+     */
+    public static final int MIN_URGENCY = 7;
+
+    /**
+     * The highest urgency.
+     */
+    public static final int MAX_URGENCY = 0;
+
+    /**
+     * The urgency that is used if none was signaled.
+     */
+    public static final int DEFAULT_URGENCY = 3;
+
+    /**
+     * The priority that is used if none was signaled.
+     */
+    public static final Http3Priority DEFAULT = new Http3Priority(DEFAULT_URGENCY, false);
+
+    private final int urgency;
+    private final boolean incremental;
+
+    /**
+     * Create a new instance.
+     *
+     * @param urgency       the urgency, between {@link #MAX_URGENCY} and {@link #MIN_URGENCY}.
+     * @param incremental   {@code true} if the response can be processed incrementally by the client and so
+     *                      benefits from being interleaved with other responses of the same urgency.
+     */
+    public Http3Priority(int urgency, boolean incremental) {
+        this.urgency = ObjectUtil.checkInRange(urgency, MAX_URGENCY, MIN_URGENCY, "urgency");
+        this.incremental = incremental;
+    }
+
+    /**
+     * Returns the urgency, {@code 0} being the most urgent.
+     *
+     * @return the urgency.
+     */
+    public int urgency() {
+        return urgency;
+    }
+
+    /**
+     * Returns {@code true} if the response can be processed incrementally.
+     *
+     * @return {@code true} if incremental, {@code false} otherwise.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Returns the value of this priority as it is used in the {@code priority} header and in
+     * {@link Http3PriorityUpdateFrame}s.
+     *
+     * @return the field value.
+     */
+    public String toFieldValue() {
+        if (urgency == DEFAULT_URGENCY) {
+            return incremental ? "i" : "";
+        }
+        return incremental ? "u=" + urgency + ", i" : "u=" + urgency;
+    }
+
+    /**
+     * Parse the given priority field value, which is a
+     * <a href="https://www.rfc-editor.org/rfc/rfc8941.html#section-3.2">structured field dictionary</a>.
+     * Unknown parameters and parameters with invalid values are ignored, so the defaults are used for these.
+     *
+     * @param value     the field value or {@code null}.
+     * @return          the priority.
+     */
+    public static Http3Priority parse(CharSequence value) {
+        if (value == null) {
+            return DEFAULT;
+        }
+        int urgency = DEFAULT_URGENCY;
+        boolean incremental = false;
+        int length = value.length();
+        int start = 0;
+        while (start < length) {
+            int end = indexOf(value, ',', start, length);
+            int memberStart = skipWhitespaces(value, start, end);
+            // Parameters of a member are not used by any of the keys we know about.
+            int memberEnd = indexOf(value, ';', memberStart, end);
+            int eq = indexOf(value, '=', memberStart, memberEnd);
+            int keyEnd = trimTrailingWhitespaces(value, memberStart, eq);
+            if (keyEnd - memberStart == 1) {
+                char key = value.charAt(memberStart);
+                int valueStart = eq == memberEnd ? memberEnd : skipWhitespaces(value, eq + 1, memberEnd);
+                int valueEnd = trimTrailingWhitespaces(value, valueStart, memberEnd);
+                if (key == 'u') {
+                    if (valueEnd - valueStart == 1) {
+                        int u = value.charAt(valueStart) - '0';
+                        if (u >= MAX_URGENCY && u <= MIN_URGENCY) {
+                            urgency = u;
+                        }
+                    }
+                } else if (key == 'i') {
+                    if (eq == memberEnd) {
+                        // A boolean true is expressed by omitting the value.
+                        incremental = true;
+                    } else if (valueEnd - valueStart == 2 && value.charAt(valueStart) == '?') {
+                        char b = value.charAt(valueStart + 1);
+                        if (b == '1') {
+                            incremental = true;
+                        } else if (b == '0') {
+                            incremental = false;
+                        }
+                    }
+                }
+            }
+            start = end + 1;
+        }
+        if (urgency == DEFAULT_URGENCY && !incremental) {
+            return DEFAULT;
+        }
+        return new Http3Priority(urgency, incremental);
+    }
+
+    private static int indexOf(CharSequence value, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) == c) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int skipWhitespaces(CharSequence value, int start, int end) {
+        while (start < end && isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimTrailingWhitespaces(CharSequence value, int start, int end) {
+        while (end > start && isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Http3Priority that = (Http3Priority) o;
+        return urgency == that.urgency && incremental == that.incremental;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * urgency + (incremental ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(urgency=" + urgency + ", incremental=" + incremental + ')';
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+import io.netty.util.concurrent.PromiseNotifier;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Schedules the writes of all request streams of a connection by the
+ * <a href="https://www.rfc-editor.org/rfc/rfc9218.html">priorities</a> that the client signaled.
+ * <p>
+ * As QUIC streams can not be prioritized the scheduler decides in which order writes are handed to the streams
+ * instead: writes that are flushed during the same event loop run, and writes that are pending because the
+ * stream is not writable, are written in order of urgency. Non-incremental responses of the same urgency are
+ * written one after another in order of the stream id, incremental responses are interleaved by writing at most
+ * {@link #INCREMENTAL_CHUNK_SIZE} bytes of each in turn. As long as only a single stream has flushed writes there
+ * is nothing to order, so these are handed to the stream right away.
+ */
+final class Http3PriorityScheduler {
+    static final int INCREMENTAL_CHUNK_SIZE = 16 * 1024;
+
+    // Clients may signal priorities for streams that were not opened yet, keep the latest for a bounded number of
+    // these.
+    // See https://www.rfc-editor.org/rfc/rfc9218.html#section-7.2
+    private static final int MAX_PENDING_UPDATES = 64;
+
+    private final LongObjectMap<StreamHandler> streams = new LongObjectHashMap<>();
+    private final Map<Long, Http3Priority> pendingUpdates = new LinkedHashMap<Long, Http3Priority>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Http3Priority> eldest) {
+            return size() > MAX_PENDING_UPDATES;
+        }
+    };
+    private final ArrayDeque<StreamHandler> needsFlush = new ArrayDeque<>();
+    // The streams that are ready to write, by urgency.
+    private final Bucket[] buckets = new Bucket[Http3Priority.MIN_URGENCY + 1];
+    private int streamsWithFlushedWrites;
+    private boolean drainScheduled;
+    private boolean draining;
+
+    /**
+     * Returns a new {@link ChannelHandler} that needs to be added to the pipeline of a request stream, after the
+     * codec.
+     */
+    ChannelHandler newStreamHandler() {
+        return new StreamHandler();
+    }
+
+    /**
+     * Returns the current priority of the request stream with the given id.
+     */
+    Http3Priority priority(long streamId) {
+        StreamHandler handler = streams.get(streamId);
+        if (handler != null) {
+            return handler.priority;
+        }
+        Http3Priority priority = pendingUpdates.get(streamId);
+        return priority == null ? Http3Priority.DEFAULT : priority;
+    }
+
+    /**
+     * Called once a PRIORITY_UPDATE frame for a request stream was received.
+     */
+    void priorityUpdateReceived(long streamId, Http3Priority priority) {
+        StreamHandler handler = streams.get(streamId);
+        if (handler == null) {
+            pendingUpdates.put(streamId, priority);
+        } else {
+            handler.priority(priority);
+            handler.updateReceived = true;
+        }
+    }
+
+    private void scheduleDrain(ChannelHandlerContext ctx) {
+        if (!drainScheduled) {
+            drainScheduled = true;
+            // Collect everything that is flushed during this event loop run so it can be ordered.
+            ctx.executor().execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        drainScheduled = false;
+        if (draining) {
+            return;
+        }
+        draining = true;
+        try {
+            for (;;) {
+                StreamHandler next = next();
+                if (next == null) {
+                    break;
+                }
+                next.writeNext();
+            }
+        } finally {
+            draining = false;
+        }
+        StreamHandler written;
+        while ((written = needsFlush.poll()) != null) {
+            written.flushWritten();
+        }
+    }
+
+    private StreamHandler next() {
+        for (Bucket bucket : buckets) {
+            if (bucket != null) {
+                StreamHandler next = bucket.next();
+                if (next != null) {
+                    return next;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Bucket bucket(int urgency) {
+        Bucket bucket = buckets[urgency];
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets[urgency] = bucket;
+        }
+        return bucket;
+    }
+
+    /**
+     * The streams of one urgency that are ready to write. Streams that are not ready anymore are only removed once
+     * they are found at the head.
+     */
+    private static final class Bucket {
+        private static final Comparator<StreamHandler> BY_STREAM_ID = (a, b) -> Long.compare(a.streamId, b.streamId);
+
+        private final PriorityQueue<StreamHandler> sequential = new PriorityQueue<>(BY_STREAM_ID);
+        private final ArrayDeque<StreamHandler> incremental = new ArrayDeque<>();
+
+        void add(StreamHandler handler) {
+            if (handler.priority.isIncremental()) {
+                incremental.add(handler);
+            } else {
+                sequential.add(handler);
+            }
+        }
+
+        void remove(StreamHandler handler) {
+            if (!sequential.remove(handler)) {
+                incremental.remove(handler);
+            }
+        }
+
+        StreamHandler next() {
+            StreamHandler handler;
+            while ((handler = sequential.peek()) != null) {
+                if (handler.isReady()) {
+                    return handler;
+                }
+                sequential.poll();
+                handler.queuedIn = null;
+            }
+            while ((handler = incremental.poll()) != null) {
+                if (handler.isReady()) {
+                    // Round-robin: move the stream to the end so the others of the same urgency get their turn.
+                    incremental.add(handler);
+                    return handler;
+                }
+                handler.queuedIn = null;
+            }
+            return null;
+        }
+    }
+
+    private static final class PendingWrite {
+        final Object msg;
+        final ChannelPromise promise;
+
+        PendingWrite(Object msg, ChannelPromise promise) {
+            this.msg = msg;
+            this.promise = promise;
+        }
+    }
+
+    private final class StreamHandler extends ChannelDuplexHandler {
+        private final ArrayDeque<PendingWrite> pendingWrites = new ArrayDeque<>();
+        private ChannelHandlerContext ctx;
+        private long streamId;
+        private Http3Priority priority = Http3Priority.DEFAULT;
+        private boolean updateReceived;
+        private boolean headersReceived;
+        private int flushedWrites;
+        private boolean flushNeeded;
+        private ChannelPromise pendingClose;
+        private Bucket queuedIn;
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+            streamId = ((QuicStreamChannel) ctx.channel()).streamId();
+            Http3Priority update = pendingUpdates.remove(streamId);
+            if (update != null) {
+                priority(update);
+                updateReceived = true;
+            }
+            streams.put(streamId, this);
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            if (streams.get(streamId) == this) {
+                streams.remove(streamId);
+            }
+            dequeue();
+            failPendingWrites();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (!headersReceived && msg instanceof Http3HeadersFrame) {
+                headersReceived = true;
+                // A PRIORITY_UPDATE frame takes precedence over the header.
+                // See https://www.rfc-editor.org/rfc/rfc9218.html#section-7
+                if (!updateReceived) {
+                    priority(Http3Priority.parse(((Http3HeadersFrame) msg).headers().get(Http3Priority.PRIORITY)));
+                }
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+            if (ctx.channel().isWritable() && hasFlushedWrites()) {
+                enqueue();
+                drain();
+            }
+            ctx.fireChannelWritabilityChanged();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            failPendingWrites();
+            ctx.fireChannelInactive();
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            if (pendingClose != null) {
+                ReferenceCountUtil.release(msg);
+                promise.setFailure(new ClosedChannelException());
+                return;
+            }
+            pendingWrites.add(new PendingWrite(msg, promise));
+        }
+
+        @Override
+        public void flush(ChannelHandlerContext ctx) {
+            if (pendingWrites.isEmpty()) {
+                ctx.flush();
+                return;
+            }
+            flushedWrites(pendingWrites.size());
+            if (streamsWithFlushedWrites == 1 && !drainScheduled && !draining && ctx.channel().isWritable()) {
+                // No other stream has writes to order against, so there is no need to wait for the event loop.
+                writeFlushed();
+                return;
+            }
+            enqueue();
+            scheduleDrain(ctx);
+        }
+
+        @Override
+        public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+            if (flushedWrites == 0) {
+                // Writes that were not flushed yet are failed once the stream becomes inactive.
+                ctx.close(promise);
+            } else if (pendingClose == null) {
+                // Close once everything that was written before was handed to the stream.
+                pendingClose = promise;
+            } else {
+                pendingClose.addListener(new PromiseNotifier<>(promise));
+            }
+        }
+
+        void priority(Http3Priority priority) {
+            // The bucket depends on the priority, so move the stream if it is queued already.
+            boolean queued = queuedIn != null;
+            dequeue();
+            this.priority = priority;
+            if (queued) {
+                enqueue();
+            }
+        }
+
+        private void enqueue() {
+            if (queuedIn == null && isReady()) {
+                queuedIn = bucket(priority.urgency());
+                queuedIn.add(this);
+            }
+        }
+
+        private void dequeue() {
+            if (queuedIn != null) {
+                queuedIn.remove(this);
+                queuedIn = null;
+            }
+        }
+
+        private void flushedWrites(int flushedWrites) {
+            if (this.flushedWrites == 0 && flushedWrites > 0) {
+                streamsWithFlushedWrites++;
+            } else if (this.flushedWrites > 0 && flushedWrites == 0) {
+                streamsWithFlushedWrites--;
+            }
+            this.flushedWrites = flushedWrites;
+        }
+
+        boolean hasFlushedWrites() {
+            return flushedWrites > 0;
+        }
+
+        boolean isReady() {
+            return flushedWrites > 0 && ctx.channel().isWritable();
+        }
+
+        void writeNext() {
+            PendingWrite write = pendingWrites.peek();
+            assert write != null;
+            if (!flushNeeded) {
+                flushNeeded = true;
+                needsFlush.add(this);
+            }
+            if (priority.isIncremental() && write.msg instanceof Http3DataFrame) {
+                ByteBuf content = ((Http3DataFrame) write.msg).content();
+                if (content.readableBytes() > INCREMENTAL_CHUNK_SIZE) {
+                    // Write only a chunk so other incremental streams of the same urgency get their turn.
+                    ctx.write(new DefaultHttp3DataFrame(content.readRetainedSlice(INCREMENTAL_CHUNK_SIZE)))
+                            .addListener(f -> {
+                                if (!f.isSuccess()) {
+                                    write.promise.tryFailure(f.cause());
+                                }
+                            });
+                    return;
+                }
+            }
+            pendingWrites.remove();
+            flushedWrites(flushedWrites - 1);
+            ctx.write(write.msg, write.promise);
+        }
+
+        private void writeFlushed() {
+            while (flushedWrites > 0) {
+                PendingWrite write = pendingWrites.remove();
+                flushedWrites(flushedWrites - 1);
+                ctx.write(write.msg, write.promise);
+            }
+            flushWritten();
+        }
+
+        void flushWritten() {
+            flushNeeded = false;
+            ctx.flush();
+            if (pendingClose != null && flushedWrites == 0) {
+                ChannelPromise promise = pendingClose;
+                pendingClose = null;
+                ctx.close(promise);
+            }
+        }
+
+        private void failPendingWrites() {
+            flushedWrites(0);
+            PendingWrite write;
+            ClosedChannelException cause = null;
+            while ((write = pendingWrites.poll()) != null) {
+                if (cause == null) {
+                    cause = new ClosedChannelException();
+                }
+                ReferenceCountUtil.release(write.msg);
+                write.promise.tryFailure(cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+/**
+ * See <a href="https://www.rfc-editor.org/rfc/rfc9218.html#section-7.2">PRIORITY_UPDATE</a>.
+ */
+public interface Http3PriorityUpdateFrame extends Http3ControlStreamFrame {
+
+    /**
+     * Returns {@code true} if the priority of a push stream is updated, {@code false} if the priority of a request
+     * stream is updated.
+     *
+     * @return {@code true} if for a push stream.
+     */
+    boolean isPush();
+
+    @Override
+    default long type() {
+        return isPush() ? Http3CodecUtils.HTTP3_PRIORITY_UPDATE_PUSH_FRAME_TYPE :
+                Http3CodecUtils.HTTP3_PRIORITY_UPDATE_REQUEST_FRAME_TYPE;
+    }
+
+    /**
+     * Returns the stream id of the request stream or the push id of the push stream whose priority is updated.
+     *
+     * @return the id.
+     */
+    long prioritizedElementId();
+
+    /**
+     * Returns the priority field value, which uses the same format as the {@code priority} header.
+     *
+     * @return the field value.
+     */
+    CharSequence priorityFieldValue();
+
+    /**
+     * Returns the priority that is signaled by this frame.
+     *
+     * @return the priority.
+     */
+    default Http3Priority priority() {
+        return Http3Priority.parse(priorityFieldValue());
+    }
+}
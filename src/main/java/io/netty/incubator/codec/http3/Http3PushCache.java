@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.AsciiString;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of responses that were
+ * <a href="https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.4">pushed</a> by the server. Responses are
+ * keyed by the method, scheme, authority and path of the promised request.
+ * <p>
+ * Once a {@link Http3ClientConnectionHandler} is created with a cache it announces a {@code MAX_PUSH_ID} to the
+ * server that allows as many concurrent pushes as the cache can hold. Promises for requests that are not
+ * {@code GET} or {@code HEAD} requests, for requests that are already cached and pushes whose content exceeds the
+ * maximum content length are cancelled via {@code CANCEL_PUSH}.
+ * <p>
+ * A pushed response is handed out only once, as it may only be used for a single request. If the cache is full the
+ * oldest response is dropped. The cache can be shared by multiple connections and used from any thread.
+ */
+public final class Http3PushCache {
+    private static final AsciiString GET = AsciiString.cached("GET");
+    private static final AsciiString HEAD = AsciiString.cached("HEAD");
+
+    private final int maxEntries;
+    private final int maxContentLength;
+    private final Map<String, Http3FullResponse> entries = new LinkedHashMap<>();
+
+    /**
+     * Create a new instance.
+     *
+     * @param maxEntries        the maximum number of responses that are cached, which is also the number of
+     *                          concurrent pushes that are allowed per connection.
+     * @param maxContentLength  the maximum length of the content of a pushed response.
+     */
+    public Http3PushCache(int maxEntries, int maxContentLength) {
+        this.maxEntries = ObjectUtil.checkPositive(maxEntries, "maxEntries");
+        this.maxContentLength = ObjectUtil.checkPositiveOrZero(maxContentLength, "maxContentLength");
+    }
+
+    /**
+     * Returns the maximum number of cached responses.
+     *
+     * @return the maximum number of entries.
+     */
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the maximum length of the content of a pushed response.
+     *
+     * @return the maximum content length.
+     */
+    public int maxContentLength() {
+        return maxContentLength;
+    }
+
+    /**
+     * Removes and returns the pushed response for the given request.
+     *
+     * @param requestHeaders    the headers of the request.
+     * @return                  the response, which must be released by the caller, or {@code null} if there is none.
+     */
+    public synchronized Http3FullResponse poll(Http3Headers requestHeaders) {
+        String key = key(requestHeaders);
+        return key == null ? null : entries.remove(key);
+    }
+
+    /**
+     * Returns {@code true} if a pushed response for the given request is cached.
+     *
+     * @param requestHeaders    the headers of the request.
+     * @return                  {@code true} if a response is cached.
+     */
+    public synchronized boolean contains(Http3Headers requestHeaders) {
+        String key = key(requestHeaders);
+        return key != null && entries.containsKey(key);
+    }
+
+    /**
+     * Returns the number of cached responses.
+     *
+     * @return the number of entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes and releases all cached responses.
+     */
+    public synchronized void clear() {
+        for (Http3FullResponse response : entries.values()) {
+            response.release();
+        }
+        entries.clear();
+    }
+
+    /**
+     * Caches the response for the promised request, releasing the response if the request can not be cached.
+     */
+    synchronized void put(Http3Headers promisedRequestHeaders, Http3FullResponse response) {
+        String key = key(promisedRequestHeaders);
+        if (key == null) {
+            response.release();
+            return;
+        }
+        Http3FullResponse old = entries.remove(key);
+        if (old != null) {
+            old.release();
+        }
+        if (entries.size() == maxEntries) {
+            Iterator<Http3FullResponse> it = entries.values().iterator();
+            it.next().release();
+            it.remove();
+        }
+        entries.put(key, response);
+    }
+
+    /**
+     * Returns {@code true} if a response to the given request can be cached.
+     */
+    static boolean isCacheable(Http3Headers requestHeaders) {
+        return key(requestHeaders) != null;
+    }
+
+    private static String key(Http3Headers headers) {
+        CharSequence method = headers.method();
+        CharSequence scheme = headers.scheme();
+        CharSequence authority = headers.authority();
+        CharSequence path = headers.path();
+        if (method == null || scheme == null || authority == null || path == null ||
+                !GET.contentEquals(method) && !HEAD.contentEquals(method)) {
+            return null;
+        }
+        return new StringBuilder(method.length() + scheme.length() + authority.length() + path.length() + 4)
+                .append(method).append(' ').append(scheme).append("://").append(authority).append(path).toString();
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Keeps track of the <a href="https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.4">server pushes</a>
+ * of a connection and is notified about the push related frames that are received on the control stream.
+ */
+interface Http3PushManager {
+
+    /**
+     * Called once a {@code MAX_PUSH_ID} frame was received from the client and validated.
+     *
+     * @param maxPushId the maximum push id the server is allowed to use.
+     */
+    void maxPushIdReceived(long maxPushId);
+
+    /**
+     * Called once a {@code CANCEL_PUSH} frame was received from the remote peer.
+     *
+     * @param ctx           the {@link ChannelHandlerContext} of the control stream.
+     * @param pushId        the id of the cancelled push.
+     * @param fireException {@code true} if a connection error should be fired through the pipeline.
+     * @return              {@code false} if the push id is not valid and the connection was closed.
+     */
+    boolean cancelPushReceived(ChannelHandlerContext ctx, long pushId, boolean fireException);
+}
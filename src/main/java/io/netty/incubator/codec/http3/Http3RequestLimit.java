@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of requests that are processed concurrently. The same instance can be shared by the
+ * {@link Http3ServerConnectionHandler}s of all connections to limit the requests across the whole server.
+ * <p>
+ * The limit is either fixed or adapts to the measured latency of requests, which is the time from accepting the
+ * request stream until it is closed. In the adaptive mode the limit is increased by one once a limit's worth of
+ * requests completed faster than the latency threshold while the limit was in use, and decreased by
+ * {@link #BACKOFF_RATIO} if a request was slower (AIMD). Like TCP congestion control backs off at most once per
+ * round trip, the limit is decreased at most once for the requests that were in flight together: after a decrease
+ * further slow requests are ignored until as many requests completed as were in flight at the time.
+ */
+public final class Http3RequestLimit {
+    static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile int limit;
+    // Guarded by this.
+    private double exactLimit;
+    // Guarded by this.
+    private int completionsUntilBackoff;
+
+    /**
+     * Create a new instance with a fixed limit.
+     *
+     * @param maxConcurrentRequests the maximum number of requests that are processed concurrently.
+     */
+    public Http3RequestLimit(int maxConcurrentRequests) {
+        this(maxConcurrentRequests, maxConcurrentRequests, maxConcurrentRequests, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Create a new instance with a limit that adapts to the latency of requests.
+     *
+     * @param initialLimit      the limit to start with.
+     * @param minLimit          the lowest value the limit is decreased to.
+     * @param maxLimit          the highest value the limit is increased to.
+     * @param latencyThreshold  the latency above which the limit is decreased, or {@code 0} if the limit should not
+     *                          adapt.
+     * @param unit              the {@link TimeUnit} of {@code latencyThreshold}.
+     */
+    public Http3RequestLimit(int initialLimit, int minLimit, int maxLimit, long latencyThreshold, TimeUnit unit) {
+        this.minLimit = ObjectUtil.checkPositive(minLimit, "minLimit");
+        this.maxLimit = ObjectUtil.checkInRange(maxLimit, minLimit, Integer.MAX_VALUE, "maxLimit");
+        this.limit = ObjectUtil.checkInRange(initialLimit, minLimit, maxLimit, "initialLimit");
+        this.latencyThresholdNanos = ObjectUtil.checkNotNull(unit, "unit")
+                .toNanos(ObjectUtil.checkPositiveOrZero(latencyThreshold, "latencyThreshold"));
+        this.exactLimit = initialLimit;
+    }
+
+    /**
+     * Returns the current limit.
+     *
+     * @return the limit.
+     */
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of requests that are processed at the moment.
+     *
+     * @return the number of requests.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the number of requests that were rejected as the limit was reached.
+     *
+     * @return the number of rejected requests.
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns {@code true} if a new request can be processed, in which case {@link #release(long)} must be called
+     * once it completed.
+     */
+    boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Called once a request that was acquired via {@link #tryAcquire()} completed.
+     */
+    void release(long latencyNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        if (latencyThresholdNanos > 0) {
+            adapt(latencyNanos, inFlightBefore);
+        }
+    }
+
+    private synchronized void adapt(long latencyNanos, int inFlightBefore) {
+        boolean recovering = completionsUntilBackoff > 0;
+        if (recovering) {
+            completionsUntilBackoff--;
+        }
+        if (latencyNanos > latencyThresholdNanos) {
+            if (recovering) {
+                // Most likely slow for the same reason as the request that already caused a decrease.
+                return;
+            }
+            exactLimit = Math.max(minLimit, exactLimit * BACKOFF_RATIO);
+            completionsUntilBackoff = inFlightBefore - 1;
+        } else if (inFlightBefore * 2 >= exactLimit) {
+            // Only increase the limit if it was actually used, otherwise it would grow without bounds while there
+            // is not much load.
+            exactLimit = Math.min(maxLimit, exactLimit + 1 / exactLimit);
+        } else {
+            return;
+        }
+        limit = (int) exactLimit;
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(limit=" + limit + ", inFlight=" + inFlight.get() +
+                ", rejected=" + rejected.get() + ')';
+    }
+}
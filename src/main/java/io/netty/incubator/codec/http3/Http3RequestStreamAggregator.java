@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.ObjectUtil;
+
+/**
+ * {@link Http3RequestStreamInboundHandler} that aggregates the {@link Http3HeadersFrame}, {@link Http3DataFrame}s and
+ * trailers of a request stream into a single {@link Http3FullRequest} (or {@link Http3FullResponse} on the client
+ * side), which is passed to the next handler once the stream was read completely.
+ * <p>
+ * The content is collected in a {@link CompositeByteBuf} without being copied. A message which content exceeds
+ * {@code maxContentLength} is rejected as soon as this is known, either from its {@code content-length} header or
+ * from the content read so far. Servers respond with {@code 413 (Content Too Large)} and discard the rest of the
+ * request, clients fail the stream with a {@link TooLongFrameException}. Informational (1xx) responses are passed on
+ * as {@link Http3HeadersFrame}s. Everything that was aggregated is released if the stream is closed or the handler
+ * is removed before the message is complete.
+ */
+public final class Http3RequestStreamAggregator extends Http3RequestStreamInboundHandler {
+    static final String CONTENT_TOO_LARGE = "413";
+
+    private final boolean server;
+    private final int maxContentLength;
+    private Http3Headers headers;
+    private Http3Headers trailers;
+    private CompositeByteBuf content;
+    private boolean rejected;
+
+    /**
+     * Create a new instance.
+     *
+     * @param server            {@code true} if used on the server side, so requests are aggregated.
+     * @param maxContentLength  the maximum length of the content of the aggregated message.
+     */
+    public Http3RequestStreamAggregator(boolean server, int maxContentLength) {
+        this.server = server;
+        this.maxContentLength = ObjectUtil.checkPositiveOrZero(maxContentLength, "maxContentLength");
+    }
+
+    @Override
+    protected void channelRead(ChannelHandlerContext ctx, Http3HeadersFrame frame, boolean isLast) {
+        if (rejected) {
+            ReferenceCountUtil.release(frame);
+            return;
+        }
+        if (headers == null) {
+            if (!server && Http3CodecUtils.isInformationalResponse(frame.headers())) {
+                // Informational responses are followed by the final response.
+                ctx.fireChannelRead(frame);
+                return;
+            }
+            Long contentLength = frame.headers().getLong(HttpHeaderNames.CONTENT_LENGTH);
+            if (contentLength != null && contentLength > maxContentLength) {
+                // Reject early, before any of the content was read.
+                ReferenceCountUtil.release(frame);
+                reject(ctx);
+                return;
+            }
+            headers = Http3CodecUtils.headersToKeep(frame);
+        } else {
+            trailers = Http3CodecUtils.headersToKeep(frame);
+        }
+        ReferenceCountUtil.release(frame);
+        if (isLast) {
+            fireMessage(ctx);
+        }
+    }
+
+    @Override
+    protected void channelRead(ChannelHandlerContext ctx, Http3DataFrame frame, boolean isLast) {
+        if (rejected) {
+            frame.release();
+            return;
+        }
+        ByteBuf data = frame.content();
+        int length = content == null ? 0 : content.readableBytes();
+        if (data.readableBytes() > maxContentLength - length) {
+            frame.release();
+            reject(ctx);
+            return;
+        }
+        if (data.isReadable()) {
+            if (content == null) {
+                // Do not limit the number of components, as otherwise these would be copied into a new buffer.
+                content = ctx.alloc().compositeBuffer(Integer.MAX_VALUE);
+            }
+            content.addComponent(true, data);
+        } else {
+            frame.release();
+        }
+        if (isLast) {
+            fireMessage(ctx);
+        }
+    }
+
+    private void fireMessage(ChannelHandlerContext ctx) {
+        ByteBuf buffer = content == null ? Unpooled.EMPTY_BUFFER : content;
+        Http3Headers trailers = this.trailers == null ? new DefaultHttp3Headers() : this.trailers;
+        Object message = server ? new Http3FullRequest(headers, buffer, trailers) :
+                new Http3FullResponse(headers, buffer, trailers);
+        content = null;
+        headers = null;
+        this.trailers = null;
+        ctx.fireChannelRead(message);
+    }
+
+    private void reject(ChannelHandlerContext ctx) {
+        rejected = true;
+        release();
+        if (server) {
+            // See https://tools.ietf.org/html/rfc7231#section-6.5.11
+            Http3HeadersFrame response = new DefaultHttp3HeadersFrame();
+            response.headers().status(CONTENT_TOO_LARGE);
+            ctx.writeAndFlush(response).addListener(QuicStreamChannel.SHUTDOWN_OUTPUT);
+        } else {
+            ctx.fireExceptionCaught(new TooLongFrameException(
+                    "Response content exceeds " + maxContentLength + " bytes"));
+            ctx.close();
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (rejected) {
+            // Drain the rest of the request.
+            Http3CodecUtils.readIfNoAutoRead(ctx);
+            return;
+        }
+        super.channelReadComplete(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        release();
+        super.handlerRemoved(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // The stream was closed (or reset) before the message was complete.
+        release();
+        super.channelInactive(ctx);
+    }
+
+    private void release() {
+        headers = null;
+        trailers = null;
+        if (content != null) {
+            content.release();
+            content = null;
+        }
+    }
+}
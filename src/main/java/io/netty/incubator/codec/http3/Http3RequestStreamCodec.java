@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandler;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.ObjectUtil;
+
+import java.net.SocketAddress;
+import java.util.List;
+
+import static io.netty.incubator.codec.http3.Http3FrameTypeValidationHandler.frameTypeUnexpected;
+
+/**
+ * Codec for <a href="https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.1">request streams</a> which
+ * decodes, validates and encodes {@link Http3RequestStreamFrame}s in one {@link ChannelHandler}.
+ * <p>
+ * This has the same semantics as using a {@link Http3FrameCodec} followed by a
+ * {@link Http3RequestStreamValidationHandler} but needs less objects per stream and saves the extra pipeline hops
+ * for every frame.
+ */
+final class Http3RequestStreamCodec extends Http3FrameDecoder implements ChannelOutboundHandler {
+    private final Http3FrameEncoder encoder;
+    private final Http3RequestStreamValidator validator;
+    private final Http3ClientPushManager pushManager;
+
+    Http3RequestStreamCodec(QpackDecoder qpackDecoder, long maxHeaderListSize, Http3FrameEncoder encoder,
+                            Http3RequestStreamValidator validator) {
+        this(qpackDecoder, maxHeaderListSize, new Config(), encoder, validator, null);
+    }
+
+    Http3RequestStreamCodec(QpackDecoder qpackDecoder, long maxHeaderListSize, Config config,
+                            Http3FrameEncoder encoder, Http3RequestStreamValidator validator,
+                            Http3ClientPushManager pushManager) {
+        super(qpackDecoder, maxHeaderListSize, config);
+        // The encoder does not keep any state so it is fine to share it between the streams of a connection.
+        this.encoder = ObjectUtil.checkNotNull(encoder, "encoder");
+        this.validator = ObjectUtil.checkNotNull(validator, "validator");
+        this.pushManager = pushManager;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        int size = out.size();
+        super.decode(ctx, in, out);
+        // At most one frame is decoded per call.
+        if (out.size() > size) {
+            Object frame = out.get(size);
+            if (!(frame instanceof Http3RequestStreamFrame)) {
+                out.remove(size);
+                frameTypeUnexpected(ctx, frame);
+            } else if (!validator.validateRead(ctx, (Http3RequestStreamFrame) frame)) {
+                out.remove(size);
+            } else if (pushManager != null && frame instanceof Http3PushPromiseFrame &&
+                    !pushManager.pushPromiseReceived(ctx, (Http3PushPromiseFrame) frame)) {
+                out.remove(size);
+            }
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (!(msg instanceof Http3RequestStreamFrame)) {
+            frameTypeUnexpected(promise, msg);
+            return;
+        }
+        if (validator.validateWrite(ctx, (Http3RequestStreamFrame) msg, promise)) {
+            encoder.write(ctx, msg, promise);
+        }
+    }
+
+    @Override
+    public void bind(ChannelHandlerContext ctx, SocketAddress localAddress, ChannelPromise promise) {
+        ctx.bind(localAddress, promise);
+    }
+
+    @Override
+    public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress,
+                        SocketAddress localAddress, ChannelPromise promise) {
+        ctx.connect(remoteAddress, localAddress, promise);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) {
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        ctx.close(promise);
+    }
+
+    @Override
+    public void deregister(ChannelHandlerContext ctx, ChannelPromise promise) {
+        ctx.deregister(promise);
+    }
+
+    @Override
+    public void read(ChannelHandlerContext ctx) {
+        ctx.read();
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        ctx.flush();
+    }
+}
@@ -16,19 +16,57 @@
 package io.netty.incubator.codec.http3;
 
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.socket.ChannelInputShutdownEvent;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.ArrayDeque;
 
 /**
  * {@link ChannelInboundHandlerAdapter} which makes it easy to handle
  * <a href="https://tools.ietf.org/html/draft-ietf-quic-http-32#section-7">HTTP3 request streams</a>.
+ * <p>
+ * By default frames are passed to the handler as fast as they are read. In demand-driven mode auto-read is disabled
+ * for the stream and {@link Http3DataFrame}s are only passed once requested via
+ * {@link #request(ChannelHandlerContext, long)}, so a slow consumer of the content stops the stream from being read
+ * and so also the peer from sending, once the flow-control window is used up. Headers are passed without being
+ * requested, but once the first {@link Http3HeadersFrame} was received the stream is only read while there is
+ * demand, so the end of the stream and the trailers are only noticed once more frames were requested.
  */
 public abstract class Http3RequestStreamInboundHandler extends ChannelInboundHandlerAdapter {
     private static final Http3DataFrame EMPTY = new DefaultHttp3DataFrame(Unpooled.EMPTY_BUFFER);
+    private final boolean demandDriven;
     private boolean lastFrameDetected;
     private boolean firstFrameReceived;
+    private boolean headersReceived;
+    // Only used in demand-driven mode.
+    private final ArrayDeque<PendingFrame> pendingFrames;
+    private long demand;
+    private boolean inputShutdownPending;
+    private boolean delivering;
+
+    /**
+     * Create a new instance which passes frames as fast as these are read.
+     */
+    protected Http3RequestStreamInboundHandler() {
+        this(false);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param demandDriven  {@code true} if {@link Http3DataFrame}s should only be read and passed to the handler once
+     *                      requested via {@link #request(ChannelHandlerContext, long)}.
+     */
+    protected Http3RequestStreamInboundHandler(boolean demandDriven) {
+        this.demandDriven = demandDriven;
+        pendingFrames = demandDriven ? new ArrayDeque<>() : null;
+    }
 
     /**
      * Always returns {@code true} as this handler and sub-types are not sharable, due internal state.
@@ -38,10 +76,124 @@ public abstract class Http3RequestStreamInboundHandler extends ChannelInboundHan
         return false;
     }
 
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        if (demandDriven) {
+            ctx.channel().config().setAutoRead(false);
+            // Read until the headers were received.
+            ctx.read();
+        }
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        releasePendingFrames();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releasePendingFrames();
+        ctx.fireChannelInactive();
+    }
+
+    private void releasePendingFrames() {
+        if (pendingFrames != null) {
+            PendingFrame pending;
+            while ((pending = pendingFrames.poll()) != null) {
+                ReferenceCountUtil.release(pending.frame);
+            }
+        }
+    }
+
     @Override
     public final void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        firstFrameReceived = true;
         boolean inputShutdown = ((QuicStreamChannel) ctx.channel()).isInputShutdown();
+        if (demandDriven) {
+            pendingFrames.add(new PendingFrame(msg, inputShutdown));
+            deliverPendingFrames(ctx);
+        } else {
+            deliver(ctx, msg, inputShutdown);
+        }
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (demandDriven) {
+            readIfDemanded(ctx);
+        }
+        ctx.fireChannelReadComplete();
+    }
+
+    /**
+     * Requests the given number of {@link Http3DataFrame}s, which are passed to
+     * {@link #channelRead(ChannelHandlerContext, Http3DataFrame, boolean)} once read. Only has an effect in
+     * demand-driven mode. This method can be called from any thread.
+     *
+     * @param ctx   the {@link ChannelHandlerContext} of this handler.
+     * @param n     the number of frames to request.
+     */
+    protected final void request(ChannelHandlerContext ctx, long n) {
+        ObjectUtil.checkPositive(n, "n");
+        if (!demandDriven) {
+            return;
+        }
+        if (!ctx.executor().inEventLoop()) {
+            ctx.executor().execute(() -> request(ctx, n));
+            return;
+        }
+        demand += n;
+        if (demand < 0) {
+            // Treat as unbounded.
+            demand = Long.MAX_VALUE;
+        }
+        try {
+            deliverPendingFrames(ctx);
+        } catch (Throwable cause) {
+            ctx.fireExceptionCaught(cause);
+            return;
+        }
+        readIfDemanded(ctx);
+    }
+
+    private void deliverPendingFrames(ChannelHandlerContext ctx) throws Exception {
+        if (delivering) {
+            // Called from within one of the channelRead methods.
+            return;
+        }
+        delivering = true;
+        try {
+            for (;;) {
+                PendingFrame pending = pendingFrames.peek();
+                if (pending == null) {
+                    break;
+                }
+                if (pending.frame instanceof Http3DataFrame) {
+                    if (demand == 0) {
+                        break;
+                    }
+                    demand--;
+                }
+                pendingFrames.poll();
+                deliver(ctx, pending.frame, pending.inputShutdown);
+            }
+            if (inputShutdownPending && pendingFrames.isEmpty()) {
+                inputShutdownPending = false;
+                notifyLast(ctx);
+            }
+        } finally {
+            delivering = false;
+        }
+    }
+
+    private void readIfDemanded(ChannelHandlerContext ctx) {
+        if (pendingFrames.isEmpty() && (demand > 0 || !headersReceived) && ctx.channel().isActive() &&
+                !((QuicStreamChannel) ctx.channel()).isInputShutdown()) {
+            ctx.read();
+        }
+    }
+
+    private void deliver(ChannelHandlerContext ctx, Object msg, boolean inputShutdown) throws Exception {
+        firstFrameReceived = true;
         if (msg instanceof Http3UnknownFrame) {
             channelRead(ctx, (Http3UnknownFrame) msg);
             if (inputShutdown) {
@@ -52,6 +204,7 @@ public abstract class Http3RequestStreamInboundHandler extends ChannelInboundHan
                 lastFrameDetected = true;
             }
             if (msg instanceof Http3HeadersFrame) {
+                headersReceived = true;
                 channelRead(ctx, (Http3HeadersFrame) msg, inputShutdown);
             }
             if (msg instanceof Http3DataFrame) {
@@ -63,7 +216,12 @@ public abstract class Http3RequestStreamInboundHandler extends ChannelInboundHan
     @Override
     public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
         if (evt == ChannelInputShutdownEvent.INSTANCE) {
-            notifyLast(ctx);
+            if (demandDriven && !pendingFrames.isEmpty()) {
+                // Notify once all frames that were read before were passed to the handler.
+                inputShutdownPending = true;
+            } else {
+                notifyLast(ctx);
+            }
         }
         ctx.fireUserEventTriggered(evt);
     }
@@ -109,6 +267,21 @@ public abstract class Http3RequestStreamInboundHandler extends ChannelInboundHan
         frame.release();
     }
 
+    /**
+     * Pushes a response for the request with the given headers to the client, see
+     * {@link Http3#newPushStream(QuicStreamChannel, Http3Headers, ChannelHandler)}. This should be done before the
+     * response for this request stream is written.
+     *
+     * @param ctx                       the {@link ChannelHandlerContext} of this handler.
+     * @param promisedRequestHeaders    the headers of the request for which a response is pushed.
+     * @param handler                   the {@link ChannelHandler} to add to the push stream.
+     * @return                          the {@link Future} that will be notified once the push stream was opened.
+     */
+    protected final Future<QuicStreamChannel> push(ChannelHandlerContext ctx, Http3Headers promisedRequestHeaders,
+                                                   ChannelHandler handler) {
+        return Http3.newPushStream((QuicStreamChannel) ctx.channel(), promisedRequestHeaders, handler);
+    }
+
     /**
      * Return the local control stream for this HTTP/3 connection. This can be used to send
      * {@link Http3ControlStreamFrame}s to the remote peer.
@@ -119,4 +292,14 @@ public abstract class Http3RequestStreamInboundHandler extends ChannelInboundHan
     protected final QuicStreamChannel controlStream(ChannelHandlerContext ctx) {
         return Http3.getLocalControlStream(ctx.channel().parent());
     }
+
+    private static final class PendingFrame {
+        final Object frame;
+        final boolean inputShutdown;
+
+        PendingFrame(Object frame, boolean inputShutdown) {
+            this.frame = frame;
+            this.inputShutdown = inputShutdown;
+        }
+    }
 }
@@ -29,16 +29,24 @@ public abstract class Http3RequestStreamInitializer extends ChannelInitializer<Q
     @Override
     protected final void initChannel(QuicStreamChannel ch) {
         ChannelPipeline pipeline = ch.pipeline();
+        Http3ConnectionHandler connectionHandler = connectionHandler(ch);
+        // Add the codec that will encode, decode and validate what we write and receive on this stream.
+        pipeline.addLast(connectionHandler.newRequestStreamCodec());
+        connectionHandler.localRequestStreamCreated(ch);
+        initRequestStream(ch);
+    }
+
+    /**
+     * Returns the {@link Http3ConnectionHandler} of the parent {@link io.netty.incubator.codec.quic.QuicChannel} of
+     * the given request stream.
+     */
+    static Http3ConnectionHandler connectionHandler(QuicStreamChannel ch) {
         Http3ConnectionHandler connectionHandler = ch.parent().pipeline().get(Http3ConnectionHandler.class);
         if (connectionHandler == null) {
             throw new IllegalStateException("Couldn't obtain the " +
                     StringUtil.simpleClassName(Http3ConnectionHandler.class) + " of the parent Channel");
         }
-        // Add the encoder and decoder in the pipeline so we can handle Http3Frames
-        pipeline.addLast(connectionHandler.newCodec());
-        // Add the handler that will validate what we write and receive on this stream.
-        pipeline.addLast(connectionHandler.newRequestStreamValidationHandler());
-        initRequestStream(ch);
+        return connectionHandler;
     }
 
     /**
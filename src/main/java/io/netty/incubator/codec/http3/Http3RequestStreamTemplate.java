@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.internal.ObjectUtil;
+
+/**
+ * Sets up the pipeline of a request stream in the same way as {@link Http3RequestStreamInitializer} does when it
+ * adds a single {@link ChannelHandler}, but with less work per stream.
+ * <p>
+ * A {@link ChannelInitializer} keeps a concurrent set of the contexts it initialized and has its own context added
+ * to and removed from the pipeline again. This handler instead replaces itself with the request stream codec, so the
+ * codec reuses its position in the pipeline and the handler is linked in right after it. The instance may be reused
+ * for many streams as long as the handler it adds is {@link ChannelHandler.Sharable}, which is why each
+ * {@link Http3ConnectionHandler} caches the template it returned last.
+ */
+final class Http3RequestStreamTemplate extends ChannelHandlerAdapter {
+    private final ChannelHandler handler;
+
+    Http3RequestStreamTemplate(ChannelHandler handler) {
+        this.handler = ObjectUtil.checkNotNull(handler, "handler");
+    }
+
+    ChannelHandler handler() {
+        return handler;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        QuicStreamChannel ch = (QuicStreamChannel) ctx.channel();
+        try {
+            Http3ConnectionHandler connectionHandler = Http3RequestStreamInitializer.connectionHandler(ch);
+            // Add the codec that will encode, decode and validate what we write and receive on this stream.
+            ctx.pipeline().replace(this, null, connectionHandler.newRequestStreamCodec());
+            connectionHandler.localRequestStreamCreated(ch);
+            ch.pipeline().addLast(handler);
+        } catch (Throwable cause) {
+            // Same as ChannelInitializer, if we can not setup the pipeline the stream is of no use.
+            ch.pipeline().fireExceptionCaught(cause);
+            ch.close();
+        }
+    }
+
+    /**
+     * Always returns {@code true} as the template itself does not keep any state.
+     */
+    @Override
+    public boolean isSharable() {
+        return true;
+    }
+}
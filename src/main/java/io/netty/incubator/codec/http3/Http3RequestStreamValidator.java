@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.StringUtil;
+
+import java.util.function.BooleanSupplier;
+
+import static io.netty.incubator.codec.http3.Http3FrameTypeValidationHandler.frameTypeUnexpected;
+
+/**
+ * Validates the order of the {@link Http3RequestStreamFrame}s that are read from and written to a request stream.
+ *
+ * See <a href="https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.1">HTTP Message Exchanges</a>.
+ */
+final class Http3RequestStreamValidator {
+    private enum State {
+        Initial,
+        Started,
+        End
+    }
+    private State readState = State.Initial;
+    private State writeState = State.Initial;
+    private final boolean server;
+    private final BooleanSupplier goAwayReceivedSupplier;
+
+    static Http3RequestStreamValidator newServerValidator() {
+        return new Http3RequestStreamValidator(true, () -> false);
+    }
+
+    static Http3RequestStreamValidator newClientValidator(BooleanSupplier goAwayReceivedSupplier) {
+        return new Http3RequestStreamValidator(false, goAwayReceivedSupplier);
+    }
+
+    private Http3RequestStreamValidator(boolean server, BooleanSupplier goAwayReceivedSupplier) {
+        this.server = server;
+        this.goAwayReceivedSupplier = goAwayReceivedSupplier;
+    }
+
+    private static State checkState(State state, Http3RequestStreamFrame frame, boolean response) {
+        switch (state) {
+            case Initial:
+                if (!(frame instanceof Http3HeadersFrame)) {
+                    return null;
+                }
+                if (response && Http3CodecUtils.isInformationalResponse(((Http3HeadersFrame) frame).headers())) {
+                    // Any number of informational responses may be sent before the final response.
+                    // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.1
+                    return state;
+                }
+                return State.Started;
+            case Started:
+                if (frame instanceof Http3HeadersFrame) {
+                    // trailers
+                    return State.End;
+                }
+                return state;
+            case End:
+                return null;
+            default:
+                throw new Error();
+        }
+    }
+
+    /**
+     * Validates the {@link Http3RequestStreamFrame} that should be written. If it is not valid the frame is released
+     * and the {@link ChannelPromise} is failed.
+     *
+     * @param ctx       the {@link ChannelHandlerContext} of the handler that writes the frame.
+     * @param frame     the {@link Http3RequestStreamFrame} to write.
+     * @param promise   the {@link ChannelPromise} of the write.
+     * @return          {@code true} if the frame should be written, {@code false} otherwise.
+     */
+    boolean validateWrite(ChannelHandlerContext ctx, Http3RequestStreamFrame frame, ChannelPromise promise) {
+        if (!(frame instanceof Http3PushPromiseFrame)) {
+            if (!server && writeState == State.Initial && goAwayReceivedSupplier.getAsBoolean()) {
+                String type = StringUtil.simpleClassName(frame);
+                ReferenceCountUtil.release(frame);
+                promise.setFailure(new Http3Exception(Http3ErrorCode.H3_FRAME_UNEXPECTED,
+                        "Frame of type " + type + " unexpected as we received a GOAWAY already."));
+                ctx.close();
+                return false;
+            }
+            State newState = checkState(writeState, frame, server);
+            if (newState == null) {
+                frameTypeUnexpected(promise, frame);
+                return false;
+            }
+            writeState = newState;
+        } else if (!server) {
+            // Only supported on the server.
+            // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.1
+            frameTypeUnexpected(promise, frame);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Validates the {@link Http3RequestStreamFrame} that was read. If it is not valid the frame is released
+     * and the connection is closed.
+     *
+     * @param ctx       the {@link ChannelHandlerContext} of the handler that read the frame.
+     * @param frame     the {@link Http3RequestStreamFrame} that was read.
+     * @return          {@code true} if the frame should be forwarded, {@code false} otherwise.
+     */
+    boolean validateRead(ChannelHandlerContext ctx, Http3RequestStreamFrame frame) {
+        if (!(frame instanceof Http3PushPromiseFrame)) {
+            State newState = checkState(readState, frame, !server);
+            if (newState == null) {
+                frameTypeUnexpected(ctx, frame);
+                return false;
+            }
+            readState = newState;
+        } else if (server) {
+            // Only the server is allowed to send PUSH_PROMISE frames.
+            // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.1
+            frameTypeUnexpected(ctx, frame);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces the {@link Http3RequestTimeouts} for all request streams of a connection.
+ * <p>
+ * Instead of scheduling a task per stream, which would need to be re-scheduled for every frame that is received
+ * to implement the idle timeout, a single task per connection checks all streams that did not receive their
+ * complete request yet. To bound the number of checks the resolution is a tenth of the shortest timeout. Request
+ * streams that timed out are closed, as QUIC streams can not be reset with an error code.
+ * <p>
+ * The body idle timeout is measured from the last bytes that were read, not the last decoded frame, so a large
+ * frame that arrives slowly does not time out. Time during which reads are held back by the stream itself, for
+ * example by a demand-driven {@link Http3RequestStreamInboundHandler}, is not counted either.
+ */
+final class Http3RequestTimeoutTracker {
+    private final EventExecutor executor;
+    private final long headersTimeoutNanos;
+    private final long bodyIdleTimeoutNanos;
+    private final long requestTimeoutNanos;
+    private final long resolutionNanos;
+    private final Set<StreamHandler> streams = new LinkedHashSet<>();
+    private ScheduledFuture<?> checkFuture;
+    private long checkNanos;
+
+    Http3RequestTimeoutTracker(EventExecutor executor, Http3RequestTimeouts timeouts) {
+        this.executor = executor;
+        headersTimeoutNanos = timeouts.headersTimeout(TimeUnit.NANOSECONDS);
+        bodyIdleTimeoutNanos = timeouts.bodyIdleTimeout(TimeUnit.NANOSECONDS);
+        requestTimeoutNanos = timeouts.requestTimeout(TimeUnit.NANOSECONDS);
+        long shortest = Long.MAX_VALUE;
+        for (long timeout : new long[] { headersTimeoutNanos, bodyIdleTimeoutNanos, requestTimeoutNanos }) {
+            if (timeout > 0) {
+                shortest = Math.min(shortest, timeout);
+            }
+        }
+        resolutionNanos = shortest == Long.MAX_VALUE ? 0 : shortest / 10;
+    }
+
+    /**
+     * Returns {@code true} if at least one timeout is enabled.
+     */
+    boolean isEnabled() {
+        return headersTimeoutNanos > 0 || bodyIdleTimeoutNanos > 0 || requestTimeoutNanos > 0;
+    }
+
+    /**
+     * Returns a new {@link ChannelHandler} that needs to be added to the pipeline of a request stream, after the
+     * codec. It adds another handler in front of the codec to observe the bytes that are read.
+     */
+    ChannelHandler newStreamHandler() {
+        return new StreamHandler();
+    }
+
+    /**
+     * Returns the number of request streams that did not receive the complete request yet.
+     */
+    int trackedStreams() {
+        return streams.size();
+    }
+
+    private void track(StreamHandler handler, long nowNanos) {
+        streams.add(handler);
+        scheduleCheck(nowNanos, handler.remainingNanos(nowNanos));
+    }
+
+    private void untrack(StreamHandler handler) {
+        if (streams.remove(handler) && streams.isEmpty() && checkFuture != null) {
+            checkFuture.cancel(false);
+            checkFuture = null;
+        }
+    }
+
+    private void scheduleCheck(long nowNanos, long delayNanos) {
+        if (delayNanos == Long.MAX_VALUE) {
+            return;
+        }
+        delayNanos = Math.max(delayNanos, resolutionNanos);
+        if (checkFuture != null) {
+            // Only re-schedule if the check would run too late, otherwise it will find the stream anyway.
+            if (checkNanos - (nowNanos + delayNanos) <= resolutionNanos) {
+                return;
+            }
+            checkFuture.cancel(false);
+        }
+        checkNanos = nowNanos + delayNanos;
+        checkFuture = executor.schedule(this::check, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void check() {
+        checkFuture = null;
+        long nowNanos = System.nanoTime();
+        long nextDelayNanos = Long.MAX_VALUE;
+        List<StreamHandler> timedOut = null;
+        for (StreamHandler handler : streams) {
+            long remainingNanos = handler.remainingNanos(nowNanos);
+            if (remainingNanos <= 0) {
+                if (timedOut == null) {
+                    timedOut = new ArrayList<>();
+                }
+                timedOut.add(handler);
+            } else {
+                nextDelayNanos = Math.min(nextDelayNanos, remainingNanos);
+            }
+        }
+        if (timedOut != null) {
+            for (StreamHandler handler : timedOut) {
+                handler.timeout(nowNanos);
+            }
+        }
+        if (!streams.isEmpty()) {
+            scheduleCheck(nowNanos, nextDelayNanos);
+        }
+    }
+
+    private final class StreamHandler extends ChannelInboundHandlerAdapter {
+        private ChannelHandlerContext ctx;
+        private long startNanos;
+        private long lastReadNanos;
+        private boolean readRequested;
+        private boolean headersReceived;
+        private boolean done;
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+            startNanos = lastReadNanos = System.nanoTime();
+            ctx.pipeline().addFirst(new ReadActivityHandler());
+            track(this, startNanos);
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            done();
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (!done && !headersReceived && msg instanceof Http3HeadersFrame) {
+                headersReceived = true;
+                // The body idle timeout may be shorter than the headers timeout.
+                long nowNanos = System.nanoTime();
+                scheduleCheck(nowNanos, remainingNanos(nowNanos));
+            }
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            if (evt instanceof ChannelInputShutdownEvent) {
+                // The complete request was received.
+                done();
+            }
+            ctx.fireUserEventTriggered(evt);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            done();
+            ctx.fireChannelInactive();
+        }
+
+        private void done() {
+            if (!done) {
+                done = true;
+                untrack(this);
+            }
+        }
+
+        /**
+         * Returns {@code true} if nothing can be read as neither auto-read is enabled nor a read was requested.
+         */
+        private boolean isReadHeldBack() {
+            return !readRequested && !ctx.channel().config().isAutoRead();
+        }
+
+        void readRequested() {
+            boolean heldBack = isReadHeldBack();
+            readRequested = true;
+            if (heldBack && !done) {
+                // Restart the idle timeout, the peer could not send anything while reads were held back.
+                lastReadNanos = System.nanoTime();
+                scheduleCheck(lastReadNanos, remainingNanos(lastReadNanos));
+            }
+        }
+
+        long remainingNanos(long nowNanos) {
+            long remainingNanos = Long.MAX_VALUE;
+            if (requestTimeoutNanos > 0) {
+                remainingNanos = startNanos + requestTimeoutNanos - nowNanos;
+            }
+            if (!headersReceived) {
+                if (headersTimeoutNanos > 0) {
+                    remainingNanos = Math.min(remainingNanos, startNanos + headersTimeoutNanos - nowNanos);
+                }
+            } else if (bodyIdleTimeoutNanos > 0 && !isReadHeldBack()) {
+                remainingNanos = Math.min(remainingNanos, lastReadNanos + bodyIdleTimeoutNanos - nowNanos);
+            }
+            return remainingNanos;
+        }
+
+        void timeout(long nowNanos) {
+            done();
+            String message;
+            if (requestTimeoutNanos > 0 && startNanos + requestTimeoutNanos - nowNanos <= 0) {
+                message = "Request not received within " +
+                        TimeUnit.NANOSECONDS.toMillis(requestTimeoutNanos) + "ms";
+            } else if (!headersReceived) {
+                message = "Request headers not received within " +
+                        TimeUnit.NANOSECONDS.toMillis(headersTimeoutNanos) + "ms";
+            } else {
+                message = "No request bytes received within " +
+                        TimeUnit.NANOSECONDS.toMillis(bodyIdleTimeoutNanos) + "ms";
+            }
+            // Let the handlers of the stream know why it is closed before closing it.
+            ctx.fireExceptionCaught(new Http3Exception(Http3ErrorCode.H3_REQUEST_CANCELLED, message));
+            ctx.close();
+        }
+
+        /**
+         * Sits in front of the codec and so sees every read of bytes, even if they do not complete a frame, as well
+         * as every read request of the codec and the handlers after it.
+         */
+        private final class ReadActivityHandler extends ChannelDuplexHandler {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                lastReadNanos = System.nanoTime();
+                ctx.fireChannelRead(msg);
+            }
+
+            @Override
+            public void channelReadComplete(ChannelHandlerContext ctx) {
+                readRequested = false;
+                ctx.fireChannelReadComplete();
+            }
+
+            @Override
+            public void read(ChannelHandlerContext ctx) {
+                readRequested();
+                ctx.read();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeouts that are applied to the request streams of a server, so clients that send requests slowly can not hold
+ * the state of streams until the whole connection idles out. A timeout of {@code 0} disables it.
+ */
+public final class Http3RequestTimeouts {
+    private final long headersTimeoutNanos;
+    private final long bodyIdleTimeoutNanos;
+    private final long requestTimeoutNanos;
+
+    /**
+     * Create a new instance.
+     *
+     * @param headersTimeout    the maximum time between opening the request stream and receiving the headers.
+     * @param bodyIdleTimeout   the maximum time between receiving two frames of the request once the headers
+     *                          were received.
+     * @param requestTimeout    the maximum time between opening the request stream and receiving the complete
+     *                          request.
+     * @param unit              the {@link TimeUnit} of all timeouts.
+     */
+    public Http3RequestTimeouts(long headersTimeout, long bodyIdleTimeout, long requestTimeout, TimeUnit unit) {
+        ObjectUtil.checkNotNull(unit, "unit");
+        this.headersTimeoutNanos = unit.toNanos(ObjectUtil.checkPositiveOrZero(headersTimeout, "headersTimeout"));
+        this.bodyIdleTimeoutNanos = unit.toNanos(ObjectUtil.checkPositiveOrZero(bodyIdleTimeout, "bodyIdleTimeout"));
+        this.requestTimeoutNanos = unit.toNanos(ObjectUtil.checkPositiveOrZero(requestTimeout, "requestTimeout"));
+    }
+
+    /**
+     * Returns the maximum time between opening the request stream and receiving the headers.
+     *
+     * @param unit  the {@link TimeUnit} of the returned value.
+     * @return      the timeout or {@code 0} if disabled.
+     */
+    public long headersTimeout(TimeUnit unit) {
+        return unit.convert(headersTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the maximum time between receiving two frames of the request once the headers were received.
+     *
+     * @param unit  the {@link TimeUnit} of the returned value.
+     * @return      the timeout or {@code 0} if disabled.
+     */
+    public long bodyIdleTimeout(TimeUnit unit) {
+        return unit.convert(bodyIdleTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the maximum time between opening the request stream and receiving the complete request.
+     *
+     * @param unit  the {@link TimeUnit} of the returned value.
+     * @return      the timeout or {@code 0} if disabled.
+     */
+    public long requestTimeout(TimeUnit unit) {
+        return unit.convert(requestTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(headersTimeoutNanos=" + headersTimeoutNanos +
+                ", bodyIdleTimeoutNanos=" + bodyIdleTimeoutNanos + ", requestTimeoutNanos=" + requestTimeoutNanos +
+                ')';
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.TooLongFrameException;
+
+/**
+ * {@link Http3ResponseListener} that aggregates the parts of a response into a {@link Http3FullResponse}.
+ */
+final class Http3ResponseAggregator implements Http3ResponseListener {
+    private final int maxContentLength;
+    private Http3Headers headers;
+    private Http3Headers trailers;
+    private CompositeByteBuf content;
+
+    Http3ResponseAggregator(int maxContentLength) {
+        this.maxContentLength = maxContentLength;
+    }
+
+    @Override
+    public void onHeaders(Http3Headers headers) {
+        this.headers = headers;
+    }
+
+    @Override
+    public void onData(ByteBuf data) throws TooLongFrameException {
+        int length = content == null ? 0 : content.readableBytes();
+        if (data.readableBytes() > maxContentLength - length) {
+            throw new TooLongFrameException("Response content exceeds " + maxContentLength + " bytes");
+        }
+        if (content == null) {
+            content = data.alloc().compositeBuffer();
+        }
+        content.addComponent(true, data.retain());
+    }
+
+    @Override
+    public void onTrailers(Http3Headers trailers) {
+        this.trailers = trailers;
+    }
+
+    /**
+     * Returns {@code true} if the headers of the final response were received.
+     */
+    boolean hasHeaders() {
+        return headers != null;
+    }
+
+    /**
+     * Returns the aggregated response and transfers the ownership of the content to the caller.
+     */
+    Http3FullResponse response() {
+        ByteBuf buffer = content == null ? Unpooled.EMPTY_BUFFER : content;
+        content = null;
+        return new Http3FullResponse(headers, buffer, trailers == null ? new DefaultHttp3Headers() : trailers);
+    }
+
+    /**
+     * Releases the content that was aggregated so far.
+     */
+    void release() {
+        if (content != null) {
+            content.release();
+            content = null;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Listener that is notified about the parts of a HTTP/3 response as they are received when using
+ * {@link Http3Client#request(Http3Headers, ByteBuf, Http3ResponseListener)}.
+ * <p>
+ * All methods are called from the event loop of the request stream. If a method throws the request fails and the
+ * request stream is closed.
+ */
+public interface Http3ResponseListener {
+
+    /**
+     * Called for each informational (1xx) response that is received before the final response, like
+     * {@code 103 (Early Hints)}. The default implementation does nothing.
+     *
+     * @param headers       the headers of the informational response.
+     * @throws Exception    thrown if an error happens during processing.
+     */
+    default void onInformational(Http3Headers headers) throws Exception {
+    }
+
+    /**
+     * Called once the headers of the final response were received.
+     *
+     * @param headers       the headers of the response.
+     * @throws Exception    thrown if an error happens during processing.
+     */
+    void onHeaders(Http3Headers headers) throws Exception;
+
+    /**
+     * Called for each chunk of the response content.
+     *
+     * @param content       the content, which is released once this method returns. Call
+     *                      {@link ByteBuf#retain()} if it should be used afterwards.
+     * @throws Exception    thrown if an error happens during processing.
+     */
+    void onData(ByteBuf content) throws Exception;
+
+    /**
+     * Called once the trailers of the response were received.
+     *
+     * @param trailers      the trailers of the response.
+     * @throws Exception    thrown if an error happens during processing.
+     */
+    void onTrailers(Http3Headers trailers) throws Exception;
+}
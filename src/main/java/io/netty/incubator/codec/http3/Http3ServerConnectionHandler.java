@@ -15,20 +15,51 @@
  */
 package io.netty.incubator.codec.http3;
 
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
+import io.netty.incubator.codec.quic.QuicChannel;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.PromiseNotifier;
+import io.netty.util.concurrent.ScheduledFuture;
 import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
 
+import java.util.concurrent.TimeUnit;
 import java.util.function.LongFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 
 /**
  * Handler that handles <a href="https://tools.ietf.org/html/draft-ietf-quic-http-32">HTTP3</a> for the server-side.
+ * <p>
+ * If early data is enabled for the QUIC connection, requests that arrive before the handshake is complete are
+ * marked, see {@link Http3#isEarlyData(QuicStreamChannel)}. As early data can be replayed, only requests with an
+ * idempotent method are passed to the request stream handler by default, see
+ * {@link Builder#earlyDataPredicate(Predicate)}. All others are answered with {@code 425 Too Early}.
  */
 public final class Http3ServerConnectionHandler extends Http3ConnectionHandler {
+    // The largest client-initiated bidirectional stream id that can be encoded.
+    // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-5.2
+    static final long MAX_GOAWAY_ID = (1L << 62) - 4;
+
     private final ChannelHandler requestStreamHandler;
+    private final Http3RequestTimeouts requestTimeouts;
+    private final int maxConcurrentRequestStreams;
+    private final Http3RequestLimit requestLimit;
+    private final Predicate<? super Http3Headers> earlyDataPredicate;
+    private Http3RequestTimeoutTracker timeoutTracker;
+    private volatile ChannelHandlerContext ctx;
+    private long nextStreamId;
+    private int activeRequestStreams;
+    private long goAwayId = -1;
+    private Promise<Void> shutdownPromise;
+    private ScheduledFuture<?> shutdownTimeoutFuture;
 
     /**
      * Create a new instance.
@@ -58,16 +89,359 @@ public final class Http3ServerConnectionHandler extends Http3ConnectionHandler {
                                         ChannelHandler inboundControlStreamHandler,
                                         LongFunction<ChannelHandler> unknownInboundStreamHandlerFactory,
                                         Http3SettingsFrame localSettings) {
-        super(true, inboundControlStreamHandler, unknownInboundStreamHandlerFactory, localSettings);
-        this.requestStreamHandler = ObjectUtil.checkNotNull(requestStreamHandler, "requestStreamHandler");
+        this(builder(requestStreamHandler)
+                .inboundControlStreamHandler(inboundControlStreamHandler)
+                .unknownInboundStreamHandlerFactory(unknownInboundStreamHandlerFactory)
+                .localSettings(localSettings));
+    }
+
+    private Http3ServerConnectionHandler(Builder builder) {
+        super(builder.config);
+        this.requestStreamHandler = builder.requestStreamHandler;
+        this.requestTimeouts = builder.requestTimeouts;
+        this.maxConcurrentRequestStreams = builder.maxConcurrentRequestStreams;
+        this.requestLimit = builder.requestLimit;
+        this.earlyDataPredicate = builder.earlyDataPredicate;
+    }
+
+    /**
+     * Returns a new {@link Builder} for a {@link Http3ServerConnectionHandler}.
+     *
+     * @param requestStreamHandler  the {@link ChannelHandler} that is used for each new request stream.
+     *                              This handler will receive {@link Http3HeadersFrame} and {@link Http3DataFrame}s.
+     */
+    public static Builder builder(ChannelHandler requestStreamHandler) {
+        return new Builder(requestStreamHandler);
+    }
+
+    /**
+     * Shuts down the connection gracefully.
+     * <p>
+     * First a GOAWAY frame with the largest possible id is sent, so the client stops opening new request streams.
+     * Once the {@code quietPeriod} passed, which should be long enough for request streams that the client opened
+     * in the meantime to arrive, a second GOAWAY frame with the id of the first request stream that was not
+     * processed is sent. Request streams that arrive after this are rejected and so can be retried by the client on
+     * another connection. The connection is closed once all processed request streams completed, or once the
+     * {@code timeout} passed.
+     *
+     * @param quietPeriod   the time to wait before the final GOAWAY frame is sent.
+     * @param timeout       the maximum time to wait in total before the connection is closed, even if request
+     *                      streams are still active.
+     * @param unit          the {@link TimeUnit} of {@code quietPeriod} and {@code timeout}.
+     * @return              the {@link Future} that is notified once the connection was closed.
+     */
+    public Future<Void> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        ObjectUtil.checkPositiveOrZero(quietPeriod, "quietPeriod");
+        ObjectUtil.checkPositiveOrZero(timeout, "timeout");
+        ObjectUtil.checkNotNull(unit, "unit");
+        ChannelHandlerContext ctx = this.ctx;
+        if (ctx == null) {
+            throw new IllegalStateException(
+                    StringUtil.simpleClassName(this) + " was not added to the pipeline of a QuicChannel");
+        }
+        if (ctx.executor().inEventLoop()) {
+            return shutdownGracefully0(ctx, quietPeriod, timeout, unit);
+        }
+        Promise<Void> promise = ctx.executor().newPromise();
+        ctx.executor().execute(() -> shutdownGracefully0(ctx, quietPeriod, timeout, unit)
+                .addListener(new PromiseNotifier<>(promise)));
+        return promise;
+    }
+
+    private Future<Void> shutdownGracefully0(ChannelHandlerContext ctx, long quietPeriod, long timeout,
+                                             TimeUnit unit) {
+        if (shutdownPromise != null) {
+            return shutdownPromise;
+        }
+        shutdownPromise = ctx.executor().newPromise();
+        if (!ctx.channel().isActive()) {
+            shutdownPromise.setSuccess(null);
+            return shutdownPromise;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        // The client may have opened request streams that did not arrive yet, these should still be processed.
+        // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-5.2
+        writeGoAway(ctx, MAX_GOAWAY_ID);
+        ctx.executor().schedule(() -> writeFinalGoAway(ctx, deadline),
+                Math.min(quietPeriod, timeout), unit);
+        return shutdownPromise;
+    }
+
+    private void writeFinalGoAway(ChannelHandlerContext ctx, long deadline) {
+        if (shutdownPromise.isDone()) {
+            return;
+        }
+        if (goAwayId == -1) {
+            goAwayId = nextStreamId;
+            writeGoAway(ctx, goAwayId);
+        }
+        // Otherwise a request stream was rejected during the quiet period and so the final GOAWAY frame was sent
+        // already.
+        if (activeRequestStreams == 0) {
+            closeGracefully(ctx);
+        } else {
+            shutdownTimeoutFuture = ctx.executor().schedule(() -> closeGracefully(ctx),
+                    deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Rejects the request stream with the given id and all request streams that are opened after it, as QUIC streams
+     * can not be reset with {@link Http3ErrorCode#H3_REQUEST_REJECTED}. The GOAWAY frame tells the client that these
+     * were not processed, so it can retry them on another connection. This connection is closed once the request
+     * streams that were accepted before completed.
+     *
+     * @return the {@link ChannelFuture} of the write of the GOAWAY frame or {@code null} if none was written.
+     */
+    private ChannelFuture rejectRequestStreams(ChannelHandlerContext ctx, long streamId) {
+        if (goAwayId != -1 && goAwayId <= streamId) {
+            return null;
+        }
+        // A GOAWAY frame may only decrease the id, which is the case if a request stream arrived out of order.
+        goAwayId = streamId;
+        ChannelFuture future = writeGoAway(ctx, goAwayId);
+        if (shutdownPromise == null) {
+            shutdownPromise = ctx.executor().newPromise();
+            if (activeRequestStreams == 0) {
+                closeGracefully(ctx);
+            }
+        }
+        return future;
+    }
+
+    private static ChannelFuture writeGoAway(ChannelHandlerContext ctx, long id) {
+        QuicStreamChannel controlStream = Http3.getLocalControlStream(ctx.channel());
+        if (controlStream != null) {
+            return controlStream.writeAndFlush(new DefaultHttp3GoAwayFrame(id));
+        }
+        return null;
+    }
+
+    private void closeGracefully(ChannelHandlerContext ctx) {
+        if (shutdownTimeoutFuture != null) {
+            shutdownTimeoutFuture.cancel(false);
+            shutdownTimeoutFuture = null;
+        }
+        ((QuicChannel) ctx.channel()).close(true, Http3ErrorCode.H3_NO_ERROR.code, Unpooled.EMPTY_BUFFER)
+                .addListener(f -> {
+                    if (f.isSuccess()) {
+                        shutdownPromise.trySuccess(null);
+                    } else {
+                        shutdownPromise.tryFailure(f.cause());
+                    }
+                });
+    }
+
+    private void requestStreamClosed(ChannelHandlerContext ctx) {
+        activeRequestStreams--;
+        if (activeRequestStreams == 0 && goAwayId != -1 && !shutdownPromise.isDone()) {
+            closeGracefully(ctx);
+        }
+    }
+
+    /**
+     * Returns the number of request streams that are processed at the moment.
+     */
+    int activeRequestStreams() {
+        return activeRequestStreams;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+        super.handlerAdded(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        if (shutdownPromise != null) {
+            if (shutdownTimeoutFuture != null) {
+                shutdownTimeoutFuture.cancel(false);
+                shutdownTimeoutFuture = null;
+            }
+            shutdownPromise.trySuccess(null);
+        }
+        ctx.fireChannelInactive();
     }
 
     @Override
     void initBidirectionalStream(ChannelHandlerContext ctx, QuicStreamChannel streamChannel) {
+        long streamId = streamChannel.streamId();
+        if (goAwayId != -1 && streamId >= goAwayId) {
+            // The stream was opened before the client received the final GOAWAY frame. As it was not processed
+            // the client can retry the request on another connection.
+            // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-5.2
+            streamChannel.close();
+            return;
+        }
+        if (activeRequestStreams >= maxConcurrentRequestStreams ||
+                requestLimit != null && !requestLimit.tryAcquire()) {
+            // Reject the request instead of letting all requests slow down under overload. As the request was not
+            // processed the client can retry it, which it only knows due to the GOAWAY frame.
+            // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-5.2
+            ChannelFuture goAwayFuture = rejectRequestStreams(ctx, streamId);
+            if (goAwayFuture == null) {
+                streamChannel.close();
+            } else {
+                // Hand the GOAWAY frame to QUIC first, so it most likely reaches the client before it notices that
+                // the stream was closed.
+                goAwayFuture.addListener(f -> streamChannel.close());
+            }
+            return;
+        }
+        // Only accepted streams count, so a final GOAWAY covers the requests that were rejected.
+        nextStreamId = Math.max(nextStreamId, streamId + 4);
+        activeRequestStreams++;
+        long startNanos = System.nanoTime();
+        streamChannel.closeFuture().addListener(f -> {
+            if (requestLimit != null) {
+                requestLimit.release(System.nanoTime() - startNanos);
+            }
+            requestStreamClosed(ctx);
+        });
         ChannelPipeline pipeline = streamChannel.pipeline();
-        // Add the encoder and decoder in the pipeline so we can handle Http3Frames
-        pipeline.addLast(newCodec());
-        pipeline.addLast(newRequestStreamValidationHandler());
+        // Add the codec that will encode, decode and validate what we write and receive on this stream.
+        pipeline.addLast(newRequestStreamCodec());
+        if (!ctx.channel().isActive()) {
+            // The handshake is not complete yet, so the request arrived in early data.
+            Http3.setEarlyData(streamChannel);
+            pipeline.addLast(new Http3EarlyDataHandler(earlyDataPredicate));
+        }
+        if (requestTimeouts != null) {
+            if (timeoutTracker == null) {
+                timeoutTracker = new Http3RequestTimeoutTracker(ctx.executor(), requestTimeouts);
+            }
+            if (timeoutTracker.isEnabled()) {
+                pipeline.addLast(timeoutTracker.newStreamHandler());
+            }
+        }
+        Http3PriorityScheduler priorityScheduler = priorityScheduler();
+        if (priorityScheduler != null) {
+            pipeline.addLast(priorityScheduler.newStreamHandler());
+        }
         pipeline.addLast(requestStreamHandler);
     }
+
+    /**
+     * Builder for {@link Http3ServerConnectionHandler}s. All settings are optional.
+     */
+    public static final class Builder {
+        private final Http3ConnectionHandler.Config config = new Http3ConnectionHandler.Config(true);
+        private final ChannelHandler requestStreamHandler;
+        private Http3RequestTimeouts requestTimeouts;
+        private int maxConcurrentRequestStreams = Integer.MAX_VALUE;
+        private Http3RequestLimit requestLimit;
+        private Predicate<? super Http3Headers> earlyDataPredicate = Http3EarlyDataHandler.IDEMPOTENT_METHOD;
+
+        Builder(ChannelHandler requestStreamHandler) {
+            this.requestStreamHandler = ObjectUtil.checkNotNull(requestStreamHandler, "requestStreamHandler");
+        }
+
+        /**
+         * Sets the {@link ChannelHandler} which will be notified about {@link Http3RequestStreamFrame}s or
+         * {@code null} if the user is not interested in these.
+         */
+        public Builder inboundControlStreamHandler(ChannelHandler inboundControlStreamHandler) {
+            config.inboundControlStreamHandler = inboundControlStreamHandler;
+            return this;
+        }
+
+        /**
+         * Sets the {@link LongFunction} that will provide a custom {@link ChannelHandler} for unknown inbound stream
+         * types or {@code null} if no special handling should be done.
+         */
+        public Builder unknownInboundStreamHandlerFactory(
+                LongFunction<ChannelHandler> unknownInboundStreamHandlerFactory) {
+            config.unknownInboundStreamHandlerFactory = unknownInboundStreamHandlerFactory;
+            return this;
+        }
+
+        /**
+         * Sets the local {@link Http3SettingsFrame} that should be sent to the remote peer or {@code null} if the
+         * default settings should be used.
+         */
+        public Builder localSettings(Http3SettingsFrame localSettings) {
+            config.localSettings = localSettings;
+            return this;
+        }
+
+        /**
+         * Sets the {@link Supplier} of the {@link Http3Headers} into which received field sections are decoded, for
+         * example {@code CompactHttp3Headers::new}, or {@code null} if {@link DefaultHttp3Headers} should be used.
+         */
+        public Builder headersFactory(Supplier<? extends Http3Headers> headersFactory) {
+            config.headersFactory = headersFactory;
+            return this;
+        }
+
+        /**
+         * Sets if the writes of all request streams should be scheduled by the {@link Http3Priority} the client
+         * signaled for each. Writes are then handed to the stream once the event loop ran, so the output of a
+         * request stream should only be shut down once the write future completed. Disabled by default.
+         */
+        public Builder scheduleByPriority(boolean scheduleByPriority) {
+            config.scheduleByPriority = scheduleByPriority;
+            return this;
+        }
+
+        /**
+         * Sets the {@link Http3RequestTimeouts} that are applied while receiving requests or {@code null} if requests
+         * should not time out. If a request times out a {@link Http3Exception} with
+         * {@link Http3ErrorCode#H3_REQUEST_CANCELLED} is fired through the pipeline of its request stream and the
+         * stream is closed.
+         */
+        public Builder requestTimeouts(Http3RequestTimeouts requestTimeouts) {
+            this.requestTimeouts = requestTimeouts;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of request streams of the connection that are processed concurrently. Request
+         * streams that exceed the limit are rejected without processing the request. As QUIC streams can not be
+         * reset with an error code, a GOAWAY frame tells the client that it can retry them on another connection,
+         * and the connection is closed once the accepted request streams completed.
+         */
+        public Builder maxConcurrentRequestStreams(int maxConcurrentRequestStreams) {
+            this.maxConcurrentRequestStreams = ObjectUtil.checkPositive(
+                    maxConcurrentRequestStreams, "maxConcurrentRequestStreams");
+            return this;
+        }
+
+        /**
+         * Sets the {@link Http3RequestLimit} that limits the number of requests that are processed concurrently,
+         * usually shared by all connections of the server, or {@code null} if there is no such limit. Request streams
+         * that exceed the limit are rejected in the same way as for {@link #maxConcurrentRequestStreams(int)}.
+         */
+        public Builder requestLimit(Http3RequestLimit requestLimit) {
+            this.requestLimit = requestLimit;
+            return this;
+        }
+
+        /**
+         * Sets the {@link Predicate} that returns {@code true} for the headers of requests that may be processed even
+         * though they arrived in early data, which can be replayed by an attacker. All other requests that arrived in
+         * early data are answered with {@code 425 Too Early}, so the client sends them again once the handshake is
+         * complete. By default only requests with an idempotent method are processed.
+         */
+        public Builder earlyDataPredicate(Predicate<? super Http3Headers> earlyDataPredicate) {
+            this.earlyDataPredicate = ObjectUtil.checkNotNull(earlyDataPredicate, "earlyDataPredicate");
+            return this;
+        }
+
+        /**
+         * Sets the {@link Http3MemoryBudget} that limits the number of bytes of partially received frames that are
+         * buffered, usually shared by all connections of the server, or {@code null} if there is no such limit.
+         */
+        public Builder memoryBudget(Http3MemoryBudget memoryBudget) {
+            config.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        /**
+         * Returns a new {@link Http3ServerConnectionHandler}. The {@link Builder} can be used again to create more.
+         */
+        public Http3ServerConnectionHandler build() {
+            return new Http3ServerConnectionHandler(this);
+        }
+    }
 }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.incubator.codec.quic.QuicStreamType;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Allocates push ids within the limit of the {@code MAX_PUSH_ID} the client sent, opens the push streams of a
+ * server connection and closes them once the client cancels the push.
+ * <p>
+ * All methods must be called from the event loop of the connection.
+ */
+final class Http3ServerPushManager implements Http3PushManager {
+    private final Supplier<? extends ChannelHandler> codecSupplier;
+    // Pushes that were promised and whose push stream is still being opened or is still open.
+    private final Map<Long, Push> pushes = new HashMap<>();
+    private long maxPushId = -1;
+    private long nextPushId;
+
+    Http3ServerPushManager(Supplier<? extends ChannelHandler> codecSupplier) {
+        this.codecSupplier = codecSupplier;
+    }
+
+    @Override
+    public void maxPushIdReceived(long maxPushId) {
+        this.maxPushId = maxPushId;
+    }
+
+    /**
+     * Returns the number of push ids that can still be used.
+     */
+    long availablePushIds() {
+        return maxPushId - nextPushId + 1;
+    }
+
+    @Override
+    public boolean cancelPushReceived(ChannelHandlerContext ctx, long pushId, boolean fireException) {
+        if (pushId >= nextPushId) {
+            // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-7.2.3
+            Http3CodecUtils.connectionError(ctx, Http3ErrorCode.H3_ID_ERROR,
+                    "Received CANCEL_PUSH for push id " + pushId + " which was not promised.", fireException);
+            return false;
+        }
+        Push push = pushes.remove(pushId);
+        if (push != null) {
+            push.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * Promises the request with the given headers on the request stream and opens the push stream for it.
+     */
+    Future<QuicStreamChannel> newPushStream(QuicStreamChannel requestStream, Http3Headers promisedRequestHeaders,
+                                            ChannelHandler handler) {
+        Promise<QuicStreamChannel> promise = requestStream.eventLoop().newPromise();
+        if (nextPushId > maxPushId) {
+            promise.setFailure(new IllegalStateException(maxPushId == -1 ?
+                    "No MAX_PUSH_ID received from the client" :
+                    "All push ids up to the MAX_PUSH_ID " + maxPushId + " are used"));
+            return promise;
+        }
+        long pushId = nextPushId++;
+        Push push = new Push(promise);
+        pushes.put(pushId, push);
+
+        // Send the PUSH_PROMISE before the push stream is opened, so the client knows which request is pushed.
+        requestStream.writeAndFlush(new DefaultHttp3PushPromiseFrame(pushId, promisedRequestHeaders))
+                .addListener(f -> {
+                    if (!f.isSuccess()) {
+                        pushes.remove(pushId);
+                        promise.tryFailure(f.cause());
+                    } else if (!promise.isDone()) {
+                        requestStream.parent().createStream(QuicStreamType.UNIDIRECTIONAL,
+                                new PushStreamInitializer(pushId, handler)).addListener(sf -> {
+                                    if (sf.isSuccess()) {
+                                        push.streamCreated(pushId, (QuicStreamChannel) sf.getNow());
+                                    } else {
+                                        pushes.remove(pushId);
+                                        promise.tryFailure(sf.cause());
+                                    }
+                                });
+                    }
+                });
+        return promise;
+    }
+
+    private final class Push {
+        private final Promise<QuicStreamChannel> promise;
+        private QuicStreamChannel stream;
+        private boolean cancelled;
+
+        Push(Promise<QuicStreamChannel> promise) {
+            this.promise = promise;
+        }
+
+        void streamCreated(long pushId, QuicStreamChannel stream) {
+            if (cancelled || !promise.trySuccess(stream)) {
+                stream.close();
+                return;
+            }
+            this.stream = stream;
+            stream.closeFuture().addListener(f -> pushes.remove(pushId, this));
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (stream != null) {
+                stream.close();
+            } else {
+                promise.tryFailure(new Http3Exception(Http3ErrorCode.H3_REQUEST_CANCELLED,
+                        "Push cancelled by the client"));
+            }
+        }
+    }
+
+    /**
+     * Writes the push stream type and the push id before any frame is written to the stream.
+     * See <a href="https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.4">Server Push</a>.
+     */
+    private final class PushStreamInitializer extends ChannelInboundHandlerAdapter {
+        private final long pushId;
+        private final ChannelHandler handler;
+        private boolean initialized;
+
+        PushStreamInitializer(long pushId, ChannelHandler handler) {
+            this.pushId = pushId;
+            this.handler = handler;
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            if (ctx.channel().isActive()) {
+                init(ctx);
+            }
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            init(ctx);
+            ctx.fireChannelActive();
+        }
+
+        private void init(ChannelHandlerContext ctx) {
+            if (initialized) {
+                return;
+            }
+            initialized = true;
+            // Just allocate 16 bytes which would be the max needed.
+            ByteBuf buffer = ctx.alloc().buffer(16);
+            Http3CodecUtils.writeVariableLengthInteger(buffer, Http3CodecUtils.HTTP3_PUSH_STREAM_TYPE);
+            Http3CodecUtils.writeVariableLengthInteger(buffer, pushId);
+            ctx.write(buffer);
+
+            // Add the codec after the type and id were written so these are not encoded as frames.
+            ChannelPipeline pipeline = ctx.pipeline();
+            pipeline.addFirst(codecSupplier.get());
+            pipeline.addLast(Http3PushStreamValidationHandler.INSTANCE, handler);
+            pipeline.remove(this);
+        }
+
+        @Override
+        public boolean isSharable() {
+            return false;
+        }
+    }
+}
@@ -45,12 +45,22 @@ final class Http3UnidirectionalStreamInboundHandler extends ByteToMessageDecoder
     private final Http3ControlStreamInboundHandler localControlStreamHandler;
     private final Http3ControlStreamOutboundHandler remoteControlStreamHandler;
     private final LongFunction<ChannelHandler> unknownStreamHandlerFactory;
+    private final Http3ClientPushManager pushManager;
 
     Http3UnidirectionalStreamInboundHandler(Supplier<? extends ChannelHandler> codecSupplier,
                                             Http3ControlStreamInboundHandler localControlStreamHandler,
                                             Http3ControlStreamOutboundHandler remoteControlStreamHandler,
                                             LongFunction<ChannelHandler> unknownStreamHandlerFactory) {
+        this(codecSupplier, localControlStreamHandler, remoteControlStreamHandler, unknownStreamHandlerFactory, null);
+    }
+
+    Http3UnidirectionalStreamInboundHandler(Supplier<? extends ChannelHandler> codecSupplier,
+                                            Http3ControlStreamInboundHandler localControlStreamHandler,
+                                            Http3ControlStreamOutboundHandler remoteControlStreamHandler,
+                                            LongFunction<ChannelHandler> unknownStreamHandlerFactory,
+                                            Http3ClientPushManager pushManager) {
         this.codecSupplier = codecSupplier;
+        this.pushManager = pushManager;
         this.localControlStreamHandler = localControlStreamHandler;
         this.remoteControlStreamHandler = remoteControlStreamHandler;
         if (unknownStreamHandlerFactory == null) {
@@ -65,21 +75,22 @@ final class Http3UnidirectionalStreamInboundHandler extends ByteToMessageDecoder
         if (!in.isReadable()) {
             return;
         }
-        int len = Http3CodecUtils.numBytesForVariableLengthInteger(in.getByte(in.readerIndex()));
-        if (in.readableBytes() < len) {
+        int readerIndex = in.readerIndex();
+        long type = Http3CodecUtils.readVariableLengthInteger(in);
+        if (type == -1) {
             return;
         }
-        long type = Http3CodecUtils.readVariableLengthInteger(in, len);
         switch ((int) type) {
             case HTTP3_CONTROL_STREAM_TYPE:
                 initControlStream(ctx);
                 break;
             case HTTP3_PUSH_STREAM_TYPE:
-                int pushIdLen = Http3CodecUtils.numBytesForVariableLengthInteger(in.getByte(in.readerIndex()));
-                if (in.readableBytes() < pushIdLen) {
+                long pushId = Http3CodecUtils.readVariableLengthInteger(in);
+                if (pushId == -1) {
+                    // Not enough data to read the push id yet, read the type again once more data is there.
+                    in.readerIndex(readerIndex);
                     return;
                 }
-                long pushId = Http3CodecUtils.readVariableLengthInteger(in, len);
                 initPushStream(ctx, pushId);
                 break;
             case HTTP3_QPACK_ENCODER_STREAM_TYPE:
@@ -135,12 +146,13 @@ final class Http3UnidirectionalStreamInboundHandler extends ByteToMessageDecoder
                 Http3CodecUtils.connectionError(ctx, Http3ErrorCode.H3_ID_ERROR,
                         "Received push stream with id " + id + " while the max push id is " + maxPushId + '.', false);
             } else {
-                // TODO: Handle push streams correctly
-                // For now add a handler that will just release the frames so we dont leak.
-                ctx.pipeline().addLast(ReleaseHandler.INSTANCE);
+                // Validate the frames on the stream and hand the pushed response to the push manager. If nobody is
+                // interested in pushes just release the frames so we dont leak.
+                ctx.pipeline().addLast(Http3PushStreamValidationHandler.INSTANCE, pushManager == null ?
+                        ReleaseHandler.INSTANCE : pushManager.newPushStreamHandler(id));
 
-                // Replace this handler with a handler that validates the frames on the stream.
-                ctx.pipeline().replace(this, null, Http3PushStreamValidationHandler.INSTANCE);
+                // Replace this handler with the codec now.
+                ctx.pipeline().replace(this, null, codecSupplier.get());
             }
         }
     }
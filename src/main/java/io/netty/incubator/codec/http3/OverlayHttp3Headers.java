@@ -0,0 +1,173 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.AsciiString;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static io.netty.incubator.codec.http3.Http3Headers.PseudoHeaderName.hasPseudoHeaderFormat;
+
+/**
+ * {@link Http3Headers} that combine shared {@link ReadOnlyHttp3Headers} with per request headers, without copying
+ * either of them.
+ * <p>
+ * All changes are done on the overlay. A name that is present in the overlay hides all values of that name in the
+ * template, so adding a value for a name of the template first copies the values of the template to the overlay.
+ */
+final class OverlayHttp3Headers extends AbstractHttp3Headers {
+    private final ReadOnlyHttp3Headers template;
+    private final Http3Headers overlay;
+    // Names of the template that were removed, created lazily as this is not expected to happen often.
+    private List<CharSequence> removed;
+    private boolean templateRemoved;
+
+    OverlayHttp3Headers(ReadOnlyHttp3Headers template, Http3Headers overlay) {
+        this.template = ObjectUtil.checkNotNull(template, "template");
+        this.overlay = ObjectUtil.checkNotNull(overlay, "overlay");
+    }
+
+    ReadOnlyHttp3Headers template() {
+        return template;
+    }
+
+    Http3Headers overlay() {
+        return overlay;
+    }
+
+    /**
+     * Returns {@code true} if the headers of the template with the given name are hidden.
+     */
+    boolean isHidden(CharSequence name) {
+        return isRemoved(name) || overlay.contains(name);
+    }
+
+    private boolean isRemoved(CharSequence name) {
+        if (templateRemoved) {
+            return true;
+        }
+        if (removed != null) {
+            for (int i = 0; i < removed.size(); i++) {
+                if (AsciiString.contentEquals(removed.get(i), name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public CharSequence get(CharSequence name) {
+        CharSequence value = overlay.get(name);
+        if (value != null || isRemoved(name)) {
+            return value;
+        }
+        return template.get(name);
+    }
+
+    @Override
+    public Iterator<CharSequence> valueIterator(CharSequence name) {
+        if (overlay.contains(name)) {
+            return overlay.valueIterator(name);
+        }
+        if (isRemoved(name)) {
+            return Collections.emptyIterator();
+        }
+        return template.valueIterator(name);
+    }
+
+    @Override
+    public int size() {
+        int size = overlay.size();
+        if (!templateRemoved) {
+            for (int i = 0; i < template.size(); i++) {
+                if (!isHidden(template.name(i))) {
+                    size++;
+                }
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Http3Headers add(CharSequence name, CharSequence value) {
+        if (!isHidden(name)) {
+            overlay.add(name, template.getAll(name));
+        }
+        overlay.add(name, value);
+        return this;
+    }
+
+    @Override
+    public Http3Headers set(CharSequence name, CharSequence value) {
+        overlay.set(name, value);
+        return this;
+    }
+
+    @Override
+    public boolean remove(CharSequence name) {
+        boolean removedFromOverlay = overlay.remove(name);
+        if (isRemoved(name) || !template.contains(name)) {
+            return removedFromOverlay;
+        }
+        if (removed == null) {
+            removed = new ArrayList<>(2);
+        }
+        removed.add(name);
+        return true;
+    }
+
+    @Override
+    public Http3Headers clear() {
+        overlay.clear();
+        templateRemoved = true;
+        removed = null;
+        return this;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the headers. The order is the same as used when encoding: the
+     * pseudo-headers of the overlay, the visible headers of the template and then the other headers of the overlay.
+     */
+    @Override
+    public Iterator<Map.Entry<CharSequence, CharSequence>> iterator() {
+        List<Map.Entry<CharSequence, CharSequence>> entries = new ArrayList<>(size());
+        for (Map.Entry<CharSequence, CharSequence> header : overlay) {
+            if (hasPseudoHeaderFormat(header.getKey())) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(header));
+            }
+        }
+        if (!templateRemoved) {
+            for (Map.Entry<CharSequence, CharSequence> header : template) {
+                if (!isHidden(header.getKey())) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(header));
+                }
+            }
+        }
+        for (Map.Entry<CharSequence, CharSequence> header : overlay) {
+            if (!hasPseudoHeaderFormat(header.getKey())) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(header));
+            }
+        }
+        return Collections.unmodifiableList(entries).iterator();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.Recycler;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+
+/**
+ * {@link Http3DataFrame} that is taken from a {@link Recycler} and returned to it once its content was released.
+ * <p>
+ * The reference count is the one of the content, the same as for {@link DefaultHttp3DataFrame}, so leak detection
+ * is done by the content itself. The frame must not be used anymore once it was released.
+ */
+final class PooledHttp3DataFrame implements Http3DataFrame {
+
+    private static final Recycler<PooledHttp3DataFrame> RECYCLER = new Recycler<PooledHttp3DataFrame>() {
+        @Override
+        protected PooledHttp3DataFrame newObject(Handle<PooledHttp3DataFrame> handle) {
+            return new PooledHttp3DataFrame(handle);
+        }
+    };
+
+    private final Recycler.Handle<PooledHttp3DataFrame> handle;
+    private ByteBuf content;
+
+    private PooledHttp3DataFrame(Recycler.Handle<PooledHttp3DataFrame> handle) {
+        this.handle = handle;
+    }
+
+    static PooledHttp3DataFrame newInstance(ByteBuf content) {
+        ObjectUtil.checkNotNull(content, "content");
+        PooledHttp3DataFrame frame = RECYCLER.get();
+        frame.content = content;
+        return frame;
+    }
+
+    @Override
+    public ByteBuf content() {
+        ByteBuf content = this.content;
+        if (content == null) {
+            throw new IllegalReferenceCountException(0);
+        }
+        int refCnt = content.refCnt();
+        if (refCnt <= 0) {
+            throw new IllegalReferenceCountException(refCnt);
+        }
+        return content;
+    }
+
+    @Override
+    public Http3DataFrame copy() {
+        return replace(content().copy());
+    }
+
+    @Override
+    public Http3DataFrame duplicate() {
+        return replace(content().duplicate());
+    }
+
+    @Override
+    public Http3DataFrame retainedDuplicate() {
+        return replace(content().retainedDuplicate());
+    }
+
+    @Override
+    public Http3DataFrame replace(ByteBuf content) {
+        return newInstance(content);
+    }
+
+    @Override
+    public int refCnt() {
+        ByteBuf content = this.content;
+        return content == null ? 0 : content.refCnt();
+    }
+
+    @Override
+    public Http3DataFrame retain() {
+        content().retain();
+        return this;
+    }
+
+    @Override
+    public Http3DataFrame retain(int increment) {
+        content().retain(increment);
+        return this;
+    }
+
+    @Override
+    public Http3DataFrame touch() {
+        content().touch();
+        return this;
+    }
+
+    @Override
+    public Http3DataFrame touch(Object hint) {
+        content().touch(hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return recycleIfReleased(content().release());
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return recycleIfReleased(content().release(decrement));
+    }
+
+    /**
+     * Returns the frame to the {@link Recycler} without releasing its content. The caller takes over the reference
+     * of the returned content.
+     */
+    ByteBuf recycleAndGetContent() {
+        ByteBuf content = content();
+        this.content = null;
+        handle.recycle(this);
+        return content;
+    }
+
+    private boolean recycleIfReleased(boolean released) {
+        if (released) {
+            content = null;
+            handle.recycle(this);
+        }
+        return released;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return content().equals(((PooledHttp3DataFrame) o).content());
+    }
+
+    @Override
+    public int hashCode() {
+        return content().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(content=" + content + ')';
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.Recycler;
+import io.netty.util.ResourceLeakDetector;
+import io.netty.util.ResourceLeakDetectorFactory;
+import io.netty.util.ResourceLeakTracker;
+import io.netty.util.internal.StringUtil;
+
+import java.util.function.Supplier;
+
+/**
+ * {@link Http3HeadersFrame} that is taken from a {@link Recycler} and returned to it once it was released. The
+ * {@link Http3Headers} are cleared and reused by the next user of the frame, as long as it asks for headers of the
+ * same factory.
+ * <p>
+ * As the frame holds no buffer it is tracked by its own {@link ResourceLeakDetector}, so forgetting to release it
+ * is reported the same way as a leaked buffer would be. The frame must not be used anymore once it was released.
+ */
+final class PooledHttp3HeadersFrame extends AbstractReferenceCounted implements Http3HeadersFrame {
+
+    private static final ResourceLeakDetector<PooledHttp3HeadersFrame> LEAK_DETECTOR =
+            ResourceLeakDetectorFactory.instance().newResourceLeakDetector(PooledHttp3HeadersFrame.class);
+
+    private static final Recycler<PooledHttp3HeadersFrame> RECYCLER = new Recycler<PooledHttp3HeadersFrame>() {
+        @Override
+        protected PooledHttp3HeadersFrame newObject(Handle<PooledHttp3HeadersFrame> handle) {
+            return new PooledHttp3HeadersFrame(handle);
+        }
+    };
+
+    private final Recycler.Handle<PooledHttp3HeadersFrame> handle;
+    private Supplier<? extends Http3Headers> headersFactory;
+    private Http3Headers headers;
+    private ResourceLeakTracker<PooledHttp3HeadersFrame> leak;
+
+    private PooledHttp3HeadersFrame(Recycler.Handle<PooledHttp3HeadersFrame> handle) {
+        this.handle = handle;
+    }
+
+    static PooledHttp3HeadersFrame newInstance() {
+        return newInstance(Http3CodecUtils.DEFAULT_HEADERS_FACTORY);
+    }
+
+    static PooledHttp3HeadersFrame newInstance(Supplier<? extends Http3Headers> headersFactory) {
+        PooledHttp3HeadersFrame frame = RECYCLER.get();
+        if (frame.headersFactory != headersFactory) {
+            frame.headers = headersFactory.get();
+            frame.headersFactory = headersFactory;
+        }
+        frame.setRefCnt(1);
+        frame.leak = LEAK_DETECTOR.track(frame);
+        return frame;
+    }
+
+    @Override
+    public Http3Headers headers() {
+        return headers;
+    }
+
+    @Override
+    public PooledHttp3HeadersFrame retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public PooledHttp3HeadersFrame retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public PooledHttp3HeadersFrame touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    public PooledHttp3HeadersFrame touch(Object hint) {
+        if (leak != null) {
+            leak.record(hint);
+        }
+        return this;
+    }
+
+    @Override
+    protected void deallocate() {
+        headers.clear();
+        ResourceLeakTracker<PooledHttp3HeadersFrame> leak = this.leak;
+        if (leak != null) {
+            this.leak = null;
+            leak.close(this);
+        }
+        handle.recycle(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return headers.equals(((PooledHttp3HeadersFrame) o).headers);
+    }
+
+    @Override
+    public int hashCode() {
+        return headers.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(headers=" + headers + ')';
+    }
+}
@@ -19,6 +19,8 @@ import java.util.Map;
 
 import io.netty.buffer.ByteBuf;
 
+import static io.netty.incubator.codec.http3.Http3Headers.PseudoHeaderName.hasPseudoHeaderFormat;
+
 /**
  * A QPACK encoder.
  */
@@ -46,10 +48,40 @@ final class QpackEncoder {
         // https://tools.ietf.org/html/draft-ietf-quic-qpack-19#section-4.5.1.2
         encodePrefixedInteger(out, (byte) 0x00, 7, 0);
 
-        for (Map.Entry<CharSequence, CharSequence> header : headers) {
-            CharSequence name = header.getKey();
-            CharSequence value = header.getValue();
-            encodeHeader(out, name, value);
+        if (headers instanceof ReadOnlyHttp3Headers) {
+            // The field lines were already encoded when the headers were created.
+            ((ReadOnlyHttp3Headers) headers).writeEncodedFieldLines(out);
+        } else if (headers instanceof OverlayHttp3Headers) {
+            encodeOverlayHeaders(out, (OverlayHttp3Headers) headers);
+        } else {
+            for (Map.Entry<CharSequence, CharSequence> header : headers) {
+                CharSequence name = header.getKey();
+                CharSequence value = header.getValue();
+                encodeHeader(out, name, value);
+            }
+        }
+    }
+
+    private void encodeOverlayHeaders(ByteBuf out, OverlayHttp3Headers headers) {
+        // Pseudo-headers must be encoded before all other headers.
+        // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.1.1.1
+        Http3Headers overlay = headers.overlay();
+        for (Map.Entry<CharSequence, CharSequence> header : overlay) {
+            if (hasPseudoHeaderFormat(header.getKey())) {
+                encodeHeader(out, header.getKey(), header.getValue());
+            }
+        }
+        // The template stores its pseudo-headers first, so we can just copy all field lines that are not hidden.
+        ReadOnlyHttp3Headers template = headers.template();
+        for (int i = 0; i < template.size(); i++) {
+            if (!headers.isHidden(template.name(i))) {
+                template.writeEncodedFieldLine(out, i);
+            }
+        }
+        for (Map.Entry<CharSequence, CharSequence> header : overlay) {
+            if (!hasPseudoHeaderFormat(header.getKey())) {
+                encodeHeader(out, header.getKey(), header.getValue());
+            }
         }
     }
 
@@ -58,7 +90,7 @@ final class QpackEncoder {
      *
      * TODO: implement dynamic table
      */
-    private void encodeHeader(ByteBuf out, CharSequence name, CharSequence value) {
+    void encodeHeader(ByteBuf out, CharSequence name, CharSequence value) {
         int index = QpackStaticTable.findFieldIndex(name, value);
         if (index == QpackStaticTable.NOT_FOUND) {
             encodeLiteral(out, name, value);
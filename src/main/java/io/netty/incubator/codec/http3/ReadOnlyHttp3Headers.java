@@ -0,0 +1,281 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AsciiString;
+import io.netty.util.internal.ObjectUtil;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static io.netty.incubator.codec.http3.Http3Headers.PseudoHeaderName.getPseudoHeader;
+import static io.netty.incubator.codec.http3.Http3Headers.PseudoHeaderName.hasPseudoHeaderFormat;
+
+/**
+ * Immutable {@link Http3Headers} which can be shared between streams, connections and threads, for example to send
+ * the same response headers over and over again.
+ * <p>
+ * As only the QPACK static table is used, the encoded representation of every field line does not depend on the
+ * connection. It is computed once when the instance is created and copied as is when the headers are written.
+ * <p>
+ * Per request values like {@code :status} or {@code content-length} can be added without copying by using
+ * {@link DefaultHttp3HeadersFrame#DefaultHttp3HeadersFrame(ReadOnlyHttp3Headers, Http3Headers)}.
+ */
+public final class ReadOnlyHttp3Headers extends AbstractHttp3Headers {
+    private final AsciiString[] names;
+    private final AsciiString[] values;
+    private final int pseudoSize;
+    // The QPACK encoded field lines, the line for the header at index i starts at encodedOffsets[i] and ends at
+    // encodedOffsets[i + 1].
+    private final byte[] encodedFieldLines;
+    private final int[] encodedOffsets;
+    private int hash;
+
+    private ReadOnlyHttp3Headers(AsciiString[] names, AsciiString[] values, int pseudoSize) {
+        this.names = names;
+        this.values = values;
+        this.pseudoSize = pseudoSize;
+
+        QpackEncoder encoder = new QpackEncoder();
+        ByteBuf out = Unpooled.buffer();
+        try {
+            encodedOffsets = new int[names.length + 1];
+            for (int i = 0; i < names.length; i++) {
+                encodedOffsets[i] = out.writerIndex();
+                encoder.encodeHeader(out, names[i], values[i]);
+            }
+            encodedOffsets[names.length] = out.writerIndex();
+            encodedFieldLines = ByteBufUtil.getBytes(out);
+        } finally {
+            out.release();
+        }
+    }
+
+    /**
+     * Returns a new instance that contains the same headers as the given {@link Http3Headers}.
+     *
+     * @param headers   the headers to copy.
+     * @return          the new instance.
+     * @throws Http3HeadersValidationException if a header name is not valid or a pseudo-header is unknown or
+     *                                         present more than once.
+     */
+    public static ReadOnlyHttp3Headers copyOf(Http3Headers headers) {
+        ObjectUtil.checkNotNull(headers, "headers");
+        if (headers instanceof ReadOnlyHttp3Headers) {
+            return (ReadOnlyHttp3Headers) headers;
+        }
+        int size = headers.size();
+        AsciiString[] names = new AsciiString[size];
+        AsciiString[] values = new AsciiString[size];
+        int pseudoSize = 0;
+        int regularIndex = size;
+        // Pseudo-headers are stored at the start, the other headers at the end in reverse order for now.
+        for (Map.Entry<CharSequence, CharSequence> header : headers) {
+            CharSequence name = header.getKey();
+            DefaultHttp3Headers.HTTP3_NAME_VALIDATOR.validateName(name);
+            AsciiString value = AsciiString.of(ObjectUtil.checkNotNull(header.getValue(), "value"));
+            if (hasPseudoHeaderFormat(name)) {
+                if (getPseudoHeader(name) == null) {
+                    throw new Http3HeadersValidationException(
+                            String.format("Invalid HTTP/3 pseudo-header '%s' encountered.", name));
+                }
+                for (int i = 0; i < pseudoSize; i++) {
+                    if (names[i].contentEquals(name)) {
+                        throw new Http3HeadersValidationException(
+                                String.format("Duplicate HTTP/3 pseudo-header '%s' encountered.", name));
+                    }
+                }
+                names[pseudoSize] = AsciiString.of(name);
+                values[pseudoSize++] = value;
+            } else {
+                names[--regularIndex] = AsciiString.of(name);
+                values[regularIndex] = value;
+            }
+        }
+        reverse(names, pseudoSize, size);
+        reverse(values, pseudoSize, size);
+        return new ReadOnlyHttp3Headers(names, values, pseudoSize);
+    }
+
+    private static void reverse(Object[] array, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            Object tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    /**
+     * Returns the number of pseudo-headers, these are stored before all other headers.
+     */
+    int pseudoHeadersSize() {
+        return pseudoSize;
+    }
+
+    /**
+     * Returns the name of the header at the given index.
+     */
+    AsciiString name(int index) {
+        return names[index];
+    }
+
+    /**
+     * Writes the encoded field line of the header at the given index.
+     */
+    void writeEncodedFieldLine(ByteBuf out, int index) {
+        int offset = encodedOffsets[index];
+        out.writeBytes(encodedFieldLines, offset, encodedOffsets[index + 1] - offset);
+    }
+
+    /**
+     * Writes the encoded field lines of all headers.
+     */
+    void writeEncodedFieldLines(ByteBuf out) {
+        out.writeBytes(encodedFieldLines);
+    }
+
+    private int indexOf(CharSequence name, int from) {
+        ObjectUtil.checkNotNull(name, "name");
+        int to = names.length;
+        if (hasPseudoHeaderFormat(name)) {
+            to = Math.min(to, pseudoSize);
+        } else {
+            from = Math.max(from, pseudoSize);
+        }
+        for (int i = from; i < to; i++) {
+            if (names[i].contentEquals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public CharSequence get(CharSequence name) {
+        int index = indexOf(name, 0);
+        return index == -1 ? null : values[index];
+    }
+
+    @Override
+    public Iterator<CharSequence> valueIterator(CharSequence name) {
+        return new Iterator<CharSequence>() {
+            private int next = indexOf(name, 0);
+
+            @Override
+            public boolean hasNext() {
+                return next != -1;
+            }
+
+            @Override
+            public CharSequence next() {
+                if (next == -1) {
+                    throw new NoSuchElementException();
+                }
+                CharSequence value = values[next];
+                next = indexOf(name, next + 1);
+                return value;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+
+    @Override
+    public Http3Headers add(CharSequence name, CharSequence value) {
+        throw new UnsupportedOperationException("read only");
+    }
+
+    @Override
+    public Http3Headers set(CharSequence name, CharSequence value) {
+        throw new UnsupportedOperationException("read only");
+    }
+
+    @Override
+    public boolean remove(CharSequence name) {
+        throw new UnsupportedOperationException("read only");
+    }
+
+    @Override
+    public Http3Headers clear() {
+        throw new UnsupportedOperationException("read only");
+    }
+
+    @Override
+    public Iterator<Map.Entry<CharSequence, CharSequence>> iterator() {
+        return new EntryIterator();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = this.hash;
+        if (hash == 0) {
+            this.hash = hash = super.hashCode();
+        }
+        return hash;
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<CharSequence, CharSequence>>,
+            Map.Entry<CharSequence, CharSequence> {
+        private int next;
+        private int current = -1;
+
+        @Override
+        public boolean hasNext() {
+            return next < names.length;
+        }
+
+        @Override
+        public Map.Entry<CharSequence, CharSequence> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = next++;
+            return this;
+        }
+
+        @Override
+        public CharSequence getKey() {
+            return names[current];
+        }
+
+        @Override
+        public CharSequence getValue() {
+            return values[current];
+        }
+
+        @Override
+        public CharSequence setValue(CharSequence value) {
+            throw new UnsupportedOperationException("read only");
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
@@ -84,11 +84,13 @@ public abstract class AbtractHttp3ConnectionHandlerTest {
         when(quicChannel.close(anyBoolean(), anyInt(),
                 any(ByteBuf.class))).thenReturn(new DefaultChannelPromise(quicChannel));
         when(quicChannel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        when(quicChannel.isActive()).thenReturn(true);
 
         when(ctx.channel()).thenReturn(quicChannel);
 
         when(bidirectionalStream.type()).thenReturn(QuicStreamType.BIDIRECTIONAL);
         when(bidirectionalStream.parent()).thenReturn(quicChannel);
+        when(bidirectionalStream.closeFuture()).thenReturn(new DefaultChannelPromise(bidirectionalStream));
 
         ChannelPipeline pipeline = new DefaultChannelPipeline(bidirectionalStream) { };
         when(bidirectionalStream.pipeline()).thenReturn(pipeline);
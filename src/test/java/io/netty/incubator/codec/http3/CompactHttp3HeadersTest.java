@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompactHttp3HeadersTest {
+
+    private static Http3Headers newRequestHeaders(Http3Headers headers) {
+        return headers.add("user-agent", "netty")
+                .path("/")
+                .add("accept", "text/html")
+                .method("GET")
+                .add("accept", "text/plain")
+                .authority("netty.io")
+                .scheme("https");
+    }
+
+    @Test
+    public void testPseudoHeadersFirst() {
+        Http3Headers headers = newRequestHeaders(new CompactHttp3Headers());
+        assertEquals(7, headers.size());
+        Iterator<Map.Entry<CharSequence, CharSequence>> it = headers.iterator();
+        assertEntry(":method", "GET", it.next());
+        assertEntry(":scheme", "https", it.next());
+        assertEntry(":authority", "netty.io", it.next());
+        assertEntry(":path", "/", it.next());
+        assertEntry("user-agent", "netty", it.next());
+        assertEntry("accept", "text/html", it.next());
+        assertEntry("accept", "text/plain", it.next());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testGetAndRemove() {
+        Http3Headers headers = newRequestHeaders(new CompactHttp3Headers(true, 1));
+        assertEquals("GET", headers.method());
+        assertEquals("/", headers.path());
+        assertNull(headers.status());
+        assertEquals("text/html", headers.get("accept"));
+        assertEquals(Arrays.asList("text/html", "text/plain"), headers.getAll("accept"));
+        assertTrue(headers.contains("accept", "TEXT/PLAIN", true));
+        assertFalse(headers.contains("accept", "TEXT/PLAIN", false));
+
+        assertTrue(headers.remove("accept"));
+        assertFalse(headers.remove("accept"));
+        assertTrue(headers.remove(":path"));
+        assertFalse(headers.remove(":path"));
+        assertNull(headers.path());
+        assertEquals(4, headers.size());
+        assertEquals("netty", headers.get("user-agent"));
+
+        headers.clear();
+        assertTrue(headers.isEmpty());
+        assertFalse(headers.iterator().hasNext());
+    }
+
+    @Test
+    public void testSetReplaces() {
+        Http3Headers headers = new CompactHttp3Headers();
+        headers.add("a", "1").add("b", "2").add("a", "3").status("200");
+        headers.set("a", "4");
+        headers.status("404");
+        assertEquals(3, headers.size());
+        assertEquals(Arrays.asList("4"), headers.getAll("a"));
+        assertEquals("404", headers.status());
+        headers.setInt("content-length", 10);
+        assertEquals(10, (int) headers.getInt("content-length"));
+    }
+
+    @Test
+    public void testIteratorRemoveAndSetValue() {
+        Http3Headers headers = newRequestHeaders(new CompactHttp3Headers());
+        Iterator<Map.Entry<CharSequence, CharSequence>> it = headers.iterator();
+        while (it.hasNext()) {
+            Map.Entry<CharSequence, CharSequence> entry = it.next();
+            if (entry.getKey().toString().equals("accept") || entry.getKey().toString().equals(":scheme")) {
+                it.remove();
+            } else if (entry.getKey().toString().equals("user-agent")) {
+                entry.setValue("quic");
+            }
+        }
+        assertEquals(4, headers.size());
+        assertFalse(headers.contains("accept"));
+        assertNull(headers.scheme());
+        assertEquals("quic", headers.get("user-agent"));
+
+        Iterator<CharSequence> values = newRequestHeaders(headers.clear()).valueIterator("accept");
+        assertEquals("text/html", values.next());
+        values.remove();
+        assertEquals("text/plain", values.next());
+        assertFalse(values.hasNext());
+        assertEquals(Arrays.asList("text/plain"), headers.getAll("accept"));
+    }
+
+    @Test
+    public void testEqualsDefaultHttp3Headers() {
+        Http3Headers compact = newRequestHeaders(new CompactHttp3Headers());
+        Http3Headers headers = new DefaultHttp3Headers()
+                .method("GET").scheme("https").authority("netty.io").path("/")
+                .add("user-agent", "netty").add("accept", "text/html").add("accept", "text/plain");
+        assertEquals(headers, compact);
+        assertEquals(compact, headers);
+        assertEquals(headers.hashCode(), compact.hashCode());
+    }
+
+    @Test(expected = Http3HeadersValidationException.class)
+    public void testUpperCaseNameRejected() {
+        new CompactHttp3Headers().add("Accept", "text/html");
+    }
+
+    @Test(expected = Http3HeadersValidationException.class)
+    public void testDuplicatePseudoHeaderRejected() {
+        new CompactHttp3Headers().add(":path", "/").add(":path", "/other");
+    }
+
+    @Test(expected = Http3HeadersValidationException.class)
+    public void testUnknownPseudoHeaderRejected() {
+        new CompactHttp3Headers().add(":unknown", "value");
+    }
+
+    @Test
+    public void testDuplicatePseudoHeaderReplacedWithoutValidation() {
+        Http3Headers headers = new CompactHttp3Headers(false).add(":path", "/").add(":path", "/other");
+        assertEquals(1, headers.size());
+        assertEquals("/other", headers.path());
+    }
+
+    @Test
+    public void testDecodeIntoCompactHeaders() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new Http3FrameEncoder(new QpackEncoder()));
+        Http3HeadersFrame frame = new DefaultHttp3HeadersFrame();
+        newRequestHeaders(frame.headers());
+        assertTrue(encoder.writeOutbound(frame));
+        ByteBuf encoded = encoder.readOutbound();
+
+        Http3FrameDecoder.Config config = new Http3FrameDecoder.Config();
+        config.headersFactory = CompactHttp3Headers::new;
+        EmbeddedChannel decoder = new EmbeddedChannel(
+                new Http3FrameDecoder(new QpackDecoder(), Long.MAX_VALUE, config));
+        assertTrue(decoder.writeInbound(encoded));
+        Http3HeadersFrame decoded = decoder.readInbound();
+        assertTrue(decoded.headers() instanceof CompactHttp3Headers);
+        assertEquals(frame.headers(), decoded.headers());
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    private static void assertEntry(String name, String value, Map.Entry<CharSequence, CharSequence> entry) {
+        assertEquals(name, entry.getKey().toString());
+        assertEquals(value, entry.getValue().toString());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Http3AltSvcCacheTest {
+    private long nanoTime;
+
+    private Http3AltSvcCache newCache(int maxOrigins) {
+        return new Http3AltSvcCache(maxOrigins, () -> nanoTime);
+    }
+
+    @Test
+    public void testUpdate() {
+        Http3AltSvcCache cache = newCache(10);
+        assertFalse(cache.supportsHttp3("netty.io", 443));
+        cache.update("netty.io", 443, "h2=\":443\", h3-29=\"quic.netty.io:8443\"; ma=60; persist=1, h3-32=\":443\"");
+
+        List<Http3AltSvcCache.Endpoint> endpoints = cache.endpoints("netty.io", 443);
+        assertEquals(2, endpoints.size());
+        assertEquals("h3-29", endpoints.get(0).protocol());
+        assertEquals("quic.netty.io", endpoints.get(0).host());
+        assertEquals(8443, endpoints.get(0).port());
+        assertEquals("h3-32", endpoints.get(1).protocol());
+        // Without a host the endpoint is on the host of the origin.
+        assertEquals("netty.io", endpoints.get(1).host());
+        assertEquals(443, endpoints.get(1).port());
+        assertTrue(endpoints.get(1).address().isUnresolved());
+
+        // A different port is a different origin.
+        assertFalse(cache.supportsHttp3("netty.io", 8080));
+    }
+
+    @Test
+    public void testHostCaseInsensitive() {
+        Http3AltSvcCache cache = newCache(10);
+        cache.update("Netty.IO", 443, "h3-32=\":443\"");
+        assertTrue(cache.supportsHttp3("netty.io", 443));
+        assertTrue(cache.supportsHttp3("NETTY.io", 443));
+
+        cache.update("NETTY.IO", 443, "clear");
+        assertFalse(cache.supportsHttp3("Netty.IO", 443));
+    }
+
+    @Test
+    public void testExpiry() {
+        Http3AltSvcCache cache = newCache(10);
+        cache.update("netty.io", 443, "h3-29=\":443\"; ma=60, h3-32=\":443\"");
+        nanoTime += TimeUnit.SECONDS.toNanos(60);
+        List<Http3AltSvcCache.Endpoint> endpoints = cache.endpoints("netty.io", 443);
+        assertEquals(1, endpoints.size());
+        assertEquals("h3-32", endpoints.get(0).protocol());
+
+        nanoTime += TimeUnit.SECONDS.toNanos(Http3AltSvcCache.DEFAULT_MAX_AGE_SECONDS);
+        assertFalse(cache.supportsHttp3("netty.io", 443));
+    }
+
+    @Test
+    public void testUpdateReplacesAndClears() {
+        Http3AltSvcCache cache = newCache(10);
+        cache.update("netty.io", 443, "h3-29=\":443\"");
+        cache.update("netty.io", 443, "h3-32=\":8443\"");
+        List<Http3AltSvcCache.Endpoint> endpoints = cache.endpoints("netty.io", 443);
+        assertEquals(1, endpoints.size());
+        assertEquals(8443, endpoints.get(0).port());
+
+        cache.update("netty.io", 443, "clear");
+        assertFalse(cache.supportsHttp3("netty.io", 443));
+    }
+
+    @Test
+    public void testInvalidAlternativesIgnored() {
+        Http3AltSvcCache cache = newCache(10);
+        cache.update("netty.io", 443, "h3-32, h3-32=\"netty.io\", h3-32=\":99999\", h3-32=\":443\"; ma=0, " +
+                "h3%2D29=\"[::1]:443\"; ma=\"10\"");
+        List<Http3AltSvcCache.Endpoint> endpoints = cache.endpoints("netty.io", 443);
+        assertEquals(1, endpoints.size());
+        assertEquals("h3-29", endpoints.get(0).protocol());
+        assertEquals("::1", endpoints.get(0).host());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedOriginDropped() {
+        Http3AltSvcCache cache = newCache(2);
+        cache.update("a.netty.io", 443, "h3-32=\":443\"");
+        cache.update("b.netty.io", 443, "h3-32=\":443\"");
+        assertTrue(cache.supportsHttp3("a.netty.io", 443));
+        cache.update("c.netty.io", 443, "h3-32=\":443\"");
+        assertTrue(cache.supportsHttp3("a.netty.io", 443));
+        assertFalse(cache.supportsHttp3("b.netty.io", 443));
+        assertTrue(cache.supportsHttp3("c.netty.io", 443));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class Http3AltSvcHandlerTest {
+
+    @Test
+    public void testAltSvcValue() {
+        assertEquals("h3-32=\":443\"; ma=86400, h3-31=\":443\"; ma=86400, h3-30=\":443\"; ma=86400, " +
+                "h3-29=\":443\"; ma=86400", Http3AltSvcHandler.altSvcValue(null, 443, 1, TimeUnit.DAYS));
+        assertEquals("h3-32=\"quic.netty.io:8443\"; ma=60",
+                Http3AltSvcHandler.altSvcValue("quic.netty.io", 8443, 60, TimeUnit.SECONDS).split(", ")[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPort() {
+        Http3AltSvcHandler.altSvcValue(null, 0, 1, TimeUnit.DAYS);
+    }
+
+    @Test
+    public void testAltSvcAddedToHttpResponse() {
+        Http3AltSvcHandler handler = new Http3AltSvcHandler(443, 1, TimeUnit.HOURS);
+        assertTrue(handler.isSharable());
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        assertTrue(channel.writeOutbound(response, "body"));
+        assertSame(response, channel.readOutbound());
+        assertEquals("body", channel.readOutbound());
+        assertEquals(handler.altSvcValue(), response.headers().get("alt-svc"));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testAltSvcAddedToHeadersFrame() {
+        Http3AltSvcHandler handler = new Http3AltSvcHandler("quic.netty.io", 443, 1, TimeUnit.HOURS);
+        EmbeddedChannel channel = new EmbeddedChannel(handler);
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        headersFrame.headers().status("200");
+        Http3HeadersFrame trailersFrame = new DefaultHttp3HeadersFrame();
+        trailersFrame.headers().add("grpc-status", "0");
+        assertTrue(channel.writeOutbound(headersFrame, trailersFrame));
+        assertSame(headersFrame, channel.readOutbound());
+        assertSame(trailersFrame, channel.readOutbound());
+        assertEquals(handler.altSvcValue(), headersFrame.headers().get("alt-svc").toString());
+        assertNull(trailersFrame.headers().get("alt-svc"));
+        assertFalse(channel.finish());
+    }
+}
@@ -15,8 +15,26 @@
  */
 package io.netty.incubator.codec.http3;
 
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultChannelPromise;
 import io.netty.incubator.codec.quic.QuicChannel;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.incubator.codec.quic.QuicStreamType;
+import io.netty.util.AttributeMap;
+import io.netty.util.DefaultAttributeMap;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class Http3ClientConnectionHandlerTest extends AbtractHttp3ConnectionHandlerTest {
 
@@ -29,4 +47,36 @@ public class Http3ClientConnectionHandlerTest extends AbtractHttp3ConnectionHand
     protected void assertBidirectionalStreamHandled(QuicChannel channel, QuicStreamChannel streamChannel) {
         Http3TestUtils.verifyClose(Http3ErrorCode.H3_STREAM_CREATION_ERROR, channel);
     }
+
+    @Test
+    public void testControlStreamOpenedBeforeFirstRequestStream() throws Exception {
+        QuicChannel quicChannel = mock(QuicChannel.class);
+        QuicStreamChannel localControlStream = mock(QuicStreamChannel.class);
+        QuicStreamChannel requestStream = mock(QuicStreamChannel.class);
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+
+        AttributeMap attributeMap = new DefaultAttributeMap();
+        when(quicChannel.attr(any())).then(a -> attributeMap.attr(a.getArgument(0)));
+        when(quicChannel.createStream(any(QuicStreamType.class), any(ChannelHandler.class)))
+                .thenReturn(ImmediateEventExecutor.INSTANCE.newSucceededFuture(localControlStream));
+        // Still in the handshake, for example while sending early data.
+        when(quicChannel.isActive()).thenReturn(false);
+        when(ctx.channel()).thenReturn(quicChannel);
+        when(requestStream.closeFuture()).thenReturn(new DefaultChannelPromise(requestStream));
+
+        Http3ConnectionHandler handler = newConnectionHandler();
+        handler.handlerAdded(ctx);
+        assertNull(Http3.getLocalControlStream(quicChannel));
+
+        handler.localRequestStreamCreated(requestStream);
+        verify(quicChannel).createStream(eq(QuicStreamType.UNIDIRECTIONAL), any(ChannelHandler.class));
+        assertEquals(localControlStream, Http3.getLocalControlStream(quicChannel));
+
+        // Once the connection becomes active the control stream is not opened again.
+        handler.channelActive(ctx);
+        handler.localRequestStreamCreated(requestStream);
+        verify(quicChannel, times(1)).createStream(any(QuicStreamType.class), any(ChannelHandler.class));
+        verify(quicChannel, never()).close();
+        handler.handlerRemoved(ctx);
+    }
 }
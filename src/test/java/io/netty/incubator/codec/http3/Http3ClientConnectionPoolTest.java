@@ -0,0 +1,404 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.incubator.codec.quic.QuicStreamType;
+import io.netty.util.AttributeMap;
+import io.netty.util.DefaultAttributeMap;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+import static io.netty.incubator.codec.http3.Http3ClientConnectionPool.unsafeCoalesceWithin;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class Http3ClientConnectionPoolTest {
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 9999);
+    private static final String AUTHORITY = "netty.io";
+
+    private final List<MockConnection> connections = new ArrayList<>();
+    private EmbeddedChannel channel;
+    private Promise<QuicChannel> connectPromise;
+
+    @Before
+    public void setUp() {
+        channel = new EmbeddedChannel();
+    }
+
+    @After
+    public void tearDown() {
+        assertFalse(channel.finish());
+    }
+
+    private Http3ClientConnectionPool newPool(int maxStreams, long idleTimeoutMillis) {
+        return newPool(maxStreams, idleTimeoutMillis, null);
+    }
+
+    private Http3ClientConnectionPool newPool(int maxStreams, long idleTimeoutMillis,
+                                              BiPredicate<String, String> coalescingPredicate) {
+        return new Http3ClientConnectionPool.Builder(channel.eventLoop(), (address, handler) -> {
+            MockConnection connection = new MockConnection((Http3ClientConnectionHandler) handler);
+            connections.add(connection);
+            if (connectPromise != null) {
+                return connectPromise;
+            }
+            return channel.eventLoop().newSucceededFuture(connection.quicChannel);
+        }).maxStreamsPerConnection(maxStreams).idleTimeout(idleTimeoutMillis, TimeUnit.MILLISECONDS)
+                .unsafeCoalescingPredicate(coalescingPredicate).build();
+    }
+
+    private static QuicStreamChannel newStream(Http3ClientConnectionPool pool, String authority) {
+        Future<QuicStreamChannel> future = pool.newRequestStream(authority, ADDRESS,
+                new ChannelInboundHandlerAdapter());
+        assertTrue(future.isSuccess());
+        return future.getNow();
+    }
+
+    @Test
+    public void testStreamsMultiplexedUntilLimit() {
+        Http3ClientConnectionPool pool = newPool(2, 10000);
+        QuicStreamChannel stream1 = newStream(pool, AUTHORITY);
+        QuicStreamChannel stream2 = newStream(pool, AUTHORITY);
+        assertSame(stream1.parent(), stream2.parent());
+        assertEquals(1, pool.connections(AUTHORITY, ADDRESS));
+
+        // Both streams of the first connection are in use so we need a new connection.
+        QuicStreamChannel stream3 = newStream(pool, AUTHORITY);
+        assertNotSame(stream1.parent(), stream3.parent());
+        assertEquals(2, pool.connections(AUTHORITY, ADDRESS));
+
+        // Once a stream was closed the first connection is used again.
+        stream1.close();
+        QuicStreamChannel stream4 = newStream(pool, AUTHORITY);
+        assertSame(stream2.parent(), stream4.parent());
+        assertEquals(2, pool.connections(AUTHORITY, ADDRESS));
+
+        // A different authority uses a different connection.
+        QuicStreamChannel stream5 = newStream(pool, "other.netty.io");
+        assertEquals(3, connections.size());
+        assertSame(connections.get(2).quicChannel, stream5.parent());
+
+        assertTrue(pool.close().isSuccess());
+        for (MockConnection connection : connections) {
+            assertFalse(connection.quicChannel.isOpen());
+        }
+        assertFalse(pool.newRequestStream(AUTHORITY, ADDRESS, new ChannelInboundHandlerAdapter()).isSuccess());
+    }
+
+    @Test
+    public void testConnectionNotUsedAfterGoAway() throws Exception {
+        Http3ClientConnectionPool pool = newPool(10, 10000);
+        QuicStreamChannel stream1 = newStream(pool, AUTHORITY);
+        connections.get(0).receiveGoAway();
+        // The connection is evicted right away and not only once the next stream is requested.
+        assertEquals(0, pool.connections(AUTHORITY, ADDRESS));
+
+        QuicStreamChannel stream2 = newStream(pool, AUTHORITY);
+        assertNotSame(stream1.parent(), stream2.parent());
+        assertEquals(1, pool.connections(AUTHORITY, ADDRESS));
+
+        // The connection that received the GOAWAY is closed once its last stream is done.
+        assertTrue(stream1.parent().isOpen());
+        stream1.close();
+        assertFalse(stream1.parent().isOpen());
+        assertTrue(stream2.parent().isOpen());
+        assertTrue(pool.close().isSuccess());
+    }
+
+    @Test
+    public void testStreamLimitOfPeerRetiresConnection() {
+        Http3ClientConnectionPool pool = newPool(10, 10000);
+        QuicStreamChannel stream1 = newStream(pool, AUTHORITY);
+        // The peer allows fewer streams than the pool was configured for.
+        connections.get(0).streamLimit = 1;
+
+        QuicStreamChannel stream2 = newStream(pool, AUTHORITY);
+        assertNotSame(stream1.parent(), stream2.parent());
+        assertEquals(2, connections.size());
+        assertEquals(1, pool.connections(AUTHORITY, ADDRESS));
+
+        // The retired connection is closed once its last stream is done.
+        assertTrue(stream1.parent().isOpen());
+        stream1.close();
+        assertFalse(stream1.parent().isOpen());
+        assertTrue(pool.close().isSuccess());
+    }
+
+    @Test
+    public void testStreamFailureOfNewConnectionNotRetried() {
+        Http3ClientConnectionPool pool = newPool(10, 10000);
+        newStream(pool, AUTHORITY).close();
+        connections.get(0).streamLimit = 0;
+
+        Future<QuicStreamChannel> future = pool.newRequestStream(AUTHORITY, ADDRESS,
+                new ChannelInboundHandlerAdapter());
+        assertFalse(future.isSuccess());
+        assertEquals(1, connections.size());
+        assertTrue(pool.close().isSuccess());
+    }
+
+    @Test
+    public void testIdleConnectionClosed() throws Exception {
+        Http3ClientConnectionPool pool = newPool(10, 1);
+        QuicStreamChannel stream = newStream(pool, AUTHORITY);
+        stream.close();
+        assertTrue(stream.parent().isOpen());
+        Thread.sleep(10);
+        channel.runScheduledPendingTasks();
+        assertFalse(stream.parent().isOpen());
+        assertEquals(0, pool.connections(AUTHORITY, ADDRESS));
+
+        assertNotSame(stream.parent(), newStream(pool, AUTHORITY).parent());
+        assertTrue(pool.close().isSuccess());
+    }
+
+    @Test
+    public void testConnectFailure() {
+        Http3ClientConnectionPool pool = newPool(10, 10000);
+        connectPromise = channel.eventLoop().newPromise();
+        Future<QuicStreamChannel> future1 = pool.newRequestStream(AUTHORITY, ADDRESS,
+                new ChannelInboundHandlerAdapter());
+        Future<QuicStreamChannel> future2 = pool.newRequestStream(AUTHORITY, ADDRESS,
+                new ChannelInboundHandlerAdapter());
+        // Both requests wait for the same connection.
+        assertEquals(1, connections.size());
+        assertFalse(future1.isDone());
+
+        Exception cause = new Exception("connect failed");
+        connectPromise.setFailure(cause);
+        assertSame(cause, future1.cause());
+        assertSame(cause, future2.cause());
+        assertEquals(0, pool.connections(AUTHORITY, ADDRESS));
+        assertTrue(pool.close().isSuccess());
+    }
+
+    @Test
+    public void testSynchronousConnectFailure() {
+        Http3ClientConnectionPool pool = newPool(10, 10000);
+        connectPromise = channel.eventLoop().newPromise();
+        Exception cause = new Exception("connect failed");
+        connectPromise.setFailure(cause);
+        Future<QuicStreamChannel> future = pool.newRequestStream(AUTHORITY, ADDRESS,
+                new ChannelInboundHandlerAdapter());
+        assertSame(cause, future.cause());
+        assertEquals(0, pool.connections(AUTHORITY, ADDRESS));
+
+        // The failed connection is not kept, so the next request opens a new connection.
+        connectPromise = null;
+        QuicStreamChannel stream = newStream(pool, AUTHORITY);
+        assertSame(connections.get(1).quicChannel, stream.parent());
+        assertEquals(1, pool.connections(AUTHORITY, ADDRESS));
+        assertTrue(pool.close().isSuccess());
+    }
+
+    @Test
+    public void testEarlyDataStreamOpenedBeforeHandshake() {
+        Http3ClientConnectionPool pool = newPool(10, 10000);
+        connectPromise = channel.eventLoop().newPromise();
+        Future<QuicStreamChannel> future1 = pool.newRequestStream(AUTHORITY, ADDRESS,
+                new ChannelInboundHandlerAdapter());
+        MockConnection connection = connections.get(0);
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(connection.quicChannel);
+        connection.handler.handlerAdded(ctx);
+
+        // The handshake is still in progress, but the stream may be used for early data.
+        Future<QuicStreamChannel> future2 = pool.newRequestStream(AUTHORITY, ADDRESS,
+                new ChannelInboundHandlerAdapter(), true);
+        assertTrue(future2.isSuccess());
+        assertSame(connection.quicChannel, future2.getNow().parent());
+        assertFalse(future1.isDone());
+
+        connectPromise.setSuccess(connection.quicChannel);
+        assertTrue(future1.isSuccess());
+        assertEquals(1, connections.size());
+        assertTrue(pool.close().isSuccess());
+    }
+
+    @Test
+    public void testAvoidedConnectionOnlyUsedIfNoOther() {
+        Http3ClientConnectionPool pool = newPool(2, 10000);
+        QuicStreamChannel stream1 = newStream(pool, AUTHORITY);
+        newStream(pool, AUTHORITY);
+        QuicStreamChannel stream3 = newStream(pool, AUTHORITY);
+        QuicChannel first = stream1.parent();
+        QuicChannel second = stream3.parent();
+        assertNotSame(first, second);
+        stream1.close();
+
+        // The first connection has room again, but the second one is preferred.
+        Future<QuicStreamChannel> future = pool.newRequestStream(AUTHORITY, ADDRESS,
+                new ChannelInboundHandlerAdapter(), false, first);
+        assertSame(second, future.getNow().parent());
+
+        // The second connection is full, so the avoided one is used instead of opening a new connection.
+        future = pool.newRequestStream(AUTHORITY, ADDRESS, new ChannelInboundHandlerAdapter(), false, first);
+        assertSame(first, future.getNow().parent());
+        assertEquals(2, connections.size());
+        assertTrue(pool.close().isSuccess());
+    }
+
+    @Test
+    public void testConnectionCoalescing() {
+        Http3ClientConnectionPool pool = newPool(2, 10000, unsafeCoalesceWithin("*.netty.io"));
+        QuicStreamChannel stream1 = newStream(pool, "a.netty.io");
+        // Covered by the certificate of the connection, so it is reused.
+        QuicStreamChannel stream2 = newStream(pool, "b.netty.io:443");
+        assertSame(stream1.parent(), stream2.parent());
+        assertEquals(1, connections.size());
+
+        // Not covered, so a new connection is needed.
+        QuicStreamChannel stream3 = newStream(pool, "netty.io");
+        assertNotSame(stream1.parent(), stream3.parent());
+        assertEquals(2, connections.size());
+
+        // The connection is full, so a new one is opened for the authority.
+        QuicStreamChannel stream4 = newStream(pool, "b.netty.io:443");
+        assertNotSame(stream1.parent(), stream4.parent());
+        assertEquals(3, connections.size());
+        assertTrue(pool.close().isSuccess());
+    }
+
+    @Test
+    public void testMisdirectedConnectionNotCoalesced() {
+        Http3ClientConnectionPool pool = newPool(10, 10000, unsafeCoalesceWithin("*.netty.io"));
+        QuicStreamChannel stream1 = newStream(pool, "a.netty.io");
+        pool.misdirected(stream1.parent(), "b.netty.io");
+        QuicStreamChannel stream2 = newStream(pool, "b.netty.io");
+        assertNotSame(stream1.parent(), stream2.parent());
+
+        // The connection is still used for its own authority and others that are covered.
+        assertSame(stream1.parent(), newStream(pool, "a.netty.io").parent());
+        newStream(pool, "c.netty.io");
+        assertEquals(2, connections.size());
+        assertTrue(pool.close().isSuccess());
+    }
+
+    @Test
+    public void testConnectingConnectionNotCoalesced() {
+        Http3ClientConnectionPool pool = newPool(10, 10000, (authority, other) -> true);
+        connectPromise = channel.eventLoop().newPromise();
+        pool.newRequestStream("a.netty.io", ADDRESS, new ChannelInboundHandlerAdapter());
+        pool.newRequestStream("b.netty.io", ADDRESS, new ChannelInboundHandlerAdapter());
+        // The handshake of the first connection is not complete, so its certificate is not validated yet.
+        assertEquals(2, connections.size());
+        assertTrue(pool.close().isSuccess());
+    }
+
+    @Test
+    public void testCoalesceWithin() {
+        BiPredicate<String, String> predicate = unsafeCoalesceWithin("*.netty.io", "netty.io");
+        assertTrue(predicate.test("a.netty.io", "B.Netty.IO:8443"));
+        assertTrue(predicate.test("netty.io", "www.netty.io"));
+        // A wildcard only matches a single label.
+        assertFalse(predicate.test("a.netty.io", "a.b.netty.io"));
+        assertFalse(predicate.test("a.netty.io", "netty.com"));
+        assertFalse(predicate.test("[::1]:443", "a.netty.io"));
+    }
+
+    private final class MockConnection {
+        final QuicChannel quicChannel = mock(QuicChannel.class);
+        final Http3ClientConnectionHandler handler;
+        final ChannelPromise closeFuture;
+        int streamLimit = Integer.MAX_VALUE;
+        int streams;
+
+        MockConnection(Http3ClientConnectionHandler handler) {
+            this.handler = handler;
+            closeFuture = new DefaultChannelPromise(quicChannel, channel.eventLoop());
+            AttributeMap attributeMap = new DefaultAttributeMap();
+            when(quicChannel.attr(any())).then(a -> attributeMap.attr(a.getArgument(0)));
+            when(quicChannel.isOpen()).then(a -> !closeFuture.isDone());
+            when(quicChannel.closeFuture()).thenReturn(closeFuture);
+            ChannelPipeline pipeline = mock(ChannelPipeline.class);
+            when(pipeline.get(Http3ConnectionHandler.class)).thenReturn(handler);
+            when(quicChannel.pipeline()).thenReturn(pipeline);
+            when(quicChannel.close(anyBoolean(), anyInt(), any(ByteBuf.class))).then(a -> {
+                closeFuture.trySuccess();
+                return closeFuture;
+            });
+            when(quicChannel.createStream(any(QuicStreamType.class), any(ChannelHandler.class))).then(a -> {
+                if (streams == streamLimit) {
+                    return channel.eventLoop().newFailedFuture(new IllegalStateException("stream limit reached"));
+                }
+                QuicStreamChannel stream = mock(QuicStreamChannel.class);
+                ChannelPromise streamCloseFuture = new DefaultChannelPromise(stream, channel.eventLoop());
+                when(stream.parent()).thenReturn(quicChannel);
+                when(stream.closeFuture()).thenReturn(streamCloseFuture);
+                streams++;
+                when(stream.close()).then(c -> {
+                    if (streamCloseFuture.trySuccess()) {
+                        streams--;
+                    }
+                    return streamCloseFuture;
+                });
+                return channel.eventLoop().newSucceededFuture(stream);
+            });
+        }
+
+        void receiveGoAway() throws Exception {
+            ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+            when(ctx.channel()).thenReturn(quicChannel);
+            EmbeddedQuicStreamChannel controlStream = new EmbeddedQuicStreamChannel(quicChannel, false,
+                    QuicStreamType.UNIDIRECTIONAL, 3);
+            handler.channelRead(ctx, controlStream);
+
+            EmbeddedChannel encoder = new EmbeddedChannel(new Http3FrameEncoder(new QpackEncoder()));
+            assertTrue(encoder.writeOutbound(new DefaultHttp3SettingsFrame(), new DefaultHttp3GoAwayFrame(0)));
+            ByteBuf type = Unpooled.buffer();
+            Http3CodecUtils.writeVariableLengthInteger(type, Http3CodecUtils.HTTP3_CONTROL_STREAM_TYPE);
+            controlStream.writeInbound(type);
+            for (;;) {
+                ByteBuf buffer = encoder.readOutbound();
+                if (buffer == null) {
+                    break;
+                }
+                controlStream.writeInbound(buffer);
+            }
+            assertFalse(encoder.finish());
+            assertTrue(handler.isGoAwayReceived());
+            controlStream.finishAndReleaseAll();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.incubator.codec.quic.QuicStreamType;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static io.netty.incubator.codec.http3.Http3TestUtils.assertException;
+import static io.netty.incubator.codec.http3.Http3TestUtils.mockParent;
+import static io.netty.incubator.codec.http3.Http3TestUtils.verifyClose;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Http3ClientPushManagerTest {
+    private QuicChannel parent;
+    private Http3PushCache cache;
+    private Http3ClientPushManager manager;
+    private EmbeddedQuicStreamChannel controlStream;
+    private EmbeddedQuicStreamChannel requestStream;
+
+    @Before
+    public void setUp() {
+        parent = mockParent();
+        cache = new Http3PushCache(2, 8);
+        manager = new Http3ClientPushManager(cache);
+        controlStream = new EmbeddedQuicStreamChannel(parent, true, QuicStreamType.UNIDIRECTIONAL, 2);
+        requestStream = new EmbeddedQuicStreamChannel(parent, true, QuicStreamType.BIDIRECTIONAL, 0,
+                new ChannelInboundHandlerAdapter());
+        manager.controlStreamCreated(controlStream);
+        assertMaxPushId(1);
+    }
+
+    @After
+    public void tearDown() {
+        assertNull(controlStream.readOutbound());
+        assertFalse(controlStream.finish());
+        assertFalse(requestStream.finish());
+        cache.clear();
+    }
+
+    private ChannelHandlerContext ctx() {
+        return requestStream.pipeline().firstContext();
+    }
+
+    private void assertMaxPushId(long id) {
+        Http3MaxPushIdFrame frame = controlStream.readOutbound();
+        assertEquals(id, frame.id());
+    }
+
+    private void assertCancelPush(long id) {
+        Http3CancelPushFrame frame = controlStream.readOutbound();
+        assertEquals(id, frame.id());
+    }
+
+    private static Http3Headers request(String method, String path) {
+        return new DefaultHttp3Headers().method(method).scheme("https").authority("netty.io").path(path);
+    }
+
+    private boolean promise(long pushId, Http3Headers headers) {
+        return manager.pushPromiseReceived(ctx(), new DefaultHttp3PushPromiseFrame(pushId, headers));
+    }
+
+    private EmbeddedQuicStreamChannel push(long pushId, String content) {
+        return push(pushId, content, new DefaultHttp3HeadersFrame());
+    }
+
+    private EmbeddedQuicStreamChannel push(long pushId, String content, Http3HeadersFrame headersFrame) {
+        EmbeddedQuicStreamChannel pushStream = new EmbeddedQuicStreamChannel(parent, false,
+                QuicStreamType.UNIDIRECTIONAL, 3 + 4 * pushId, manager.newPushStreamHandler(pushId));
+        headersFrame.headers().status("200");
+        assertFalse(pushStream.writeInbound(headersFrame));
+        assertFalse(pushStream.writeInbound(new DefaultHttp3DataFrame(
+                Unpooled.copiedBuffer(content, CharsetUtil.US_ASCII))));
+        pushStream.shutdownInput();
+        pushStream.pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+        return pushStream;
+    }
+
+    private void assertCached(Http3Headers headers, String content) {
+        Http3FullResponse response = cache.poll(headers);
+        assertNotNull(response);
+        try {
+            assertEquals("200", response.headers().status().toString());
+            assertEquals(content, response.content().toString(CharsetUtil.US_ASCII));
+        } finally {
+            response.release();
+        }
+        // A pushed response is only used once.
+        assertNull(cache.poll(headers));
+    }
+
+    @Test
+    public void testPromiseBeforePushStream() {
+        Http3Headers headers = request("GET", "/style.css");
+        assertTrue(promise(0, headers));
+        // The same push can be promised on multiple request streams.
+        assertTrue(promise(0, headers));
+        assertFalse(cache.contains(headers));
+
+        assertFalse(push(0, "body").finish());
+        assertMaxPushId(2);
+        assertCached(headers, "body");
+    }
+
+    @Test
+    public void testPooledHeadersFrame() {
+        Http3Headers headers = request("GET", "/style.css");
+        assertTrue(promise(0, headers));
+        assertFalse(push(0, "body", Http3.newPooledHeadersFrame()).finish());
+        assertMaxPushId(2);
+        // The pooled frame was released and reused, the cached response must still have its own headers.
+        Http3HeadersFrame reused = Http3.newPooledHeadersFrame();
+        reused.headers().status("404");
+        try {
+            assertCached(headers, "body");
+        } finally {
+            ReferenceCountUtil.release(reused);
+        }
+    }
+
+    @Test
+    public void testPushStreamBeforePromise() {
+        Http3Headers headers = request("GET", "/script.js");
+        assertFalse(push(1, "js").finish());
+        assertEquals(0, cache.size());
+
+        assertTrue(promise(1, headers));
+        assertMaxPushId(2);
+        assertCached(headers, "js");
+    }
+
+    @Test
+    public void testPromiseForUncacheableRequestCancelled() {
+        assertTrue(promise(0, request("POST", "/")));
+        assertCancelPush(0);
+        assertMaxPushId(2);
+
+        // The push stream is closed without reading it.
+        EmbeddedQuicStreamChannel pushStream = new EmbeddedQuicStreamChannel(parent, false,
+                QuicStreamType.UNIDIRECTIONAL, 3, manager.newPushStreamHandler(0));
+        assertFalse(pushStream.isOpen());
+        assertFalse(pushStream.finish());
+    }
+
+    @Test
+    public void testPromiseForCachedRequestCancelled() {
+        Http3Headers headers = request("GET", "/style.css");
+        assertTrue(promise(0, headers));
+        assertFalse(push(0, "body").finish());
+        assertMaxPushId(2);
+
+        assertTrue(promise(1, headers));
+        assertCancelPush(1);
+        assertMaxPushId(3);
+        assertCached(headers, "body");
+    }
+
+    @Test
+    public void testPushTooLargeCancelled() {
+        assertTrue(promise(0, request("GET", "/large")));
+        EmbeddedQuicStreamChannel pushStream = push(0, "too large for the cache");
+        assertFalse(pushStream.isOpen());
+        assertFalse(pushStream.finish());
+        assertCancelPush(0);
+        assertMaxPushId(2);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testCancelPushReceived() {
+        assertTrue(promise(0, request("GET", "/style.css")));
+        assertTrue(manager.cancelPushReceived(ctx(), 0, false));
+        assertMaxPushId(2);
+        // The server cancelled the push already, so there is no need to send CANCEL_PUSH.
+        EmbeddedQuicStreamChannel pushStream = new EmbeddedQuicStreamChannel(parent, false,
+                QuicStreamType.UNIDIRECTIONAL, 3, manager.newPushStreamHandler(0));
+        assertFalse(pushStream.isOpen());
+        assertFalse(pushStream.finish());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPromiseWithInvalidPushId() {
+        assertFalse(promise(2, request("GET", "/")));
+        try {
+            requestStream.checkException();
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_ID_ERROR, e);
+        }
+        verifyClose(Http3ErrorCode.H3_ID_ERROR, parent);
+    }
+
+    @Test
+    public void testCancelPushWithInvalidPushId() {
+        assertFalse(manager.cancelPushReceived(ctx(), 2, false));
+        verifyClose(Http3ErrorCode.H3_ID_ERROR, parent);
+    }
+
+    @Test
+    public void testCacheEvictsOldestEntry() {
+        Http3PushCache cache = new Http3PushCache(2, 1024);
+        Http3Headers first = request("GET", "/1");
+        Http3Headers second = request("HEAD", "/2");
+        Http3Headers third = request("GET", "/3");
+        Http3FullResponse response = new Http3FullResponse(new DefaultHttp3Headers(), Unpooled.buffer(),
+                new DefaultHttp3Headers());
+        cache.put(first, response);
+        cache.put(second, response.retainedDuplicate());
+        cache.put(third, response.retainedDuplicate());
+        assertEquals(2, cache.size());
+        assertFalse(cache.contains(first));
+        assertTrue(cache.contains(second));
+        assertTrue(cache.contains(third));
+        assertEquals(2, response.refCnt());
+
+        // Requests that are not GET or HEAD are never cached.
+        assertFalse(Http3PushCache.isCacheable(request("POST", "/1")));
+        cache.put(request("POST", "/1"), response.retainedDuplicate());
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        assertEquals(0, response.refCnt());
+    }
+}
@@ -0,0 +1,578 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.incubator.codec.quic.QuicStreamType;
+import io.netty.util.AttributeMap;
+import io.netty.util.CharsetUtil;
+import io.netty.util.DefaultAttributeMap;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class Http3ClientTest {
+    private EmbeddedChannel executorChannel;
+    private final List<EmbeddedQuicStreamChannel> streams = new ArrayList<>();
+    private final List<Http3Headers> misdirected = new ArrayList<>();
+    private EmbeddedQuicStreamChannel stream;
+
+    @Before
+    public void setUp() {
+        executorChannel = new EmbeddedChannel();
+    }
+
+    @After
+    public void tearDown() {
+        assertFalse(executorChannel.finish());
+        for (EmbeddedQuicStreamChannel stream : streams) {
+            stream.finishAndReleaseAll();
+        }
+    }
+
+    private Http3Client newClient(int maxContentLength, long timeoutMillis) {
+        return newClient(null, maxContentLength, timeoutMillis);
+    }
+
+    private Http3Client newClient(Http3PushCache pushCache, int maxContentLength, long timeoutMillis) {
+        return newClient(pushCache, null, maxContentLength, timeoutMillis);
+    }
+
+    private Http3Client newClient(Http3PushCache pushCache, Http3HedgePolicy hedgePolicy, int maxContentLength,
+                                  long timeoutMillis) {
+        return new Http3Client(executorChannel.eventLoop(), new Http3Client.StreamOpener() {
+            @Override
+            public Future<QuicStreamChannel> open(Http3Headers headers, ChannelHandler handler, QuicChannel avoid) {
+                stream = new EmbeddedQuicStreamChannel(handler);
+                streams.add(stream);
+                return stream.eventLoop().newSucceededFuture(stream);
+            }
+
+            @Override
+            public void misdirected(QuicChannel channel, Http3Headers headers) {
+                misdirected.add(headers);
+            }
+        }, pushCache, true, hedgePolicy, maxContentLength, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static Http3Headers request() {
+        Http3Headers headers = new DefaultHttp3Headers();
+        headers.method("POST").path("/").scheme("https").authority("netty.io");
+        return headers;
+    }
+
+    private static Http3HeadersFrame response(String status) {
+        Http3HeadersFrame frame = new DefaultHttp3HeadersFrame();
+        frame.headers().status(status);
+        return frame;
+    }
+
+    private static ByteBuf buffer(String content) {
+        return Unpooled.copiedBuffer(content, CharsetUtil.US_ASCII);
+    }
+
+    private void assertRequestWritten(String content) {
+        Http3HeadersFrame headersFrame = stream.readOutbound();
+        assertEquals("POST", headersFrame.headers().method().toString());
+        if (content != null) {
+            Http3DataFrame dataFrame = stream.readOutbound();
+            assertEquals(content, dataFrame.content().toString(CharsetUtil.US_ASCII));
+            dataFrame.release();
+        }
+        assertNull(stream.readOutbound());
+        assertTrue(stream.isOutputShutdown());
+    }
+
+    private void endOfResponse() {
+        stream.pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+    }
+
+    @Test
+    public void testAggregatedResponse() {
+        Http3Client client = newClient(1024, 0);
+        Future<Http3FullResponse> future = client.request(request(), buffer("request"));
+        assertRequestWritten("request");
+
+        // Informational responses are skipped.
+        assertFalse(stream.writeInbound(response("103")));
+        assertFalse(stream.writeInbound(response("200")));
+        assertFalse(stream.writeInbound(new DefaultHttp3DataFrame(buffer("hello "))));
+        assertFalse(stream.writeInbound(new DefaultHttp3DataFrame(buffer("world"))));
+        Http3HeadersFrame trailers = new DefaultHttp3HeadersFrame();
+        trailers.headers().add("grpc-status", "0");
+        assertFalse(stream.writeInbound(trailers));
+        assertFalse(future.isDone());
+        endOfResponse();
+
+        assertTrue(future.isSuccess());
+        Http3FullResponse response = future.getNow();
+        try {
+            assertEquals("200", response.headers().status().toString());
+            assertEquals("hello world", response.content().toString(CharsetUtil.US_ASCII));
+            assertEquals("0", response.trailers().get("grpc-status").toString());
+        } finally {
+            response.release();
+        }
+    }
+
+    @Test
+    public void testPooledHeadersFramesReleased() {
+        Http3Client client = newClient(1024, 0);
+        Future<Http3FullResponse> future = client.request(request(), buffer("request"));
+        assertRequestWritten("request");
+        EmbeddedQuicStreamChannel tooEarly = stream;
+        PooledHttp3HeadersFrame rejected = pooledResponse("425");
+        assertFalse(tooEarly.writeInbound(rejected));
+        assertEquals(0, rejected.refCnt());
+
+        assertRequestWritten("request");
+        PooledHttp3HeadersFrame informational = pooledResponse("103");
+        assertFalse(stream.writeInbound(informational));
+        assertEquals(0, informational.refCnt());
+        PooledHttp3HeadersFrame headers = pooledResponse("200");
+        assertFalse(stream.writeInbound(headers));
+        assertEquals(0, headers.refCnt());
+        PooledHttp3HeadersFrame trailers = (PooledHttp3HeadersFrame) Http3.newPooledHeadersFrame();
+        trailers.headers().add("grpc-status", "0");
+        assertFalse(stream.writeInbound(trailers));
+        assertEquals(0, trailers.refCnt());
+        endOfResponse();
+
+        // Frames received after the response completed are released as well.
+        PooledHttp3HeadersFrame late = pooledResponse("200");
+        assertFalse(stream.writeInbound(late));
+        assertEquals(0, late.refCnt());
+
+        Http3FullResponse response = future.getNow();
+        try {
+            assertEquals("200", response.headers().status().toString());
+            assertEquals("0", response.trailers().get("grpc-status").toString());
+        } finally {
+            response.release();
+        }
+    }
+
+    private static PooledHttp3HeadersFrame pooledResponse(String status) {
+        PooledHttp3HeadersFrame frame = (PooledHttp3HeadersFrame) Http3.newPooledHeadersFrame();
+        frame.headers().status(status);
+        return frame;
+    }
+
+    @Test
+    public void testAggregatedResponseWithoutContent() {
+        Http3Client client = newClient(1024, 0);
+        Future<Http3FullResponse> future = client.request(request(), null);
+        assertRequestWritten(null);
+        assertFalse(stream.writeInbound(response("204")));
+        endOfResponse();
+
+        Http3FullResponse response = future.getNow();
+        assertEquals("204", response.headers().status().toString());
+        assertFalse(response.content().isReadable());
+        assertTrue(response.trailers().isEmpty());
+        response.release();
+    }
+
+    @Test
+    public void testContentTooLong() {
+        Http3Client client = newClient(8, 0);
+        Future<Http3FullResponse> future = client.request(request(), null);
+        assertRequestWritten(null);
+        assertFalse(stream.writeInbound(response("200")));
+        assertFalse(stream.writeInbound(new DefaultHttp3DataFrame(buffer("hello "))));
+        ByteBuf tooMuch = buffer("world");
+        assertFalse(stream.writeInbound(new DefaultHttp3DataFrame(tooMuch)));
+        assertEquals(0, tooMuch.refCnt());
+
+        assertTrue(future.cause() instanceof TooLongFrameException);
+        assertFalse(stream.isOpen());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        Http3Client client = newClient(1024, 1);
+        Future<Http3FullResponse> future = client.request(request(), null);
+        assertRequestWritten(null);
+        assertFalse(stream.writeInbound(response("200")));
+        Thread.sleep(10);
+        executorChannel.runScheduledPendingTasks();
+
+        assertTrue(future.cause() instanceof TimeoutException);
+        assertFalse(stream.isOpen());
+    }
+
+    @Test
+    public void testStreamClosedBeforeResponse() {
+        Http3Client client = newClient(1024, 0);
+        Future<Http3FullResponse> future = client.request(request(), buffer("request"));
+        assertRequestWritten("request");
+        stream.close();
+        assertTrue(future.cause() instanceof ClosedChannelException);
+    }
+
+    @Test
+    public void testStreamingResponse() {
+        Http3Client client = newClient(1, 0);
+        List<Object> events = new ArrayList<>();
+        Future<Void> future = client.request(request(), null, new Http3ResponseListener() {
+            @Override
+            public void onInformational(Http3Headers headers) {
+                events.add(headers.get("link").toString());
+            }
+
+            @Override
+            public void onHeaders(Http3Headers headers) {
+                events.add(headers.status().toString());
+            }
+
+            @Override
+            public void onData(ByteBuf content) {
+                events.add(content.toString(CharsetUtil.US_ASCII));
+            }
+
+            @Override
+            public void onTrailers(Http3Headers trailers) {
+                events.add(trailers);
+            }
+        });
+        assertRequestWritten(null);
+        assertFalse(stream.writeInbound(Http3.newEarlyHintsFrame(Http3.preloadLink("/style.css", "style"))));
+        assertFalse(stream.writeInbound(response("200")));
+        // The maximum content length only applies to aggregated responses.
+        ByteBuf content = buffer("hello world");
+        assertFalse(stream.writeInbound(new DefaultHttp3DataFrame(content)));
+        assertEquals(0, content.refCnt());
+        endOfResponse();
+
+        assertTrue(future.isSuccess());
+        assertEquals(3, events.size());
+        assertEquals("</style.css>; rel=preload; as=style", events.get(0));
+        assertEquals("200", events.get(1));
+        assertEquals("hello world", events.get(2));
+    }
+
+    @Test
+    public void testCancel() {
+        Http3Client client = newClient(1024, 0);
+        Future<Http3FullResponse> future = client.request(request(), null);
+        assertRequestWritten(null);
+        assertTrue(future.cancel(false));
+        assertFalse(stream.isOpen());
+        assertSame(null, stream.readInbound());
+    }
+
+    @Test
+    public void testPushedResponseUsed() {
+        Http3PushCache pushCache = new Http3PushCache(1, 1024);
+        Http3Client client = newClient(pushCache, 1024, 0);
+        Http3Headers request = new DefaultHttp3Headers().method("GET").path("/").scheme("https")
+                .authority("netty.io");
+        pushCache.put(request, new Http3FullResponse(response("200").headers(), buffer("pushed"),
+                new DefaultHttp3Headers()));
+
+        Future<Http3FullResponse> future = client.request(request, null);
+        assertNull(stream);
+        Http3FullResponse response = future.getNow();
+        assertEquals("pushed", response.content().toString(CharsetUtil.US_ASCII));
+        response.release();
+
+        // The pushed response is only used once.
+        future = client.request(request, null);
+        assertNotNull(stream);
+        assertFalse(future.isDone());
+        assertTrue(future.cancel(false));
+    }
+
+    @Test
+    public void testRetryRejectedRequest() {
+        Http3Client client = newClient(1024, 0);
+        ByteBuf content = buffer("request");
+        Future<Http3FullResponse> future = client.request(request(), content);
+        assertRequestWritten("request");
+        EmbeddedQuicStreamChannel rejected = stream;
+        rejected.pipeline().fireExceptionCaught(new Http3Exception(Http3ErrorCode.H3_REQUEST_REJECTED, "rejected"));
+        assertFalse(rejected.isOpen());
+
+        // The request is sent again on a new request stream.
+        assertEquals(2, streams.size());
+        assertRequestWritten("request");
+        assertFalse(stream.writeInbound(response("200")));
+        endOfResponse();
+
+        Http3FullResponse response = future.getNow();
+        assertEquals("200", response.headers().status().toString());
+        response.release();
+        assertEquals(0, content.refCnt());
+    }
+
+    @Test
+    public void testRetryRequestRejectedWithGoAway() throws Exception {
+        QuicChannel quicChannel = mock(QuicChannel.class);
+        AttributeMap attributeMap = new DefaultAttributeMap();
+        when(quicChannel.attr(any())).then(a -> attributeMap.attr(a.getArgument(0)));
+        when(quicChannel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        when(quicChannel.isActive()).thenReturn(true);
+        EmbeddedQuicStreamChannel localControlStream = new EmbeddedQuicStreamChannel(
+                quicChannel, true, QuicStreamType.UNIDIRECTIONAL, 2);
+        when(quicChannel.createStream(any(QuicStreamType.class), any(ChannelHandler.class)))
+                .thenReturn(ImmediateEventExecutor.INSTANCE.newSucceededFuture(localControlStream));
+        Http3ClientConnectionHandler connectionHandler = new Http3ClientConnectionHandler();
+        ChannelPipeline pipeline = mock(ChannelPipeline.class);
+        when(pipeline.get(Http3ConnectionHandler.class)).thenReturn(connectionHandler);
+        when(quicChannel.pipeline()).thenReturn(pipeline);
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(quicChannel);
+        connectionHandler.handlerAdded(ctx);
+        connectionHandler.channelActive(ctx);
+
+        Http3Client client = new Http3Client(executorChannel.eventLoop(), new Http3Client.StreamOpener() {
+            @Override
+            public Future<QuicStreamChannel> open(Http3Headers headers, ChannelHandler handler, QuicChannel avoid) {
+                stream = new EmbeddedQuicStreamChannel(
+                        quicChannel, true, QuicStreamType.BIDIRECTIONAL, streams.size() * 4L, handler);
+                streams.add(stream);
+                connectionHandler.localRequestStreamCreated(stream);
+                return stream.eventLoop().newSucceededFuture(stream);
+            }
+
+            @Override
+            public void misdirected(QuicChannel channel, Http3Headers headers) {
+                misdirected.add(headers);
+            }
+        }, null, true, null, 1024, 0, TimeUnit.MILLISECONDS);
+        Future<Http3FullResponse> future = client.request(request(), buffer("request"));
+        assertRequestWritten("request");
+        EmbeddedQuicStreamChannel rejected = stream;
+
+        // The server rejected the request stream under overload and so sent a GOAWAY frame that covers it.
+        EmbeddedChannel encoder = new EmbeddedChannel(new Http3FrameEncoder(new QpackEncoder()));
+        assertTrue(encoder.writeOutbound(new DefaultHttp3SettingsFrame(), new DefaultHttp3GoAwayFrame(0)));
+        ByteBuf controlStreamBytes = Unpooled.buffer().writeByte(Http3CodecUtils.HTTP3_CONTROL_STREAM_TYPE);
+        for (;;) {
+            ByteBuf encoded = encoder.readOutbound();
+            if (encoded == null) {
+                break;
+            }
+            controlStreamBytes.writeBytes(encoded);
+            encoded.release();
+        }
+        assertFalse(encoder.finish());
+        EmbeddedQuicStreamChannel remoteControlStream = new EmbeddedQuicStreamChannel(
+                quicChannel, false, QuicStreamType.UNIDIRECTIONAL, 3);
+        connectionHandler.channelRead(ctx, remoteControlStream);
+        remoteControlStream.writeInbound(controlStreamBytes);
+        assertFalse(rejected.isOpen());
+
+        // The request is sent again on a new request stream.
+        assertEquals(2, streams.size());
+        assertRequestWritten("request");
+        assertFalse(stream.writeInbound(response("200")));
+        endOfResponse();
+        Http3FullResponse response = future.getNow();
+        assertEquals("200", response.headers().status().toString());
+        response.release();
+
+        remoteControlStream.finishAndReleaseAll();
+        localControlStream.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testRetryLimited() {
+        Http3Client client = newClient(1024, 0);
+        ByteBuf content = buffer("request");
+        Future<Http3FullResponse> future = client.request(request(), content);
+        for (int i = 0; i <= Http3Client.MAX_RETRIES; i++) {
+            assertFalse(future.isDone());
+            assertRequestWritten("request");
+            stream.pipeline().fireExceptionCaught(new Http3Exception(Http3ErrorCode.H3_REQUEST_REJECTED, "rejected"));
+        }
+        assertEquals(Http3Client.MAX_RETRIES + 1, streams.size());
+        assertTrue(future.cause() instanceof Http3Exception);
+        assertEquals(0, content.refCnt());
+    }
+
+    @Test
+    public void testNoRetryAfterResponseHeaders() {
+        Http3Client client = newClient(1024, 0);
+        Future<Http3FullResponse> future = client.request(request(), null);
+        assertRequestWritten(null);
+        assertFalse(stream.writeInbound(response("200")));
+        stream.pipeline().fireExceptionCaught(new Http3Exception(Http3ErrorCode.H3_REQUEST_REJECTED, "rejected"));
+        assertEquals(1, streams.size());
+        assertTrue(future.cause() instanceof Http3Exception);
+    }
+
+    @Test
+    public void testRetryTooEarly() {
+        Http3Client client = newClient(1024, 0);
+        Future<Http3FullResponse> future = client.request(request(), buffer("request"));
+        assertRequestWritten("request");
+        EmbeddedQuicStreamChannel tooEarly = stream;
+        assertFalse(tooEarly.writeInbound(response("425")));
+        assertFalse(tooEarly.isOpen());
+
+        // The request is sent again on a new request stream.
+        assertEquals(2, streams.size());
+        assertRequestWritten("request");
+        assertFalse(stream.writeInbound(response("200")));
+        endOfResponse();
+
+        Http3FullResponse response = future.getNow();
+        assertEquals("200", response.headers().status().toString());
+        response.release();
+    }
+
+    @Test
+    public void testTooEarlyResponseAfterRetries() {
+        Http3Client client = newClient(1024, 0);
+        Future<Http3FullResponse> future = client.request(request(), null);
+        for (int i = 0; i <= Http3Client.MAX_RETRIES; i++) {
+            assertRequestWritten(null);
+            assertFalse(stream.writeInbound(response("425")));
+        }
+        endOfResponse();
+
+        // Once no retries are left the response is passed to the caller.
+        assertEquals(Http3Client.MAX_RETRIES + 1, streams.size());
+        Http3FullResponse response = future.getNow();
+        assertEquals("425", response.headers().status().toString());
+        response.release();
+    }
+
+    private static Http3Headers getRequest() {
+        Http3Headers headers = new DefaultHttp3Headers();
+        headers.method("GET").path("/").scheme("https").authority("netty.io");
+        return headers;
+    }
+
+    private void runHedgeTimer() throws Exception {
+        Thread.sleep(20);
+        executorChannel.runScheduledPendingTasks();
+    }
+
+    @Test
+    public void testHedgedRequest() throws Exception {
+        Http3Client client = newClient(null, new Http3HedgePolicy(0.9, 10, 10, TimeUnit.MILLISECONDS), 1024, 0);
+        Future<Http3FullResponse> future = client.request(getRequest(), null);
+        EmbeddedQuicStreamChannel primary = stream;
+        assertNotNull(primary.readOutbound());
+
+        // No response within the delay, so the request is sent again.
+        runHedgeTimer();
+        assertEquals(2, streams.size());
+        Http3HeadersFrame hedgedHeaders = stream.readOutbound();
+        assertEquals("GET", hedgedHeaders.headers().method().toString());
+        assertTrue(stream.isOutputShutdown());
+
+        // The first response wins and the other request is cancelled.
+        assertFalse(stream.writeInbound(response("200")));
+        assertFalse(primary.isOpen());
+        assertTrue(stream.isOpen());
+        endOfResponse();
+
+        Http3FullResponse response = future.getNow();
+        assertEquals("200", response.headers().status().toString());
+        response.release();
+    }
+
+    @Test
+    public void testHedgedRequestNotSentAfterResponse() throws Exception {
+        Http3Client client = newClient(null, new Http3HedgePolicy(0.9, 10, 10, TimeUnit.MILLISECONDS), 1024, 0);
+        Future<Http3FullResponse> future = client.request(getRequest(), null);
+        assertFalse(stream.writeInbound(response("200")));
+        runHedgeTimer();
+        assertEquals(1, streams.size());
+        endOfResponse();
+        future.getNow().release();
+    }
+
+    @Test
+    public void testNonIdempotentRequestNotHedged() throws Exception {
+        Http3Client client = newClient(null, new Http3HedgePolicy(0.9, 10, 10, TimeUnit.MILLISECONDS), 1024, 0);
+        Future<Http3FullResponse> future = client.request(request(), null);
+        assertRequestWritten(null);
+        runHedgeTimer();
+        assertEquals(1, streams.size());
+        assertFalse(stream.writeInbound(response("200")));
+        endOfResponse();
+        future.getNow().release();
+    }
+
+    @Test
+    public void testHedgedRequestFailsOnceAllFailed() throws Exception {
+        Http3Client client = newClient(null, new Http3HedgePolicy(0.9, 10, 10, TimeUnit.MILLISECONDS), 1024, 0);
+        Future<Http3FullResponse> future = client.request(getRequest(), null);
+        EmbeddedQuicStreamChannel primary = stream;
+        runHedgeTimer();
+        assertEquals(2, streams.size());
+
+        primary.close();
+        assertFalse(future.isDone());
+        stream.close();
+        assertTrue(future.cause() instanceof ClosedChannelException);
+    }
+
+    @Test
+    public void testRetryMisdirectedRequest() {
+        Http3Client client = newClient(1024, 0);
+        Http3Headers headers = request();
+        Future<Http3FullResponse> future = client.request(headers, buffer("request"));
+        assertRequestWritten("request");
+        EmbeddedQuicStreamChannel misdirectedStream = stream;
+        assertFalse(misdirectedStream.writeInbound(response("421")));
+        assertFalse(misdirectedStream.isOpen());
+        assertEquals(1, misdirected.size());
+        assertSame(headers, misdirected.get(0));
+
+        // The request is sent again on a new request stream.
+        assertEquals(2, streams.size());
+        assertRequestWritten("request");
+        assertFalse(stream.writeInbound(response("200")));
+        endOfResponse();
+
+        Http3FullResponse response = future.getNow();
+        assertEquals("200", response.headers().status().toString());
+        response.release();
+    }
+}
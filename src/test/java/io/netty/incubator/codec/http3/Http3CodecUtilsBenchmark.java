@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks encoding and decoding of
+ * <a href="https://tools.ietf.org/html/draft-ietf-quic-transport-32#section-16">variable-length integers</a>
+ * for all four possible lengths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class Http3CodecUtilsBenchmark {
+    private static final int VALUES = 128;
+
+    // One value for each of the four possible encoded lengths: 1, 2, 4 and 8 bytes.
+    @Param({ "63", "16383", "1073741823", "4611686018427387903" })
+    public long value;
+
+    private ByteBuf buffer;
+    private int numBytes;
+
+    @Setup
+    public void setup() {
+        numBytes = Http3CodecUtils.numBytesForVariableLengthInteger(value);
+        buffer = PooledByteBufAllocator.DEFAULT.directBuffer(VALUES * 8 + 8);
+        for (int i = 0; i < VALUES; i++) {
+            Http3CodecUtils.writeVariableLengthInteger(buffer, value, numBytes);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        buffer.release();
+    }
+
+    @Benchmark
+    public long read() {
+        ByteBuf buffer = this.buffer;
+        buffer.readerIndex(0);
+        long sum = 0;
+        for (int i = 0; i < VALUES; i++) {
+            sum += Http3CodecUtils.readVariableLengthInteger(buffer);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long readWithLength() {
+        ByteBuf buffer = this.buffer;
+        buffer.readerIndex(0);
+        long sum = 0;
+        for (int i = 0; i < VALUES; i++) {
+            int len = Http3CodecUtils.numBytesForVariableLengthInteger(buffer.getByte(buffer.readerIndex()));
+            sum += Http3CodecUtils.readVariableLengthInteger(buffer, len);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int write() {
+        ByteBuf buffer = this.buffer;
+        buffer.writerIndex(0);
+        for (int i = 0; i < VALUES; i++) {
+            Http3CodecUtils.writeVariableLengthInteger(buffer, value);
+        }
+        return buffer.writerIndex();
+    }
+
+    public static void main(String... args) throws Exception {
+        new Runner(new OptionsBuilder().include(Http3CodecUtilsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class Http3CodecUtilsTest {
+
+    private static final long[] VALUES = {
+            0, 37, 63, // 1 byte
+            64, 15293, 16383, // 2 bytes
+            16384, 494878333, 1073741823, // 4 bytes
+            1073741824, 151288809941952652L, 4611686018427387903L // 8 bytes
+    };
+
+    @Test
+    public void testWriteVariableLengthIntegerMatchesRfcExamples() {
+        // See https://tools.ietf.org/html/draft-ietf-quic-transport-32#appendix-A.1
+        assertEncoded(37, 0x25);
+        assertEncoded(15293, 0x7b, 0xbd);
+        assertEncoded(494878333, 0x9d, 0x7f, 0x3e, 0x7d);
+        assertEncoded(151288809941952652L, 0xc2, 0x19, 0x7c, 0x5e, 0xff, 0x14, 0xe8, 0x8c);
+    }
+
+    private static void assertEncoded(long value, int... expected) {
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            Http3CodecUtils.writeVariableLengthInteger(buffer, value);
+            assertEquals(expected.length, buffer.readableBytes());
+            for (int b : expected) {
+                assertEquals((byte) b, buffer.readByte());
+            }
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void testReadVariableLengthIntegerSingleLoad() {
+        // Add padding so we always have at least 8 readable bytes and so use the single load path.
+        testReadVariableLengthInteger(8);
+    }
+
+    @Test
+    public void testReadVariableLengthIntegerFallback() {
+        testReadVariableLengthInteger(0);
+    }
+
+    private static void testReadVariableLengthInteger(int padding) {
+        for (long value : VALUES) {
+            ByteBuf buffer = Unpooled.buffer();
+            try {
+                Http3CodecUtils.writeVariableLengthInteger(buffer, value);
+                int len = buffer.readableBytes();
+                assertEquals(Http3CodecUtils.numBytesForVariableLengthInteger(value), len);
+                assertEquals(len, Http3CodecUtils.numBytesForVariableLengthInteger(buffer.getByte(0)));
+                buffer.writeZero(padding);
+
+                assertEquals(value, Http3CodecUtils.readVariableLengthInteger(buffer));
+                assertEquals(len, buffer.readerIndex());
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    @Test
+    public void testReadVariableLengthIntegerNotEnoughBytes() {
+        for (long value : VALUES) {
+            ByteBuf buffer = Unpooled.buffer();
+            try {
+                Http3CodecUtils.writeVariableLengthInteger(buffer, value);
+                ByteBuf slice = buffer.slice(0, buffer.readableBytes() - 1);
+                assertEquals(-1, Http3CodecUtils.readVariableLengthInteger(slice));
+                assertEquals(0, slice.readerIndex());
+            } finally {
+                buffer.release();
+            }
+        }
+        assertEquals(-1, Http3CodecUtils.readVariableLengthInteger(Unpooled.EMPTY_BUFFER));
+    }
+}
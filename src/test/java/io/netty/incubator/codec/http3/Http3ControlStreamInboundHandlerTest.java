@@ -162,6 +162,61 @@ public class Http3ControlStreamInboundHandlerTest extends
         assertFalse(channel.finish());
     }
 
+    @Test
+    public void testHttp3PriorityUpdateFrames() {
+        QuicChannel parent = mockParent();
+        EmbeddedChannel channel = newInitChannel(parent);
+        if (server) {
+            writeValidFrame(channel, new DefaultHttp3PriorityUpdateFrame(4, new Http3Priority(0, false)));
+            writeValidFrame(channel, new DefaultHttp3PriorityUpdateFrame(true, 3, "u=1"));
+        } else {
+            writeInvalidFrame(Http3ErrorCode.H3_FRAME_UNEXPECTED, channel,
+                    new DefaultHttp3PriorityUpdateFrame(4, new Http3Priority(0, false)));
+            verifyClose(Http3ErrorCode.H3_FRAME_UNEXPECTED, parent);
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testHttp3PriorityUpdateFrameIdNonRequestStream() {
+        if (!server) {
+            return;
+        }
+        QuicChannel parent = mockParent();
+        EmbeddedChannel channel = newInitChannel(parent);
+        writeInvalidFrame(Http3ErrorCode.H3_ID_ERROR, channel,
+                new DefaultHttp3PriorityUpdateFrame(2, new Http3Priority(0, false)));
+        verifyClose(Http3ErrorCode.H3_ID_ERROR, parent);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testHttp3PriorityUpdateFrameNotifiesScheduler() {
+        if (!server) {
+            return;
+        }
+        Http3PriorityScheduler scheduler = new Http3PriorityScheduler();
+        EmbeddedChannel channel = new EmbeddedChannel(mockParent(), DefaultChannelId.newInstance(), true, false,
+                new Http3ControlStreamInboundHandler(server, null, null, scheduler));
+        assertFalse(channel.writeInbound(new DefaultHttp3SettingsFrame()));
+        assertFalse(channel.writeInbound(new DefaultHttp3PriorityUpdateFrame(8, new Http3Priority(6, true))));
+        assertEquals(new Http3Priority(6, true), scheduler.priority(8));
+        assertEquals(Http3Priority.DEFAULT, scheduler.priority(4));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testGoAwayFrameNotifiesListener() {
+        List<Long> ids = new ArrayList<>();
+        EmbeddedChannel channel = new EmbeddedChannel(mockParent(), DefaultChannelId.newInstance(), true, false,
+                new Http3ControlStreamInboundHandler(server, null, null, null, ids::add));
+        assertFalse(channel.writeInbound(new DefaultHttp3SettingsFrame()));
+        assertFalse(channel.writeInbound(new DefaultHttp3GoAwayFrame(8)));
+        assertFalse(channel.writeInbound(new DefaultHttp3GoAwayFrame(4)));
+        assertEquals(Arrays.asList(8L, 4L), ids);
+        assertFalse(channel.finish());
+    }
+
     private EmbeddedChannel newInitChannel(QuicChannel parent) {
         EmbeddedChannel channel = new EmbeddedChannel(parent, DefaultChannelId.newInstance(), true, false,
                 new Http3ControlStreamInboundHandler(server,
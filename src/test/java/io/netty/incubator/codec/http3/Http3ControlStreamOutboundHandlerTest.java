@@ -97,6 +97,46 @@ public class Http3ControlStreamOutboundHandlerTest extends
         assertFalse(channel.finish());
     }
 
+    @Test
+    public void testClientGoAwayIdIncreaseFails() {
+        QuicChannel parent = mockParent();
+        EmbeddedChannel channel = newChannel(parent, newHandler(), false);
+        // Clients use push ids which don't need to be a multiple of 4.
+        assertTrue(channel.writeOutbound(new DefaultHttp3GoAwayFrame(3)));
+        ReferenceCountUtil.release(channel.readOutbound());
+
+        try {
+            channel.writeOutbound(new DefaultHttp3GoAwayFrame(5));
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_ID_ERROR, e);
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testPriorityUpdateSentByClient() {
+        QuicChannel parent = mockParent();
+        EmbeddedChannel channel = newChannel(parent, newHandler(), false);
+        assertTrue(channel.writeOutbound(new DefaultHttp3PriorityUpdateFrame(4, Http3Priority.DEFAULT)));
+        ReferenceCountUtil.release(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testPriorityUpdateSentByServerFails() {
+        QuicChannel parent = mockParent();
+        EmbeddedChannel channel = newChannel(parent, new Http3ControlStreamOutboundHandler(
+                true, settingsFrame, new ChannelInboundHandlerAdapter()), false);
+        try {
+            channel.writeOutbound(new DefaultHttp3PriorityUpdateFrame(4, Http3Priority.DEFAULT));
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_FRAME_UNEXPECTED, e);
+        }
+        assertFalse(channel.finish());
+    }
+
     @Test
     public void testGoAwayIdUseInvalidId() {
         QuicChannel parent = mockParent();
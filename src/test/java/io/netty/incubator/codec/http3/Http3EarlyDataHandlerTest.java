@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class Http3EarlyDataHandlerTest {
+
+    private static Http3HeadersFrame request(String method) {
+        Http3HeadersFrame frame = new DefaultHttp3HeadersFrame();
+        frame.headers().method(method).path("/").scheme("https").authority("netty.io");
+        return frame;
+    }
+
+    @Test
+    public void testIdempotentRequestPassed() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3EarlyDataHandler());
+        Http3HeadersFrame request = request("GET");
+        assertTrue(channel.writeInbound(request));
+        assertSame(request, channel.readInbound());
+        assertNull(channel.pipeline().get(Http3EarlyDataHandler.class));
+        assertNull(channel.readOutbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testNonIdempotentRequestRejected() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3EarlyDataHandler());
+        assertFalse(channel.writeInbound(request("POST")));
+        DefaultHttp3DataFrame data = new DefaultHttp3DataFrame(Unpooled.buffer().writeLong(8));
+        assertFalse(channel.writeInbound(data));
+        assertEquals(0, data.refCnt());
+        channel.pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+        assertNull(channel.readInbound());
+
+        Http3HeadersFrame response = channel.readOutbound();
+        assertEquals("425", response.headers().status().toString());
+        assertTrue(channel.isOutputShutdown());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testCustomPredicate() {
+        // Only uploads to this path are safe to be replayed, while everything else is rejected.
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3EarlyDataHandler(
+                headers -> "/upload".contentEquals(headers.path())));
+        Http3HeadersFrame request = request("POST");
+        request.headers().path("/upload");
+        assertTrue(channel.writeInbound(request));
+        assertSame(request, channel.readInbound());
+        assertFalse(channel.finish());
+
+        channel = new EmbeddedQuicStreamChannel(new Http3EarlyDataHandler(
+                headers -> "/upload".contentEquals(headers.path())));
+        assertFalse(channel.writeInbound(request("GET")));
+        Http3HeadersFrame response = channel.readOutbound();
+        assertEquals("425", response.headers().status().toString());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testIdempotentMethods() {
+        for (String method : new String[] { "GET", "HEAD", "OPTIONS", "TRACE", "PUT", "DELETE" }) {
+            assertTrue(method, Http3CodecUtils.isIdempotentMethod(method));
+        }
+        for (String method : new String[] { "POST", "PATCH", "CONNECT", "get" }) {
+            assertFalse(method, Http3CodecUtils.isIdempotentMethod(method));
+        }
+        assertFalse(Http3CodecUtils.isIdempotentMethod(null));
+    }
+}
@@ -121,6 +121,16 @@ public class Http3FrameEncoderDecoderTest {
         testFrameEncodedAndDecoded(new DefaultHttp3MaxPushIdFrame(1073741823));
     }
 
+    @Test
+    public void testHttp3PriorityUpdateFrame() {
+        testFrameEncodedAndDecoded(new DefaultHttp3PriorityUpdateFrame(16384, new Http3Priority(1, true)));
+    }
+
+    @Test
+    public void testHttp3PriorityUpdateFrameForPush() {
+        testFrameEncodedAndDecoded(new DefaultHttp3PriorityUpdateFrame(true, 7, "u=5, foo=bar"));
+    }
+
     @Test
     public void testHttp3SettingsFrame() {
         Http3SettingsFrame settingsFrame = new DefaultHttp3SettingsFrame();
@@ -347,13 +357,28 @@ public class Http3FrameEncoderDecoderTest {
             do {
                 ByteBuf slice = buffer.readRetainedSlice(
                         ThreadLocalRandom.current().nextInt(buffer.readableBytes() + 1));
-                assertEquals(!buffer.isReadable(), decoderChannel.writeInbound(slice));
+                boolean produced = decoderChannel.writeInbound(slice);
+                if (!(frame instanceof Http3DataFrame)) {
+                    assertEquals(!buffer.isReadable(), produced);
+                }
             } while (buffer.isReadable());
             buffer.release();
         } else {
             assertTrue(decoderChannel.writeInbound(buffer));
         }
-        Http3Frame readFrame = decoderChannel.readInbound();
+        Http3Frame readFrame;
+        if (frame instanceof Http3DataFrame) {
+            // The payload of DATA frames is passed on as it arrives, so it may be split across multiple frames.
+            ByteBuf content = Unpooled.buffer();
+            Http3DataFrame dataFrame;
+            while ((dataFrame = decoderChannel.readInbound()) != null) {
+                content.writeBytes(dataFrame.content());
+                dataFrame.release();
+            }
+            readFrame = new DefaultHttp3DataFrame(content);
+        } else {
+            readFrame = decoderChannel.readInbound();
+        }
         Http3TestUtils.assertFrameEquals(frame, readFrame);
         assertFalse(encoderChannel.finish());
         assertFalse(decoderChannel.finish());
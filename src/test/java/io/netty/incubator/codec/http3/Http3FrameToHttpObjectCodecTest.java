@@ -0,0 +1,206 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class Http3FrameToHttpObjectCodecTest {
+
+    private static Http3HeadersFrame newRequestHeadersFrame() {
+        Http3HeadersFrame frame = new DefaultHttp3HeadersFrame();
+        frame.headers().method("POST").path("/upload").scheme("https").authority("netty.io");
+        return frame;
+    }
+
+    @Test
+    public void testDecodeRequest() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3FrameToHttpObjectCodec(true));
+        Http3HeadersFrame headersFrame = newRequestHeadersFrame();
+        headersFrame.headers().add("cookie", "a=1").add("cookie", "b=2").add("content-type", "text/plain");
+        ByteBuf content = Unpooled.copiedBuffer("netty", CharsetUtil.US_ASCII);
+        assertTrue(channel.writeInbound(headersFrame));
+        assertTrue(channel.writeInbound(new DefaultHttp3DataFrame(content)));
+        channel.pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+
+        HttpRequest request = channel.readInbound();
+        assertEquals(HttpMethod.POST, request.method());
+        assertEquals("/upload", request.uri());
+        assertEquals("netty.io", request.headers().get(HttpHeaderNames.HOST));
+        assertEquals("a=1; b=2", request.headers().get(HttpHeaderNames.COOKIE));
+        assertEquals("text/plain", request.headers().get(HttpHeaderNames.CONTENT_TYPE));
+        assertTrue(request.headers().contains(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED, true));
+        assertFalse(request.headers().contains(":path"));
+
+        HttpContent httpContent = channel.readInbound();
+        assertFalse(httpContent instanceof LastHttpContent);
+        // The content is passed on without a copy.
+        assertSame(content, httpContent.content());
+        httpContent.release();
+
+        assertSame(LastHttpContent.EMPTY_LAST_CONTENT, channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDecodeFullRequest() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3FrameToHttpObjectCodec(true));
+        channel.shutdownInput();
+        assertTrue(channel.writeInbound(newRequestHeadersFrame()));
+
+        FullHttpRequest request = channel.readInbound();
+        assertEquals("/upload", request.uri());
+        assertFalse(request.content().isReadable());
+        assertFalse(request.headers().contains(HttpHeaderNames.TRANSFER_ENCODING));
+        request.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDecodeTrailers() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3FrameToHttpObjectCodec(true));
+        assertTrue(channel.writeInbound(newRequestHeadersFrame()));
+        assertTrue(channel.writeInbound(new DefaultHttp3DataFrame(Unpooled.buffer().writeByte(1))));
+        channel.shutdownInput();
+        Http3HeadersFrame trailers = new DefaultHttp3HeadersFrame();
+        trailers.headers().add("checksum", "abc");
+        assertTrue(channel.writeInbound(trailers));
+
+        HttpRequest request = channel.readInbound();
+        assertEquals(HttpMethod.POST, request.method());
+        HttpContent content = channel.readInbound();
+        assertFalse(content instanceof LastHttpContent);
+        content.release();
+        LastHttpContent last = channel.readInbound();
+        assertEquals("abc", last.trailingHeaders().get("checksum"));
+        last.release();
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDecodeInformationalResponse() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3FrameToHttpObjectCodec(false));
+        assertTrue(channel.writeInbound(Http3.newEarlyHintsFrame("</style.css>; rel=preload; as=style")));
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        headersFrame.headers().status("200").add("content-length", "0");
+        assertTrue(channel.writeInbound(headersFrame));
+
+        FullHttpResponse hints = channel.readInbound();
+        assertEquals(103, hints.status().code());
+        assertEquals("</style.css>; rel=preload; as=style", hints.headers().get("link"));
+        hints.release();
+        HttpResponse response = channel.readInbound();
+        assertFalse(response instanceof FullHttpResponse);
+        assertEquals(HttpResponseStatus.OK, response.status());
+        assertFalse(response.headers().contains(HttpHeaderNames.TRANSFER_ENCODING));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testEncodeFullResponse() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3FrameToHttpObjectCodec(true));
+        ByteBuf content = Unpooled.copiedBuffer("netty", CharsetUtil.US_ASCII);
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+        response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE).set("X-Custom", "value");
+        response.trailingHeaders().set("checksum", "abc");
+        assertTrue(channel.writeOutbound(response));
+
+        Http3HeadersFrame headersFrame = channel.readOutbound();
+        assertEquals("200", headersFrame.headers().status().toString());
+        assertEquals("value", headersFrame.headers().get("x-custom").toString());
+        assertFalse(headersFrame.headers().contains("connection"));
+        Http3DataFrame dataFrame = channel.readOutbound();
+        assertSame(content, dataFrame.content());
+        dataFrame.release();
+        Http3HeadersFrame trailersFrame = channel.readOutbound();
+        assertEquals("abc", trailersFrame.headers().get("checksum").toString());
+        assertTrue(channel.isOutputShutdown());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testEncodeRequest() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3FrameToHttpObjectCodec(false));
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/index.html");
+        request.headers().set(HttpHeaderNames.HOST, "netty.io")
+                .set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED)
+                .set(HttpHeaderNames.TE, HttpHeaderValues.TRAILERS);
+        assertTrue(channel.writeOutbound(request));
+
+        Http3HeadersFrame headersFrame = channel.readOutbound();
+        Http3Headers headers = headersFrame.headers();
+        assertEquals("GET", headers.method().toString());
+        assertEquals("/index.html", headers.path().toString());
+        assertEquals("https", headers.scheme().toString());
+        assertEquals("netty.io", headers.authority().toString());
+        assertFalse(headers.contains("host"));
+        assertFalse(headers.contains("transfer-encoding"));
+        assertEquals("trailers", headers.get("te").toString());
+        assertFalse(channel.isOutputShutdown());
+
+        assertTrue(channel.writeOutbound(new DefaultLastHttpContent()));
+        Http3DataFrame dataFrame = channel.readOutbound();
+        assertFalse(dataFrame.content().isReadable());
+        assertTrue(channel.isOutputShutdown());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testEncodeInformationalResponse() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3FrameToHttpObjectCodec(true));
+        assertTrue(channel.writeOutbound(
+                new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE)));
+        Http3HeadersFrame headersFrame = channel.readOutbound();
+        assertEquals("100", headersFrame.headers().status().toString());
+        assertNull(channel.readOutbound());
+        assertFalse(channel.isOutputShutdown());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testFramesPassedThrough() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3FrameToHttpObjectCodec(true));
+        Http3DataFrame frame = new DefaultHttp3DataFrame(Unpooled.buffer().writeByte(1));
+        assertTrue(channel.writeOutbound(frame));
+        assertSame(frame, channel.readOutbound());
+        frame.release();
+        assertFalse(channel.finish());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks decoding a typical request field section into the different {@link Http3Headers} implementations and
+ * iterating over the result. Run with {@code -prof gc} to compare the allocation per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class Http3HeadersBenchmark {
+
+    @Param({ "default", "compact" })
+    public String implementation;
+
+    private Supplier<Http3Headers> headersFactory;
+    private QpackDecoder decoder;
+    private ByteBuf encoded;
+
+    @Setup
+    public void setup() throws Exception {
+        headersFactory = "compact".equals(implementation) ? CompactHttp3Headers::new : DefaultHttp3Headers::new;
+        decoder = new QpackDecoder();
+        Http3Headers headers = new DefaultHttp3Headers()
+                .method("GET")
+                .scheme("https")
+                .authority("netty.io")
+                .path("/index.html")
+                .add("user-agent", "Mozilla/5.0 (X11; Linux x86_64; rv:84.0) Gecko/20100101 Firefox/84.0")
+                .add("accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
+                .add("accept-language", "en-US,en;q=0.5")
+                .add("accept-encoding", "gzip, deflate, br")
+                .add("cookie", "session=0123456789abcdef")
+                .add("cache-control", "no-cache");
+        encoded = PooledByteBufAllocator.DEFAULT.directBuffer();
+        new QpackEncoder().encodeHeaders(encoded, headers);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encoded.release();
+    }
+
+    @Benchmark
+    public int decodeAndIterate() throws Exception {
+        Http3Headers headers = headersFactory.get();
+        Http3HeadersSink sink = new Http3HeadersSink(headers, Long.MAX_VALUE, true);
+        decoder.decode(encoded.duplicate(), sink);
+        sink.finish();
+        int length = 0;
+        for (Map.Entry<CharSequence, CharSequence> header : headers) {
+            length += header.getValue().length();
+        }
+        return length + headers.method().length() + headers.path().length();
+    }
+
+    public static void main(String... args) throws Exception {
+        new Runner(new OptionsBuilder().include(Http3HeadersBenchmark.class.getSimpleName()).build()).run();
+    }
+}
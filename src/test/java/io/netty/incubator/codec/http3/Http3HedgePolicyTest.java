@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class Http3HedgePolicyTest {
+
+    @Test
+    public void testMaxDelayUntilEnoughSamples() {
+        Http3HedgePolicy policy = new Http3HedgePolicy(0.5, 1, 1000, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < Http3HedgePolicy.MIN_SAMPLES - 1; i++) {
+            policy.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(1000, policy.delay(TimeUnit.MILLISECONDS));
+        policy.record(TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(10, policy.delay(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testPercentile() {
+        Http3HedgePolicy policy = new Http3HedgePolicy(0.9, 0, 1000, TimeUnit.MILLISECONDS);
+        for (int i = 100; i > 0; i--) {
+            policy.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        assertEquals(90, policy.delay(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testOldSamplesReplaced() {
+        Http3HedgePolicy policy = new Http3HedgePolicy(0.5, 0, 1000, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < Http3HedgePolicy.MAX_SAMPLES; i++) {
+            policy.record(TimeUnit.MILLISECONDS.toNanos(500));
+        }
+        assertEquals(500, policy.delay(TimeUnit.MILLISECONDS));
+        for (int i = 0; i < Http3HedgePolicy.MAX_SAMPLES; i++) {
+            policy.record(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+        assertEquals(20, policy.delay(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testDelayClamped() {
+        Http3HedgePolicy policy = new Http3HedgePolicy(0.5, 5, 50, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < Http3HedgePolicy.MIN_SAMPLES; i++) {
+            policy.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(5, policy.delay(TimeUnit.MILLISECONDS));
+        for (int i = 0; i < Http3HedgePolicy.MAX_SAMPLES; i++) {
+            policy.record(TimeUnit.SECONDS.toNanos(1));
+        }
+        assertEquals(50, policy.delay(TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new Http3HedgePolicy(1, 0, 1, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.incubator.codec.quic.QuicStreamType;
+import org.junit.Test;
+
+import static io.netty.incubator.codec.http3.Http3TestUtils.assertException;
+import static io.netty.incubator.codec.http3.Http3TestUtils.mockParent;
+import static io.netty.incubator.codec.http3.Http3TestUtils.verifyClose;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Http3MemoryBudgetTest {
+    // A frame type that is not defined and so is received as Http3UnknownFrame.
+    private static final long UNKNOWN_FRAME_TYPE = 0x40;
+
+    private static EmbeddedQuicStreamChannel newStream(QuicChannel parent, Http3MemoryBudget.Account account) {
+        Http3FrameDecoder.Config config = new Http3FrameDecoder.Config();
+        config.pooledFrames = false;
+        config.memoryAccount = account;
+        return new EmbeddedQuicStreamChannel(parent, false, QuicStreamType.BIDIRECTIONAL, 0,
+                new Http3FrameDecoder(new QpackDecoder(), 1024, config));
+    }
+
+    private static ByteBuf frameStart(long type, int payloadLength, int writtenPayload) {
+        ByteBuf buffer = Unpooled.buffer();
+        Http3CodecUtils.writeVariableLengthInteger(buffer, type);
+        Http3CodecUtils.writeVariableLengthInteger(buffer, payloadLength);
+        buffer.writeZero(writtenPayload);
+        return buffer;
+    }
+
+    private static ByteBuf unknownFrameStart(int payloadLength, int writtenPayload) {
+        return frameStart(UNKNOWN_FRAME_TYPE, payloadLength, writtenPayload);
+    }
+
+    private static void assertUnknownFrame(EmbeddedQuicStreamChannel stream, int payloadLength) {
+        Http3UnknownFrame frame = stream.readInbound();
+        assertEquals(payloadLength, frame.content().readableBytes());
+        frame.release();
+    }
+
+    private static void assertDataFrame(EmbeddedQuicStreamChannel stream, int payloadLength) {
+        Http3DataFrame frame = stream.readInbound();
+        assertEquals(payloadLength, frame.content().readableBytes());
+        frame.release();
+    }
+
+    @Test
+    public void testPauseAndResumeConnection() {
+        Http3MemoryBudget budget = new Http3MemoryBudget(10, 100, 1000);
+        Http3MemoryBudget.Account account = budget.newAccount();
+        QuicChannel parent = mockParent();
+        EmbeddedQuicStreamChannel stream1 = newStream(parent, account);
+        EmbeddedQuicStreamChannel stream2 = newStream(parent, account);
+
+        assertFalse(stream1.writeInbound(unknownFrameStart(20, 8)));
+        assertEquals(8, account.bufferedBytes());
+        assertTrue(stream1.config().isAutoRead());
+
+        assertFalse(stream1.writeInbound(Unpooled.buffer().writeZero(7)));
+        assertEquals(15, account.bufferedBytes());
+        assertEquals(15, budget.bufferedBytes());
+        // The stream holds the partial frame, so it must keep reading to complete it.
+        assertTrue(stream1.config().isAutoRead());
+        assertFalse(account.isPaused(stream1));
+
+        // Other streams are paused once they completed their frame.
+        assertTrue(stream2.writeInbound(unknownFrameStart(1, 1)));
+        assertUnknownFrame(stream2, 1);
+        assertFalse(stream2.config().isAutoRead());
+        assertTrue(account.isPaused(stream2));
+
+        assertTrue(stream1.writeInbound(Unpooled.buffer().writeZero(5)));
+        assertUnknownFrame(stream1, 20);
+        assertEquals(0, account.bufferedBytes());
+        assertEquals(0, budget.bufferedBytes());
+        assertTrue(stream2.config().isAutoRead());
+        assertFalse(account.isPaused(stream2));
+        assertFalse(stream1.finish());
+        assertFalse(stream2.finish());
+    }
+
+    @Test
+    public void testDataFrameLargerThanLimitNotBuffered() {
+        Http3MemoryBudget budget = new Http3MemoryBudget(10, 20, 20);
+        Http3MemoryBudget.Account account = budget.newAccount();
+        EmbeddedQuicStreamChannel stream = newStream(mockParent(), account);
+
+        assertTrue(stream.writeInbound(frameStart(Http3CodecUtils.HTTP3_DATA_FRAME_TYPE, 100, 50)));
+        assertDataFrame(stream, 50);
+        assertEquals(0, account.bufferedBytes());
+        assertTrue(stream.config().isAutoRead());
+
+        assertTrue(stream.writeInbound(Unpooled.buffer().writeZero(50)));
+        assertDataFrame(stream, 50);
+        assertEquals(0, budget.bufferedBytes());
+        assertTrue(stream.config().isAutoRead());
+        assertFalse(stream.finish());
+    }
+
+    @Test
+    public void testStreamNotAutoReadNotPaused() {
+        Http3MemoryBudget budget = new Http3MemoryBudget(10, 100, 1000);
+        Http3MemoryBudget.Account account = budget.newAccount();
+        QuicChannel parent = mockParent();
+        EmbeddedQuicStreamChannel stream1 = newStream(parent, account);
+        EmbeddedQuicStreamChannel stream2 = newStream(parent, account);
+        stream2.config().setAutoRead(false);
+
+        assertFalse(stream1.writeInbound(unknownFrameStart(20, 15)));
+        assertTrue(stream2.writeInbound(unknownFrameStart(1, 1)));
+        assertUnknownFrame(stream2, 1);
+        assertFalse(account.isPaused(stream2));
+        assertTrue(stream1.writeInbound(Unpooled.buffer().writeZero(5)));
+        assertUnknownFrame(stream1, 20);
+        assertFalse(stream2.config().isAutoRead());
+        assertFalse(stream1.finish());
+        assertFalse(stream2.finish());
+    }
+
+    @Test
+    public void testHardLimitClosesConnection() {
+        Http3MemoryBudget budget = new Http3MemoryBudget(10, 20, 1000);
+        QuicChannel parent = mockParent();
+        EmbeddedQuicStreamChannel stream = newStream(parent, budget.newAccount());
+        try {
+            stream.writeInbound(unknownFrameStart(100, 21));
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_EXCESSIVE_LOAD, e);
+        }
+        verifyClose(Http3ErrorCode.H3_EXCESSIVE_LOAD, parent);
+        assertFalse(stream.finish());
+        assertEquals(0, budget.bufferedBytes());
+    }
+
+    @Test
+    public void testPauseAndResumeGlobal() {
+        Http3MemoryBudget budget = new Http3MemoryBudget(100, 200, 20);
+        Http3MemoryBudget.Account account1 = budget.newAccount();
+        Http3MemoryBudget.Account account2 = budget.newAccount();
+        EmbeddedQuicStreamChannel stream1 = newStream(mockParent(), account1);
+        QuicChannel parent2 = mockParent();
+        EmbeddedQuicStreamChannel stream2 = newStream(parent2, account2);
+        EmbeddedQuicStreamChannel stream3 = newStream(parent2, account2);
+
+        assertFalse(stream1.writeInbound(unknownFrameStart(20, 15)));
+        assertTrue(stream1.config().isAutoRead());
+        assertFalse(stream2.writeInbound(unknownFrameStart(20, 10)));
+        assertEquals(25, budget.bufferedBytes());
+        // Both streams hold a partial frame and so are not paused, which would block each other.
+        assertTrue(stream1.config().isAutoRead());
+        assertTrue(stream2.config().isAutoRead());
+        assertTrue(stream3.writeInbound(unknownFrameStart(1, 1)));
+        assertUnknownFrame(stream3, 1);
+        assertFalse(stream3.config().isAutoRead());
+
+        // Once the other connection completed its frame the stream is resumed via its event loop.
+        assertTrue(stream1.writeInbound(Unpooled.buffer().writeZero(5)));
+        assertUnknownFrame(stream1, 20);
+        assertEquals(10, budget.bufferedBytes());
+        stream3.runPendingTasks();
+        assertTrue(stream3.config().isAutoRead());
+
+        assertFalse(stream1.finish());
+        assertFalse(stream3.finish());
+        // Buffered bytes of closed streams are released.
+        assertFalse(stream2.finishAndReleaseAll());
+        assertEquals(0, account2.bufferedBytes());
+        assertEquals(0, budget.bufferedBytes());
+    }
+
+    @Test
+    public void testRequestStreamCounted() {
+        Http3MemoryBudget budget = new Http3MemoryBudget(10, 100, 1000);
+        Http3ServerConnectionHandler connectionHandler = Http3ServerConnectionHandler.builder(
+                new ChannelInboundHandlerAdapter()).memoryBudget(budget).build();
+        EmbeddedQuicStreamChannel stream = new EmbeddedQuicStreamChannel(mockParent(), false,
+                QuicStreamType.BIDIRECTIONAL, 0, connectionHandler.newRequestStreamCodec());
+
+        assertFalse(stream.writeInbound(frameStart(Http3CodecUtils.HTTP3_HEADERS_FRAME_TYPE, 20, 15)));
+        assertEquals(15, budget.bufferedBytes());
+
+        assertFalse(stream.finishAndReleaseAll());
+        assertEquals(0, budget.bufferedBytes());
+    }
+
+    @Test
+    public void testClientConnectionCounted() {
+        Http3MemoryBudget budget = new Http3MemoryBudget(10, 100, 1000);
+        Http3ClientConnectionHandler connectionHandler = Http3ClientConnectionHandler.builder()
+                .memoryBudget(budget).build();
+        EmbeddedQuicStreamChannel stream = new EmbeddedQuicStreamChannel(mockParent(), true,
+                QuicStreamType.BIDIRECTIONAL, 0, connectionHandler.newRequestStreamCodec());
+
+        assertFalse(stream.writeInbound(frameStart(Http3CodecUtils.HTTP3_HEADERS_FRAME_TYPE, 20, 15)));
+        assertEquals(15, budget.bufferedBytes());
+
+        assertFalse(stream.finishAndReleaseAll());
+        assertEquals(0, budget.bufferedBytes());
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.incubator.codec.quic.QuicStreamType;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class Http3PrioritySchedulerTest {
+    private final Http3PriorityScheduler scheduler = new Http3PriorityScheduler();
+    private final List<String> written = new ArrayList<>();
+
+    @Test
+    public void testSingleStreamWrittenDirectly() {
+        EmbeddedQuicStreamChannel stream = newStream(0, null);
+        stream.write(newDataFrame(1));
+        ChannelFuture future = stream.writeAndFlush(newDataFrame(2));
+        // Nothing to order against, so no need to wait for the event loop.
+        assertTrue(future.isSuccess());
+        assertEquals(Arrays.asList("0:1", "0:2"), written);
+        finish(stream, 1, 2);
+    }
+
+    @Test
+    public void testWritesOrderedByUrgency() {
+        EmbeddedQuicStreamChannel blocked = newBlockedStream(12);
+        EmbeddedQuicStreamChannel low = newStream(0, "u=5");
+        EmbeddedQuicStreamChannel high = newStream(4, "u=1");
+        EmbeddedQuicStreamChannel normal = newStream(8, null);
+
+        low.writeAndFlush(newDataFrame(10));
+        high.writeAndFlush(newDataFrame(20));
+        normal.writeAndFlush(newDataFrame(30));
+        assertTrue(written.isEmpty());
+
+        // The drain was scheduled on the event loop of the first stream that was flushed.
+        blocked.runPendingTasks();
+        assertEquals(Arrays.asList("4:20", "8:30", "0:10"), written);
+
+        unblock(blocked);
+        assertEquals(Arrays.asList("4:20", "8:30", "0:10", "12:1"), written);
+        finish(blocked, 1);
+        finish(low, 10);
+        finish(high, 20);
+        finish(normal, 30);
+    }
+
+    @Test
+    public void testPriorityUpdateOfQueuedStream() {
+        EmbeddedQuicStreamChannel blocked = newBlockedStream(12);
+        EmbeddedQuicStreamChannel first = newStream(0, null);
+        EmbeddedQuicStreamChannel second = newStream(4, null);
+
+        first.writeAndFlush(newDataFrame(1));
+        second.writeAndFlush(newDataFrame(2));
+        // Received after the writes were queued, so the second stream moves ahead.
+        scheduler.priorityUpdateReceived(4, new Http3Priority(0, false));
+        blocked.runPendingTasks();
+        assertEquals(Arrays.asList("4:2", "0:1"), written);
+
+        unblock(blocked);
+        finish(blocked, 1);
+        finish(first, 1);
+        finish(second, 2);
+    }
+
+    @Test
+    public void testNonIncrementalWrittenSequentially() {
+        EmbeddedQuicStreamChannel blocked = newBlockedStream(12);
+        EmbeddedQuicStreamChannel first = newStream(4, null);
+        EmbeddedQuicStreamChannel second = newStream(8, null);
+
+        second.write(newDataFrame(1));
+        second.writeAndFlush(newDataFrame(2));
+        first.write(newDataFrame(3));
+        first.writeAndFlush(newDataFrame(4));
+        blocked.runPendingTasks();
+        assertEquals(Arrays.asList("4:3", "4:4", "8:1", "8:2"), written);
+
+        unblock(blocked);
+        finish(blocked, 1);
+        finish(first, 3, 4);
+        finish(second, 1, 2);
+    }
+
+    @Test
+    public void testIncrementalInterleaved() {
+        EmbeddedQuicStreamChannel blocked = newBlockedStream(12);
+        EmbeddedQuicStreamChannel first = newStream(0, "i");
+        EmbeddedQuicStreamChannel second = newStream(4, "u=3, i");
+
+        int size = 2 * Http3PriorityScheduler.INCREMENTAL_CHUNK_SIZE + 100;
+        ChannelFuture firstFuture = first.writeAndFlush(newDataFrame(size));
+        ChannelFuture secondFuture = second.writeAndFlush(newDataFrame(size));
+        blocked.runPendingTasks();
+        String chunk = String.valueOf(Http3PriorityScheduler.INCREMENTAL_CHUNK_SIZE);
+        assertEquals(Arrays.asList("0:" + chunk, "4:" + chunk, "0:" + chunk, "4:" + chunk, "0:100", "4:100"),
+                written);
+        assertTrue(firstFuture.isSuccess());
+        assertTrue(secondFuture.isSuccess());
+
+        int chunkSize = Http3PriorityScheduler.INCREMENTAL_CHUNK_SIZE;
+        unblock(blocked);
+        finish(blocked, 1);
+        finish(first, chunkSize, chunkSize, 100);
+        finish(second, chunkSize, chunkSize, 100);
+    }
+
+    @Test
+    public void testPriorityUpdateTakesPrecedence() {
+        scheduler.priorityUpdateReceived(0, new Http3Priority(0, false));
+        EmbeddedQuicStreamChannel stream = newStream(0, "u=7");
+        assertEquals(new Http3Priority(0, false), scheduler.priority(0));
+
+        scheduler.priorityUpdateReceived(0, new Http3Priority(2, true));
+        assertEquals(new Http3Priority(2, true), scheduler.priority(0));
+        assertFalse(stream.finish());
+    }
+
+    @Test
+    public void testUnwritableStreamSkipped() {
+        EmbeddedQuicStreamChannel high = newStream(0, "u=0");
+        EmbeddedQuicStreamChannel low = newStream(4, "u=7");
+        high.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+
+        high.writeAndFlush(newDataFrame(1));
+        low.writeAndFlush(newDataFrame(2));
+        high.runPendingTasks();
+        assertEquals(Arrays.asList("4:2"), written);
+
+        high.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        high.runPendingTasks();
+        assertEquals(Arrays.asList("4:2", "0:1"), written);
+
+        finish(high, 1);
+        finish(low, 2);
+    }
+
+    @Test
+    public void testCloseWaitsForFlushedWrites() {
+        EmbeddedQuicStreamChannel stream = newStream(0, null);
+        List<String> events = new ArrayList<>();
+        ChannelFuture writeFuture = stream.writeAndFlush(newDataFrame(5)).addListener(f -> events.add("write"));
+        ChannelFuture closeFuture = stream.close().addListener(f -> events.add("close"));
+
+        assertTrue(writeFuture.isSuccess());
+        assertTrue(closeFuture.isSuccess());
+        assertEquals(Arrays.asList("write", "close"), events);
+        assertFalse(stream.isOpen());
+        releaseOutbound(stream);
+    }
+
+    @Test
+    public void testPendingWritesFailedOnClose() {
+        EmbeddedQuicStreamChannel stream = newStream(0, null);
+        Http3DataFrame frame = newDataFrame(5);
+        ChannelFuture writeFuture = stream.write(frame);
+        stream.close();
+        assertTrue(writeFuture.cause() instanceof ClosedChannelException);
+        assertEquals(0, frame.refCnt());
+        assertTrue(written.isEmpty());
+    }
+
+    private EmbeddedQuicStreamChannel newStream(long id, String priority) {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(null, false, QuicStreamType.BIDIRECTIONAL,
+                id, new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                written.add(id + ":" + ((Http3DataFrame) msg).content().readableBytes());
+                ctx.write(msg, promise);
+            }
+        });
+        // Added after construction as the stream id is not known while the constructor adds the handlers.
+        channel.pipeline().addLast(scheduler.newStreamHandler());
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        if (priority != null) {
+            headersFrame.headers().set(Http3Priority.PRIORITY, priority);
+        }
+        assertTrue(channel.writeInbound(headersFrame));
+        ReferenceCountUtil.release(channel.readInbound());
+        return channel;
+    }
+
+    // Keeps a flushed write pending, so the writes of other streams are ordered instead of written directly.
+    private EmbeddedQuicStreamChannel newBlockedStream(long id) {
+        EmbeddedQuicStreamChannel stream = newStream(id, "u=7");
+        stream.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        stream.writeAndFlush(newDataFrame(1));
+        return stream;
+    }
+
+    private static void unblock(EmbeddedQuicStreamChannel stream) {
+        stream.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        // The writability change is fired later on the event loop.
+        stream.runPendingTasks();
+    }
+
+    private static Http3DataFrame newDataFrame(int size) {
+        return new DefaultHttp3DataFrame(Unpooled.buffer(size).writeZero(size));
+    }
+
+    private static void finish(EmbeddedQuicStreamChannel channel, int... sizes) {
+        for (int size : sizes) {
+            Http3DataFrame frame = channel.readOutbound();
+            assertEquals(size, frame.content().readableBytes());
+            frame.release();
+        }
+        assertFalse(channel.finish());
+    }
+
+    private static void releaseOutbound(EmbeddedQuicStreamChannel channel) {
+        Object msg;
+        while ((msg = channel.readOutbound()) != null) {
+            ReferenceCountUtil.release(msg);
+        }
+        assertNull(channel.readOutbound());
+    }
+}
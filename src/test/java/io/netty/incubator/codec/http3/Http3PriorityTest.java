@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class Http3PriorityTest {
+
+    @Test
+    public void testParseDefaults() {
+        assertSame(Http3Priority.DEFAULT, Http3Priority.parse(null));
+        assertSame(Http3Priority.DEFAULT, Http3Priority.parse(""));
+        assertSame(Http3Priority.DEFAULT, Http3Priority.parse("u=3"));
+        assertSame(Http3Priority.DEFAULT, Http3Priority.parse("i=?0"));
+    }
+
+    @Test
+    public void testParse() {
+        assertEquals(new Http3Priority(5, false), Http3Priority.parse("u=5"));
+        assertEquals(new Http3Priority(0, true), Http3Priority.parse("u=0, i"));
+        assertEquals(new Http3Priority(1, true), Http3Priority.parse(" i=?1 ,u=1 "));
+        assertEquals(new Http3Priority(3, true), Http3Priority.parse("i"));
+        // The last member wins.
+        assertEquals(new Http3Priority(6, false), Http3Priority.parse("u=2, u=6"));
+    }
+
+    @Test
+    public void testParseIgnoresUnknownAndInvalidMembers() {
+        assertEquals(new Http3Priority(2, false), Http3Priority.parse("foo=bar, u=2, urgent"));
+        assertEquals(new Http3Priority(3, true), Http3Priority.parse("u=8, i"));
+        assertEquals(new Http3Priority(3, true), Http3Priority.parse("u=-1, i"));
+        assertEquals(new Http3Priority(3, false), Http3Priority.parse("u=12, i=1"));
+        assertEquals(new Http3Priority(4, false), Http3Priority.parse("u=4;param=1"));
+    }
+
+    @Test
+    public void testToFieldValue() {
+        assertEquals("", Http3Priority.DEFAULT.toFieldValue());
+        assertEquals("i", new Http3Priority(3, true).toFieldValue());
+        assertEquals("u=1", new Http3Priority(1, false).toFieldValue());
+        assertEquals("u=7, i", new Http3Priority(7, true).toFieldValue());
+        for (int urgency = Http3Priority.MAX_URGENCY; urgency <= Http3Priority.MIN_URGENCY; urgency++) {
+            Http3Priority priority = new Http3Priority(urgency, urgency % 2 == 0);
+            assertEquals(priority, Http3Priority.parse(priority.toFieldValue()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidUrgency() {
+        new Http3Priority(8, false);
+    }
+}
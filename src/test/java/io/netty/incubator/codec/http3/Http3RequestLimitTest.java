@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Http3RequestLimitTest {
+
+    @Test
+    public void testFixedLimit() {
+        Http3RequestLimit limit = new Http3RequestLimit(2);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.inFlight());
+        assertEquals(1, limit.rejected());
+
+        // Latency does not change a fixed limit.
+        limit.release(TimeUnit.DAYS.toNanos(1));
+        assertEquals(2, limit.limit());
+        assertEquals(1, limit.inFlight());
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    public void testDecreaseOnHighLatency() {
+        Http3RequestLimit limit = new Http3RequestLimit(10, 8, 20, 10, TimeUnit.MILLISECONDS);
+        assertTrue(limit.tryAcquire());
+        limit.release(TimeUnit.MILLISECONDS.toNanos(11));
+        assertEquals(9, limit.limit());
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(TimeUnit.MILLISECONDS.toNanos(11));
+        }
+        assertEquals(8, limit.limit());
+    }
+
+    @Test
+    public void testDecreaseOnceForBurstOfSlowRequests() {
+        Http3RequestLimit limit = new Http3RequestLimit(10, 1, 20, 10, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        // All requests were slow for the same reason, so the limit is only decreased once.
+        for (int i = 0; i < 10; i++) {
+            limit.release(TimeUnit.MILLISECONDS.toNanos(11));
+        }
+        assertEquals(9, limit.limit());
+
+        // A slow request after the burst decreases the limit again.
+        assertTrue(limit.tryAcquire());
+        limit.release(TimeUnit.MILLISECONDS.toNanos(11));
+        assertEquals(8, limit.limit());
+    }
+
+    @Test
+    public void testIncreaseOnLowLatencyIfUsed() {
+        Http3RequestLimit limit = new Http3RequestLimit(4, 1, 5, 10, TimeUnit.MILLISECONDS);
+        // Not used enough, so the limit is not increased.
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(4, limit.limit());
+
+        for (int round = 0; round < 10; round++) {
+            int current = limit.limit();
+            for (int i = 0; i < current; i++) {
+                assertTrue(limit.tryAcquire());
+            }
+            assertFalse(limit.tryAcquire());
+            for (int i = 0; i < current; i++) {
+                limit.release(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        // Never exceeds the maximum.
+        assertEquals(5, limit.limit());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitialLimitOutOfRange() {
+        new Http3RequestLimit(1, 2, 3, 0, TimeUnit.MILLISECONDS);
+    }
+}
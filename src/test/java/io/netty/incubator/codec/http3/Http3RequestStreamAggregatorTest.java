@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Http3RequestStreamAggregatorTest {
+
+    private static Http3HeadersFrame newRequestHeadersFrame() {
+        Http3HeadersFrame frame = new DefaultHttp3HeadersFrame();
+        frame.headers().method("POST").path("/").scheme("https").authority("netty.io");
+        return frame;
+    }
+
+    @Test
+    public void testAggregateRequest() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3RequestStreamAggregator(true, 8));
+        Http3HeadersFrame headersFrame = newRequestHeadersFrame();
+        ByteBuf data1 = Unpooled.buffer().writeInt(1);
+        ByteBuf data2 = Unpooled.buffer().writeInt(2);
+        assertFalse(channel.writeInbound(headersFrame));
+        assertFalse(channel.writeInbound(new DefaultHttp3DataFrame(data1)));
+        assertFalse(channel.writeInbound(new DefaultHttp3DataFrame(data2)));
+        Http3HeadersFrame trailersFrame = new DefaultHttp3HeadersFrame();
+        trailersFrame.headers().add("checksum", "abc");
+        channel.shutdownInput();
+        assertTrue(channel.writeInbound(trailersFrame));
+
+        Http3FullRequest request = channel.readInbound();
+        assertSame(headersFrame.headers(), request.headers());
+        assertSame(trailersFrame.headers(), request.trailers());
+        // The content was not copied.
+        CompositeByteBuf content = (CompositeByteBuf) request.content();
+        assertEquals(2, content.numComponents());
+        assertEquals(1, content.readInt());
+        assertEquals(2, content.readInt());
+        request.release();
+        assertEquals(0, data1.refCnt());
+        assertEquals(0, data2.refCnt());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testAggregateResponseWithoutContent() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(
+                new Http3RequestStreamAggregator(false, 8));
+        assertTrue(channel.writeInbound(Http3.newEarlyHintsFrame("</style.css>; rel=preload; as=style")));
+        Http3HeadersFrame hints = channel.readInbound();
+        assertEquals("103", hints.headers().status().toString());
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        headersFrame.headers().status("200");
+        assertFalse(channel.writeInbound(headersFrame));
+        channel.pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+
+        Http3FullResponse response = channel.readInbound();
+        assertEquals("200", response.headers().status().toString());
+        assertFalse(response.content().isReadable());
+        assertTrue(response.trailers().isEmpty());
+        response.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRejectByContentLength() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3RequestStreamAggregator(true, 8));
+        Http3HeadersFrame headersFrame = newRequestHeadersFrame();
+        headersFrame.headers().addLong("content-length", 9);
+        assertFalse(channel.writeInbound(headersFrame));
+        assertContentTooLarge(channel);
+
+        // The rest of the request is discarded.
+        ByteBuf data = Unpooled.buffer().writeLong(1);
+        channel.shutdownInput();
+        assertFalse(channel.writeInbound(new DefaultHttp3DataFrame(data)));
+        assertEquals(0, data.refCnt());
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testRejectByContent() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3RequestStreamAggregator(true, 8));
+        ByteBuf data1 = Unpooled.buffer().writeInt(1);
+        ByteBuf data2 = Unpooled.buffer().writeLong(2);
+        assertFalse(channel.writeInbound(newRequestHeadersFrame()));
+        assertFalse(channel.writeInbound(new DefaultHttp3DataFrame(data1)));
+        assertFalse(channel.writeInbound(new DefaultHttp3DataFrame(data2)));
+        assertEquals(0, data1.refCnt());
+        assertEquals(0, data2.refCnt());
+        assertContentTooLarge(channel);
+        assertFalse(channel.finish());
+    }
+
+    private static void assertContentTooLarge(EmbeddedQuicStreamChannel channel) {
+        Http3HeadersFrame response = channel.readOutbound();
+        assertEquals(Http3RequestStreamAggregator.CONTENT_TOO_LARGE, response.headers().status().toString());
+        assertTrue(channel.isOutputShutdown());
+    }
+
+    @Test
+    public void testRejectResponse() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(
+                new Http3RequestStreamAggregator(false, 2));
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        headersFrame.headers().status("200");
+        assertFalse(channel.writeInbound(headersFrame));
+        ByteBuf data = Unpooled.buffer().writeInt(1);
+        try {
+            channel.writeInbound(new DefaultHttp3DataFrame(data));
+            fail();
+        } catch (TooLongFrameException expected) {
+            // expected
+        }
+        assertEquals(0, data.refCnt());
+        assertFalse(channel.isOpen());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testReleaseOnClose() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3RequestStreamAggregator(true, 8));
+        ByteBuf data = Unpooled.buffer().writeInt(1);
+        assertFalse(channel.writeInbound(newRequestHeadersFrame()));
+        assertFalse(channel.writeInbound(new DefaultHttp3DataFrame(data)));
+        assertEquals(1, data.refCnt());
+        // The stream is closed before the request was complete, for example as it was reset.
+        assertFalse(channel.finish());
+        assertEquals(0, data.refCnt());
+    }
+
+    @Test
+    public void testReleaseOnRemove() {
+        Http3RequestStreamAggregator aggregator = new Http3RequestStreamAggregator(true, 8);
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(aggregator);
+        ByteBuf data = Unpooled.buffer().writeInt(1);
+        assertFalse(channel.writeInbound(newRequestHeadersFrame()));
+        assertFalse(channel.writeInbound(new DefaultHttp3DataFrame(data)));
+        channel.pipeline().remove(aggregator);
+        assertEquals(0, data.refCnt());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testPooledHeadersCopied() {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(new Http3RequestStreamAggregator(true, 8));
+        Http3HeadersFrame headersFrame = Http3.newPooledHeadersFrame();
+        headersFrame.headers().method("GET").path("/").scheme("https").authority("netty.io");
+        channel.shutdownInput();
+        assertTrue(channel.writeInbound(headersFrame));
+
+        Http3FullRequest request = channel.readInbound();
+        assertEquals("GET", request.headers().method().toString());
+        request.release();
+        assertFalse(channel.finish());
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.Test;
+
+import static io.netty.incubator.codec.http3.Http3TestUtils.assertException;
+import static io.netty.incubator.codec.http3.Http3TestUtils.assertFrameEquals;
+import static io.netty.incubator.codec.http3.Http3TestUtils.mockParent;
+import static io.netty.incubator.codec.http3.Http3TestUtils.verifyClose;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Http3RequestStreamCodecTest {
+
+    private static Http3RequestStreamCodec newCodec(Http3RequestStreamValidator validator) {
+        return new Http3RequestStreamCodec(new QpackDecoder(), Long.MAX_VALUE,
+                new Http3FrameEncoder(new QpackEncoder()), validator);
+    }
+
+    private static ByteBuf encode(Http3Frame... frames) {
+        EmbeddedChannel encoder = new EmbeddedChannel(
+                new Http3FrameCodec(new QpackDecoder(), Long.MAX_VALUE, new QpackEncoder()));
+        assertTrue(encoder.writeOutbound((Object[]) frames));
+        ByteBuf buffer = Unpooled.buffer();
+        for (;;) {
+            ByteBuf b = encoder.readOutbound();
+            if (b == null) {
+                break;
+            }
+            buffer.writeBytes(b);
+            b.release();
+        }
+        assertFalse(encoder.finish());
+        return buffer;
+    }
+
+    private static Http3HeadersFrame newHeadersFrame() {
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        headersFrame.headers().method("GET").path("/").scheme("https").authority("netty.io");
+        return headersFrame;
+    }
+
+    @Test
+    public void testRequestResponse() {
+        EmbeddedChannel client = new EmbeddedChannel(newCodec(
+                Http3RequestStreamValidator.newClientValidator(() -> false)));
+        EmbeddedChannel server = new EmbeddedChannel(newCodec(Http3RequestStreamValidator.newServerValidator()));
+
+        Http3HeadersFrame headersFrame = newHeadersFrame();
+        Http3DataFrame dataFrame = new DefaultHttp3DataFrame(Unpooled.copiedBuffer("netty", CharsetUtil.US_ASCII));
+        Http3HeadersFrame trailersFrame = new DefaultHttp3HeadersFrame();
+        trailersFrame.headers().add("key", "value");
+
+        assertTrue(client.writeOutbound(newHeadersFrame(), dataFrame.retainedDuplicate(), trailersFrame));
+        for (;;) {
+            ByteBuf buffer = client.readOutbound();
+            if (buffer == null) {
+                break;
+            }
+            server.writeInbound(buffer);
+        }
+        assertFrameEquals(headersFrame, server.readInbound());
+        assertFrameEquals(dataFrame, server.readInbound());
+        Http3HeadersFrame readTrailers = server.readInbound();
+        assertEquals("value", readTrailers.headers().get("key").toString());
+        assertNull(server.readInbound());
+
+        assertFalse(client.finish());
+        assertFalse(server.finish());
+    }
+
+    @Test
+    public void testInvalidFrameSequenceInbound() {
+        QuicChannel parent = mockParent();
+        EmbeddedChannel channel = new EmbeddedChannel(parent, DefaultChannelId.newInstance(), true, false,
+                newCodec(Http3RequestStreamValidator.newServerValidator()));
+        try {
+            channel.writeInbound(encode(new DefaultHttp3DataFrame(Unpooled.buffer())));
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_FRAME_UNEXPECTED, e);
+        }
+        verifyClose(Http3ErrorCode.H3_FRAME_UNEXPECTED, parent);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testTrailersFollowedByDataInbound() {
+        QuicChannel parent = mockParent();
+        EmbeddedChannel channel = new EmbeddedChannel(parent, DefaultChannelId.newInstance(), true, false,
+                newCodec(Http3RequestStreamValidator.newServerValidator()));
+        try {
+            channel.writeInbound(encode(newHeadersFrame(), new DefaultHttp3HeadersFrame(),
+                    new DefaultHttp3DataFrame(Unpooled.buffer())));
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_FRAME_UNEXPECTED, e);
+        }
+        verifyClose(Http3ErrorCode.H3_FRAME_UNEXPECTED, parent);
+        assertTrue(channel.finish());
+        assertFrameEquals(newHeadersFrame(), channel.readInbound());
+        assertFrameEquals(new DefaultHttp3HeadersFrame(), channel.readInbound());
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    public void testControlFrameInbound() {
+        QuicChannel parent = mockParent();
+        EmbeddedChannel channel = new EmbeddedChannel(parent, DefaultChannelId.newInstance(), true, false,
+                newCodec(Http3RequestStreamValidator.newServerValidator()));
+        try {
+            channel.writeInbound(encode(new DefaultHttp3GoAwayFrame(4)));
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_FRAME_UNEXPECTED, e);
+        }
+        verifyClose(Http3ErrorCode.H3_FRAME_UNEXPECTED, parent);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testInvalidFrameSequenceOutbound() {
+        EmbeddedChannel channel = new EmbeddedChannel(newCodec(Http3RequestStreamValidator.newServerValidator()));
+        Http3DataFrame dataFrame = new DefaultHttp3DataFrame(Unpooled.buffer());
+        try {
+            channel.writeOutbound(dataFrame);
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_FRAME_UNEXPECTED, e);
+        }
+        assertEquals(0, dataFrame.refCnt());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testControlFrameOutbound() {
+        EmbeddedChannel channel = new EmbeddedChannel(newCodec(Http3RequestStreamValidator.newServerValidator()));
+        try {
+            channel.writeOutbound(new DefaultHttp3GoAwayFrame(4));
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_FRAME_UNEXPECTED, e);
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testGoawayReceivedBeforeWritingHeaders() {
+        EmbeddedChannel channel = new EmbeddedChannel(
+                newCodec(Http3RequestStreamValidator.newClientValidator(() -> true)));
+        try {
+            channel.writeOutbound(newHeadersFrame());
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_FRAME_UNEXPECTED, e);
+        }
+        // We should have closed the channel.
+        assertFalse(channel.isActive());
+        assertFalse(channel.finish());
+        assertNull(channel.readOutbound());
+    }
+}
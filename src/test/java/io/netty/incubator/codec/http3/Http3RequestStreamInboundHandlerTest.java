@@ -15,8 +15,10 @@
  */
 package io.netty.incubator.codec.http3;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.channel.socket.ChannelInputShutdownEvent;
 import io.netty.util.ReferenceCountUtil;
@@ -26,6 +28,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 
 public class Http3RequestStreamInboundHandlerTest {
@@ -57,6 +60,96 @@ public class Http3RequestStreamInboundHandlerTest {
         assertFalse(channel.finish());
     }
 
+    @Test
+    public void testDemandDriven() {
+        ReadCounter readCounter = new ReadCounter();
+        TestHttp3RequestStreamInboundHandler handler = new TestHttp3RequestStreamInboundHandler(true);
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(readCounter, handler);
+        assertFalse(channel.config().isAutoRead());
+        assertEquals(1, readCounter.reads);
+
+        // Headers are passed without demand.
+        assertTrue(channel.writeInbound(new DefaultHttp3HeadersFrame()));
+        assertFrame(channel, false);
+        int reads = readCounter.reads;
+        ByteBuf data1 = Unpooled.buffer().writeByte(1);
+        ByteBuf data2 = Unpooled.buffer().writeByte(2);
+        assertFalse(channel.writeInbound(new DefaultHttp3DataFrame(data1)));
+        assertFalse(channel.writeInbound(new DefaultHttp3DataFrame(data2)));
+        assertNull(channel.readInbound());
+        // No demand, so no more reads.
+        assertEquals(reads, readCounter.reads);
+
+        handler.request(1);
+        assertFrame(channel, false);
+        assertEquals(0, data1.refCnt());
+        assertEquals(reads, readCounter.reads);
+
+        // The end of the stream is only passed once all frames that were read before were requested.
+        channel.pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+        assertNull(channel.readInbound());
+        handler.request(2);
+        assertFrame(channel, false);
+        assertFrame(channel, true);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDemandDrivenReadsWhileDemanded() {
+        ReadCounter readCounter = new ReadCounter();
+        TestHttp3RequestStreamInboundHandler handler = new TestHttp3RequestStreamInboundHandler(true);
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(readCounter, handler);
+        assertTrue(channel.writeInbound(new DefaultHttp3HeadersFrame()));
+        assertFrame(channel, false);
+        int reads = readCounter.reads;
+
+        handler.request(2);
+        assertEquals(reads + 1, readCounter.reads);
+        assertTrue(channel.writeInbound(new DefaultHttp3DataFrame(Unpooled.buffer())));
+        assertFrame(channel, false);
+        // Still demand left, so read again.
+        assertEquals(reads + 2, readCounter.reads);
+        assertTrue(channel.writeInbound(new DefaultHttp3DataFrame(Unpooled.buffer())));
+        assertFrame(channel, false);
+        assertEquals(reads + 2, readCounter.reads);
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDemandDrivenReleasesPendingFrames() {
+        TestHttp3RequestStreamInboundHandler handler = new TestHttp3RequestStreamInboundHandler(true);
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(handler);
+        assertTrue(channel.writeInbound(new DefaultHttp3HeadersFrame()));
+        assertFrame(channel, false);
+        ByteBuf data = Unpooled.buffer().writeByte(1);
+        assertFalse(channel.writeInbound(new DefaultHttp3DataFrame(data)));
+        assertFalse(channel.finish());
+        assertEquals(0, data.refCnt());
+    }
+
+    @Test
+    public void testReadWhileWritable() {
+        EmbeddedQuicStreamChannel stream = new EmbeddedQuicStreamChannel();
+        EmbeddedChannel target = new EmbeddedChannel();
+        Http3.readWhileWritable(stream, target);
+        assertTrue(stream.config().isAutoRead());
+
+        target.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        target.runPendingTasks();
+        assertFalse(stream.config().isAutoRead());
+        target.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        target.runPendingTasks();
+        assertTrue(stream.config().isAutoRead());
+
+        // Once the stream is closed the target is not watched anymore.
+        assertFalse(stream.finish());
+        target.runPendingTasks();
+        target.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        target.runPendingTasks();
+        assertTrue(stream.config().isAutoRead());
+        assertFalse(target.finish());
+    }
+
     private void assertFrame(EmbeddedChannel channel, boolean isLast) {
         Http3Frame frame = channel.readInbound();
         assertNotNull(frame);
@@ -64,7 +157,35 @@ public class Http3RequestStreamInboundHandlerTest {
         assertEquals(isLast, channel.readInbound());
     }
 
+    private static final class ReadCounter extends ChannelOutboundHandlerAdapter {
+        int reads;
+
+        @Override
+        public void read(ChannelHandlerContext ctx) {
+            reads++;
+            ctx.read();
+        }
+    }
+
     private static final class TestHttp3RequestStreamInboundHandler extends Http3RequestStreamInboundHandler {
+        private ChannelHandlerContext ctx;
+
+        TestHttp3RequestStreamInboundHandler() {
+        }
+
+        TestHttp3RequestStreamInboundHandler(boolean demandDriven) {
+            super(demandDriven);
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            this.ctx = ctx;
+            super.handlerAdded(ctx);
+        }
+
+        void request(long n) {
+            request(ctx, n);
+        }
 
         @Override
         public void channelRead(ChannelHandlerContext ctx, Http3HeadersFrame frame, boolean isLast) {
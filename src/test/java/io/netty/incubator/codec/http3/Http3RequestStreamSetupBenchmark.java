@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.incubator.codec.quic.QuicStreamType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmarks the per-stream cost of setting up the pipeline of a request stream, either via a
+ * {@link Http3RequestStreamInitializer} per stream or via a {@link Http3RequestStreamTemplate}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class Http3RequestStreamSetupBenchmark {
+    private static final ChannelHandler HANDLER = new ChannelInboundHandlerAdapter() {
+        @Override
+        public boolean isSharable() {
+            return true;
+        }
+    };
+
+    private QuicChannel parent;
+    private Http3RequestStreamTemplate template;
+
+    @Setup
+    public void setup() {
+        parent = mock(QuicChannel.class);
+        ChannelPipeline pipeline = mock(ChannelPipeline.class);
+        when(pipeline.get(Http3ConnectionHandler.class)).thenReturn(new Http3ClientConnectionHandler());
+        when(parent.pipeline()).thenReturn(pipeline);
+        template = new Http3RequestStreamTemplate(HANDLER);
+    }
+
+    @Benchmark
+    public boolean initializer() {
+        return setup(new Http3RequestStreamInitializer() {
+            @Override
+            protected void initRequestStream(QuicStreamChannel ch) {
+                ch.pipeline().addLast(HANDLER);
+            }
+        });
+    }
+
+    @Benchmark
+    public boolean template() {
+        return setup(template);
+    }
+
+    private boolean setup(ChannelHandler handler) {
+        EmbeddedQuicStreamChannel channel = new EmbeddedQuicStreamChannel(
+                parent, true, QuicStreamType.BIDIRECTIONAL, 0, handler);
+        return channel.finishAndReleaseAll();
+    }
+
+    public static void main(String... args) throws Exception {
+        new Runner(new OptionsBuilder().include(Http3RequestStreamSetupBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.incubator.codec.quic.QuicStreamType;
+import org.junit.Test;
+
+import static io.netty.incubator.codec.http3.Http3TestUtils.mockParent;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class Http3RequestStreamTemplateTest {
+
+    private static QuicChannel mockParentWithHandler(Http3ConnectionHandler connectionHandler) {
+        QuicChannel parent = mockParent();
+        ChannelPipeline pipeline = mock(ChannelPipeline.class);
+        when(pipeline.get(Http3ConnectionHandler.class)).thenReturn(connectionHandler);
+        when(parent.pipeline()).thenReturn(pipeline);
+        return parent;
+    }
+
+    @Test
+    public void testReplacedByCodec() {
+        ChannelInboundHandlerAdapter handler = new ChannelInboundHandlerAdapter();
+        EmbeddedChannel channel = new EmbeddedQuicStreamChannel(
+                mockParentWithHandler(new Http3ClientConnectionHandler()), true, QuicStreamType.BIDIRECTIONAL, 0,
+                new Http3RequestStreamTemplate(handler));
+
+        assertTrue(channel.pipeline().first() instanceof Http3RequestStreamCodec);
+        assertSame(handler, channel.pipeline().last());
+        assertNull(channel.pipeline().get(Http3RequestStreamTemplate.class));
+
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        headersFrame.headers().method("GET").path("/").scheme("https").authority("netty.io");
+        assertTrue(channel.writeOutbound(headersFrame));
+        ByteBuf buffer = channel.readOutbound();
+        assertTrue(buffer.isReadable());
+        buffer.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testSharedBetweenStreams() {
+        Http3RequestStreamTemplate template = new Http3RequestStreamTemplate(new ChannelInboundHandlerAdapter() {
+            @Override
+            public boolean isSharable() {
+                return true;
+            }
+        });
+        QuicChannel parent = mockParentWithHandler(new Http3ClientConnectionHandler());
+        EmbeddedChannel first = new EmbeddedQuicStreamChannel(parent, true, QuicStreamType.BIDIRECTIONAL, 0,
+                template);
+        EmbeddedChannel second = new EmbeddedQuicStreamChannel(parent, true, QuicStreamType.BIDIRECTIONAL, 4,
+                template);
+        assertTrue(first.pipeline().first() instanceof Http3RequestStreamCodec);
+        assertTrue(second.pipeline().first() instanceof Http3RequestStreamCodec);
+        assertFalse(first.finish());
+        assertFalse(second.finish());
+    }
+
+    @Test
+    public void testCachedByConnectionHandler() {
+        Http3ConnectionHandler connectionHandler = new Http3ClientConnectionHandler();
+        ChannelInboundHandlerAdapter handler = new ChannelInboundHandlerAdapter();
+        Http3RequestStreamTemplate template = connectionHandler.requestStreamTemplate(handler);
+        assertSame(handler, template.handler());
+        assertSame(template, connectionHandler.requestStreamTemplate(handler));
+
+        ChannelInboundHandlerAdapter other = new ChannelInboundHandlerAdapter();
+        assertSame(other, connectionHandler.requestStreamTemplate(other).handler());
+    }
+
+    @Test
+    public void testMissingConnectionHandler() {
+        EmbeddedChannel channel = new EmbeddedQuicStreamChannel(mockParentWithHandler(null), true,
+                QuicStreamType.BIDIRECTIONAL, 0, new Http3RequestStreamTemplate(new ChannelInboundHandlerAdapter()));
+        assertFalse(channel.isOpen());
+        assertNull(channel.pipeline().get(Http3RequestStreamCodec.class));
+        assertFalse(channel.finishAndReleaseAll());
+    }
+}
@@ -143,6 +143,84 @@ public class Http3RequestStreamValidationHandlerTest extends Http3FrameTypeValid
         assertNull(channel.readOutbound());
     }
 
+    private static Http3HeadersFrame informational(String status) {
+        Http3HeadersFrame frame = new DefaultHttp3HeadersFrame();
+        frame.headers().status(status);
+        return frame;
+    }
+
+    @Test
+    public void testInformationalResponsesOutbound() {
+        EmbeddedChannel channel = new EmbeddedChannel(newHandler());
+        Http3HeadersFrame earlyHints = Http3.newEarlyHintsFrame(Http3.preloadLink("/style.css", "style"));
+        Http3HeadersFrame earlyHints2 = Http3.newEarlyHintsFrame(Http3.preloadLink("/script.js", "script"));
+        Http3HeadersFrame headersFrame = informational("200");
+        Http3HeadersFrame trailersFrame = new DefaultHttp3HeadersFrame();
+        assertTrue(channel.writeOutbound(earlyHints));
+        assertTrue(channel.writeOutbound(earlyHints2));
+        assertTrue(channel.writeOutbound(headersFrame));
+        // Only the final response counts as start, so these are the trailers.
+        assertTrue(channel.writeOutbound(trailersFrame));
+        assertTrue(channel.finish());
+
+        assertFrameEquals(earlyHints, channel.readOutbound());
+        assertFrameEquals(earlyHints2, channel.readOutbound());
+        assertFrameEquals(headersFrame, channel.readOutbound());
+        assertFrameEquals(trailersFrame, channel.readOutbound());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void testInformationalResponsesInbound() {
+        EmbeddedChannel channel = new EmbeddedChannel(
+                Http3RequestStreamValidationHandler.newClientValidator(() -> false));
+        Http3HeadersFrame earlyHints = informational("103");
+        Http3HeadersFrame headersFrame = informational("200");
+        Http3DataFrame dataFrame = new DefaultHttp3DataFrame(Unpooled.buffer());
+        assertTrue(channel.writeInbound(earlyHints));
+        assertTrue(channel.writeInbound(informational("100")));
+        assertTrue(channel.writeInbound(headersFrame));
+        assertTrue(channel.writeInbound(dataFrame));
+        assertTrue(channel.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testDataAfterInformationalResponseInbound() {
+        QuicChannel parent = mockParent();
+        EmbeddedChannel channel = new EmbeddedChannel(parent, DefaultChannelId.newInstance(), true, false,
+                Http3RequestStreamValidationHandler.newClientValidator(() -> false));
+        assertTrue(channel.writeInbound(informational("103")));
+        Http3DataFrame dataFrame = new DefaultHttp3DataFrame(Unpooled.buffer());
+        try {
+            channel.writeInbound(dataFrame);
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_FRAME_UNEXPECTED, e);
+        }
+        verifyClose(Http3ErrorCode.H3_FRAME_UNEXPECTED, parent);
+        assertEquals(0, dataFrame.refCnt());
+        assertTrue(channel.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testInformationalRequestHeadersStartInbound() {
+        // Requests do not have informational headers, so the server treats a second HEADERS frame as trailers.
+        QuicChannel parent = mockParent();
+        EmbeddedChannel channel = new EmbeddedChannel(parent, DefaultChannelId.newInstance(), true, false,
+                newHandler());
+        assertTrue(channel.writeInbound(informational("103")));
+        assertTrue(channel.writeInbound(new DefaultHttp3HeadersFrame()));
+        Http3DataFrame dataFrame = new DefaultHttp3DataFrame(Unpooled.buffer());
+        try {
+            channel.writeInbound(dataFrame);
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_FRAME_UNEXPECTED, e);
+        }
+        verifyClose(Http3ErrorCode.H3_FRAME_UNEXPECTED, parent);
+        assertTrue(channel.finishAndReleaseAll());
+    }
+
     @Test
     public void testGoawayReceivedBeforeWritingHeaders() {
         EmbeddedChannel channel = new EmbeddedChannel(
@@ -178,4 +256,29 @@ public class Http3RequestStreamValidationHandlerTest extends Http3FrameTypeValid
 
         assertNull(channel.readOutbound());
     }
+
+    @Test
+    public void testPushPromiseReceivedByClient() {
+        EmbeddedChannel channel = new EmbeddedChannel(
+                Http3RequestStreamValidationHandler.newClientValidator(() -> false));
+        Http3PushPromiseFrame pushPromiseFrame = new DefaultHttp3PushPromiseFrame(0);
+        assertTrue(channel.writeInbound(pushPromiseFrame));
+        assertFrameEquals(pushPromiseFrame, channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testPushPromiseReceivedByServer() {
+        QuicChannel parent = mockParent();
+        EmbeddedChannel channel = new EmbeddedChannel(parent, DefaultChannelId.newInstance(), true, false,
+                newHandler());
+        try {
+            channel.writeInbound(new DefaultHttp3PushPromiseFrame(0));
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_FRAME_UNEXPECTED, e);
+        }
+        verifyClose(Http3ErrorCode.H3_FRAME_UNEXPECTED, parent);
+        assertFalse(channel.finish());
+    }
 }
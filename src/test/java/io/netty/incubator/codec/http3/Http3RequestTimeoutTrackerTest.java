@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.ChannelInputShutdownEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Http3RequestTimeoutTrackerTest {
+    private EmbeddedChannel executorChannel;
+    private final List<Throwable> causes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        executorChannel = new EmbeddedChannel();
+    }
+
+    @After
+    public void tearDown() {
+        assertFalse(executorChannel.finish());
+    }
+
+    private EmbeddedQuicStreamChannel newStream(Http3RequestTimeoutTracker tracker) {
+        return new EmbeddedQuicStreamChannel(tracker.newStreamHandler(), new ChannelInboundHandlerAdapter() {
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                causes.add(cause);
+            }
+        });
+    }
+
+    private void runChecks(long sleepMillis) throws Exception {
+        Thread.sleep(sleepMillis);
+        executorChannel.runScheduledPendingTasks();
+    }
+
+    private void assertCancelled(EmbeddedQuicStreamChannel stream, String message) {
+        assertFalse(stream.isOpen());
+        assertEquals(1, causes.size());
+        Http3Exception cause = (Http3Exception) causes.get(0);
+        assertEquals(Http3ErrorCode.H3_REQUEST_CANCELLED, cause.errorCode());
+        assertTrue(cause.getMessage(), cause.getMessage().startsWith(message));
+    }
+
+    @Test
+    public void testDisabled() {
+        Http3RequestTimeoutTracker tracker = new Http3RequestTimeoutTracker(executorChannel.eventLoop(),
+                new Http3RequestTimeouts(0, 0, 0, TimeUnit.MILLISECONDS));
+        assertFalse(tracker.isEnabled());
+    }
+
+    @Test
+    public void testHeadersTimeout() throws Exception {
+        Http3RequestTimeoutTracker tracker = new Http3RequestTimeoutTracker(executorChannel.eventLoop(),
+                new Http3RequestTimeouts(10, 0, 0, TimeUnit.MILLISECONDS));
+        EmbeddedQuicStreamChannel stream = newStream(tracker);
+        assertEquals(1, tracker.trackedStreams());
+        runChecks(20);
+        assertCancelled(stream, "Request headers not received");
+        assertEquals(0, tracker.trackedStreams());
+        assertFalse(stream.finish());
+    }
+
+    @Test
+    public void testBodyIdleTimeout() throws Exception {
+        Http3RequestTimeoutTracker tracker = new Http3RequestTimeoutTracker(executorChannel.eventLoop(),
+                new Http3RequestTimeouts(TimeUnit.DAYS.toMillis(1), 10, 0, TimeUnit.MILLISECONDS));
+        EmbeddedQuicStreamChannel stream = newStream(tracker);
+        assertTrue(stream.writeInbound(new DefaultHttp3HeadersFrame()));
+        assertTrue(stream.writeInbound(new DefaultHttp3DataFrame(Unpooled.buffer().writeByte(1))));
+        runChecks(20);
+        assertCancelled(stream, "No request bytes received");
+        assertTrue(stream.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testBodyIdleTimeoutRefreshedByPartialFrame() throws Exception {
+        Http3RequestTimeoutTracker tracker = new Http3RequestTimeoutTracker(executorChannel.eventLoop(),
+                new Http3RequestTimeouts(TimeUnit.DAYS.toMillis(1), 50, 0, TimeUnit.MILLISECONDS));
+        EmbeddedQuicStreamChannel stream = new EmbeddedQuicStreamChannel(
+                new Http3FrameDecoder(new QpackDecoder(), Long.MAX_VALUE), tracker.newStreamHandler());
+        EmbeddedChannel encoder = new EmbeddedChannel(new Http3FrameEncoder(new QpackEncoder()));
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        headersFrame.headers().method("POST").path("/").scheme("https").authority("netty.quic");
+        assertTrue(encoder.writeOutbound(headersFrame));
+        assertTrue(stream.writeInbound((ByteBuf) encoder.readOutbound()));
+        assertFalse(encoder.finish());
+        assertTrue(stream.releaseInbound());
+        // Start of a HEADERS frame with a 100 byte payload that is sent slowly.
+        assertFalse(stream.writeInbound(Unpooled.buffer().writeByte(0x01).writeShort(0x4064)));
+        for (int i = 0; i < 3; i++) {
+            runChecks(30);
+            assertFalse(stream.writeInbound(Unpooled.buffer().writeByte(0)));
+        }
+        assertTrue(stream.isOpen());
+        assertEquals(1, tracker.trackedStreams());
+        stream.close();
+        assertEquals(0, tracker.trackedStreams());
+    }
+
+    @Test
+    public void testBodyIdleTimeoutPausedWhileReadsHeldBack() throws Exception {
+        Http3RequestTimeoutTracker tracker = new Http3RequestTimeoutTracker(executorChannel.eventLoop(),
+                new Http3RequestTimeouts(TimeUnit.DAYS.toMillis(1), 10, 0, TimeUnit.MILLISECONDS));
+        EmbeddedQuicStreamChannel stream = newStream(tracker);
+        stream.config().setAutoRead(false);
+        assertTrue(stream.writeInbound(new DefaultHttp3HeadersFrame()));
+        runChecks(20);
+        assertTrue(stream.isOpen());
+        assertTrue(causes.isEmpty());
+
+        // Once a read is requested again the peer has to send something.
+        stream.read();
+        runChecks(20);
+        assertCancelled(stream, "No request bytes received");
+        assertTrue(stream.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testRequestTimeout() throws Exception {
+        Http3RequestTimeoutTracker tracker = new Http3RequestTimeoutTracker(executorChannel.eventLoop(),
+                new Http3RequestTimeouts(0, 0, 10, TimeUnit.MILLISECONDS));
+        EmbeddedQuicStreamChannel stream = newStream(tracker);
+        assertTrue(stream.writeInbound(new DefaultHttp3HeadersFrame()));
+        runChecks(20);
+        assertCancelled(stream, "Request not received");
+        assertTrue(stream.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testCompleteRequestNotTimedOut() throws Exception {
+        Http3RequestTimeoutTracker tracker = new Http3RequestTimeoutTracker(executorChannel.eventLoop(),
+                new Http3RequestTimeouts(10, 10, 10, TimeUnit.MILLISECONDS));
+        EmbeddedQuicStreamChannel stream = newStream(tracker);
+        EmbeddedQuicStreamChannel closed = newStream(tracker);
+        assertEquals(2, tracker.trackedStreams());
+        assertTrue(stream.writeInbound(new DefaultHttp3HeadersFrame()));
+        stream.pipeline().fireUserEventTriggered(ChannelInputShutdownEvent.INSTANCE);
+        assertFalse(closed.finish());
+        assertEquals(0, tracker.trackedStreams());
+
+        runChecks(20);
+        assertTrue(stream.isOpen());
+        assertTrue(causes.isEmpty());
+        assertTrue(stream.finishAndReleaseAll());
+    }
+}
@@ -15,12 +15,41 @@
  */
 package io.netty.incubator.codec.http3;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.DefaultChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.incubator.codec.quic.QuicChannel;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.incubator.codec.quic.QuicStreamType;
+import io.netty.util.AttributeMap;
+import io.netty.util.DefaultAttributeMap;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.junit.After;
+import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static io.netty.incubator.codec.http3.Http3TestUtils.assertFrameEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class Http3ServerConnectionHandlerTest extends AbtractHttp3ConnectionHandlerTest {
     private static final ChannelHandler REQUEST_HANDLER = new ChannelInboundHandlerAdapter() {
@@ -30,6 +59,14 @@ public class Http3ServerConnectionHandlerTest extends AbtractHttp3ConnectionHand
         }
     };
 
+    // Only used to run the tasks that are scheduled by the handler.
+    private final EmbeddedChannel executorChannel = new EmbeddedChannel();
+
+    @After
+    public void tearDown() {
+        assertFalse(executorChannel.finish());
+    }
+
     @Override
     protected Http3ConnectionHandler newConnectionHandler() {
         return new Http3ServerConnectionHandler(REQUEST_HANDLER);
@@ -39,4 +76,264 @@ public class Http3ServerConnectionHandlerTest extends AbtractHttp3ConnectionHand
     protected void assertBidirectionalStreamHandled(QuicChannel channel, QuicStreamChannel streamChannel) {
         assertNotNull(streamChannel.pipeline().context(REQUEST_HANDLER));
     }
+
+    @Test
+    public void testShutdownGracefullyWaitsForActiveStreams() throws Exception {
+        QuicChannel quicChannel = mockQuicChannel();
+        EmbeddedQuicStreamChannel controlStream = new EmbeddedQuicStreamChannel(
+                quicChannel, true, QuicStreamType.UNIDIRECTIONAL, 3);
+        Http3ServerConnectionHandler handler = newActiveHandler(quicChannel, controlStream);
+        ChannelHandlerContext ctx = mockContext(quicChannel);
+
+        EmbeddedQuicStreamChannel stream0 = newRequestStream(handler, ctx, quicChannel, 0);
+        EmbeddedQuicStreamChannel stream4 = newRequestStream(handler, ctx, quicChannel, 4);
+        assertEquals(2, handler.activeRequestStreams());
+
+        Future<Void> future = handler.shutdownGracefully(0, 1, TimeUnit.DAYS);
+        assertGoAway(controlStream, Http3ServerConnectionHandler.MAX_GOAWAY_ID);
+        assertNull(controlStream.readOutbound());
+
+        executorChannel.runPendingTasks();
+        assertGoAway(controlStream, 8);
+
+        // Opened by the client before the final GOAWAY was received, so it is rejected.
+        EmbeddedQuicStreamChannel stream8 = newRequestStream(handler, ctx, quicChannel, 8);
+        assertFalse(stream8.isOpen());
+        assertEquals(2, handler.activeRequestStreams());
+
+        assertFalse(stream0.finishAndReleaseAll());
+        assertFalse(future.isDone());
+        verify(quicChannel, never()).close(anyBoolean(), anyInt(), any(ByteBuf.class));
+
+        assertFalse(stream4.finishAndReleaseAll());
+        assertTrue(future.isSuccess());
+        verify(quicChannel).close(eq(true), eq(Http3ErrorCode.H3_NO_ERROR.code), any(ByteBuf.class));
+        assertFalse(controlStream.finish());
+    }
+
+    @Test
+    public void testRejectedRequestStreamsCoveredByGoAway() throws Exception {
+        QuicChannel quicChannel = mockQuicChannel();
+        EmbeddedQuicStreamChannel controlStream = new EmbeddedQuicStreamChannel(
+                quicChannel, true, QuicStreamType.UNIDIRECTIONAL, 3);
+        Http3ServerConnectionHandler handler = newActiveHandler(quicChannel, controlStream,
+                Http3ServerConnectionHandler.builder(REQUEST_HANDLER).maxConcurrentRequestStreams(1).build());
+        ChannelHandlerContext ctx = mockContext(quicChannel);
+
+        EmbeddedQuicStreamChannel stream0 = newRequestStream(handler, ctx, quicChannel, 0);
+        // Over the limit, so it is rejected and the GOAWAY frame tells the client that it may retry it.
+        EmbeddedQuicStreamChannel rejected4 = newRequestStream(handler, ctx, quicChannel, 4);
+        assertFalse(rejected4.isOpen());
+        assertGoAway(controlStream, 4);
+
+        // Covered by the GOAWAY frame that was sent already.
+        EmbeddedQuicStreamChannel rejected8 = newRequestStream(handler, ctx, quicChannel, 8);
+        assertFalse(rejected8.isOpen());
+        assertNull(controlStream.readOutbound());
+
+        Future<Void> future = handler.shutdownGracefully(0, 1, TimeUnit.DAYS);
+        executorChannel.runPendingTasks();
+        assertNull(controlStream.readOutbound());
+        assertFalse(future.isDone());
+
+        assertFalse(stream0.finishAndReleaseAll());
+        assertTrue(future.isSuccess());
+        verify(quicChannel).close(eq(true), eq(Http3ErrorCode.H3_NO_ERROR.code), any(ByteBuf.class));
+        assertFalse(controlStream.finish());
+    }
+
+    @Test
+    public void testRequestStreamRejectedDuringQuietPeriod() throws Exception {
+        QuicChannel quicChannel = mockQuicChannel();
+        EmbeddedQuicStreamChannel controlStream = new EmbeddedQuicStreamChannel(
+                quicChannel, true, QuicStreamType.UNIDIRECTIONAL, 3);
+        Http3ServerConnectionHandler handler = newActiveHandler(quicChannel, controlStream,
+                Http3ServerConnectionHandler.builder(REQUEST_HANDLER).maxConcurrentRequestStreams(1).build());
+        ChannelHandlerContext ctx = mockContext(quicChannel);
+
+        EmbeddedQuicStreamChannel stream0 = newRequestStream(handler, ctx, quicChannel, 0);
+        Future<Void> future = handler.shutdownGracefully(1, 1, TimeUnit.DAYS);
+        assertGoAway(controlStream, Http3ServerConnectionHandler.MAX_GOAWAY_ID);
+
+        EmbeddedQuicStreamChannel rejected = newRequestStream(handler, ctx, quicChannel, 4);
+        assertFalse(rejected.isOpen());
+        assertGoAway(controlStream, 4);
+
+        assertFalse(stream0.finishAndReleaseAll());
+        assertTrue(future.isSuccess());
+        verify(quicChannel).close(eq(true), eq(Http3ErrorCode.H3_NO_ERROR.code), any(ByteBuf.class));
+        assertFalse(controlStream.finish());
+    }
+
+    @Test
+    public void testShutdownGracefullyTimeout() throws Exception {
+        QuicChannel quicChannel = mockQuicChannel();
+        EmbeddedQuicStreamChannel controlStream = new EmbeddedQuicStreamChannel(
+                quicChannel, true, QuicStreamType.UNIDIRECTIONAL, 3);
+        Http3ServerConnectionHandler handler = newActiveHandler(quicChannel, controlStream);
+        EmbeddedQuicStreamChannel stream = newRequestStream(handler, mockContext(quicChannel), quicChannel, 0);
+
+        Future<Void> future = handler.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS);
+        executorChannel.runPendingTasks();
+        executorChannel.runPendingTasks();
+        assertGoAway(controlStream, Http3ServerConnectionHandler.MAX_GOAWAY_ID);
+        assertGoAway(controlStream, 4);
+
+        // The connection is closed even though the stream is still active.
+        assertTrue(future.isSuccess());
+        assertTrue(stream.isOpen());
+        verify(quicChannel).close(eq(true), eq(Http3ErrorCode.H3_NO_ERROR.code), any(ByteBuf.class));
+        assertFalse(stream.finishAndReleaseAll());
+        assertFalse(controlStream.finish());
+    }
+
+    @Test
+    public void testShutdownGracefullyAllConnections() throws Exception {
+        QuicChannel quicChannel1 = mockQuicChannel();
+        QuicChannel quicChannel2 = mockQuicChannel();
+        EmbeddedQuicStreamChannel controlStream1 = new EmbeddedQuicStreamChannel(
+                quicChannel1, true, QuicStreamType.UNIDIRECTIONAL, 3);
+        EmbeddedQuicStreamChannel controlStream2 = new EmbeddedQuicStreamChannel(
+                quicChannel2, true, QuicStreamType.UNIDIRECTIONAL, 3);
+        mockPipeline(quicChannel1, newActiveHandler(quicChannel1, controlStream1));
+        mockPipeline(quicChannel2, newActiveHandler(quicChannel2, controlStream2));
+
+        Future<Void> future = Http3.shutdownGracefully(
+                Arrays.asList(quicChannel1, quicChannel2), 0, 1, TimeUnit.DAYS);
+        executorChannel.runPendingTasks();
+        assertTrue(future.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isSuccess());
+        verify(quicChannel1).close(eq(true), eq(Http3ErrorCode.H3_NO_ERROR.code), any(ByteBuf.class));
+        verify(quicChannel2).close(eq(true), eq(Http3ErrorCode.H3_NO_ERROR.code), any(ByteBuf.class));
+        assertTrue(controlStream1.finishAndReleaseAll());
+        assertTrue(controlStream2.finishAndReleaseAll());
+    }
+
+    @Test
+    public void testRequestStreamsRejectedOverLimit() throws Exception {
+        Http3RequestLimit requestLimit = new Http3RequestLimit(2);
+        QuicChannel quicChannel1 = mockQuicChannel();
+        QuicChannel quicChannel2 = mockQuicChannel();
+        EmbeddedQuicStreamChannel controlStream1 = new EmbeddedQuicStreamChannel(
+                quicChannel1, true, QuicStreamType.UNIDIRECTIONAL, 3);
+        EmbeddedQuicStreamChannel controlStream2 = new EmbeddedQuicStreamChannel(
+                quicChannel2, true, QuicStreamType.UNIDIRECTIONAL, 3);
+        Http3ServerConnectionHandler handler1 = newActiveHandler(quicChannel1, controlStream1,
+                Http3ServerConnectionHandler.builder(REQUEST_HANDLER).maxConcurrentRequestStreams(1)
+                        .requestLimit(requestLimit).build());
+        Http3ServerConnectionHandler handler2 = newActiveHandler(quicChannel2, controlStream2,
+                Http3ServerConnectionHandler.builder(REQUEST_HANDLER).maxConcurrentRequestStreams(2)
+                        .requestLimit(requestLimit).build());
+        ChannelHandlerContext ctx1 = mockContext(quicChannel1);
+        ChannelHandlerContext ctx2 = mockContext(quicChannel2);
+
+        EmbeddedQuicStreamChannel stream1 = newRequestStream(handler1, ctx1, quicChannel1, 0);
+        assertTrue(stream1.isOpen());
+        // Over the limit of the connection.
+        EmbeddedQuicStreamChannel rejected1 = newRequestStream(handler1, ctx1, quicChannel1, 4);
+        assertFalse(rejected1.isOpen());
+        assertGoAway(controlStream1, 4);
+
+        EmbeddedQuicStreamChannel stream2 = newRequestStream(handler2, ctx2, quicChannel2, 0);
+        assertTrue(stream2.isOpen());
+        // Over the limit that is shared by both connections.
+        EmbeddedQuicStreamChannel rejected2 = newRequestStream(handler2, ctx2, quicChannel2, 4);
+        assertFalse(rejected2.isOpen());
+        assertGoAway(controlStream2, 4);
+        assertEquals(1, requestLimit.rejected());
+        assertEquals(2, requestLimit.inFlight());
+
+        assertFalse(stream1.finishAndReleaseAll());
+        assertEquals(1, requestLimit.inFlight());
+        verify(quicChannel1).close(eq(true), eq(Http3ErrorCode.H3_NO_ERROR.code), any(ByteBuf.class));
+
+        // The limit has room again, but the connection does not accept request streams anymore after the GOAWAY.
+        EmbeddedQuicStreamChannel stream3 = newRequestStream(handler2, ctx2, quicChannel2, 8);
+        assertFalse(stream3.isOpen());
+        assertEquals(1, handler2.activeRequestStreams());
+        assertEquals(1, requestLimit.rejected());
+
+        assertFalse(stream2.finishAndReleaseAll());
+        assertEquals(0, requestLimit.inFlight());
+        verify(quicChannel2).close(eq(true), eq(Http3ErrorCode.H3_NO_ERROR.code), any(ByteBuf.class));
+        assertFalse(controlStream1.finish());
+        assertFalse(controlStream2.finish());
+    }
+
+    @Test
+    public void testEarlyDataRequestStreamMarked() throws Exception {
+        QuicChannel quicChannel = mockQuicChannel();
+        EmbeddedQuicStreamChannel controlStream = new EmbeddedQuicStreamChannel(
+                quicChannel, true, QuicStreamType.UNIDIRECTIONAL, 3);
+        Http3ServerConnectionHandler handler = newActiveHandler(quicChannel, controlStream);
+        ChannelHandlerContext ctx = mockContext(quicChannel);
+
+        // Arrived before the handshake was complete.
+        when(quicChannel.isActive()).thenReturn(false);
+        EmbeddedQuicStreamChannel earlyStream = newRequestStream(handler, ctx, quicChannel, 0);
+        assertTrue(Http3.isEarlyData(earlyStream));
+        assertNotNull(earlyStream.pipeline().get(Http3EarlyDataHandler.class));
+
+        when(quicChannel.isActive()).thenReturn(true);
+        EmbeddedQuicStreamChannel stream = newRequestStream(handler, ctx, quicChannel, 4);
+        assertFalse(Http3.isEarlyData(stream));
+        assertNull(stream.pipeline().get(Http3EarlyDataHandler.class));
+
+        assertFalse(earlyStream.finishAndReleaseAll());
+        assertFalse(stream.finishAndReleaseAll());
+        assertFalse(controlStream.finish());
+    }
+
+    private Http3ServerConnectionHandler newActiveHandler(QuicChannel quicChannel, QuicStreamChannel controlStream)
+            throws Exception {
+        return newActiveHandler(quicChannel, controlStream, new Http3ServerConnectionHandler(REQUEST_HANDLER));
+    }
+
+    private Http3ServerConnectionHandler newActiveHandler(QuicChannel quicChannel, QuicStreamChannel controlStream,
+                                                          Http3ServerConnectionHandler handler) throws Exception {
+        when(quicChannel.createStream(any(QuicStreamType.class), any(ChannelHandler.class)))
+                .thenReturn(ImmediateEventExecutor.INSTANCE.newSucceededFuture(controlStream));
+        ChannelHandlerContext ctx = mockContext(quicChannel);
+        handler.handlerAdded(ctx);
+        handler.channelActive(ctx);
+        return handler;
+    }
+
+    private QuicChannel mockQuicChannel() {
+        QuicChannel quicChannel = mock(QuicChannel.class);
+        AttributeMap attributeMap = new DefaultAttributeMap();
+        when(quicChannel.attr(any())).then(a -> attributeMap.attr(a.getArgument(0)));
+        when(quicChannel.isActive()).thenReturn(true);
+        when(quicChannel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        when(quicChannel.close(anyBoolean(), anyInt(), any(ByteBuf.class))).then(
+                i -> new DefaultChannelPromise(quicChannel, ImmediateEventExecutor.INSTANCE).setSuccess());
+        return quicChannel;
+    }
+
+    private ChannelHandlerContext mockContext(QuicChannel quicChannel) {
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(quicChannel);
+        when(ctx.executor()).thenReturn(executorChannel.eventLoop());
+        return ctx;
+    }
+
+    private static void mockPipeline(QuicChannel quicChannel, Http3ServerConnectionHandler handler) {
+        ChannelPipeline pipeline = mock(ChannelPipeline.class);
+        when(pipeline.get(Http3ServerConnectionHandler.class)).thenReturn(handler);
+        when(quicChannel.pipeline()).thenReturn(pipeline);
+    }
+
+    private static EmbeddedQuicStreamChannel newRequestStream(Http3ServerConnectionHandler handler,
+                                                              ChannelHandlerContext ctx, QuicChannel quicChannel,
+                                                              long id) {
+        EmbeddedQuicStreamChannel stream = new EmbeddedQuicStreamChannel(
+                quicChannel, false, QuicStreamType.BIDIRECTIONAL, id);
+        handler.channelRead(ctx, stream);
+        return stream;
+    }
+
+    private static void assertGoAway(EmbeddedQuicStreamChannel controlStream, long id) {
+        Http3GoAwayFrame frame = controlStream.readOutbound();
+        assertFrameEquals(new DefaultHttp3GoAwayFrame(id), frame);
+    }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.incubator.codec.quic.QuicChannel;
+import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.incubator.codec.quic.QuicStreamType;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.netty.incubator.codec.http3.Http3TestUtils.assertBufferEquals;
+import static io.netty.incubator.codec.http3.Http3TestUtils.assertException;
+import static io.netty.incubator.codec.http3.Http3TestUtils.mockParent;
+import static io.netty.incubator.codec.http3.Http3TestUtils.verifyClose;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+public class Http3ServerPushManagerTest {
+    private final List<EmbeddedQuicStreamChannel> pushStreams = new ArrayList<>();
+    private QuicChannel parent;
+    private Http3ServerPushManager manager;
+    private EmbeddedQuicStreamChannel requestStream;
+
+    @Before
+    public void setUp() {
+        parent = mockParent();
+        when(parent.createStream(eq(QuicStreamType.UNIDIRECTIONAL), any(ChannelHandler.class))).then(i -> {
+            EmbeddedQuicStreamChannel stream = new EmbeddedQuicStreamChannel(parent, true,
+                    QuicStreamType.UNIDIRECTIONAL, 3 + 4 * pushStreams.size(), (ChannelHandler) i.getArgument(1));
+            pushStreams.add(stream);
+            return stream.eventLoop().newSucceededFuture(stream);
+        });
+        manager = new Http3ServerPushManager(CodecHandler::new);
+        requestStream = new EmbeddedQuicStreamChannel(parent, false, QuicStreamType.BIDIRECTIONAL, 0,
+                new ChannelInboundHandlerAdapter());
+    }
+
+    @After
+    public void tearDown() {
+        assertFalse(requestStream.finish());
+        for (EmbeddedQuicStreamChannel stream : pushStreams) {
+            stream.finishAndReleaseAll();
+        }
+    }
+
+    private static Http3Headers request(String path) {
+        return new DefaultHttp3Headers().method("GET").scheme("https").authority("netty.io").path(path);
+    }
+
+    private void assertPushPromise(long pushId, String path) {
+        Http3PushPromiseFrame frame = requestStream.readOutbound();
+        assertEquals(pushId, frame.id());
+        assertEquals(path, frame.headers().path().toString());
+    }
+
+    @Test
+    public void testPushWithoutMaxPushId() {
+        Future<QuicStreamChannel> future = manager.newPushStream(requestStream, request("/"),
+                new ChannelInboundHandlerAdapter());
+        assertTrue(future.cause() instanceof IllegalStateException);
+        assertNull(requestStream.readOutbound());
+        assertTrue(pushStreams.isEmpty());
+    }
+
+    @Test
+    public void testPush() {
+        manager.maxPushIdReceived(1);
+        assertEquals(2, manager.availablePushIds());
+
+        ChannelHandler handler = new ChannelInboundHandlerAdapter();
+        Future<QuicStreamChannel> future = manager.newPushStream(requestStream, request("/style.css"), handler);
+        assertPushPromise(0, "/style.css");
+        assertTrue(future.isSuccess());
+        EmbeddedQuicStreamChannel pushStream = pushStreams.get(0);
+        assertSame(pushStream, future.getNow());
+        assertSame(handler, pushStream.pipeline().last());
+        assertSame(Http3PushStreamValidationHandler.INSTANCE, pushStream.pipeline().get(
+                Http3PushStreamValidationHandler.class));
+
+        // The stream type and push id are written before any frame.
+        ByteBuf expected = Unpooled.buffer();
+        Http3CodecUtils.writeVariableLengthInteger(expected, Http3CodecUtils.HTTP3_PUSH_STREAM_TYPE);
+        Http3CodecUtils.writeVariableLengthInteger(expected, 0);
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        assertTrue(pushStream.writeOutbound(headersFrame));
+        assertBufferEquals(expected, pushStream.readOutbound());
+        assertSame(headersFrame, pushStream.readOutbound());
+
+        assertTrue(manager.newPushStream(requestStream, request("/script.js"), handler).isSuccess());
+        assertPushPromise(1, "/script.js");
+        assertEquals(0, manager.availablePushIds());
+
+        // The push id limit is reached.
+        assertTrue(manager.newPushStream(requestStream, request("/image.png"), handler).cause()
+                instanceof IllegalStateException);
+        assertNull(requestStream.readOutbound());
+
+        // Once the client raises the limit pushes are possible again.
+        manager.maxPushIdReceived(2);
+        assertTrue(manager.newPushStream(requestStream, request("/image.png"), handler).isSuccess());
+        assertPushPromise(2, "/image.png");
+    }
+
+    @Test
+    public void testCancelPush() {
+        manager.maxPushIdReceived(0);
+        Future<QuicStreamChannel> future = manager.newPushStream(requestStream, request("/"),
+                new ChannelInboundHandlerAdapter());
+        assertPushPromise(0, "/");
+        assertTrue(future.getNow().isOpen());
+
+        assertTrue(manager.cancelPushReceived(requestStream.pipeline().firstContext(), 0, false));
+        assertFalse(future.getNow().isOpen());
+    }
+
+    @Test
+    public void testCancelPushBeforePushStreamOpened() {
+        manager.maxPushIdReceived(0);
+        // Delay the write of the PUSH_PROMISE frame.
+        requestStream.pipeline().addFirst(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void flush(ChannelHandlerContext ctx) {
+                // Swallow the flush so the write is not completed yet.
+            }
+        });
+        Future<QuicStreamChannel> future = manager.newPushStream(requestStream, request("/"),
+                new ChannelInboundHandlerAdapter());
+        assertFalse(future.isDone());
+        assertTrue(manager.cancelPushReceived(requestStream.pipeline().firstContext(), 0, false));
+        Http3Exception cause = (Http3Exception) future.cause();
+        assertEquals(Http3ErrorCode.H3_REQUEST_CANCELLED, cause.errorCode());
+
+        // Once the PUSH_PROMISE was written no push stream is opened.
+        requestStream.pipeline().removeFirst();
+        requestStream.flush();
+        assertPushPromise(0, "/");
+        assertTrue(pushStreams.isEmpty());
+    }
+
+    @Test
+    public void testCancelPushForUnknownPushId() {
+        manager.maxPushIdReceived(10);
+        assertFalse(manager.cancelPushReceived(requestStream.pipeline().firstContext(), 0, true));
+        try {
+            requestStream.checkException();
+            fail();
+        } catch (Exception e) {
+            assertException(Http3ErrorCode.H3_ID_ERROR, e);
+        }
+        verifyClose(Http3ErrorCode.H3_ID_ERROR, parent);
+    }
+
+    private static final class CodecHandler extends ChannelHandlerAdapter {  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import org.junit.Test;
+
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PooledHttp3FramesTest {
+
+    @Test
+    public void testDataFrameReleasesContent() {
+        ByteBuf content = Unpooled.buffer().writeLong(1);
+        Http3DataFrame frame = Http3.newPooledDataFrame(content);
+        assertEquals(1, frame.refCnt());
+        frame.retain();
+        assertFalse(frame.release());
+        assertEquals(1, content.refCnt());
+        assertTrue(frame.release());
+        assertEquals(0, content.refCnt());
+        assertEquals(0, frame.refCnt());
+        try {
+            frame.content();
+            fail();
+        } catch (IllegalReferenceCountException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDataFrameReplace() {
+        Http3DataFrame frame = Http3.newPooledDataFrame(Unpooled.buffer().writeLong(1));
+        Http3DataFrame copy = frame.copy();
+        assertEquals(frame, copy);
+        assertTrue(frame.release());
+        assertEquals(1L, copy.content().readLong());
+        assertTrue(copy.release());
+    }
+
+    @Test
+    public void testHeadersFrameIsReferenceCounted() {
+        Http3HeadersFrame frame = Http3.newPooledHeadersFrame();
+        frame.headers().method("GET");
+        ReferenceCounted counted = (ReferenceCounted) frame;
+        assertEquals(1, counted.refCnt());
+        counted.retain();
+        assertFalse(counted.release());
+        assertEquals("GET", frame.headers().method().toString());
+        assertTrue(counted.release());
+        assertEquals(0, counted.refCnt());
+        assertTrue(frame.headers().isEmpty());
+
+        Http3HeadersFrame next = Http3.newPooledHeadersFrame();
+        assertTrue(next.headers().isEmpty());
+        assertEquals(1, ((ReferenceCounted) next).refCnt());
+        ReferenceCountUtil.release(next);
+    }
+
+    @Test
+    public void testEncoderReleasesHeadersFrame() {
+        EmbeddedChannel channel = new EmbeddedChannel(new Http3FrameEncoder(new QpackEncoder()));
+        Http3HeadersFrame frame = Http3.newPooledHeadersFrame();
+        addRequestHeaders(frame.headers());
+        assertTrue(channel.writeOutbound(frame));
+        assertEquals(0, ((ReferenceCounted) frame).refCnt());
+        ByteBuf encoded = channel.readOutbound();
+        encoded.release();
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testEncoderRecyclesDataFrame() {
+        EmbeddedChannel channel = new EmbeddedChannel(new Http3FrameEncoder(new QpackEncoder()));
+        ByteBuf content = Unpooled.buffer().writeLong(1);
+        Http3DataFrame frame = Http3.newPooledDataFrame(content);
+        assertTrue(channel.writeOutbound(frame));
+        // The frame was recycled while the written buffer still holds the content.
+        assertEquals(0, frame.refCnt());
+        assertEquals(1, content.refCnt());
+        ByteBuf encoded = channel.readOutbound();
+        assertEquals(10, encoded.readableBytes());
+        encoded.release();
+        assertEquals(0, content.refCnt());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDecodeIntoPooledHeadersOfFactory() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new Http3FrameEncoder(new QpackEncoder()));
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        addRequestHeaders(headersFrame.headers());
+        assertTrue(encoder.writeOutbound(headersFrame));
+
+        Http3Headers headers = new DefaultHttp3Headers(false);
+        EmbeddedChannel decoder = new EmbeddedChannel(newPooledDecoder(() -> headers));
+        assertTrue(decoder.writeInbound((ByteBuf) encoder.readOutbound()));
+        Http3HeadersFrame decoded = decoder.readInbound();
+        assertTrue(decoded instanceof PooledHttp3HeadersFrame);
+        assertSame(headers, decoded.headers());
+        assertEquals(headersFrame.headers(), decoded.headers());
+        ReferenceCountUtil.release(decoded);
+
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    @Test
+    public void testCodecReusesPooledHeadersOfDefaultFactory() {
+        // Same settings as Http3FrameCodec(QpackDecoder, long, QpackEncoder) uses if pooled frames are enabled.
+        Http3FrameDecoder.Config config = new Http3FrameDecoder.Config();
+        assertSame(Http3CodecUtils.DEFAULT_HEADERS_FACTORY, config.headersFactory);
+        config.pooledFrames = true;
+        EmbeddedChannel channel = new EmbeddedChannel(
+                new Http3FrameCodec(new QpackDecoder(), Long.MAX_VALUE, new QpackEncoder(), config));
+
+        Http3Headers headers = null;
+        for (int i = 0; i < 2; i++) {
+            Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+            addRequestHeaders(headersFrame.headers());
+            assertTrue(channel.writeOutbound(headersFrame));
+            assertTrue(channel.writeInbound((ByteBuf) channel.readOutbound()));
+
+            Http3HeadersFrame decoded = channel.readInbound();
+            assertTrue(decoded instanceof PooledHttp3HeadersFrame);
+            assertEquals(headersFrame.headers(), decoded.headers());
+            if (headers == null) {
+                headers = decoded.headers();
+            } else {
+                // The recycled frame kept the headers of the shared factory and so cleared and reused them.
+                assertSame(headers, decoded.headers());
+            }
+            ReferenceCountUtil.release(decoded);
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    public void testDecodeIntoPooledFrames() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new Http3FrameEncoder(new QpackEncoder()));
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        addRequestHeaders(headersFrame.headers());
+        assertTrue(encoder.writeOutbound(headersFrame,
+                new DefaultHttp3DataFrame(Unpooled.buffer().writeLong(8))));
+
+        EmbeddedChannel decoder = new EmbeddedChannel(newPooledDecoder(DefaultHttp3Headers::new));
+        for (;;) {
+            ByteBuf buffer = encoder.readOutbound();
+            if (buffer == null) {
+                break;
+            }
+            decoder.writeInbound(buffer);
+        }
+
+        Http3HeadersFrame decodedHeaders = decoder.readInbound();
+        assertTrue(decodedHeaders instanceof PooledHttp3HeadersFrame);
+        assertEquals(headersFrame.headers(), decodedHeaders.headers());
+        ReferenceCountUtil.release(decodedHeaders);
+
+        Http3DataFrame decodedData = decoder.readInbound();
+        assertTrue(decodedData instanceof PooledHttp3DataFrame);
+        ByteBuf content = decodedData.content();
+        assertEquals(8L, content.readLong());
+        assertTrue(decodedData.release());
+        assertEquals(0, content.refCnt());
+
+        assertNull(decoder.readInbound());
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    private static Http3FrameDecoder newPooledDecoder(Supplier<? extends Http3Headers> headersFactory) {
+        Http3FrameDecoder.Config config = new Http3FrameDecoder.Config();
+        config.headersFactory = headersFactory;
+        config.pooledFrames = true;
+        return new Http3FrameDecoder(new QpackDecoder(), Long.MAX_VALUE, config);
+    }
+
+    private static void addRequestHeaders(Http3Headers headers) {
+        headers.add(":authority", "netty.quic");
+        headers.add(":path", "/");
+        headers.add(":method", "GET");
+        headers.add(":scheme", "https");
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building and encoding typical response headers, either from scratch for every response or from a
+ * shared {@link ReadOnlyHttp3Headers} template with a per response overlay.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class QpackEncoderBenchmark {
+
+    @Param({ "default", "template" })
+    public String implementation;
+
+    private QpackEncoder encoder;
+    private ReadOnlyHttp3Headers template;
+    private ByteBuf out;
+
+    @Setup
+    public void setup() {
+        encoder = new QpackEncoder();
+        template = ReadOnlyHttp3Headers.copyOf(addResponseHeaders(new DefaultHttp3Headers()));
+        out = PooledByteBufAllocator.DEFAULT.directBuffer(1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        out.release();
+    }
+
+    private static Http3Headers addResponseHeaders(Http3Headers headers) {
+        return headers.add("content-type", "text/html; charset=utf-8")
+                .add("cache-control", "private, max-age=0")
+                .add("server", "netty")
+                .add("strict-transport-security", "max-age=31536000")
+                .add("x-content-type-options", "nosniff");
+    }
+
+    @Benchmark
+    public int encode() {
+        final Http3Headers headers;
+        if ("template".equals(implementation)) {
+            headers = new OverlayHttp3Headers(template, new CompactHttp3Headers().status("200").addInt(
+                    "content-length", 1024));
+        } else {
+            headers = addResponseHeaders(new DefaultHttp3Headers().status("200")).addInt("content-length", 1024);
+        }
+        out.clear();
+        encoder.encodeHeaders(out, headers);
+        return out.readableBytes();
+    }
+
+    public static void main(String... args) throws Exception {
+        new Runner(new OptionsBuilder().include(QpackEncoderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
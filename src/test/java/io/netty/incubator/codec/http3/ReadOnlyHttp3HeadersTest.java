@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReadOnlyHttp3HeadersTest {
+
+    private static ReadOnlyHttp3Headers newTemplate() {
+        return ReadOnlyHttp3Headers.copyOf(new DefaultHttp3Headers()
+                .add("content-type", "text/plain")
+                .status("200")
+                .add("vary", "accept")
+                .add("vary", "accept-encoding")
+                .add("server", "netty"));
+    }
+
+    @Test
+    public void testCopyOf() {
+        ReadOnlyHttp3Headers headers = newTemplate();
+        assertEquals(5, headers.size());
+        assertEquals("200", headers.status().toString());
+        assertEquals("text/plain", headers.get("content-type").toString());
+        assertEquals(2, headers.getAll("vary").size());
+        assertNull(headers.get("content-length"));
+        assertSame(headers, ReadOnlyHttp3Headers.copyOf(headers));
+
+        Iterator<Map.Entry<CharSequence, CharSequence>> it = headers.iterator();
+        assertEquals(":status", it.next().getKey().toString());
+        assertEquals("content-type", it.next().getKey().toString());
+        assertEquals("vary", it.next().getKey().toString());
+        assertEquals("vary", it.next().getKey().toString());
+        assertEquals("server", it.next().getKey().toString());
+        assertFalse(it.hasNext());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAddNotSupported() {
+        newTemplate().add("a", "b");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRemoveNotSupported() {
+        newTemplate().remove("server");
+    }
+
+    @Test(expected = Http3HeadersValidationException.class)
+    public void testInvalidPseudoHeader() {
+        ReadOnlyHttp3Headers.copyOf(new DefaultHttp3Headers(false).add(":invalid", "value"));
+    }
+
+    @Test
+    public void testEncodedSameAsDefaultHeaders() {
+        ReadOnlyHttp3Headers template = newTemplate();
+        assertEncodedEquals(new DefaultHttp3Headers().add(template), template);
+    }
+
+    @Test
+    public void testOverlay() {
+        ReadOnlyHttp3Headers template = newTemplate();
+        Http3Headers overlay = new CompactHttp3Headers().status("404").setInt("content-length", 10);
+        Http3HeadersFrame frame = new DefaultHttp3HeadersFrame(template, overlay);
+        Http3Headers headers = frame.headers();
+
+        assertEquals(6, headers.size());
+        assertEquals("404", headers.status().toString());
+        assertEquals(10, (int) headers.getInt("content-length"));
+        assertEquals("netty", headers.get("server").toString());
+
+        Http3Headers expected = new DefaultHttp3Headers()
+                .status("404")
+                .add("content-type", "text/plain")
+                .add("vary", "accept")
+                .add("vary", "accept-encoding")
+                .add("server", "netty")
+                .addInt("content-length", 10);
+        assertEquals(expected, headers);
+        assertEncodedEquals(expected, headers);
+
+        // The template must not be changed.
+        assertEquals("200", template.status().toString());
+        assertEquals(5, template.size());
+    }
+
+    @Test
+    public void testOverlayModifications() {
+        ReadOnlyHttp3Headers template = newTemplate();
+        Http3Headers overlay = new CompactHttp3Headers();
+        Http3Headers headers = new DefaultHttp3HeadersFrame(template, overlay).headers();
+
+        headers.add("vary", "origin");
+        assertEquals("[accept, accept-encoding, origin]", headers.getAll("vary").toString());
+        assertEquals(3, overlay.size());
+
+        assertTrue(headers.remove("server"));
+        assertFalse(headers.remove("server"));
+        assertNull(headers.get("server"));
+        headers.set("server", "quic");
+        assertEquals("quic", headers.get("server").toString());
+        assertEquals(6, headers.size());
+
+        assertEncodedEquals(new DefaultHttp3Headers()
+                .status("200")
+                .add("content-type", "text/plain")
+                .add("vary", "accept")
+                .add("vary", "accept-encoding")
+                .add("vary", "origin")
+                .add("server", "quic"), headers);
+
+        headers.clear();
+        assertTrue(headers.isEmpty());
+        assertNull(headers.status());
+        assertEquals(5, template.size());
+    }
+
+    @Test
+    public void testDecodeOverlay() {
+        EmbeddedChannel encoder = new EmbeddedChannel(new Http3FrameEncoder(new QpackEncoder()));
+        Http3HeadersFrame frame = new DefaultHttp3HeadersFrame(newTemplate(),
+                new CompactHttp3Headers().setInt("content-length", 5));
+        assertTrue(encoder.writeOutbound(frame));
+
+        EmbeddedChannel decoder = new EmbeddedChannel(new Http3FrameDecoder(new QpackDecoder(), Long.MAX_VALUE));
+        assertTrue(decoder.writeInbound(encoder.<ByteBuf>readOutbound()));
+        Http3HeadersFrame decoded = decoder.readInbound();
+        assertEquals(frame.headers(), decoded.headers());
+        assertFalse(encoder.finish());
+        assertFalse(decoder.finish());
+    }
+
+    private static void assertEncodedEquals(Http3Headers expected, Http3Headers actual) {
+        QpackEncoder encoder = new QpackEncoder();
+        ByteBuf expectedBuffer = Unpooled.buffer();
+        ByteBuf actualBuffer = Unpooled.buffer();
+        try {
+            encoder.encodeHeaders(expectedBuffer, expected);
+            encoder.encodeHeaders(actualBuffer, actual);
+            assertEquals(expectedBuffer, actualBuffer);
+        } finally {
+            expectedBuffer.release();
+            actualBuffer.release();
+        }
+    }
+}